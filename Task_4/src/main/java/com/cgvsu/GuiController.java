@@ -1,9 +1,15 @@
 package com.cgvsu;
 
+import com.cgvsu.render_engine.Rasterizer;
 import com.cgvsu.render_engine.RenderEngine;
+import com.cgvsu.render_engine.Texture;
 import com.cgvsu.render_engine.TextureManager;
+import com.cgvsu.render_engine.TextureSampler;
 import com.cgvsu.scene.SceneManager;
+import com.cgvsu.meshcache.MeshCache;
 import com.cgvsu.util.ErrorHandler;
+import com.cgvsu.util.LodBuildTask;
+import com.cgvsu.util.ModelLoadTask;
 import javafx.fxml.FXML;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
@@ -28,24 +34,33 @@ import javafx.stage.Stage;
 import javafx.stage.FileChooser;
 import javafx.util.Duration;
 
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.io.IOException;
 import java.io.File;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import com.cgvsu.math.vector.impl.Vector3fImpl;
 
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.LodChain;
 import com.cgvsu.model.Model;
-import com.cgvsu.objreader.ObjReader;
-import com.cgvsu.objreader.ObjReaderException;
 import com.cgvsu.objwriter.ObjWriter;
+import com.cgvsu.objwriter.PlyWriter;
+import com.cgvsu.objwriter.StlWriter;
 import com.cgvsu.render_engine.Camera;
 
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class GuiController {
 
+    private static final System.Logger LOGGER = System.getLogger(GuiController.class.getName());
+
     final private float TRANSLATION = 0.5F;
     final private float MODEL_TRANSLATION = 1.0F;
     final private float MODEL_ROTATION = 0.1F; // radians
@@ -108,7 +123,35 @@ public class GuiController {
     @FXML
     private CheckBox showCamerasCheckBox;
 
+    @FXML
+    private VBox loadingPanel;
+
+    @FXML
+    private Label loadingLabel;
+
+    @FXML
+    private ProgressBar loadingProgressBar;
+
     private SceneManager sceneManager = new SceneManager();
+
+    // Модели загружаются по очереди в фоновом потоке; разбор файла внутри сам распараллелен
+    private final ExecutorService modelLoadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "model-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ModelLoadTask currentLoadTask;
+    // Уровни детализации строятся отдельно, чтобы не задерживать загрузку следующих моделей
+    private final ExecutorService lodBuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lod-builder");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    // Незавершённые построения уровней детализации по моделям сцены
+    private final Map<SceneManager.SceneModel, LodBuildTask> lodBuildTasks = new IdentityHashMap<>();
+    // Подготовленные сетки открытых ранее файлов
+    private final MeshCache meshCache = new MeshCache(MeshCache.defaultDirectory());
     private com.cgvsu.scene.CameraManager cameraManager = new com.cgvsu.scene.CameraManager();
     private boolean isDarkTheme = false;
 
@@ -207,6 +250,7 @@ public class GuiController {
                 RenderEngine.renderSceneWithCameras(canvas.getGraphicsContext2D(), camera, sceneManager, cameraManager, showCameras, (int) width, (int) height);
             }
 
+            refreshLodChains();
             updateModelInfo();
             handleContinuousInput(dt);
 
@@ -352,25 +396,122 @@ public class GuiController {
 
     private void loadModelFromFile(File file) {
         Path fileName = Path.of(file.getAbsolutePath());
-
-        try {
-            String fileContent = Files.readString(fileName);
-            Model model = ObjReader.read(fileContent);
-            
-            // Автоматическая подготовка модели к рендерингу
-            com.cgvsu.model.ModelProcessor.triangulate(model);
-            com.cgvsu.model.ModelProcessor.calculateNormals(model);
-            
-            String modelName = file.getName();
-            sceneManager.addModel(model, modelName);
+        String modelName = file.getName();
+
+        // Чтение и подготовка модели идут в фоне, отрисовка при этом не останавливается.
+        // Обработчики задачи вызываются в потоке JavaFX, поэтому модель добавляется в сцену уже готовой
+        ModelLoadTask task = new ModelLoadTask(fileName, meshCache);
+        task.setOnRunning(event -> showLoadingProgress(task));
+        task.setOnSucceeded(event -> {
+            hideLoadingProgress(task);
+            SceneManager.SceneModel sceneModel = sceneManager.addModel(task.getValue(), modelName);
+            buildLod(sceneModel);
             updateModelsList();
             ErrorHandler.showInfo("Success", "Model loaded and processed successfully: " + modelName);
-        } catch (ObjReaderException e) {
-            ErrorHandler.showException(e);
-        } catch (IOException e) {
-            ErrorHandler.showError("File Error", "Failed to read file: " + e.getMessage());
-        } catch (Exception e) {
-            ErrorHandler.showException(e);
+        });
+        task.setOnCancelled(event -> hideLoadingProgress(task));
+        task.setOnFailed(event -> {
+            hideLoadingProgress(task);
+            Throwable e = task.getException();
+            if (e instanceof IOException) {
+                ErrorHandler.showError("File Error", "Failed to read file: " + e.getMessage());
+            } else {
+                ErrorHandler.showException(e);
+            }
+        });
+        modelLoadExecutor.execute(task);
+    }
+
+    /**
+     * Построение уровней детализации модели в фоне; пока цепочки нет, модель рисуется целиком
+     */
+    private void buildLod(SceneManager.SceneModel sceneModel) {
+        LodBuildTask task = new LodBuildTask(sceneModel.getModel().getCompiledMesh());
+        lodBuildTasks.put(sceneModel, task);
+        task.setOnSucceeded(event -> {
+            if (lodBuildTasks.get(sceneModel) == task) {
+                lodBuildTasks.remove(sceneModel);
+                sceneModel.setLodChain(task.getValue());
+                sceneModel.setFailedLodMesh(null);
+            }
+        });
+        // Неудачная сетка запоминается, иначе refreshLodChains запускал бы построение заново каждый кадр.
+        // Следующая попытка будет только после правки модели, когда сетка сменится
+        task.setOnFailed(event -> {
+            if (lodBuildTasks.remove(sceneModel, task)) {
+                sceneModel.setFailedLodMesh(task.getMesh());
+                LOGGER.log(System.Logger.Level.WARNING,
+                        "Failed to build levels of detail for model " + sceneModel.getName(), task.getException());
+            }
+        });
+        lodBuildExecutor.execute(task);
+    }
+
+    /**
+     * Перестраивает уровни детализации видимых моделей, сетка которых изменилась после правки.
+     * Построение по уже устаревшей сетке отменяется, так что при серии правок цепочка строится
+     * только по последнему состоянию модели
+     */
+    private void refreshLodChains() {
+        for (SceneManager.SceneModel sceneModel : sceneManager.getModels()) {
+            if (!sceneModel.isVisible()) {
+                continue;
+            }
+            CompiledMesh mesh = sceneModel.getModel().getCompiledMesh();
+            LodBuildTask task = lodBuildTasks.get(sceneModel);
+            if (task != null) {
+                if (task.getMesh() == mesh) {
+                    continue;
+                }
+                task.cancel(true);
+            } else {
+                LodChain chain = sceneModel.getLodChain();
+                if (chain != null && chain.isUpToDate(sceneModel.getModel())) {
+                    continue;
+                }
+                if (sceneModel.getFailedLodMesh() == mesh) {
+                    continue;
+                }
+            }
+            buildLod(sceneModel);
+        }
+    }
+
+    /**
+     * Модель убрана из сцены: её построение уровней детализации больше не нужно
+     */
+    private void cancelLod(SceneManager.SceneModel sceneModel) {
+        LodBuildTask task = lodBuildTasks.remove(sceneModel);
+        if (task != null) {
+            task.cancel(true);
+        }
+        sceneModel.setLodChain(null);
+        sceneModel.setFailedLodMesh(null);
+    }
+
+    private void showLoadingProgress(ModelLoadTask task) {
+        currentLoadTask = task;
+        loadingLabel.textProperty().bind(task.messageProperty());
+        loadingProgressBar.progressProperty().bind(task.progressProperty());
+        loadingPanel.setManaged(true);
+        loadingPanel.setVisible(true);
+    }
+
+    private void hideLoadingProgress(ModelLoadTask task) {
+        if (currentLoadTask != task) {
+            return;
+        }
+        currentLoadTask = null;
+        loadingLabel.textProperty().unbind();
+        loadingProgressBar.progressProperty().unbind();
+        loadingPanel.setVisible(false);
+        loadingPanel.setManaged(false);
+    }
+
+    @FXML
+    private void onCancelModelLoading() {
+        if (currentLoadTask != null) {
+            currentLoadTask.cancel();
         }
     }
 
@@ -425,7 +566,10 @@ public class GuiController {
         }
 
         FileChooser fileChooser = new FileChooser();
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Model (*.obj)", "*.obj"));
+        FileChooser.ExtensionFilter objFilter = new FileChooser.ExtensionFilter("Model (*.obj)", "*.obj");
+        FileChooser.ExtensionFilter stlFilter = new FileChooser.ExtensionFilter("Binary STL (*.stl)", "*.stl");
+        FileChooser.ExtensionFilter plyFilter = new FileChooser.ExtensionFilter("Binary PLY (*.ply)", "*.ply");
+        fileChooser.getExtensionFilters().addAll(objFilter, stlFilter, plyFilter);
         fileChooser.setTitle(applyTransform ? "Save Model (With Transform)" : "Save Model (Original)");
 
         File file = fileChooser.showSaveDialog(getStage());
@@ -433,9 +577,23 @@ public class GuiController {
             return;
         }
 
+        // Формат по расширению файла, а без расширения - по выбранному фильтру
+        String name = file.getName().toLowerCase();
+        FileChooser.ExtensionFilter selected = fileChooser.getSelectedExtensionFilter();
+        boolean stl = name.endsWith(".stl") || (!name.contains(".") && selected == stlFilter);
+        boolean ply = name.endsWith(".ply") || (!name.contains(".") && selected == plyFilter);
+
         try {
-            String content = ObjWriter.write(model, applyTransform);
-            Files.writeString(Path.of(file.getAbsolutePath()), content, StandardCharsets.UTF_8);
+            try (FileChannel channel = FileChannel.open(Path.of(file.getAbsolutePath()),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                if (stl) {
+                    StlWriter.write(model, applyTransform, channel);
+                } else if (ply) {
+                    PlyWriter.write(model, applyTransform, channel);
+                } else {
+                    ObjWriter.write(model, applyTransform, channel);
+                }
+            }
             ErrorHandler.showInfo("Success", "Model saved successfully.");
         } catch (IOException e) {
             ErrorHandler.showError("Save Error", "Failed to save file: " + e.getMessage());
@@ -461,6 +619,7 @@ public class GuiController {
         if (ErrorHandler.showConfirmation("Delete Model", "Are you sure?", 
                 "Do you want to delete model: " + selected.getName() + "?")) {
             sceneManager.removeModel(selected);
+            cancelLod(selected);
             updateModelsList();
         }
     }
@@ -489,8 +648,8 @@ public class GuiController {
         Model model = activeModel.getModel();
         StringBuilder info = new StringBuilder();
         info.append("Name: ").append(activeModel.getName()).append("\n");
-        info.append("Vertices: ").append(model.vertices.size()).append("\n");
-        info.append("Polygons: ").append(model.polygons.size()).append("\n");
+        info.append("Vertices: ").append(model.getVertexCount()).append("\n");
+        info.append("Polygons: ").append(model.getPolygonCount()).append("\n");
         info.append("Translation: (").append(String.format("%.2f", model.translation.x))
             .append(", ").append(String.format("%.2f", model.translation.y))
             .append(", ").append(String.format("%.2f", model.translation.z)).append(")\n");
@@ -498,6 +657,19 @@ public class GuiController {
             .append(", ").append(String.format("%.2f", model.rotation.y))
             .append(", ").append(String.format("%.2f", model.rotation.z)).append(")\n");
         info.append("Scale: ").append(String.format("%.2f", model.scale));
+        if (RenderEngine.isUseFrustumCulling()) {
+            info.append("\nCulled: ").append(RenderEngine.getCulledModels()).append(" models, ")
+                .append(RenderEngine.getCulledClusters()).append("/").append(RenderEngine.getTestedClusters())
+                .append(" clusters");
+        }
+        if (RenderEngine.useRasterization) {
+            info.append("\nTriangles: ").append(RenderEngine.getTriangleSetupCount(Rasterizer.Setup.ACCEPTED))
+                .append(" drawn, ").append(RenderEngine.getTriangleSetupCount(Rasterizer.Setup.CULLED_FACING))
+                .append(" culled (").append(RenderEngine.getCullMode()).append("), ")
+                .append(RenderEngine.getTriangleSetupCount(Rasterizer.Setup.DEGENERATE)).append(" degenerate, ")
+                .append(RenderEngine.getTriangleSetupCount(Rasterizer.Setup.SUBPIXEL)).append(" subpixel, ")
+                .append(RenderEngine.getTriangleSetupCount(Rasterizer.Setup.OUTSIDE_GUARD_BAND)).append(" outside guard band");
+        }
         
         modelInfoLabel.setText(info.toString());
     }
@@ -512,21 +684,21 @@ public class GuiController {
 
         TextInputDialog dialog = new TextInputDialog();
         dialog.setTitle("Delete Vertex");
-        dialog.setHeaderText("Enter vertex index to delete");
-        dialog.setContentText("Index:");
+        dialog.setHeaderText("Enter vertex indices to delete (e.g. 3, 7, 10-20)");
+        dialog.setContentText("Indices:");
 
         dialog.showAndWait().ifPresent(indexStr -> {
             try {
-                int index = Integer.parseInt(indexStr);
+                BitSet indices = parseIndices(indexStr);
                 Model model = activeModel.getModel();
-                if (index < 0 || index >= model.vertices.size()) {
+                if (indices.isEmpty() || indices.length() > model.getVertexCount()) {
                     ErrorHandler.showError("Invalid Index", "Vertex index out of range.");
                     return;
                 }
-                model.removeVertex(index);
-                ErrorHandler.showInfo("Success", "Vertex deleted successfully.");
+                model.removeVertices(indices);
+                ErrorHandler.showInfo("Success", indices.cardinality() + " vertices deleted successfully.");
             } catch (NumberFormatException e) {
-                ErrorHandler.showError("Invalid Input", "Please enter a valid number.");
+                ErrorHandler.showError("Invalid Input", "Please enter valid numbers or ranges.");
             }
         });
     }
@@ -541,25 +713,45 @@ public class GuiController {
 
         TextInputDialog dialog = new TextInputDialog();
         dialog.setTitle("Delete Polygon");
-        dialog.setHeaderText("Enter polygon index to delete");
-        dialog.setContentText("Index:");
+        dialog.setHeaderText("Enter polygon indices to delete (e.g. 3, 7, 10-20)");
+        dialog.setContentText("Indices:");
 
         dialog.showAndWait().ifPresent(indexStr -> {
             try {
-                int index = Integer.parseInt(indexStr);
+                BitSet indices = parseIndices(indexStr);
                 Model model = activeModel.getModel();
-                if (index < 0 || index >= model.polygons.size()) {
+                if (indices.isEmpty() || indices.length() > model.getPolygonCount()) {
                     ErrorHandler.showError("Invalid Index", "Polygon index out of range.");
                     return;
                 }
-                model.removePolygon(index);
-                ErrorHandler.showInfo("Success", "Polygon deleted successfully.");
+                model.removePolygons(indices);
+                ErrorHandler.showInfo("Success", indices.cardinality() + " polygons deleted successfully.");
             } catch (NumberFormatException e) {
-                ErrorHandler.showError("Invalid Input", "Please enter a valid number.");
+                ErrorHandler.showError("Invalid Input", "Please enter valid numbers or ranges.");
             }
         });
     }
 
+    /**
+     * Индексы из строки вида "3, 7, 10-20" (границы диапазона включаются)
+     */
+    private static BitSet parseIndices(String text) {
+        BitSet indices = new BitSet();
+        for (String part : text.split("[,;\\s]+")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            int dash = part.indexOf('-', 1);
+            int from = Integer.parseInt(part.substring(0, dash < 0 ? part.length() : dash));
+            int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1));
+            if (from < 0 || to < from || to == Integer.MAX_VALUE) {
+                throw new NumberFormatException("Invalid range: " + part);
+            }
+            indices.set(from, to + 1);
+        }
+        return indices;
+    }
+
     @FXML
     public void onToggleTheme() {
         isDarkTheme = !isDarkTheme;
@@ -755,7 +947,7 @@ public class GuiController {
 
     @FXML
     public void onClearTextureMenuItemClick() {
-        TextureManager.getInstance().setCurrentTexture((javafx.scene.image.WritableImage) null);
+        TextureManager.getInstance().setCurrentTexture((Texture) null);
         ErrorHandler.showInfo("Текстура убрана", "Текстура была убрана");
     }
 
@@ -783,6 +975,43 @@ public class GuiController {
         ErrorHandler.showInfo("Успех", "Нормали пересчитаны успешно");
     }
 
+    @FXML
+    public void onOptimizeMeshMenuItemClick() {
+        SceneManager.SceneModel activeModel = sceneManager.getActiveModel();
+        if (activeModel == null) {
+            ErrorHandler.showError("Модель не выбрана", "Пожалуйста, выберите модель для оптимизации.");
+            return;
+        }
+
+        com.cgvsu.model.MeshOptimizer.Report report = com.cgvsu.model.ModelProcessor.optimizeMesh(activeModel.getModel());
+        ErrorHandler.showInfo("Успех", "Порядок треугольников оптимизирован\n" + report);
+    }
+
+    @FXML
+    public void onWeldVerticesMenuItemClick() {
+        SceneManager.SceneModel activeModel = sceneManager.getActiveModel();
+        if (activeModel == null) {
+            ErrorHandler.showError("Модель не выбрана", "Пожалуйста, выберите модель для слияния вершин.");
+            return;
+        }
+
+        TextInputDialog dialog = new TextInputDialog("0.0001");
+        dialog.setTitle("Слияние вершин");
+        dialog.setHeaderText("Вершины ближе допуска будут слиты в одну");
+        dialog.setContentText("Допуск:");
+
+        dialog.showAndWait().ifPresent(text -> {
+            try {
+                float tolerance = Float.parseFloat(text.trim());
+                int removed = com.cgvsu.model.ModelProcessor.weldVertices(activeModel.getModel(), tolerance);
+                updateModelInfo();
+                ErrorHandler.showInfo("Успех", "Слито вершин: " + removed);
+            } catch (IllegalArgumentException e) {
+                ErrorHandler.showError("Неверный допуск", "Введите неотрицательное число.");
+            }
+        });
+    }
+
     @FXML
     public void onToggleRasterizationMenuItemClick() {
         boolean currentState = !RenderEngine.useRasterization;
@@ -791,6 +1020,68 @@ public class GuiController {
                 currentState ? "Растеризация включена" : "Только каркас");
     }
 
+    @FXML
+    public void onToggleRasterizerModeMenuItemClick() {
+        Rasterizer.Mode mode = RenderEngine.getRasterizerMode() == Rasterizer.Mode.EDGE_FUNCTION
+                ? Rasterizer.Mode.BARYCENTRIC
+                : Rasterizer.Mode.EDGE_FUNCTION;
+        RenderEngine.setRasterizerMode(mode);
+        ErrorHandler.showInfo("Алгоритм растеризации",
+                mode == Rasterizer.Mode.EDGE_FUNCTION ? "Инкрементальные рёберные функции" : "Барицентрические координаты");
+    }
+
+    @FXML
+    public void onToggleCullModeMenuItemClick() {
+        Rasterizer.CullMode[] modes = Rasterizer.CullMode.values();
+        Rasterizer.CullMode mode = modes[(RenderEngine.getCullMode().ordinal() + 1) % modes.length];
+        RenderEngine.setCullMode(mode);
+        ErrorHandler.showInfo("Отсечение граней",
+                mode == Rasterizer.CullMode.NONE ? "Рисуются обе стороны"
+                        : mode == Rasterizer.CullMode.BACK ? "Отбрасываются нелицевые грани" : "Отбрасываются лицевые грани");
+    }
+
+    @FXML
+    public void onToggleTextureFilterMenuItemClick() {
+        TextureSampler.Filter[] filters = TextureSampler.Filter.values();
+        TextureSampler.Filter filter = filters[(RenderEngine.getTextureFilter().ordinal() + 1) % filters.length];
+        RenderEngine.setTextureFilter(filter);
+        ErrorHandler.showInfo("Фильтрация текстуры",
+                filter == TextureSampler.Filter.NEAREST ? "Ближайший тексель"
+                        : filter == TextureSampler.Filter.BILINEAR ? "Билинейная" : "Трилинейная");
+    }
+
+    @FXML
+    public void onToggleTextureWrapMenuItemClick() {
+        TextureSampler.Wrap[] modes = TextureSampler.Wrap.values();
+        TextureSampler.Wrap wrap = modes[(RenderEngine.getTextureWrap().ordinal() + 1) % modes.length];
+        RenderEngine.setTextureWrap(wrap);
+        ErrorHandler.showInfo("Адресация текстуры",
+                wrap == TextureSampler.Wrap.REPEAT ? "Повторение"
+                        : wrap == TextureSampler.Wrap.CLAMP ? "Прижатие к краю" : "Повторение с отражением");
+    }
+
+    @FXML
+    public void onRasterizerThreadsMenuItemClick() {
+        TextInputDialog dialog = new TextInputDialog(String.valueOf(RenderEngine.getRasterizerThreads()));
+        dialog.setTitle("Потоки растеризации");
+        dialog.setHeaderText("Число потоков (1 - последовательная растеризация, ядер: "
+                + Runtime.getRuntime().availableProcessors() + ")");
+        dialog.setContentText("Потоки:");
+
+        dialog.showAndWait().ifPresent(threadsStr -> {
+            try {
+                int threads = Integer.parseInt(threadsStr.trim());
+                if (threads < 1) {
+                    ErrorHandler.showError("Invalid Input", "Number of threads must be positive.");
+                    return;
+                }
+                RenderEngine.setRasterizerThreads(threads);
+            } catch (NumberFormatException e) {
+                ErrorHandler.showError("Invalid Input", "Please enter a valid number.");
+            }
+        });
+    }
+
     @FXML
     public void onToggleWireframeMenuItemClick() {
         boolean currentState = !RenderEngine.useWireframe;
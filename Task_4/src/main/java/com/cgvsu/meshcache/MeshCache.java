@@ -0,0 +1,287 @@
+package com.cgvsu.meshcache;
+
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Кэш подготовленных моделей в двоичном виде.
+ * Для каждого OBJ-файла хранится его сетка после триангуляции и расчёта нормалей
+ * (массивы {@link CompiledMesh}), так что повторное открытие сводится к чтению массивов
+ * из отображённого в память файла без разбора текста.
+ *
+ * Запись действительна, пока совпадают путь, размер и время изменения исходного файла.
+ * Формат (little-endian):
+ * <pre>
+ *  0  int   сигнатура "CGVM"
+ *  4  int   версия формата
+ *  8  long  размер исходного файла
+ * 16  long  время изменения исходного файла, мс
+ * 24  int   число вершин, нормалей, текстурных вершин, полигонов и углов (5 значений)
+ * 44  int   длина пути в байтах
+ * 48  int   CRC32C всего файла, кроме этого поля
+ * 52        путь в UTF-8, дополненный нулями до кратного 4 размера
+ *           далее массивы: координаты вершин, нормали, текстурные координаты,
+ *           начала полигонов, индексы вершин, нормалей и текстурных координат углов
+ * </pre>
+ */
+public class MeshCache {
+
+    static final int MAGIC = 'C' | 'G' << 8 | 'V' << 16 | 'M' << 24;
+    // Увеличивается при изменении формата или подготовки модели (триангуляции, нормалей),
+    // чтобы старые записи не использовались
+    static final int FORMAT_VERSION = 2;
+
+    static final int CHECKSUM_OFFSET = 48;
+    static final int PATH_OFFSET = 52;
+
+    private static final String EXTENSION = ".mesh";
+    private static final int MAX_NAME_LENGTH = 64;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final Path directory;
+
+    public MeshCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Каталог кэша по умолчанию в домашней папке пользователя
+     */
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".cgvsu", "mesh-cache");
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Размер и время изменения исходного файла, по которым проверяется запись кэша.
+     * Снимается до чтения файла, чтобы правка во время загрузки не попала в кэш под новым временем
+     */
+    public static final class SourceStamp {
+        private final String path;
+        private final long size;
+        private final long modified;
+
+        private SourceStamp(String path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        public static SourceStamp of(Path source) throws IOException {
+            Path absolute = source.toAbsolutePath().normalize();
+            BasicFileAttributes attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+            return new SourceStamp(absolute.toString(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+    }
+
+    /**
+     * Файл кэша для исходного файла: имя исходника и хэш полного пути
+     */
+    public Path cacheFile(SourceStamp stamp) {
+        String fileName = Path.of(stamp.path).getFileName().toString().replaceAll("[^A-Za-z0-9._-]", "_");
+        if (fileName.length() > MAX_NAME_LENGTH) {
+            fileName = fileName.substring(0, MAX_NAME_LENGTH);
+        }
+        return directory.resolve(fileName + "-" + Integer.toHexString(stamp.path.hashCode()) + EXTENSION);
+    }
+
+    /**
+     * Загружает модель из кэша
+     *
+     * @return модель с готовой сеткой или null, если записи нет, она устарела или повреждена
+     */
+    public Model load(SourceStamp stamp) throws IOException {
+        CompiledMesh mesh = loadMesh(stamp);
+        return mesh == null ? null : Model.fromCompiledMesh(mesh);
+    }
+
+    CompiledMesh loadMesh(SourceStamp stamp) throws IOException {
+        Path file = cacheFile(stamp);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < PATH_OFFSET || fileSize > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            return decode(mapped, stamp);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static CompiledMesh decode(ByteBuffer buffer, SourceStamp stamp) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION
+                || buffer.getLong(8) != stamp.size || buffer.getLong(16) != stamp.modified) {
+            return null;
+        }
+        int vertexCount = buffer.getInt(24);
+        int normalCount = buffer.getInt(28);
+        int texCoordCount = buffer.getInt(32);
+        int polygonCount = buffer.getInt(36);
+        int cornerCount = buffer.getInt(40);
+        int pathLength = buffer.getInt(44);
+        if (vertexCount < 0 || normalCount < 0 || texCoordCount < 0 || polygonCount < 0
+                || cornerCount < 0 || pathLength < 0) {
+            return null;
+        }
+
+        long payloadOffset = PATH_OFFSET + align4(pathLength);
+        long expectedSize = payloadOffset + payloadSize(vertexCount, normalCount, texCoordCount, polygonCount, cornerCount);
+        if (expectedSize != buffer.capacity()) {
+            return null;
+        }
+        byte[] path = new byte[pathLength];
+        buffer.get(PATH_OFFSET, path);
+        if (!Arrays.equals(path, stamp.path.getBytes(StandardCharsets.UTF_8))) {
+            return null;
+        }
+        if (buffer.getInt(CHECKSUM_OFFSET) != checksum(buffer)) {
+            return null;
+        }
+
+        buffer.position((int) payloadOffset);
+        float[] positions = readFloats(buffer, vertexCount * 3);
+        float[] normals = readFloats(buffer, normalCount * 3);
+        float[] texCoords = readFloats(buffer, texCoordCount * 2);
+        int[] polygonOffsets = readInts(buffer, polygonCount + 1);
+        int[] vertexIndices = readInts(buffer, cornerCount);
+        int[] normalIndices = readInts(buffer, cornerCount);
+        int[] texCoordIndices = readInts(buffer, cornerCount);
+        return new CompiledMesh(positions, normals, texCoords, polygonOffsets,
+                vertexIndices, normalIndices, texCoordIndices);
+    }
+
+    /**
+     * Сохраняет сетку модели в кэш. Файл сначала пишется во временный и затем подменяет старую запись,
+     * поэтому одновременная загрузка никогда не видит недописанный файл
+     */
+    public void store(SourceStamp stamp, CompiledMesh mesh) throws IOException {
+        Files.createDirectories(directory);
+        byte[] path = stamp.path.getBytes(StandardCharsets.UTF_8);
+        int headerSize = PATH_OFFSET + align4(path.length);
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(stamp.size).putLong(stamp.modified)
+                .putInt(mesh.getVertexCount()).putInt(mesh.getNormalCount()).putInt(mesh.getTexCoordCount())
+                .putInt(mesh.getPolygonCount()).putInt(mesh.getCornerCount()).putInt(path.length)
+                .putInt(0).put(path);
+
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 0, CHECKSUM_OFFSET);
+        crc.update(header.array(), PATH_OFFSET, headerSize - PATH_OFFSET);
+
+        Path target = cacheFile(stamp);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                header.clear();
+                writeFully(channel, header);
+
+                ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                writeFloats(channel, buffer, crc, mesh.getPositions());
+                writeFloats(channel, buffer, crc, mesh.getNormals());
+                writeFloats(channel, buffer, crc, mesh.getTexCoords());
+                writeInts(channel, buffer, crc, mesh.getPolygonOffsets());
+                writeInts(channel, buffer, crc, mesh.getPolygonVertexIndices());
+                writeInts(channel, buffer, crc, mesh.getPolygonNormalIndices());
+                writeInts(channel, buffer, crc, mesh.getPolygonTexCoordIndices());
+
+                ByteBuffer checksum = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                checksum.putInt(0, (int) crc.getValue());
+                channel.write(checksum, CHECKSUM_OFFSET);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static long payloadSize(int vertexCount, int normalCount, int texCoordCount, int polygonCount, int cornerCount) {
+        return 4L * (vertexCount * 3L + normalCount * 3L + texCoordCount * 2L + polygonCount + 1L + cornerCount * 3L);
+    }
+
+    private static int align4(int value) {
+        return (value + 3) & ~3;
+    }
+
+    /**
+     * Контрольная сумма файла без поля с самой суммой
+     */
+    private static int checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(0).limit(CHECKSUM_OFFSET));
+        crc.update(buffer.duplicate().position(PATH_OFFSET));
+        return (int) crc.getValue();
+    }
+
+    private static float[] readFloats(ByteBuffer buffer, int count) {
+        float[] result = new float[count];
+        buffer.asFloatBuffer().get(result);
+        buffer.position(buffer.position() + count * 4);
+        return result;
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] result = new int[count];
+        buffer.asIntBuffer().get(result);
+        buffer.position(buffer.position() + count * 4);
+        return result;
+    }
+
+    private static void writeFloats(FileChannel channel, ByteBuffer buffer, CRC32C crc, float[] values) throws IOException {
+        int chunk = buffer.capacity() / 4;
+        for (int offset = 0; offset < values.length; offset += chunk) {
+            int count = Math.min(chunk, values.length - offset);
+            buffer.clear();
+            buffer.asFloatBuffer().put(values, offset, count);
+            buffer.limit(count * 4);
+            writeChunk(channel, buffer, crc);
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, CRC32C crc, int[] values) throws IOException {
+        int chunk = buffer.capacity() / 4;
+        for (int offset = 0; offset < values.length; offset += chunk) {
+            int count = Math.min(chunk, values.length - offset);
+            buffer.clear();
+            buffer.asIntBuffer().put(values, offset, count);
+            buffer.limit(count * 4);
+            writeChunk(channel, buffer, crc);
+        }
+    }
+
+    private static void writeChunk(FileChannel channel, ByteBuffer buffer, CRC32C crc) throws IOException {
+        crc.update(buffer.array(), 0, buffer.limit());
+        writeFully(channel, buffer);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Представление модели для отрисовки: атрибуты вершин в непрерывных массивах float,
+ * индексы полигонов и треугольников в массивах int.
+ * Строится из Model и не изменяется; после правки модели собирается заново
+ * (см. {@link Model#getCompiledMesh()}).
+ *
+ * Треугольники покрывают все полигоны: выпуклые разбиты веером, невыпуклые - отсечением ушей
+ * (см. {@link Triangulator}). Индексы нормалей и текстурных координат равны -1, если полигон их не задаёт.
+ * Сетку можно собрать и напрямую из массивов (например, из кэша), а затем получить
+ * по ней модель через {@link Model#fromCompiledMesh(CompiledMesh)}.
+ */
+public class CompiledMesh {
+
+    private final int version;
+
+    private final float[] positions;    // x, y, z для каждой вершины
+    private final float[] normals;      // x, y, z для каждой нормали
+    private final float[] texCoords;    // u, v для каждой текстурной вершины
+
+    // Полигоны: углы полигона i занимают [polygonOffsets[i], polygonOffsets[i + 1])
+    private final int[] polygonOffsets;
+    private final int[] polygonVertexIndices;
+    private final int[] polygonNormalIndices;
+    private final int[] polygonTexCoordIndices;
+
+    // Треугольники всех полигонов (см. Triangulator): треугольники полигона i занимают
+    // [polygonTriangleOffsets[i], polygonTriangleOffsets[i + 1])
+    private final int[] polygonTriangleOffsets;
+    private final int triangleCount;
+    private final int[] triangleVertexIndices;
+    private final int[] triangleNormalIndices;
+    private final int[] triangleTexCoordIndices;
+
+    // Ограничивающие объёмы строятся при первом обращении; при гонке потоков просто строятся дважды
+    private MeshBounds bounds;
+
+    // Списки модели, из которых собрана сетка: замена списка целиком тоже считается правкой.
+    // У сетки, собранной из массивов и ещё не привязанной к модели, списки равны null
+    private final ArrayList<Vector3f> sourceVertices;
+    private final ArrayList<Vector2f> sourceTextureVertices;
+    private final ArrayList<Vector3f> sourceNormals;
+    private final ArrayList<Polygon> sourcePolygons;
+
+    /**
+     * Сетка из готовых массивов. Массивы не копируются и не должны изменяться после передачи
+     *
+     * @param positions              координаты вершин, по три на вершину
+     * @param normals                нормали, по три на нормаль
+     * @param texCoords              текстурные координаты, по две на вершину
+     * @param polygonOffsets         начала полигонов в массивах углов; последний элемент - число углов
+     * @param polygonVertexIndices   индексы вершин углов
+     * @param polygonNormalIndices   индексы нормалей углов или -1
+     * @param polygonTexCoordIndices индексы текстурных координат углов или -1
+     */
+    public CompiledMesh(float[] positions, float[] normals, float[] texCoords, int[] polygonOffsets,
+                        int[] polygonVertexIndices, int[] polygonNormalIndices, int[] polygonTexCoordIndices) {
+        this(null, 0, positions, normals, texCoords, polygonOffsets,
+                polygonVertexIndices, polygonNormalIndices, polygonTexCoordIndices);
+    }
+
+    private CompiledMesh(Model model, int version, float[] positions, float[] normals, float[] texCoords,
+                         int[] polygonOffsets, int[] polygonVertexIndices,
+                         int[] polygonNormalIndices, int[] polygonTexCoordIndices) {
+        this(model, version, positions, normals, texCoords, polygonOffsets, polygonVertexIndices,
+                polygonNormalIndices, polygonTexCoordIndices, null, null, null, null);
+    }
+
+    /**
+     * Полный конструктор: если треугольники уже известны (сетка привязывается к модели заново),
+     * триангуляция не повторяется
+     */
+    private CompiledMesh(Model model, int version, float[] positions, float[] normals, float[] texCoords,
+                         int[] polygonOffsets, int[] polygonVertexIndices,
+                         int[] polygonNormalIndices, int[] polygonTexCoordIndices, int[] polygonTriangleOffsets,
+                         int[] triangleVertexIndices, int[] triangleNormalIndices, int[] triangleTexCoordIndices) {
+        this.version = version;
+        this.sourceVertices = model == null ? null : model.getVertices();
+        this.sourceTextureVertices = model == null ? null : model.getTextureVertices();
+        this.sourceNormals = model == null ? null : model.getNormals();
+        this.sourcePolygons = model == null ? null : model.getPolygons();
+
+        this.positions = positions;
+        this.normals = normals;
+        this.texCoords = texCoords;
+        this.polygonOffsets = polygonOffsets;
+        this.polygonVertexIndices = polygonVertexIndices;
+        this.polygonNormalIndices = polygonNormalIndices;
+        this.polygonTexCoordIndices = polygonTexCoordIndices;
+
+        if (triangleVertexIndices != null) {
+            this.polygonTriangleOffsets = polygonTriangleOffsets;
+            this.triangleCount = triangleVertexIndices.length / 3;
+            this.triangleVertexIndices = triangleVertexIndices;
+            this.triangleNormalIndices = triangleNormalIndices;
+            this.triangleTexCoordIndices = triangleTexCoordIndices;
+            return;
+        }
+
+        this.polygonTriangleOffsets = Triangulator.triangleOffsets(polygonOffsets);
+        triangleCount = this.polygonTriangleOffsets[polygonOffsets.length - 1];
+        int[] corners = Triangulator.triangulate(positions, polygonOffsets, polygonVertexIndices, this.polygonTriangleOffsets);
+        this.triangleVertexIndices = new int[corners.length];
+        this.triangleNormalIndices = new int[corners.length];
+        this.triangleTexCoordIndices = new int[corners.length];
+        for (int i = 0; i < corners.length; i++) {
+            int corner = corners[i];
+            this.triangleVertexIndices[i] = polygonVertexIndices[corner];
+            this.triangleNormalIndices[i] = polygonNormalIndices[corner];
+            this.triangleTexCoordIndices[i] = polygonTexCoordIndices[corner];
+        }
+    }
+
+    /**
+     * Та же сетка с другими нормалями: списки модели, углы, треугольники и ограничивающие объёмы общие с source
+     */
+    private CompiledMesh(CompiledMesh source, int version, float[] normals,
+                         int[] polygonNormalIndices, int[] triangleNormalIndices) {
+        this.version = version;
+        this.sourceVertices = source.sourceVertices;
+        this.sourceTextureVertices = source.sourceTextureVertices;
+        this.sourceNormals = source.sourceNormals;
+        this.sourcePolygons = source.sourcePolygons;
+
+        this.positions = source.positions;
+        this.normals = normals;
+        this.texCoords = source.texCoords;
+        this.polygonOffsets = source.polygonOffsets;
+        this.polygonVertexIndices = source.polygonVertexIndices;
+        this.polygonNormalIndices = polygonNormalIndices;
+        this.polygonTexCoordIndices = source.polygonTexCoordIndices;
+
+        this.polygonTriangleOffsets = source.polygonTriangleOffsets;
+        this.triangleCount = source.triangleCount;
+        this.triangleVertexIndices = source.triangleVertexIndices;
+        this.triangleNormalIndices = triangleNormalIndices;
+        this.triangleTexCoordIndices = source.triangleTexCoordIndices;
+        this.bounds = source.bounds;
+    }
+
+    /**
+     * Собирает сетку по текущему состоянию модели
+     */
+    static CompiledMesh compile(Model model, int version) {
+        float[] positions = packVectors(model.getVertices());
+        float[] normals = packVectors(model.getNormals());
+        float[] texCoords = new float[model.getTextureVertices().size() * 2];
+        for (int i = 0; i < model.getTextureVertices().size(); i++) {
+            Vector2f t = model.getTextureVertices().get(i);
+            texCoords[i * 2] = t.x;
+            texCoords[i * 2 + 1] = t.y;
+        }
+
+        // Сначала считаем углы, чтобы выделить массивы один раз
+        int polygonCount = model.getPolygons().size();
+        int cornerCount = 0;
+        for (int i = 0; i < polygonCount; i++) {
+            cornerCount += model.getPolygons().get(i).getVertexIndices().size();
+        }
+
+        int[] polygonOffsets = new int[polygonCount + 1];
+        int[] polygonVertexIndices = new int[cornerCount];
+        int[] polygonNormalIndices = new int[cornerCount];
+        int[] polygonTexCoordIndices = new int[cornerCount];
+
+        int corner = 0;
+        for (int i = 0; i < polygonCount; i++) {
+            Polygon polygon = model.getPolygons().get(i);
+            ArrayList<Integer> vertexIndices = polygon.getVertexIndices();
+            ArrayList<Integer> normalIndices = polygon.getNormalIndices();
+            ArrayList<Integer> textureIndices = polygon.getTextureVertexIndices();
+            int size = vertexIndices.size();
+            // Нормали и текстурные координаты учитываются, только если они заданы для каждого угла
+            boolean hasNormals = normalIndices.size() == size;
+            boolean hasTexCoords = textureIndices.size() == size;
+
+            polygonOffsets[i] = corner;
+            for (int j = 0; j < size; j++, corner++) {
+                polygonVertexIndices[corner] = vertexIndices.get(j);
+                polygonNormalIndices[corner] = hasNormals ? normalIndices.get(j) : -1;
+                polygonTexCoordIndices[corner] = hasTexCoords ? textureIndices.get(j) : -1;
+            }
+        }
+        polygonOffsets[polygonCount] = corner;
+
+        return new CompiledMesh(model, version, positions, normals, texCoords, polygonOffsets,
+                polygonVertexIndices, polygonNormalIndices, polygonTexCoordIndices);
+    }
+
+    /**
+     * Та же сетка, привязанная к модели: массивы общие, списки модели запоминаются для проверки правок
+     */
+    CompiledMesh bind(Model model, int version) {
+        return new CompiledMesh(model, version, positions, normals, texCoords, polygonOffsets,
+                polygonVertexIndices, polygonNormalIndices, polygonTexCoordIndices, polygonTriangleOffsets,
+                triangleVertexIndices, triangleNormalIndices, triangleTexCoordIndices);
+    }
+
+    /**
+     * Та же геометрия, в которой каждый треугольник стал отдельным полигоном (см. {@link ModelProcessor#triangulate}):
+     * массивы треугольников служат и массивами углов, триангуляция не повторяется
+     */
+    CompiledMesh asTriangles(Model model, int version) {
+        int[] offsets = new int[triangleCount + 1];
+        int[] triangleOffsets = new int[triangleCount + 1];
+        for (int i = 1; i <= triangleCount; i++) {
+            offsets[i] = i * 3;
+            triangleOffsets[i] = i;
+        }
+        return new CompiledMesh(model, version, positions, normals, texCoords, offsets,
+                triangleVertexIndices, triangleNormalIndices, triangleTexCoordIndices, triangleOffsets,
+                triangleVertexIndices, triangleNormalIndices, triangleTexCoordIndices);
+    }
+
+    /**
+     * Та же сетка с новыми нормалями (см. {@link NormalCalculator#apply}).
+     * Если нормаль каждого угла - нормаль его вершины, индексы нормалей треугольников совпадают
+     * с индексами вершин; иначе номера углов треугольников получаются повторной триангуляцией
+     *
+     * @param cornerNormalIndices индекс нормали для каждого угла
+     */
+    CompiledMesh withNormals(int version, float[] normals, int[] cornerNormalIndices) {
+        int[] triangleNormals;
+        if (Arrays.equals(cornerNormalIndices, polygonVertexIndices)) {
+            triangleNormals = triangleVertexIndices;
+        } else {
+            int[] corners = Triangulator.triangulate(positions, polygonOffsets, polygonVertexIndices, polygonTriangleOffsets);
+            triangleNormals = new int[corners.length];
+            for (int i = 0; i < corners.length; i++) {
+                triangleNormals[i] = cornerNormalIndices[corners[i]];
+            }
+        }
+        return new CompiledMesh(this, version, normals, cornerNormalIndices, triangleNormals);
+    }
+
+    private static float[] packVectors(ArrayList<Vector3f> vectors) {
+        float[] result = new float[vectors.size() * 3];
+        for (int i = 0, o = 0; i < vectors.size(); i++, o += 3) {
+            Vector3f v = vectors.get(i);
+            result[o] = v.x;
+            result[o + 1] = v.y;
+            result[o + 2] = v.z;
+        }
+        return result;
+    }
+
+    /**
+     * Совпадает ли сетка с текущим состоянием модели
+     */
+    boolean isUpToDate(Model model, int modelVersion) {
+        return version == modelVersion
+                && sourceVertices == model.getVertices()
+                && sourceTextureVertices == model.getTextureVertices()
+                && sourceNormals == model.getNormals()
+                && sourcePolygons == model.getPolygons()
+                && getVertexCount() == model.getVertices().size()
+                && getTexCoordCount() == model.getTextureVertices().size()
+                && getNormalCount() == model.getNormals().size()
+                && getPolygonCount() == model.getPolygons().size();
+    }
+
+    /**
+     * Версия модели, из которой собрана сетка
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    public int getNormalCount() {
+        return normals.length / 3;
+    }
+
+    public int getTexCoordCount() {
+        return texCoords.length / 2;
+    }
+
+    public int getPolygonCount() {
+        return polygonOffsets.length - 1;
+    }
+
+    public int getCornerCount() {
+        return polygonVertexIndices.length;
+    }
+
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    public float[] getPositions() {
+        return positions;
+    }
+
+    public float[] getNormals() {
+        return normals;
+    }
+
+    public float[] getTexCoords() {
+        return texCoords;
+    }
+
+    public int[] getPolygonOffsets() {
+        return polygonOffsets;
+    }
+
+    public int[] getPolygonVertexIndices() {
+        return polygonVertexIndices;
+    }
+
+    public int[] getPolygonNormalIndices() {
+        return polygonNormalIndices;
+    }
+
+    public int[] getPolygonTexCoordIndices() {
+        return polygonTexCoordIndices;
+    }
+
+    public int[] getPolygonTriangleOffsets() {
+        return polygonTriangleOffsets;
+    }
+
+    public int[] getTriangleVertexIndices() {
+        return triangleVertexIndices;
+    }
+
+    public int[] getTriangleNormalIndices() {
+        return triangleNormalIndices;
+    }
+
+    public int[] getTriangleTexCoordIndices() {
+        return triangleTexCoordIndices;
+    }
+
+    /**
+     * Параллелепипед, сфера и кластеры полигонов для отсечения по пирамиде видимости
+     */
+    public MeshBounds getBounds() {
+        MeshBounds result = bounds;
+        if (result == null) {
+            result = MeshBounds.build(this);
+            bounds = result;
+        }
+        return result;
+    }
+}
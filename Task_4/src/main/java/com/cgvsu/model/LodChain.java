@@ -0,0 +1,106 @@
+package com.cgvsu.model;
+
+import java.util.ArrayList;
+
+/**
+ * Цепочка уровней детализации сетки: нулевой уровень - исходная сетка, каждый следующий
+ * упрощён из предыдущего примерно вдвое (см. {@link MeshSimplifier}). Для каждого уровня хранится
+ * погрешность в единицах модели, по которой при отрисовке выбирается самый грубый уровень,
+ * чья погрешность на экране не превышает заданного числа пикселей.
+ */
+public final class LodChain {
+
+    // Сетки меньше этого числа треугольников не упрощаются
+    public static final int MIN_TRIANGLES = 512;
+    // Уровень, сокративший сетку меньше чем на эту долю, последний
+    private static final float MIN_REDUCTION = 0.9f;
+
+    private final CompiledMesh[] levels;
+    private final float[] errors;
+    // Ограничивающие объёмы исходной сетки в координатах модели
+    private final MeshBounds bounds;
+
+    private LodChain(CompiledMesh[] levels, float[] errors) {
+        this.levels = levels;
+        this.errors = errors;
+        this.bounds = levels[0].getBounds();
+    }
+
+    /**
+     * Строит цепочку по сетке модели; сетка не изменяется, поэтому построение можно вести в фоне
+     */
+    public static LodChain build(CompiledMesh mesh) {
+        ArrayList<CompiledMesh> levels = new ArrayList<>();
+        ArrayList<Float> errors = new ArrayList<>();
+        levels.add(mesh);
+        errors.add(0f);
+        CompiledMesh current = mesh;
+        float error = 0;
+        while (current.getTriangleCount() / 2 >= MIN_TRIANGLES && !Thread.currentThread().isInterrupted()) {
+            MeshSimplifier.Result result = MeshSimplifier.simplify(current, current.getTriangleCount() / 2);
+            if (result.getMesh().getTriangleCount() > current.getTriangleCount() * MIN_REDUCTION) {
+                break;
+            }
+            // Погрешности уровней складываются: каждый упрощён из предыдущего, а не из исходной сетки
+            error += result.getError();
+            current = result.getMesh();
+            levels.add(current);
+            errors.add(error);
+        }
+
+        float[] errorArray = new float[errors.size()];
+        for (int i = 0; i < errorArray.length; i++) {
+            errorArray[i] = errors.get(i);
+        }
+        return new LodChain(levels.toArray(new CompiledMesh[0]), errorArray);
+    }
+
+    /**
+     * Построена ли цепочка по текущему состоянию модели
+     */
+    public boolean isUpToDate(Model model) {
+        return model.getCompiledMesh() == levels[0];
+    }
+
+    /**
+     * Самый грубый уровень, погрешность которого не больше maxPixelError пикселей
+     *
+     * @param pixelsPerUnit  сколько пикселей экрана занимает единица длины модели
+     * @param maxPixelError допустимая погрешность в пикселях
+     */
+    public int selectLevel(float pixelsPerUnit, float maxPixelError) {
+        int level = 0;
+        while (level + 1 < levels.length && errors[level + 1] * pixelsPerUnit <= maxPixelError) {
+            level++;
+        }
+        return level;
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    public CompiledMesh getLevel(int level) {
+        return levels[level];
+    }
+
+    public float getError(int level) {
+        return errors[level];
+    }
+
+    public float getCenterX() {
+        return bounds.getCenterX();
+    }
+
+    public float getCenterY() {
+        return bounds.getCenterY();
+    }
+
+    public float getCenterZ() {
+        return bounds.getCenterZ();
+    }
+
+    public float getRadius() {
+        return bounds.getRadius();
+    }
+}
@@ -0,0 +1,136 @@
+package com.cgvsu.model;
+
+import java.util.Arrays;
+
+/**
+ * Ограничивающие объёмы сетки: параллелепипед и сфера всей сетки и параллелепипеды кластеров -
+ * подряд идущих полигонов примерно по {@link #CLUSTER_TRIANGLES} треугольников. Границы кластеров
+ * совпадают с границами полигонов, поэтому отбросить кластер можно и при отрисовке каркаса,
+ * и при растеризации треугольников. Строится один раз для неизменяемой сетки
+ * (см. {@link CompiledMesh#getBounds()}).
+ *
+ * Параллелепипеды хранятся по шесть чисел: minX, minY, minZ, maxX, maxY, maxZ.
+ */
+public final class MeshBounds {
+
+    public static final int CLUSTER_TRIANGLES = 128;
+
+    private final float[] box;
+    private final float centerX, centerY, centerZ, radius;
+    // Полигоны кластера c занимают [clusterPolygonOffsets[c], clusterPolygonOffsets[c + 1])
+    private final int[] clusterPolygonOffsets;
+    private final float[] clusterBoxes;
+
+    private MeshBounds(float[] box, float[] sphere, int[] clusterPolygonOffsets, float[] clusterBoxes) {
+        this.box = box;
+        this.centerX = sphere[0];
+        this.centerY = sphere[1];
+        this.centerZ = sphere[2];
+        this.radius = sphere[3];
+        this.clusterPolygonOffsets = clusterPolygonOffsets;
+        this.clusterBoxes = clusterBoxes;
+    }
+
+    static MeshBounds build(CompiledMesh mesh) {
+        float[] positions = mesh.getPositions();
+        int[] polygonOffsets = mesh.getPolygonOffsets();
+        int[] vertexIndices = mesh.getPolygonVertexIndices();
+        int[] triangleOffsets = mesh.getPolygonTriangleOffsets();
+        int polygonCount = mesh.getPolygonCount();
+
+        int clusterCount = 0;
+        int[] offsets = new int[polygonCount + 1];
+        for (int polygon = 0; polygon < polygonCount; ) {
+            int start = polygon;
+            while (polygon < polygonCount && triangleOffsets[polygon] - triangleOffsets[start] < CLUSTER_TRIANGLES) {
+                polygon++;
+            }
+            offsets[clusterCount++] = start;
+        }
+        offsets[clusterCount] = polygonCount;
+        int[] clusterPolygonOffsets = Arrays.copyOf(offsets, clusterCount + 1);
+
+        float[] clusterBoxes = new float[clusterCount * 6];
+        for (int cluster = 0; cluster < clusterCount; cluster++) {
+            emptyBox(clusterBoxes, cluster * 6);
+            int from = polygonOffsets[clusterPolygonOffsets[cluster]];
+            int to = polygonOffsets[clusterPolygonOffsets[cluster + 1]];
+            for (int corner = from; corner < to; corner++) {
+                include(clusterBoxes, cluster * 6, positions, vertexIndices[corner] * 3);
+            }
+        }
+
+        // Вершины, не входящие ни в один полигон, тоже попадают в общий параллелепипед
+        float[] box = new float[6];
+        emptyBox(box, 0);
+        for (int i = 0; i < positions.length; i += 3) {
+            include(box, 0, positions, i);
+        }
+        float[] sphere = new float[4];
+        if (positions.length > 0) {
+            for (int axis = 0; axis < 3; axis++) {
+                sphere[axis] = (box[axis] + box[axis + 3]) / 2;
+            }
+            float radiusSquared = 0;
+            for (int i = 0; i < positions.length; i += 3) {
+                float dx = positions[i] - sphere[0], dy = positions[i + 1] - sphere[1], dz = positions[i + 2] - sphere[2];
+                radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+            }
+            sphere[3] = (float) Math.sqrt(radiusSquared);
+        }
+        return new MeshBounds(box, sphere, clusterPolygonOffsets, clusterBoxes);
+    }
+
+    private static void emptyBox(float[] boxes, int offset) {
+        for (int axis = 0; axis < 3; axis++) {
+            boxes[offset + axis] = Float.POSITIVE_INFINITY;
+            boxes[offset + axis + 3] = Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    private static void include(float[] boxes, int offset, float[] positions, int position) {
+        for (int axis = 0; axis < 3; axis++) {
+            float value = positions[position + axis];
+            boxes[offset + axis] = Math.min(boxes[offset + axis], value);
+            boxes[offset + axis + 3] = Math.max(boxes[offset + axis + 3], value);
+        }
+    }
+
+    /**
+     * Параллелепипед всей сетки; у пустой сетки минимум больше максимума
+     */
+    public float[] getBox() {
+        return box;
+    }
+
+    /**
+     * Центр сферы - середина параллелепипеда
+     */
+    public float getCenterX() {
+        return centerX;
+    }
+
+    public float getCenterY() {
+        return centerY;
+    }
+
+    public float getCenterZ() {
+        return centerZ;
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    public int getClusterCount() {
+        return clusterPolygonOffsets.length - 1;
+    }
+
+    public int[] getClusterPolygonOffsets() {
+        return clusterPolygonOffsets;
+    }
+
+    public float[] getClusterBoxes() {
+        return clusterBoxes;
+    }
+}
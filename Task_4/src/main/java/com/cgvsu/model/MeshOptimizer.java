@@ -0,0 +1,500 @@
+package com.cgvsu.model;
+
+import java.util.Arrays;
+
+/**
+ * Порядок треугольников для быстрой отрисовки: сначала треугольники упорядочиваются по Форсайту,
+ * чтобы соседние треугольники пользовались недавно обработанными вершинами, затем порядок режется
+ * на кластеры, и кластеры, обращённые наружу, ставятся первыми, чтобы меньше пикселей
+ * перекрашивалось (перерисовка). Порядок описывается перестановкой треугольников: order[i] -
+ * номер треугольника, который рисуется i-м.
+ *
+ * Метрики: ACMR - среднее число промахов FIFO-кэша вершин на треугольник, перерисовка - сколько
+ * раз в среднем закрашивается видимый пиксель при отрисовке с шести сторон по осям с тестом глубины.
+ */
+public final class MeshOptimizer {
+
+    /** Размер FIFO-кэша вершин для ACMR и разбиения на кластеры */
+    public static final int CACHE_SIZE = 16;
+    /** Допустимый рост ACMR ради перерисовки */
+    public static final float DEFAULT_OVERDRAW_THRESHOLD = 1.05f;
+
+    // Параметры оценки вершин из статьи Форсайта "Linear-Speed Vertex Cache Optimisation"
+    private static final int FORSYTH_CACHE_SIZE = 32;
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+    private static final int MAX_VALENCE_SCORE = 64;
+
+    private static final float[] CACHE_SCORES = new float[FORSYTH_CACHE_SIZE];
+    private static final float[] VALENCE_SCORES = new float[MAX_VALENCE_SCORE];
+
+    static {
+        for (int i = 0; i < FORSYTH_CACHE_SIZE; i++) {
+            CACHE_SCORES[i] = i < 3 ? LAST_TRIANGLE_SCORE
+                    : (float) Math.pow(1 - (i - 3) / (float) (FORSYTH_CACHE_SIZE - 3), CACHE_DECAY_POWER);
+        }
+        for (int i = 1; i < MAX_VALENCE_SCORE; i++) {
+            VALENCE_SCORES[i] = VALENCE_BOOST_SCALE * (float) Math.pow(i, -VALENCE_BOOST_POWER);
+        }
+    }
+
+    // Кластеры короче не выделяются: сортировка мелких кластеров стоит кэша больше, чем даёт
+    private static final int MIN_CLUSTER_SIZE = 32;
+    private static final int OVERDRAW_GRID = 256;
+
+    private MeshOptimizer() {
+    }
+
+    /**
+     * Метрики до и после оптимизации
+     */
+    public static final class Report {
+        private final float acmrBefore;
+        private final float acmrAfter;
+        private final float overdrawBefore;
+        private final float overdrawAfter;
+
+        public Report(float acmrBefore, float acmrAfter, float overdrawBefore, float overdrawAfter) {
+            this.acmrBefore = acmrBefore;
+            this.acmrAfter = acmrAfter;
+            this.overdrawBefore = overdrawBefore;
+            this.overdrawAfter = overdrawAfter;
+        }
+
+        public float getAcmrBefore() {
+            return acmrBefore;
+        }
+
+        public float getAcmrAfter() {
+            return acmrAfter;
+        }
+
+        public float getOverdrawBefore() {
+            return overdrawBefore;
+        }
+
+        public float getOverdrawAfter() {
+            return overdrawAfter;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ACMR: %.3f -> %.3f, overdraw: %.3f -> %.3f",
+                    acmrBefore, acmrAfter, overdrawBefore, overdrawAfter);
+        }
+    }
+
+    /**
+     * Порядок треугольников по Форсайту: на каждом шаге берётся треугольник с наибольшей оценкой
+     * среди смежных вершинам в кэше; оценка вершины растёт, если она недавно в кэше и у неё
+     * осталось мало необработанных треугольников
+     *
+     * @param indices     по три индекса вершин на треугольник
+     * @param vertexCount число вершин
+     */
+    public static int[] optimizeVertexCache(int[] indices, int vertexCount) {
+        int triangleCount = indices.length / 3;
+        int[] order = new int[triangleCount];
+        if (triangleCount == 0) {
+            return order;
+        }
+
+        // Необработанные треугольники вершины v - первые remaining[v] в [vertexOffsets[v], vertexOffsets[v + 1])
+        int[] vertexOffsets = new int[vertexCount + 1];
+        for (int index : indices) {
+            vertexOffsets[index + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            vertexOffsets[v + 1] += vertexOffsets[v];
+        }
+        int[] vertexTriangles = new int[indices.length];
+        int[] remaining = new int[vertexCount];
+        for (int corner = 0; corner < indices.length; corner++) {
+            int v = indices[corner];
+            vertexTriangles[vertexOffsets[v] + remaining[v]++] = corner / 3;
+        }
+
+        int[] cachePositions = new int[vertexCount];
+        Arrays.fill(cachePositions, -1);
+        float[] vertexScores = new float[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            vertexScores[v] = vertexScore(-1, remaining[v]);
+        }
+        boolean[] added = new boolean[triangleCount];
+        int best = 0;
+        float bestScore = -Float.MAX_VALUE;
+        for (int t = 0; t < triangleCount; t++) {
+            float score = vertexScores[indices[t * 3]] + vertexScores[indices[t * 3 + 1]] + vertexScores[indices[t * 3 + 2]];
+            if (score > bestScore) {
+                bestScore = score;
+                best = t;
+            }
+        }
+
+        int[] cache = new int[FORSYTH_CACHE_SIZE + 3];
+        int[] nextCache = new int[FORSYTH_CACHE_SIZE + 3];
+        int cacheSize = 0;
+        int[] inCache = new int[vertexCount];
+        int cursor = 0;
+        for (int i = 0; i < triangleCount; i++) {
+            if (best < 0) {
+                // В кэше не осталось вершин с необработанными треугольниками: берём первый необработанный
+                while (added[cursor]) {
+                    cursor++;
+                }
+                best = cursor;
+            }
+            order[i] = best;
+            added[best] = true;
+
+            // Новый кэш: вершины треугольника, затем прежнее содержимое без них.
+            // Вершины нового кэша отмечаются номером шага
+            int step = i + 1;
+            int nextSize = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = indices[best * 3 + k];
+                removeTriangle(vertexTriangles, vertexOffsets[v], remaining[v]--, best);
+                if (inCache[v] != step) {
+                    inCache[v] = step;
+                    nextCache[nextSize++] = v;
+                }
+            }
+            for (int k = 0; k < cacheSize && nextSize < nextCache.length; k++) {
+                if (inCache[cache[k]] != step) {
+                    inCache[cache[k]] = step;
+                    nextCache[nextSize++] = cache[k];
+                }
+            }
+            // Вытесненные из кэша вершины теряют бонус кэша
+            for (int k = 0; k < cacheSize; k++) {
+                if (inCache[cache[k]] != step) {
+                    cachePositions[cache[k]] = -1;
+                    vertexScores[cache[k]] = vertexScore(-1, remaining[cache[k]]);
+                }
+            }
+            int[] swap = cache;
+            cache = nextCache;
+            nextCache = swap;
+            cacheSize = nextSize;
+
+            for (int k = 0; k < cacheSize; k++) {
+                int v = cache[k];
+                cachePositions[v] = k < FORSYTH_CACHE_SIZE ? k : -1;
+                vertexScores[v] = vertexScore(cachePositions[v], remaining[v]);
+            }
+            best = -1;
+            bestScore = -Float.MAX_VALUE;
+            for (int k = 0; k < cacheSize; k++) {
+                int v = cache[k];
+                for (int j = vertexOffsets[v]; j < vertexOffsets[v] + remaining[v]; j++) {
+                    int t = vertexTriangles[j];
+                    float score = vertexScores[indices[t * 3]] + vertexScores[indices[t * 3 + 1]] + vertexScores[indices[t * 3 + 2]];
+                    if (score > bestScore) {
+                        bestScore = score;
+                        best = t;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    private static float vertexScore(int cachePosition, int remaining) {
+        if (remaining == 0) {
+            return -1;
+        }
+        float score = cachePosition >= 0 ? CACHE_SCORES[cachePosition] : 0;
+        return score + VALENCE_SCORES[Math.min(remaining, MAX_VALENCE_SCORE - 1)];
+    }
+
+    private static void removeTriangle(int[] vertexTriangles, int start, int count, int triangle) {
+        for (int j = start; j < start + count; j++) {
+            if (vertexTriangles[j] == triangle) {
+                vertexTriangles[j] = vertexTriangles[start + count - 1];
+                vertexTriangles[start + count - 1] = triangle;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Переставляет кластеры порядка для меньшей перерисовки. Порядок режется там, где ACMR
+     * от начала кластера не превышает threshold от ACMR всего порядка (кэш на границе кластера
+     * считается пустым, поэтому перестановка кластеров почти не портит кэш). Кластеры, обращённые
+     * от центра сетки наружу, рисуются первыми и закрывают внутренние
+     *
+     * @param order     порядок треугольников, обычно результат {@link #optimizeVertexCache}
+     * @param threshold допустимый рост ACMR, например {@link #DEFAULT_OVERDRAW_THRESHOLD}
+     */
+    public static int[] optimizeOverdraw(int[] indices, int[] order, float[] positions, float threshold) {
+        int triangleCount = order.length;
+        int vertexCount = positions.length / 3;
+        if (triangleCount == 0) {
+            return order.clone();
+        }
+
+        FifoCache cache = new FifoCache(vertexCount);
+        int totalMisses = 0;
+        for (int t : order) {
+            totalMisses += cache.add(indices, t);
+        }
+        float limit = threshold * totalMisses / triangleCount;
+
+        int[] clusterStarts = new int[triangleCount + 1];
+        int clusterCount = 0;
+        cache.reset();
+        int misses = 0;
+        int start = 0;
+        for (int i = 0; i < triangleCount; i++) {
+            misses += cache.add(indices, order[i]);
+            int size = i + 1 - start;
+            if (size >= MIN_CLUSTER_SIZE && misses <= limit * size) {
+                clusterStarts[clusterCount++] = start;
+                start = i + 1;
+                misses = 0;
+                cache.reset();
+            }
+        }
+        if (start < triangleCount) {
+            clusterStarts[clusterCount++] = start;
+        }
+        clusterStarts[clusterCount] = triangleCount;
+
+        // Центр сетки по площадям треугольников
+        double[] meshCenter = new double[3];
+        double meshArea = 0;
+        double[] sums = new double[7];
+        for (int t = 0; t < triangleCount; t++) {
+            Arrays.fill(sums, 0);
+            accumulate(indices, positions, t, sums);
+            meshArea += sums[6];
+            meshCenter[0] += sums[0];
+            meshCenter[1] += sums[1];
+            meshCenter[2] += sums[2];
+        }
+        if (meshArea > 0) {
+            meshCenter[0] /= meshArea;
+            meshCenter[1] /= meshArea;
+            meshCenter[2] /= meshArea;
+        }
+
+        double[] keys = new double[clusterCount];
+        Integer[] clusters = new Integer[clusterCount];
+        for (int c = 0; c < clusterCount; c++) {
+            clusters[c] = c;
+            Arrays.fill(sums, 0);
+            for (int i = clusterStarts[c]; i < clusterStarts[c + 1]; i++) {
+                accumulate(indices, positions, order[i], sums);
+            }
+            double area = sums[6];
+            if (area <= 0) {
+                continue;
+            }
+            // sums[3..5] - сумма ненормированных нормалей, то есть нормаль кластера с весом площади
+            double nx = sums[3], ny = sums[4], nz = sums[5];
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length > 0) {
+                keys[c] = ((sums[0] / area - meshCenter[0]) * nx + (sums[1] / area - meshCenter[1]) * ny
+                        + (sums[2] / area - meshCenter[2]) * nz) / length;
+            }
+        }
+        // Сортировка устойчива: кластеры с равным ключом сохраняют исходный порядок
+        Arrays.sort(clusters, (a, b) -> Double.compare(keys[b], keys[a]));
+
+        int[] result = new int[triangleCount];
+        int write = 0;
+        for (int c : clusters) {
+            for (int i = clusterStarts[c]; i < clusterStarts[c + 1]; i++) {
+                result[write++] = order[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Добавляет к sums центр треугольника с весом площади (0..2), его нормаль длиной в удвоенную
+     * площадь (3..5) и площадь (6)
+     */
+    private static void accumulate(int[] indices, float[] positions, int triangle, double[] sums) {
+        int a = indices[triangle * 3] * 3;
+        int b = indices[triangle * 3 + 1] * 3;
+        int c = indices[triangle * 3 + 2] * 3;
+        double e1x = positions[b] - positions[a], e1y = positions[b + 1] - positions[a + 1], e1z = positions[b + 2] - positions[a + 2];
+        double e2x = positions[c] - positions[a], e2y = positions[c + 1] - positions[a + 1], e2z = positions[c + 2] - positions[a + 2];
+        double nx = e1y * e2z - e1z * e2y;
+        double ny = e1z * e2x - e1x * e2z;
+        double nz = e1x * e2y - e1y * e2x;
+        double area = Math.sqrt(nx * nx + ny * ny + nz * nz) / 2;
+        sums[0] += (positions[a] + positions[b] + positions[c]) / 3.0 * area;
+        sums[1] += (positions[a + 1] + positions[b + 1] + positions[c + 1]) / 3.0 * area;
+        sums[2] += (positions[a + 2] + positions[b + 2] + positions[c + 2]) / 3.0 * area;
+        sums[3] += nx;
+        sums[4] += ny;
+        sums[5] += nz;
+        sums[6] += area;
+    }
+
+    /**
+     * Индексы треугольников в заданном порядке
+     */
+    public static int[] reorder(int[] indices, int[] order) {
+        int[] result = new int[order.length * 3];
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(indices, order[i] * 3, result, i * 3, 3);
+        }
+        return result;
+    }
+
+    /**
+     * Среднее число промахов FIFO-кэша из {@link #CACHE_SIZE} вершин на треугольник
+     */
+    public static float acmr(int[] indices, int vertexCount) {
+        int triangleCount = indices.length / 3;
+        if (triangleCount == 0) {
+            return 0;
+        }
+        FifoCache cache = new FifoCache(vertexCount);
+        int misses = 0;
+        for (int t = 0; t < triangleCount; t++) {
+            misses += cache.add(indices, t);
+        }
+        return misses / (float) triangleCount;
+    }
+
+    /**
+     * FIFO-кэш вершин: вершина в кэше, если с момента её загрузки было меньше CACHE_SIZE промахов
+     */
+    private static final class FifoCache {
+        private final int[] loadedAt;
+        private int time;
+
+        FifoCache(int vertexCount) {
+            loadedAt = new int[vertexCount];
+            reset();
+        }
+
+        void reset() {
+            // Отметки времени из прошлого уже вне кэша
+            time += CACHE_SIZE + 1;
+            if (time > Integer.MAX_VALUE / 2) {
+                time = CACHE_SIZE + 1;
+                Arrays.fill(loadedAt, 0);
+            }
+        }
+
+        int add(int[] indices, int triangle) {
+            int misses = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = indices[triangle * 3 + k];
+                if (time - loadedAt[v] > CACHE_SIZE) {
+                    loadedAt[v] = ++time;
+                    misses++;
+                }
+            }
+            return misses;
+        }
+    }
+
+    /**
+     * Перерисовка: отношение числа прошедших тест глубины пикселей к числу закрашенных пикселей,
+     * усреднённое по шести видам вдоль осей. Задние грани отбрасываются
+     */
+    public static float overdraw(int[] indices, float[] positions) {
+        int triangleCount = indices.length / 3;
+        if (triangleCount == 0) {
+            return 0;
+        }
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int index : indices) {
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], positions[index * 3 + axis]);
+                max[axis] = Math.max(max[axis], positions[index * 3 + axis]);
+            }
+        }
+        float extent = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+        float scale = extent > 0 ? (OVERDRAW_GRID - 1) / extent : 0;
+
+        float[] depth = new float[OVERDRAW_GRID * OVERDRAW_GRID];
+        long shaded = 0;
+        long covered = 0;
+        float[] projected = new float[9];
+        for (int axis = 0; axis < 3; axis++) {
+            for (int direction = -1; direction <= 1; direction += 2) {
+                // Экранные оси так, чтобы лицевые грани при взгляде с этой стороны шли против часовой
+                int u = direction > 0 ? (axis + 1) % 3 : (axis + 2) % 3;
+                int v = direction > 0 ? (axis + 2) % 3 : (axis + 1) % 3;
+                Arrays.fill(depth, Float.POSITIVE_INFINITY);
+                for (int t = 0; t < triangleCount; t++) {
+                    for (int k = 0; k < 3; k++) {
+                        int p = indices[t * 3 + k] * 3;
+                        projected[k * 3] = (positions[p + u] - min[u]) * scale;
+                        projected[k * 3 + 1] = (positions[p + v] - min[v]) * scale;
+                        // Меньшая глубина - ближе к наблюдателю
+                        projected[k * 3 + 2] = -direction * positions[p + axis];
+                    }
+                    shaded += rasterize(projected, depth);
+                }
+                for (float d : depth) {
+                    if (d != Float.POSITIVE_INFINITY) {
+                        covered++;
+                    }
+                }
+            }
+        }
+        return covered == 0 ? 0 : shaded / (float) covered;
+    }
+
+    /**
+     * Растеризует треугольник с тестом глубины по центрам пикселей и правилом верхнего левого ребра
+     *
+     * @return число пикселей, прошедших тест глубины
+     */
+    private static int rasterize(float[] p, float[] depth) {
+        float x0 = p[0], y0 = p[1], x1 = p[3], y1 = p[4], x2 = p[6], y2 = p[7];
+        float area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+        if (!(area > 0)) {
+            return 0;
+        }
+        int minX = Math.max(0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+        int maxX = Math.min(OVERDRAW_GRID - 1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+        int minY = Math.max(0, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+        int maxY = Math.min(OVERDRAW_GRID - 1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+
+        int passed = 0;
+        for (int y = minY; y <= maxY; y++) {
+            float py = y + 0.5f;
+            for (int x = minX; x <= maxX; x++) {
+                float px = x + 0.5f;
+                float w0 = edge(x1, y1, x2, y2, px, py);
+                float w1 = edge(x2, y2, x0, y0, px, py);
+                float w2 = edge(x0, y0, x1, y1, px, py);
+                if (!inside(w0, x1, y1, x2, y2) || !inside(w1, x2, y2, x0, y0) || !inside(w2, x0, y0, x1, y1)) {
+                    continue;
+                }
+                float z = (w0 * p[2] + w1 * p[5] + w2 * p[8]) / area;
+                int pixel = y * OVERDRAW_GRID + x;
+                if (z < depth[pixel]) {
+                    depth[pixel] = z;
+                    passed++;
+                }
+            }
+        }
+        return passed;
+    }
+
+    private static float edge(float ax, float ay, float bx, float by, float px, float py) {
+        return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+    }
+
+    private static boolean inside(float w, float ax, float ay, float bx, float by) {
+        if (w != 0) {
+            return w > 0;
+        }
+        // Пиксель на ребре достаётся только одному из двух треугольников
+        float dy = by - ay;
+        return dy < 0 || (dy == 0 && bx - ax < 0);
+    }
+}
@@ -0,0 +1,536 @@
+package com.cgvsu.model;
+
+import java.util.Arrays;
+
+/**
+ * Упрощение сетки по квадрикам ошибки (Гарланд и Хекберт). Каждой вершине сопоставляется сумма
+ * квадрик плоскостей смежных треугольников с весом площади; стоимость стягивания ребра в вершину -
+ * значение суммарной квадрики в этой вершине. Рёбра стягиваются по возрастанию стоимости.
+ *
+ * Ребро стягивается в один из своих концов (половинное стягивание), поэтому упрощённая сетка
+ * пользуется исходными вершинами и атрибутами без пересчёта. Граничные рёбра удерживаются
+ * дополнительными плоскостями, перпендикулярными треугольнику; вершины на швах нормалей
+ * или текстурных координат не двигаются; стягивание, переворачивающее треугольник, отклоняется.
+ */
+public final class MeshSimplifier {
+
+    // Вес плоскостей, удерживающих границу, относительно плоскостей треугольников
+    private static final double BOUNDARY_WEIGHT = 10;
+
+    private MeshSimplifier() {
+    }
+
+    /**
+     * Упрощённая сетка и её погрешность
+     */
+    public static final class Result {
+        private final CompiledMesh mesh;
+        private final float error;
+
+        Result(CompiledMesh mesh, float error) {
+            this.mesh = mesh;
+            this.error = error;
+        }
+
+        /**
+         * Сетка из треугольников; массивы атрибутов содержат только используемые элементы
+         */
+        public CompiledMesh getMesh() {
+            return mesh;
+        }
+
+        /**
+         * Оценка наибольшего отклонения от исходной поверхности в единицах модели
+         */
+        public float getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Стягивает рёбра, пока треугольников больше targetTriangles и есть допустимые стягивания
+     */
+    public static Result simplify(CompiledMesh mesh, int targetTriangles) {
+        return new Simplification(mesh).run(targetTriangles);
+    }
+
+    private static final class Simplification {
+        private final CompiledMesh source;
+        private final float[] positions;
+        private final int vertexCount;
+        private final int[] corners;          // вершины углов треугольников
+        private final int[] cornerNormals;
+        private final int[] cornerTexCoords;
+        private final boolean[] deadTriangles;
+        private int liveTriangles;
+
+        // Квадрики вершин: 10 коэффициентов симметричной матрицы 4x4 и сумма весов
+        private final double[] quadrics;
+        private final boolean[] locked;
+        private final int[] versions;
+        private final boolean[] removed;
+
+        // Треугольники вершины; после стягивания среди них бывают мёртвые и уже чужие
+        private final int[][] vertexTriangles;
+        private final int[] vertexTriangleCounts;
+
+        private final EdgeHeap heap = new EdgeHeap();
+        private double maxError;
+
+        Simplification(CompiledMesh mesh) {
+            source = mesh;
+            positions = mesh.getPositions();
+            vertexCount = mesh.getVertexCount();
+            corners = mesh.getTriangleVertexIndices().clone();
+            cornerNormals = mesh.getTriangleNormalIndices().clone();
+            cornerTexCoords = mesh.getTriangleTexCoordIndices().clone();
+            int triangleCount = corners.length / 3;
+            deadTriangles = new boolean[triangleCount];
+            liveTriangles = triangleCount;
+
+            quadrics = new double[vertexCount * 11];
+            locked = new boolean[vertexCount];
+            versions = new int[vertexCount];
+            removed = new boolean[vertexCount];
+
+            vertexTriangleCounts = new int[vertexCount];
+            for (int v : corners) {
+                vertexTriangleCounts[v]++;
+            }
+            vertexTriangles = new int[vertexCount][];
+            for (int v = 0; v < vertexCount; v++) {
+                vertexTriangles[v] = new int[Math.max(vertexTriangleCounts[v], 1)];
+                vertexTriangleCounts[v] = 0;
+            }
+            for (int corner = 0; corner < corners.length; corner++) {
+                int v = corners[corner];
+                vertexTriangles[v][vertexTriangleCounts[v]++] = corner / 3;
+            }
+        }
+
+        Result run(int targetTriangles) {
+            lockSeams();
+            double[] plane = new double[4];
+            for (int t = 0; t < corners.length / 3; t++) {
+                double area = trianglePlane(t, corners[t * 3], corners[t * 3 + 1], corners[t * 3 + 2], plane);
+                if (area > 0) {
+                    for (int k = 0; k < 3; k++) {
+                        addPlane(corners[t * 3 + k], plane, area);
+                    }
+                }
+            }
+
+            // Рёбра как пары (меньшая вершина, большая); ребро одного треугольника - граница
+            long[] edges = new long[corners.length];
+            for (int t = 0; t < corners.length / 3; t++) {
+                for (int k = 0; k < 3; k++) {
+                    int a = corners[t * 3 + k];
+                    int b = corners[t * 3 + (k + 1) % 3];
+                    edges[t * 3 + k] = (long) Math.min(a, b) << 32 | Math.max(a, b);
+                }
+            }
+            long[] sorted = edges.clone();
+            Arrays.sort(sorted);
+            for (int t = 0; t < corners.length / 3; t++) {
+                for (int k = 0; k < 3; k++) {
+                    long key = edges[t * 3 + k];
+                    int position = Arrays.binarySearch(sorted, key);
+                    boolean boundary = (position == 0 || sorted[position - 1] != key)
+                            && (position == sorted.length - 1 || sorted[position + 1] != key);
+                    if (boundary) {
+                        addBoundaryPlanes(t, corners[t * 3 + k], corners[t * 3 + (k + 1) % 3]);
+                    }
+                }
+            }
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    pushEdge((int) (sorted[i] >>> 32), (int) sorted[i]);
+                }
+            }
+
+            while (liveTriangles > targetTriangles && heap.size() > 0) {
+                int entry = heap.pop();
+                int from = heap.from[entry];
+                int to = heap.to[entry];
+                if (removed[from] || removed[to]
+                        || versions[from] != heap.fromVersion[entry] || versions[to] != heap.toVersion[entry]) {
+                    continue;
+                }
+                double cost = heap.cost[entry];
+                if (collapse(from, to)) {
+                    maxError = Math.max(maxError, cost);
+                }
+            }
+            return new Result(compact(), (float) Math.sqrt(maxError));
+        }
+
+        /**
+         * Вершина на шве, если её углы ссылаются на разные нормали или текстурные координаты
+         */
+        private void lockSeams() {
+            int[] normal = new int[vertexCount];
+            int[] texCoord = new int[vertexCount];
+            Arrays.fill(normal, Integer.MIN_VALUE);
+            for (int corner = 0; corner < corners.length; corner++) {
+                int v = corners[corner];
+                if (normal[v] == Integer.MIN_VALUE) {
+                    normal[v] = cornerNormals[corner];
+                    texCoord[v] = cornerTexCoords[corner];
+                } else if (normal[v] != cornerNormals[corner] || texCoord[v] != cornerTexCoords[corner]) {
+                    locked[v] = true;
+                }
+            }
+        }
+
+        /**
+         * Плоскость треугольника с вершинами a, b, c: единичная нормаль и смещение
+         *
+         * @return площадь треугольника
+         */
+        private double trianglePlane(int t, int a, int b, int c, double[] plane) {
+            double e1x = positions[b * 3] - positions[a * 3];
+            double e1y = positions[b * 3 + 1] - positions[a * 3 + 1];
+            double e1z = positions[b * 3 + 2] - positions[a * 3 + 2];
+            double e2x = positions[c * 3] - positions[a * 3];
+            double e2y = positions[c * 3 + 1] - positions[a * 3 + 1];
+            double e2z = positions[c * 3 + 2] - positions[a * 3 + 2];
+            double nx = e1y * e2z - e1z * e2y;
+            double ny = e1z * e2x - e1x * e2z;
+            double nz = e1x * e2y - e1y * e2x;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length == 0) {
+                plane[0] = plane[1] = plane[2] = plane[3] = 0;
+                return 0;
+            }
+            plane[0] = nx / length;
+            plane[1] = ny / length;
+            plane[2] = nz / length;
+            plane[3] = -(plane[0] * positions[a * 3] + plane[1] * positions[a * 3 + 1] + plane[2] * positions[a * 3 + 2]);
+            return length / 2;
+        }
+
+        private void addPlane(int v, double[] p, double weight) {
+            int q = v * 11;
+            quadrics[q] += weight * p[0] * p[0];
+            quadrics[q + 1] += weight * p[0] * p[1];
+            quadrics[q + 2] += weight * p[0] * p[2];
+            quadrics[q + 3] += weight * p[0] * p[3];
+            quadrics[q + 4] += weight * p[1] * p[1];
+            quadrics[q + 5] += weight * p[1] * p[2];
+            quadrics[q + 6] += weight * p[1] * p[3];
+            quadrics[q + 7] += weight * p[2] * p[2];
+            quadrics[q + 8] += weight * p[2] * p[3];
+            quadrics[q + 9] += weight * p[3] * p[3];
+            quadrics[q + 10] += weight;
+        }
+
+        /**
+         * Плоскость через граничное ребро перпендикулярно треугольнику: сдвиг границы становится дорогим
+         */
+        private void addBoundaryPlanes(int t, int a, int b) {
+            double[] face = new double[4];
+            if (trianglePlane(t, corners[t * 3], corners[t * 3 + 1], corners[t * 3 + 2], face) == 0) {
+                return;
+            }
+            double ex = positions[b * 3] - positions[a * 3];
+            double ey = positions[b * 3 + 1] - positions[a * 3 + 1];
+            double ez = positions[b * 3 + 2] - positions[a * 3 + 2];
+            double mx = ey * face[2] - ez * face[1];
+            double my = ez * face[0] - ex * face[2];
+            double mz = ex * face[1] - ey * face[0];
+            double length = Math.sqrt(mx * mx + my * my + mz * mz);
+            if (length == 0) {
+                return;
+            }
+            double[] plane = {mx / length, my / length, mz / length, 0};
+            plane[3] = -(plane[0] * positions[a * 3] + plane[1] * positions[a * 3 + 1] + plane[2] * positions[a * 3 + 2]);
+            double weight = BOUNDARY_WEIGHT * (ex * ex + ey * ey + ez * ez);
+            addPlane(a, plane, weight);
+            addPlane(b, plane, weight);
+        }
+
+        /**
+         * Значение суммы квадрик вершин a и b в точке вершины target, делённое на сумму весов
+         */
+        private double cost(int a, int b, int target) {
+            int qa = a * 11;
+            int qb = b * 11;
+            double x = positions[target * 3];
+            double y = positions[target * 3 + 1];
+            double z = positions[target * 3 + 2];
+            double[] q = quadrics;
+            double value = (q[qa] + q[qb]) * x * x + 2 * (q[qa + 1] + q[qb + 1]) * x * y
+                    + 2 * (q[qa + 2] + q[qb + 2]) * x * z + 2 * (q[qa + 3] + q[qb + 3]) * x
+                    + (q[qa + 4] + q[qb + 4]) * y * y + 2 * (q[qa + 5] + q[qb + 5]) * y * z
+                    + 2 * (q[qa + 6] + q[qb + 6]) * y + (q[qa + 7] + q[qb + 7]) * z * z
+                    + 2 * (q[qa + 8] + q[qb + 8]) * z + (q[qa + 9] + q[qb + 9]);
+            double weight = q[qa + 10] + q[qb + 10];
+            return weight > 0 ? Math.max(0, value) / weight : 0;
+        }
+
+        /**
+         * Ребро (a, b) в очередь с направлением подешевле; рёбра с вершинами на швах не стягиваются
+         */
+        private void pushEdge(int a, int b) {
+            if (a == b || locked[a] || locked[b]) {
+                return;
+            }
+            double toA = cost(a, b, a);
+            double toB = cost(a, b, b);
+            if (toA <= toB) {
+                heap.push(toA, b, a, versions[b], versions[a]);
+            } else {
+                heap.push(toB, a, b, versions[a], versions[b]);
+            }
+        }
+
+        /**
+         * Стягивает вершину from в вершину to
+         *
+         * @return false, если стягивание перевернуло бы треугольник
+         */
+        private boolean collapse(int from, int to) {
+            int[] triangles = vertexTriangles[from];
+            int count = vertexTriangleCounts[from];
+            for (int i = 0; i < count; i++) {
+                int t = triangles[i];
+                if (!deadTriangles[t] && !contains(t, to) && flips(t, from, to)) {
+                    return false;
+                }
+            }
+
+            int normal = -1;
+            int texCoord = -1;
+            int[] toTriangles = vertexTriangles[to];
+            for (int i = 0; i < vertexTriangleCounts[to]; i++) {
+                int t = toTriangles[i];
+                if (!deadTriangles[t]) {
+                    int corner = cornerOf(t, to);
+                    normal = cornerNormals[corner];
+                    texCoord = cornerTexCoords[corner];
+                    break;
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                int t = triangles[i];
+                if (deadTriangles[t]) {
+                    continue;
+                }
+                if (contains(t, to)) {
+                    deadTriangles[t] = true;
+                    liveTriangles--;
+                } else {
+                    int corner = cornerOf(t, from);
+                    corners[corner] = to;
+                    // Вершина to не на шве: у всех её углов одни и те же атрибуты
+                    cornerNormals[corner] = normal;
+                    cornerTexCoords[corner] = texCoord;
+                    appendTriangle(to, t);
+                }
+            }
+            removed[from] = true;
+            versions[to]++;
+            for (int k = 0; k < 11; k++) {
+                quadrics[to * 11 + k] += quadrics[from * 11 + k];
+            }
+
+            toTriangles = vertexTriangles[to];
+            for (int i = 0; i < vertexTriangleCounts[to]; i++) {
+                int t = toTriangles[i];
+                if (deadTriangles[t]) {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    int other = corners[t * 3 + k];
+                    if (other != to) {
+                        pushEdge(Math.min(to, other), Math.max(to, other));
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean contains(int t, int v) {
+            return corners[t * 3] == v || corners[t * 3 + 1] == v || corners[t * 3 + 2] == v;
+        }
+
+        private int cornerOf(int t, int v) {
+            for (int k = 0; k < 3; k++) {
+                if (corners[t * 3 + k] == v) {
+                    return t * 3 + k;
+                }
+            }
+            throw new IllegalStateException("Vertex " + v + " is not in triangle " + t);
+        }
+
+        private void appendTriangle(int v, int t) {
+            if (vertexTriangleCounts[v] == vertexTriangles[v].length) {
+                vertexTriangles[v] = Arrays.copyOf(vertexTriangles[v], vertexTriangles[v].length * 2);
+            }
+            vertexTriangles[v][vertexTriangleCounts[v]++] = t;
+        }
+
+        /**
+         * Перевернётся ли (или выродится) треугольник t, если его вершину from перенести в точку to
+         */
+        private boolean flips(int t, int from, int to) {
+            int corner = cornerOf(t, from) - t * 3;
+            int a = corners[t * 3 + (corner + 1) % 3];
+            int b = corners[t * 3 + (corner + 2) % 3];
+            double[] before = normal(from, a, b);
+            double[] after = normal(to, a, b);
+            double dot = before[0] * after[0] + before[1] * after[1] + before[2] * after[2];
+            double afterLength = after[0] * after[0] + after[1] * after[1] + after[2] * after[2];
+            return !(dot > 0) || afterLength == 0;
+        }
+
+        private double[] normal(int p, int a, int b) {
+            double e1x = positions[a * 3] - positions[p * 3];
+            double e1y = positions[a * 3 + 1] - positions[p * 3 + 1];
+            double e1z = positions[a * 3 + 2] - positions[p * 3 + 2];
+            double e2x = positions[b * 3] - positions[p * 3];
+            double e2y = positions[b * 3 + 1] - positions[p * 3 + 1];
+            double e2z = positions[b * 3 + 2] - positions[p * 3 + 2];
+            return new double[] {e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x};
+        }
+
+        /**
+         * Оставшиеся треугольники с атрибутами, перенумерованными по первому использованию
+         */
+        private CompiledMesh compact() {
+            int[] vertexRemap = new int[vertexCount];
+            int[] normalRemap = new int[source.getNormalCount()];
+            int[] texCoordRemap = new int[source.getTexCoordCount()];
+            Arrays.fill(vertexRemap, -1);
+            Arrays.fill(normalRemap, -1);
+            Arrays.fill(texCoordRemap, -1);
+            int vertices = 0;
+            int normals = 0;
+            int texCoords = 0;
+
+            int[] offsets = new int[liveTriangles + 1];
+            int[] vertexIndices = new int[liveTriangles * 3];
+            int[] normalIndices = new int[liveTriangles * 3];
+            int[] texCoordIndices = new int[liveTriangles * 3];
+            int write = 0;
+            for (int t = 0; t < deadTriangles.length; t++) {
+                if (deadTriangles[t]) {
+                    continue;
+                }
+                offsets[write / 3] = write;
+                for (int k = 0; k < 3; k++, write++) {
+                    int corner = t * 3 + k;
+                    int v = corners[corner];
+                    if (vertexRemap[v] < 0) {
+                        vertexRemap[v] = vertices++;
+                    }
+                    vertexIndices[write] = vertexRemap[v];
+                    int n = cornerNormals[corner];
+                    if (n >= 0 && normalRemap[n] < 0) {
+                        normalRemap[n] = normals++;
+                    }
+                    normalIndices[write] = n >= 0 ? normalRemap[n] : -1;
+                    int c = cornerTexCoords[corner];
+                    if (c >= 0 && texCoordRemap[c] < 0) {
+                        texCoordRemap[c] = texCoords++;
+                    }
+                    texCoordIndices[write] = c >= 0 ? texCoordRemap[c] : -1;
+                }
+            }
+            offsets[liveTriangles] = write;
+
+            return new CompiledMesh(gather(positions, vertexRemap, vertices, 3),
+                    gather(source.getNormals(), normalRemap, normals, 3),
+                    gather(source.getTexCoords(), texCoordRemap, texCoords, 2),
+                    offsets, vertexIndices, normalIndices, texCoordIndices);
+        }
+
+        private static float[] gather(float[] values, int[] remap, int count, int stride) {
+            float[] result = new float[count * stride];
+            for (int i = 0; i < remap.length; i++) {
+                if (remap[i] >= 0) {
+                    System.arraycopy(values, i * stride, result, remap[i] * stride, stride);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Двоичная куча рёбер по стоимости; записи хранятся в параллельных массивах и не удаляются,
+     * устаревшие отсеиваются при извлечении по версиям вершин
+     */
+    private static final class EdgeHeap {
+        double[] cost = new double[1024];
+        int[] from = new int[1024];
+        int[] to = new int[1024];
+        int[] fromVersion = new int[1024];
+        int[] toVersion = new int[1024];
+        private int entries;
+
+        private int[] heap = new int[1024];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void push(double edgeCost, int edgeFrom, int edgeTo, int versionFrom, int versionTo) {
+            if (entries == cost.length) {
+                int capacity = entries * 2;
+                cost = Arrays.copyOf(cost, capacity);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                fromVersion = Arrays.copyOf(fromVersion, capacity);
+                toVersion = Arrays.copyOf(toVersion, capacity);
+            }
+            int entry = entries++;
+            cost[entry] = edgeCost;
+            from[entry] = edgeFrom;
+            to[entry] = edgeTo;
+            fromVersion[entry] = versionFrom;
+            toVersion[entry] = versionTo;
+
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (cost[heap[parent]] <= edgeCost) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = entry;
+        }
+
+        int pop() {
+            int top = heap[0];
+            int last = heap[--size];
+            int i = 0;
+            while (true) {
+                int child = i * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && cost[heap[child + 1]] < cost[heap[child]]) {
+                    child++;
+                }
+                if (cost[heap[child]] >= cost[last]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            // Записи, уже извлечённые из кучи, больше не нужны; когда куча опустела, место переиспользуется
+            if (size == 0) {
+                entries = 0;
+            }
+            return top;
+        }
+    }
+}
@@ -8,15 +8,257 @@ import java.util.*;
 
 public class Model {
 
-    public ArrayList<Vector3f> vertices = new ArrayList<Vector3f>();
-    public ArrayList<Vector2f> textureVertices = new ArrayList<Vector2f>();
-    public ArrayList<Vector3f> normals = new ArrayList<Vector3f>();
-    public ArrayList<Polygon> polygons = new ArrayList<Polygon>();
+    private ArrayList<Vector3f> vertices = new ArrayList<Vector3f>();
+    private ArrayList<Vector2f> textureVertices = new ArrayList<Vector2f>();
+    private ArrayList<Vector3f> normals = new ArrayList<Vector3f>();
+    private ArrayList<Polygon> polygons = new ArrayList<Polygon>();
+    // Модель, созданная по готовой сетке, получает списки при первом обращении к ним;
+    // до этого её содержимое - только эта сетка
+    private boolean listsPending;
 
     public Vector3f translation = new Vector3f(0f, 0f, 0f);
     public Vector3f rotation = new Vector3f(0f, 0f, 0f);
     public float scale = 1f;
 
+    // Номер правки модели; сетка для отрисовки пересобирается при его изменении
+    private int version;
+    private CompiledMesh compiledMesh;
+    private VertexAdjacency adjacency;
+    private int adjacencyVersion;
+    // Вес граней, с которым поддерживаются нормали по вершинам (индекс нормали равен индексу вершины):
+    // после удаления вершин и полигонов пересчитываются только нормали затронутых вершин.
+    // null - нормали не поддерживаются
+    private NormalCalculator.Weighting maintainedNormals;
+    // Полигоны при вершинах для пересчёта поддерживаемых нормалей; обновляются при удалении по месту
+    // и действительны, пока номер правки равен vertexPolygonsVersion
+    private VertexPolygons vertexPolygons;
+    private int vertexPolygonsVersion;
+
+    /**
+     * Вершины модели. У модели из готовой сетки списки заполняются при первом обращении
+     */
+    public ArrayList<Vector3f> getVertices() {
+        ensureLists();
+        return vertices;
+    }
+
+    public ArrayList<Vector2f> getTextureVertices() {
+        ensureLists();
+        return textureVertices;
+    }
+
+    public ArrayList<Vector3f> getNormals() {
+        ensureLists();
+        return normals;
+    }
+
+    public ArrayList<Polygon> getPolygons() {
+        ensureLists();
+        return polygons;
+    }
+
+    public void setVertices(ArrayList<Vector3f> vertices) {
+        ensureLists();
+        this.vertices = vertices;
+    }
+
+    public void setTextureVertices(ArrayList<Vector2f> textureVertices) {
+        ensureLists();
+        this.textureVertices = textureVertices;
+    }
+
+    public void setNormals(ArrayList<Vector3f> normals) {
+        ensureLists();
+        this.normals = normals;
+    }
+
+    public void setPolygons(ArrayList<Polygon> polygons) {
+        ensureLists();
+        this.polygons = polygons;
+    }
+
+    /**
+     * Число вершин без заполнения списков
+     */
+    public int getVertexCount() {
+        return listsPending ? compiledMesh.getVertexCount() : vertices.size();
+    }
+
+    /**
+     * Число полигонов без заполнения списков
+     */
+    public int getPolygonCount() {
+        return listsPending ? compiledMesh.getPolygonCount() : polygons.size();
+    }
+
+    /**
+     * Отмечает, что вершины, нормали или полигоны модели изменились.
+     * Нужно вызывать после правки содержимого списков напрямую
+     */
+    public void markModified() {
+        version++;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Сетка модели в виде массивов для отрисовки. Собирается при первом обращении
+     * после правки модели; замена или изменение размера списков обнаруживается автоматически
+     */
+    public CompiledMesh getCompiledMesh() {
+        if (listsPending) {
+            return compiledMesh;
+        }
+        if (compiledMesh == null || !compiledMesh.isUpToDate(this, version)) {
+            compiledMesh = CompiledMesh.compile(this, version);
+        }
+        return compiledMesh;
+    }
+
+    /**
+     * Сетка, уже собранная по текущему состоянию модели без обхода списков (см. {@link ModelProcessor#triangulate})
+     */
+    void setCompiledMesh(CompiledMesh mesh) {
+        compiledMesh = mesh;
+    }
+
+    /**
+     * Заменяет нормали модели, созданной из сетки, прямо в сетке, не заполняя списки
+     *
+     * @return false, если списки уже заполнены и нормали нужно записать в них
+     */
+    boolean replaceNormals(float[] normals, int[] cornerNormalIndices) {
+        if (!listsPending) {
+            return false;
+        }
+        // Смежность зависит только от полигонов и остаётся действительной
+        boolean adjacencyValid = adjacency != null && adjacencyVersion == version;
+        version++;
+        if (adjacencyValid) {
+            adjacencyVersion = version;
+        }
+        compiledMesh = compiledMesh.withNormals(version, normals, cornerNormalIndices);
+        return true;
+    }
+
+    /**
+     * Смежность вершин и полигонов для текущего состояния модели; пересобирается после правки
+     */
+    public VertexAdjacency getVertexAdjacency() {
+        CompiledMesh mesh = getCompiledMesh();
+        if (adjacency == null || adjacencyVersion != mesh.getVersion() || adjacency.getVertexCount() != mesh.getVertexCount()) {
+            adjacency = VertexAdjacency.build(mesh);
+            adjacencyVersion = mesh.getVersion();
+        }
+        return adjacency;
+    }
+
+    void setMaintainedNormals(NormalCalculator.Weighting weighting) {
+        maintainedNormals = weighting;
+        vertexPolygons = null;
+    }
+
+    /**
+     * Полигоны при вершинах, если нормали поддерживаются и с прошлого удаления модель не правили иначе
+     */
+    private VertexPolygons trackedVertexPolygons() {
+        if (maintainedNormals == null || vertexPolygons == null || vertexPolygonsVersion != version
+                || vertexPolygons.getVertexCount() != vertices.size()) {
+            return null;
+        }
+        return vertexPolygons;
+    }
+
+    /**
+     * Пересчитывает поддерживаемые нормали указанных вершин после удаления по спискам модели,
+     * без сборки сетки
+     *
+     * @param tracked полигоны при вершинах, обновлённые при удалении, или null - собрать заново
+     */
+    private void updateNormals(BitSet touched, VertexPolygons tracked) {
+        if (maintainedNormals == null) {
+            return;
+        }
+        if (normals.size() != vertices.size()) {
+            // Нормали правили напрямую: по месту их уже не обновить
+            maintainedNormals = null;
+            vertexPolygons = null;
+            return;
+        }
+        vertexPolygons = tracked != null ? tracked : VertexPolygons.build(this);
+        NormalCalculator.update(this, maintainedNormals, vertexPolygons, touched.stream().toArray());
+        vertexPolygonsVersion = version;
+    }
+
+    /**
+     * Модель по готовой сетке. Сетка сразу используется для отрисовки без повторной сборки,
+     * а списки модели заполняются из её массивов, только когда они понадобятся (для правки или записи)
+     */
+    public static Model fromCompiledMesh(CompiledMesh mesh) {
+        Model model = new Model();
+        model.compiledMesh = mesh.bind(model, model.version);
+        model.listsPending = true;
+        return model;
+    }
+
+    /**
+     * Заполняет списки модели из массивов сетки, по которой она создана
+     */
+    private void ensureLists() {
+        if (!listsPending) {
+            return;
+        }
+        listsPending = false;
+        CompiledMesh mesh = compiledMesh;
+        float[] positions = mesh.getPositions();
+        vertices.ensureCapacity(mesh.getVertexCount());
+        for (int i = 0; i < positions.length; i += 3) {
+            vertices.add(new Vector3f(positions[i], positions[i + 1], positions[i + 2]));
+        }
+        float[] meshNormals = mesh.getNormals();
+        normals.ensureCapacity(mesh.getNormalCount());
+        for (int i = 0; i < meshNormals.length; i += 3) {
+            normals.add(new Vector3f(meshNormals[i], meshNormals[i + 1], meshNormals[i + 2]));
+        }
+        float[] texCoords = mesh.getTexCoords();
+        textureVertices.ensureCapacity(mesh.getTexCoordCount());
+        for (int i = 0; i < texCoords.length; i += 2) {
+            textureVertices.add(new Vector2f(texCoords[i], texCoords[i + 1]));
+        }
+
+        int[] offsets = mesh.getPolygonOffsets();
+        int[] vertexIndices = mesh.getPolygonVertexIndices();
+        int[] normalIndices = mesh.getPolygonNormalIndices();
+        int[] textureIndices = mesh.getPolygonTexCoordIndices();
+        polygons.ensureCapacity(mesh.getPolygonCount());
+        for (int i = 0; i < mesh.getPolygonCount(); i++) {
+            int start = offsets[i];
+            int end = offsets[i + 1];
+            Polygon polygon = new Polygon();
+            polygon.setVertexIndices(indexList(vertexIndices, start, end));
+            // Атрибут либо задан для всех углов полигона, либо отсутствует (-1)
+            if (end > start && normalIndices[start] >= 0) {
+                polygon.setNormalIndices(indexList(normalIndices, start, end));
+            }
+            if (end > start && textureIndices[start] >= 0) {
+                polygon.setTextureVertexIndices(indexList(textureIndices, start, end));
+            }
+            polygons.add(polygon);
+        }
+        // Сетка привязана к этим же спискам в fromCompiledMesh и после заполнения остаётся актуальной:
+        // на неё ссылаются уровни детализации, пересобирается она только после правки
+    }
+
+    private static ArrayList<Integer> indexList(int[] indices, int start, int end) {
+        ArrayList<Integer> list = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            list.add(indices[i]);
+        }
+        return list;
+    }
+
     public Matrix4f getModelMatrix() {
         Matrix4f s = Matrix4f.scale(scale, scale, scale);
         Matrix4f rx = Matrix4f.rotationX(rotation.x);
@@ -28,44 +270,354 @@ public class Model {
     }
 
     public void removeVertex(int index) {
+        ensureLists();
         if (index < 0 || index >= vertices.size()) {
             return;
         }
-        vertices.remove(index);
-        
-        // Обновляем индексы в полигонах
-        for (Polygon polygon : polygons) {
+        removeVertices(new int[] {index});
+    }
+
+    /**
+     * Удаляет вершины с указанными индексами; индексы вне диапазона пропускаются
+     */
+    public void removeVertices(int[] indices) {
+        ensureLists();
+        BitSet removed = new BitSet(vertices.size());
+        for (int index : indices) {
+            if (index >= 0 && index < vertices.size()) {
+                removed.set(index);
+            }
+        }
+        removeVertices(removed);
+    }
+
+    /**
+     * Удаляет отмеченные вершины за один проход: строится таблица старый индекс -> новый, по ней
+     * переписываются индексы полигонов, а углы удалённых вершин убираются вместе с их текстурными
+     * координатами и нормалями. Полигоны, у которых осталось меньше трёх вершин, удаляются.
+     * Текстурные координаты и нормали, на которые ссылались только удалённые углы, тоже удаляются
+     */
+    public void removeVertices(BitSet removed) {
+        ensureLists();
+        int vertexCount = vertices.size();
+        if (removed.nextSetBit(0) < 0 || removed.nextSetBit(0) >= vertexCount) {
+            return;
+        }
+        VertexPolygons tracked = trackedVertexPolygons();
+        int[] vertexRemap = compact(vertices, removed);
+        if (tracked != null) {
+            tracked.removeVertices(vertexRemap, vertices.size());
+        }
+        // Нормали разложены по вершинам: удаляются по той же таблице
+        boolean normalsByVertex = maintainedNormals != null && normals.size() == vertexCount;
+
+        // Ссылки на текстурные координаты и нормали до и после удаления углов
+        BitSet textureUsedBefore = new BitSet(textureVertices.size());
+        BitSet textureUsedAfter = new BitSet(textureVertices.size());
+        BitSet normalUsedBefore = new BitSet(normals.size());
+        BitSet normalUsedAfter = new BitSet(normals.size());
+        // Вершины полигонов, потерявших углы (в новой нумерации): их нормали меняются
+        BitSet touched = new BitSet();
+
+        int kept = 0;
+        for (int i = 0; i < polygons.size(); i++) {
+            Polygon polygon = polygons.get(i);
             ArrayList<Integer> vertexIndices = polygon.getVertexIndices();
-            for (int i = vertexIndices.size() - 1; i >= 0; i--) {
-                int vertexIndex = vertexIndices.get(i);
-                if (vertexIndex == index) {
-                    vertexIndices.remove(i);
-                } else if (vertexIndex > index) {
-                    vertexIndices.set(i, vertexIndex - 1);
+            ArrayList<Integer> textureIndices = polygon.getTextureVertexIndices();
+            ArrayList<Integer> normalIndices = polygon.getNormalIndices();
+            int size = vertexIndices.size();
+            // Атрибуты учитываются, только если они заданы для каждого угла
+            boolean hasTexture = textureIndices.size() == size;
+            boolean hasNormals = normalIndices.size() == size && !normalsByVertex;
+
+            int write = 0;
+            for (int j = 0; j < size; j++) {
+                int newIndex = vertexRemap[vertexIndices.get(j)];
+                if (hasTexture) {
+                    textureUsedBefore.set(textureIndices.get(j));
+                }
+                if (hasNormals) {
+                    normalUsedBefore.set(normalIndices.get(j));
+                }
+                if (newIndex < 0) {
+                    continue;
+                }
+                vertexIndices.set(write, newIndex);
+                if (hasTexture) {
+                    textureIndices.set(write, textureIndices.get(j));
+                }
+                if (hasNormals) {
+                    normalIndices.set(write, normalIndices.get(j));
+                }
+                write++;
+            }
+
+            if (write < size) {
+                truncate(vertexIndices, write);
+                if (hasTexture) {
+                    truncate(textureIndices, write);
+                }
+                if (hasNormals) {
+                    truncate(normalIndices, write);
+                }
+                for (int j = 0; j < write; j++) {
+                    touched.set(vertexIndices.get(j));
+                }
+            }
+            if (normalsByVertex) {
+                polygon.setNormalIndices(new ArrayList<>(vertexIndices));
+            }
+            // Углы вырожденного полигона удаляются вместе с ним и на атрибуты уже не ссылаются
+            if (write < 3 && tracked != null) {
+                for (int j = 0; j < write; j++) {
+                    tracked.remove(vertexIndices.get(j), polygon);
+                }
+            }
+            if (write >= 3) {
+                polygons.set(kept++, polygon);
+                for (int j = 0; j < write; j++) {
+                    if (hasTexture) {
+                        textureUsedAfter.set(textureIndices.get(j));
+                    }
+                    if (hasNormals) {
+                        normalUsedAfter.set(normalIndices.get(j));
+                    }
+                }
+            }
+        }
+        truncate(polygons, kept);
+
+        // Второй проход только по ссылкам на атрибуты, если какие-то атрибуты удаляются
+        textureUsedBefore.andNot(textureUsedAfter);
+        normalUsedBefore.andNot(normalUsedAfter);
+        int[] textureRemap = textureUsedBefore.isEmpty() ? null : compact(textureVertices, textureUsedBefore);
+        int[] normalRemap = normalsByVertex ? compact(normals, removed)
+                : normalUsedBefore.isEmpty() ? null : compact(normals, normalUsedBefore);
+        if (textureRemap != null || (normalRemap != null && !normalsByVertex)) {
+            for (Polygon polygon : polygons) {
+                int size = polygon.getVertexIndices().size();
+                if (textureRemap != null && polygon.getTextureVertexIndices().size() == size) {
+                    remap(polygon.getTextureVertexIndices(), textureRemap);
+                }
+                if (normalRemap != null && !normalsByVertex && polygon.getNormalIndices().size() == size) {
+                    remap(polygon.getNormalIndices(), normalRemap);
                 }
             }
         }
-        
-        // Удаляем полигоны с менее чем 3 вершинами
-        polygons.removeIf(p -> p.getVertexIndices().size() < 3);
+
+        markModified();
+        updateNormals(touched, tracked);
+    }
+
+    /**
+     * Сливает вершины: вершина v заменяется вершиной target[v], где target[v] <= v и
+     * target[target[v]] == target[v]. Оставшиеся вершины сдвигаются к началу списка, индексы
+     * полигонов переписываются; углы, совпавшие с соседним углом того же полигона, удаляются
+     * вместе с атрибутами, а полигоны меньше чем из трёх вершин - целиком.
+     * Нормали, разложенные по вершинам, пересчитываются заново
+     */
+    public void mergeVertices(int[] target) {
+        ensureLists();
+        int vertexCount = vertices.size();
+        int[] vertexRemap = new int[vertexCount];
+        int kept = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            if (target[v] == v) {
+                vertexRemap[v] = kept;
+                vertices.set(kept++, vertices.get(v));
+            } else {
+                vertexRemap[v] = vertexRemap[target[v]];
+            }
+        }
+        if (kept == vertexCount) {
+            return;
+        }
+        truncate(vertices, kept);
+        boolean normalsByVertex = maintainedNormals != null && normals.size() == vertexCount;
+
+        int keptPolygons = 0;
+        for (int i = 0; i < polygons.size(); i++) {
+            Polygon polygon = polygons.get(i);
+            ArrayList<Integer> vertexIndices = polygon.getVertexIndices();
+            ArrayList<Integer> textureIndices = polygon.getTextureVertexIndices();
+            ArrayList<Integer> normalIndices = polygon.getNormalIndices();
+            int size = vertexIndices.size();
+            boolean hasTexture = textureIndices.size() == size;
+            boolean hasNormals = normalIndices.size() == size;
+
+            int write = 0;
+            for (int j = 0; j < size; j++) {
+                int newIndex = vertexRemap[vertexIndices.get(j)];
+                if (write > 0 && vertexIndices.get(write - 1) == newIndex) {
+                    continue;
+                }
+                vertexIndices.set(write, newIndex);
+                if (hasTexture) {
+                    textureIndices.set(write, textureIndices.get(j));
+                }
+                if (hasNormals) {
+                    normalIndices.set(write, normalIndices.get(j));
+                }
+                write++;
+            }
+            // Последний угол мог совпасть с первым
+            if (write > 1 && vertexIndices.get(write - 1).equals(vertexIndices.get(0))) {
+                write--;
+            }
+            truncate(vertexIndices, write);
+            if (hasTexture) {
+                truncate(textureIndices, write);
+            }
+            if (hasNormals) {
+                truncate(normalIndices, write);
+            }
+            if (write >= 3) {
+                polygons.set(keptPolygons++, polygon);
+            }
+        }
+        truncate(polygons, keptPolygons);
+        markModified();
+
+        if (normalsByVertex) {
+            NormalCalculator.apply(this, maintainedNormals, NormalCalculator.NO_CREASE);
+        }
+    }
+
+    /**
+     * Переставляет полигоны в заданном порядке и перенумеровывает вершины, текстурные координаты
+     * и нормали в порядке первого использования, чтобы соседние полигоны ссылались на соседние
+     * элементы массивов. Элементы, на которые полигоны не ссылаются, уходят в конец
+     *
+     * @param order order[i] - прежний индекс полигона, который станет i-м
+     */
+    public void reorderPolygons(int[] order) {
+        ensureLists();
+        ArrayList<Polygon> reordered = new ArrayList<>(polygons.size());
+        for (int index : order) {
+            reordered.add(polygons.get(index));
+        }
+        polygons.clear();
+        polygons.addAll(reordered);
+
+        int[] vertexRemap = firstUseOrder(vertices.size(), Polygon::getVertexIndices);
+        int[] textureRemap = firstUseOrder(textureVertices.size(), Polygon::getTextureVertexIndices);
+        int[] normalRemap = firstUseOrder(normals.size(), Polygon::getNormalIndices);
+        permute(vertices, vertexRemap);
+        permute(textureVertices, textureRemap);
+        permute(normals, normalRemap);
+        for (Polygon polygon : polygons) {
+            remap(polygon.getVertexIndices(), vertexRemap);
+            remap(polygon.getTextureVertexIndices(), textureRemap);
+            remap(polygon.getNormalIndices(), normalRemap);
+        }
+        markModified();
+    }
+
+    /**
+     * Новые индексы элементов в порядке первой ссылки из полигонов
+     */
+    private int[] firstUseOrder(int count, java.util.function.Function<Polygon, ArrayList<Integer>> references) {
+        int[] remap = new int[count];
+        Arrays.fill(remap, -1);
+        int next = 0;
+        for (Polygon polygon : polygons) {
+            for (int index : references.apply(polygon)) {
+                if (remap[index] < 0) {
+                    remap[index] = next++;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (remap[i] < 0) {
+                remap[i] = next++;
+            }
+        }
+        return remap;
+    }
+
+    private static <T> void permute(ArrayList<T> list, int[] remap) {
+        ArrayList<T> copy = new ArrayList<>(list);
+        for (int i = 0; i < remap.length; i++) {
+            list.set(remap[i], copy.get(i));
+        }
     }
 
     public void removePolygon(int index) {
+        ensureLists();
         if (index < 0 || index >= polygons.size()) {
             return;
         }
-        polygons.remove(index);
+        BitSet removed = new BitSet();
+        removed.set(index);
+        removePolygons(removed);
     }
 
     public void removePolygons(ArrayList<Integer> indices) {
-        // Сортируем по убыванию, чтобы удаление не влияло на индексы
-        ArrayList<Integer> sortedIndices = new ArrayList<>(indices);
-        sortedIndices.sort(Collections.reverseOrder());
-        
-        for (int index : sortedIndices) {
+        ensureLists();
+        BitSet removed = new BitSet(polygons.size());
+        for (int index : indices) {
             if (index >= 0 && index < polygons.size()) {
-                polygons.remove(index);
+                removed.set(index);
+            }
+        }
+        removePolygons(removed);
+    }
+
+    /**
+     * Удаляет отмеченные полигоны одним проходом со сдвигом оставшихся
+     */
+    public void removePolygons(BitSet removed) {
+        ensureLists();
+        VertexPolygons tracked = trackedVertexPolygons();
+        BitSet touched = new BitSet();
+        int kept = 0;
+        for (int i = 0; i < polygons.size(); i++) {
+            Polygon polygon = polygons.get(i);
+            if (removed.get(i)) {
+                for (int vertexIndex : polygon.getVertexIndices()) {
+                    touched.set(vertexIndex);
+                    if (tracked != null) {
+                        tracked.remove(vertexIndex, polygon);
+                    }
+                }
+            } else {
+                polygons.set(kept++, polygon);
+            }
+        }
+        truncate(polygons, kept);
+        markModified();
+        updateNormals(touched, tracked);
+    }
+
+    /**
+     * Сдвигает неотмеченные элементы списка к началу и отрезает хвост
+     *
+     * @return таблица старый индекс -> новый, -1 для удалённых
+     */
+    private static <T> int[] compact(ArrayList<T> list, BitSet removed) {
+        int[] remap = new int[list.size()];
+        int kept = 0;
+        for (int i = 0; i < list.size(); i++) {
+            if (removed.get(i)) {
+                remap[i] = -1;
+            } else {
+                remap[i] = kept;
+                list.set(kept++, list.get(i));
             }
         }
+        truncate(list, kept);
+        return remap;
+    }
+
+    private static void truncate(ArrayList<?> list, int size) {
+        if (size < list.size()) {
+            list.subList(size, list.size()).clear();
+        }
+    }
+
+    private static void remap(ArrayList<Integer> indices, int[] remap) {
+        for (int j = 0; j < indices.size(); j++) {
+            indices.set(j, remap[indices.get(j)]);
+        }
     }
 }
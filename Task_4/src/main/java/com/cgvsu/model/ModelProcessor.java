@@ -1,122 +1,149 @@
 package com.cgvsu.model;
 
-import com.cgvsu.math.Vector3f;
 import java.util.ArrayList;
 
 public class ModelProcessor {
 
+    /**
+     * Заменяет полигоны модели треугольниками сетки для отрисовки: выпуклые разбиты веером,
+     * невыпуклые - отсечением ушей (см. {@link Triangulator}).
+     * Отрисовка, запись и уровни детализации и так берут треугольники из {@link CompiledMesh},
+     * поэтому при загрузке модель не триангулируется; метод остаётся для явной команды пользователя.
+     * Сетка не собирается заново: её треугольники становятся полигонами как есть
+     */
     public static void triangulate(Model model) {
-        ArrayList<Polygon> newPolygons = new ArrayList<>();
-        for (Polygon polygon : model.polygons) {
-            ArrayList<Integer> vertexIndices = polygon.getVertexIndices();
-            ArrayList<Integer> textureVertexIndices = polygon.getTextureVertexIndices();
-            ArrayList<Integer> normalIndices = polygon.getNormalIndices();
-
-            if (vertexIndices.size() == 3) {
+        CompiledMesh mesh = model.getCompiledMesh();
+        int[] triangleOffsets = mesh.getPolygonTriangleOffsets();
+        int[] vertexIndices = mesh.getTriangleVertexIndices();
+        int[] textureIndices = mesh.getTriangleTexCoordIndices();
+        int[] normalIndices = mesh.getTriangleNormalIndices();
+
+        ArrayList<Polygon> polygons = model.getPolygons();
+        ArrayList<Polygon> newPolygons = new ArrayList<>(mesh.getTriangleCount());
+        for (int i = 0; i < polygons.size(); i++) {
+            Polygon polygon = polygons.get(i);
+            if (polygon.getVertexIndices().size() == 3) {
                 // Уже треугольник
                 newPolygons.add(polygon);
-            } else if (vertexIndices.size() > 3) {
-                // Триангулируем
-                for (int i = 1; i < vertexIndices.size() - 1; i++) {
-                    Polygon triangle = new Polygon();
-                    ArrayList<Integer> triVertexIndices = new ArrayList<>();
-                    triVertexIndices.add(vertexIndices.get(0));
-                    triVertexIndices.add(vertexIndices.get(i));
-                    triVertexIndices.add(vertexIndices.get(i + 1));
-                    triangle.setVertexIndices(triVertexIndices);
-
-                    if (!textureVertexIndices.isEmpty()) {
-                        ArrayList<Integer> triTextureIndices = new ArrayList<>();
-                        triTextureIndices.add(textureVertexIndices.get(0));
-                        triTextureIndices.add(textureVertexIndices.get(i));
-                        triTextureIndices.add(textureVertexIndices.get(i + 1));
-                        triangle.setTextureVertexIndices(triTextureIndices);
-                    }
-
-                    if (!normalIndices.isEmpty()) {
-                        ArrayList<Integer> triNormalIndices = new ArrayList<>();
-                        triNormalIndices.add(normalIndices.get(0));
-                        triNormalIndices.add(normalIndices.get(i));
-                        triNormalIndices.add(normalIndices.get(i + 1));
-                        triangle.setNormalIndices(triNormalIndices);
-                    }
-
-                    newPolygons.add(triangle);
+                continue;
+            }
+            for (int t = triangleOffsets[i] * 3; t < triangleOffsets[i + 1] * 3; t += 3) {
+                Polygon triangle = new Polygon();
+                triangle.setVertexIndices(triple(vertexIndices, t));
+                // -1 значит, что полигон не задаёт атрибут для каждого угла
+                if (textureIndices[t] >= 0) {
+                    triangle.setTextureVertexIndices(triple(textureIndices, t));
+                }
+                if (normalIndices[t] >= 0) {
+                    triangle.setNormalIndices(triple(normalIndices, t));
                 }
+                newPolygons.add(triangle);
             }
         }
-        model.polygons = newPolygons;
+        model.setPolygons(newPolygons);
+        model.markModified();
+        model.setCompiledMesh(mesh.asTriangles(model, model.getVersion()));
     }
 
-    public static void calculateNormals(Model model) {
-        // Очищаем существующие нормали
-        model.normals.clear();
-
-        // Вычисляем нормали для каждого полигона (грани)
-        ArrayList<Vector3f> faceNormals = new ArrayList<>();
-        for (Polygon polygon : model.polygons) {
-            Vector3f normal = calculateFaceNormal(polygon, model.vertices);
-            faceNormals.add(normal);
-        }
-
-        // Для каждой вершины собираем нормали граней
-        ArrayList<ArrayList<Vector3f>> vertexNormals = new ArrayList<>();
-        for (int i = 0; i < model.vertices.size(); i++) {
-            vertexNormals.add(new ArrayList<>());
-        }
-
-        for (int i = 0; i < model.polygons.size(); i++) {
-            Polygon polygon = model.polygons.get(i);
-            Vector3f faceNormal = faceNormals.get(i);
-            for (Integer vertexIndex : polygon.getVertexIndices()) {
-                vertexNormals.get(vertexIndex).add(faceNormal);
-            }
-        }
-
-        // Усредняем нормали для каждой вершины
-        for (ArrayList<Vector3f> normals : vertexNormals) {
-            Vector3f averageNormal = averageNormals(normals);
-            model.normals.add(averageNormal);
-        }
-
-        // Обновляем индексы нормалей в полигонах
-        for (Polygon polygon : model.polygons) {
-            ArrayList<Integer> normalIndices = new ArrayList<>();
-            for (Integer vertexIndex : polygon.getVertexIndices()) {
-                normalIndices.add(vertexIndex); // Индекс нормали совпадает с индексом вершины
-            }
-            polygon.setNormalIndices(normalIndices);
+    /**
+     * Индексный буфер треугольников модели: для каждого угла тройка
+     * (вершина, текстурная вершина, нормаль), отсутствующий атрибут равен -1
+     */
+    public static int[] triangleIndexBuffer(Model model) {
+        CompiledMesh mesh = model.getCompiledMesh();
+        int[] vertexIndices = mesh.getTriangleVertexIndices();
+        int[] textureIndices = mesh.getTriangleTexCoordIndices();
+        int[] normalIndices = mesh.getTriangleNormalIndices();
+
+        int[] result = new int[vertexIndices.length * 3];
+        for (int i = 0, o = 0; i < vertexIndices.length; i++, o += 3) {
+            result[o] = vertexIndices[i];
+            result[o + 1] = textureIndices[i];
+            result[o + 2] = normalIndices[i];
         }
+        return result;
     }
 
-    private static Vector3f calculateFaceNormal(Polygon polygon, ArrayList<Vector3f> vertices) {
-        ArrayList<Integer> vertexIndices = polygon.getVertexIndices();
-        if (vertexIndices.size() < 3) {
-            return new Vector3f(0, 0, 0);
-        }
+    private static ArrayList<Integer> triple(int[] indices, int offset) {
+        ArrayList<Integer> result = new ArrayList<>(3);
+        result.add(indices[offset]);
+        result.add(indices[offset + 1]);
+        result.add(indices[offset + 2]);
+        return result;
+    }
 
-        Vector3f v0 = vertices.get(vertexIndices.get(0));
-        Vector3f v1 = vertices.get(vertexIndices.get(1));
-        Vector3f v2 = vertices.get(vertexIndices.get(2));
+    /**
+     * Гладкие нормали вершин: индекс нормали совпадает с индексом вершины
+     */
+    public static void calculateNormals(Model model) {
+        calculateNormals(model, NormalCalculator.Weighting.UNIFORM, NormalCalculator.NO_CREASE);
+    }
 
-        Vector3f edge1 = Vector3f.subtract(v1, v0);
-        Vector3f edge2 = Vector3f.subtract(v2, v0);
+    /**
+     * Нормали вершин с выбранным весом граней; на рёбрах острее creaseAngle (в радианах) нормали разделяются
+     */
+    public static void calculateNormals(Model model, NormalCalculator.Weighting weighting, float creaseAngle) {
+        NormalCalculator.apply(model, weighting, creaseAngle);
+    }
 
-        Vector3f normal = Vector3f.cross(edge1, edge2);
-        normal.normalize();
-        return normal;
+    /**
+     * Сливает вершины, лежащие не дальше tolerance друг от друга (см. {@link VertexWelder})
+     *
+     * @return сколько вершин удалено
+     */
+    public static int weldVertices(Model model, float tolerance) {
+        int before = model.getVertices().size();
+        model.mergeVertices(VertexWelder.findRepresentatives(model.getCompiledMesh().getPositions(), tolerance));
+        return before - model.getVertices().size();
     }
 
-    private static Vector3f averageNormals(ArrayList<Vector3f> normals) {
-        if (normals.isEmpty()) {
-            return new Vector3f(0, 0, 0);
+    /**
+     * Переупорядочивает полигоны для кэша вершин и меньшей перерисовки (см. {@link MeshOptimizer}),
+     * затем перенумеровывает вершины в порядке использования. Треугольники одного полигона
+     * неразделимы, поэтому полигоны ставятся по первому своему треугольнику в найденном порядке
+     *
+     * @return ACMR и перерисовка до и после
+     */
+    public static MeshOptimizer.Report optimizeMesh(Model model) {
+        CompiledMesh mesh = model.getCompiledMesh();
+        int[] indices = mesh.getTriangleVertexIndices();
+        float[] positions = mesh.getPositions();
+        float acmrBefore = MeshOptimizer.acmr(indices, mesh.getVertexCount());
+        float overdrawBefore = MeshOptimizer.overdraw(indices, positions);
+
+        int[] order = MeshOptimizer.optimizeVertexCache(indices, mesh.getVertexCount());
+        order = MeshOptimizer.optimizeOverdraw(indices, order, positions, MeshOptimizer.DEFAULT_OVERDRAW_THRESHOLD);
+
+        int[] triangleOffsets = mesh.getPolygonTriangleOffsets();
+        int polygonCount = mesh.getPolygonCount();
+        int[] trianglePolygons = new int[mesh.getTriangleCount()];
+        for (int i = 0; i < polygonCount; i++) {
+            for (int t = triangleOffsets[i]; t < triangleOffsets[i + 1]; t++) {
+                trianglePolygons[t] = i;
+            }
         }
-
-        Vector3f sum = new Vector3f(0, 0, 0);
-        for (Vector3f normal : normals) {
-            sum = Vector3f.add(sum, normal);
+        boolean[] placed = new boolean[polygonCount];
+        int[] polygonOrder = new int[polygonCount];
+        int next = 0;
+        for (int t : order) {
+            int polygon = trianglePolygons[t];
+            if (!placed[polygon]) {
+                placed[polygon] = true;
+                polygonOrder[next++] = polygon;
+            }
         }
-        sum.normalize();
-        return sum;
+        // Полигоны без треугольников (меньше трёх вершин) - в конец
+        for (int i = 0; i < polygonCount; i++) {
+            if (!placed[i]) {
+                polygonOrder[next++] = i;
+            }
+        }
+        model.reorderPolygons(polygonOrder);
+
+        CompiledMesh optimized = model.getCompiledMesh();
+        return new MeshOptimizer.Report(acmrBefore,
+                MeshOptimizer.acmr(optimized.getTriangleVertexIndices(), optimized.getVertexCount()),
+                overdrawBefore,
+                MeshOptimizer.overdraw(optimized.getTriangleVertexIndices(), optimized.getPositions()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,376 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Нормали вершин по массивам сетки без объектов на каждое сложение.
+ * Нормали граней и веса углов считаются параллельно по диапазонам полигонов, затем для каждой
+ * вершины складываются вклады её углов (см. {@link VertexAdjacency}).
+ * Каждая вершина суммируется одним потоком, поэтому результат не зависит от числа потоков.
+ *
+ * Если задан угол сгиба, нормаль угла усредняется только по граням, отклонённым от его грани
+ * не больше чем на этот угол; у вершины на ребре сгиба получается несколько нормалей.
+ */
+public final class NormalCalculator {
+
+    /**
+     * Вес вклада грани в нормаль вершины
+     */
+    public enum Weighting {
+        /** Все грани одинаково */
+        UNIFORM,
+        /** Пропорционально площади грани */
+        AREA,
+        /** Пропорционально углу грани при вершине */
+        ANGLE
+    }
+
+    /** Угол сгиба, при котором нормали не разделяются */
+    public static final float NO_CREASE = (float) Math.PI;
+
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    private static final int ITEMS_PER_TASK = 1 << 12;
+
+    private NormalCalculator() {
+    }
+
+    /**
+     * Результат расчёта: нормали (по три числа) и индекс нормали для каждого угла сетки
+     */
+    public static final class Result {
+        private final float[] normals;
+        private final int[] cornerNormalIndices;
+
+        Result(float[] normals, int[] cornerNormalIndices) {
+            this.normals = normals;
+            this.cornerNormalIndices = cornerNormalIndices;
+        }
+
+        public float[] getNormals() {
+            return normals;
+        }
+
+        public int[] getCornerNormalIndices() {
+            return cornerNormalIndices;
+        }
+    }
+
+    /**
+     * Пересчитывает нормали модели и записывает их в списки модели. У модели из готовой сетки,
+     * списки которой ещё не заполнены, нормали заменяются прямо в сетке
+     *
+     * @param creaseAngle угол сгиба в радианах; {@link #NO_CREASE} - одна нормаль на вершину
+     */
+    public static void apply(Model model, Weighting weighting, float creaseAngle) {
+        CompiledMesh mesh = model.getCompiledMesh();
+        Result result = calculate(mesh.getPositions(), mesh.getPolygonOffsets(), mesh.getPolygonVertexIndices(),
+                model.getVertexAdjacency(), weighting, creaseAngle);
+        if (!model.replaceNormals(result.normals, result.cornerNormalIndices)) {
+            writeToLists(model, mesh, result);
+        }
+        // Нормали по вершинам можно дальше обновлять по месту после удаления вершин и полигонов
+        model.setMaintainedNormals(creaseAngle < NO_CREASE ? null : weighting);
+    }
+
+    private static void writeToLists(Model model, CompiledMesh mesh, Result result) {
+        float[] normals = result.normals;
+        model.getNormals().clear();
+        model.getNormals().ensureCapacity(normals.length / 3);
+        for (int i = 0; i < normals.length; i += 3) {
+            model.getNormals().add(new Vector3f(normals[i], normals[i + 1], normals[i + 2]));
+        }
+
+        int[] offsets = mesh.getPolygonOffsets();
+        int[] indices = result.cornerNormalIndices;
+        for (int i = 0; i < model.getPolygons().size(); i++) {
+            ArrayList<Integer> normalIndices = new ArrayList<>(offsets[i + 1] - offsets[i]);
+            for (int corner = offsets[i]; corner < offsets[i + 1]; corner++) {
+                normalIndices.add(indices[corner]);
+            }
+            model.getPolygons().get(i).setNormalIndices(normalIndices);
+        }
+        model.markModified();
+    }
+
+    /**
+     * Пересчитывает нормали только указанных вершин по смежным им полигонам. Нормали модели
+     * должны быть разложены по вершинам (индекс нормали равен индексу вершины), как после
+     * {@link #apply} без угла сгиба. Считается по спискам модели, сетка не собирается.
+     * Полигоны при вершинах модель поддерживает сама при удалении, поэтому обновление обходит
+     * только полигоны затронутых вершин, а не всю модель
+     */
+    static void update(Model model, Weighting weighting, VertexPolygons vertexPolygons, int[] vertices) {
+        float[] face = new float[3];
+        float[] corner = new float[9];
+        for (int v : vertices) {
+            float x = 0, y = 0, z = 0;
+            for (int k = 0; k < vertexPolygons.getPolygonCount(v); k++) {
+                ArrayList<Integer> indices = vertexPolygons.getPolygon(v, k).getVertexIndices();
+                double length = faceNormal(model.getVertices(), indices, face);
+                int size = indices.size();
+                for (int j = 0; j < size; j++) {
+                    if (indices.get(j) != v) {
+                        continue;
+                    }
+                    float weight = 1f;
+                    if (weighting == Weighting.AREA) {
+                        weight = (float) (length / 2);
+                    } else if (weighting == Weighting.ANGLE) {
+                        load(model.getVertices().get(indices.get((j + size - 1) % size)), corner, 0);
+                        load(model.getVertices().get(v), corner, 3);
+                        load(model.getVertices().get(indices.get((j + 1) % size)), corner, 6);
+                        weight = (float) cornerAngle(corner, 0, 3, 6);
+                    }
+                    x += face[0] * weight;
+                    y += face[1] * weight;
+                    z += face[2] * weight;
+                }
+            }
+            store(face, 0, x, y, z);
+            model.getNormals().set(v, new Vector3f(face[0], face[1], face[2]));
+        }
+        model.markModified();
+    }
+
+    private static void load(Vector3f vertex, float[] target, int offset) {
+        target[offset] = vertex.x;
+        target[offset + 1] = vertex.y;
+        target[offset + 2] = vertex.z;
+    }
+
+    /**
+     * Единичная нормаль грани по Ньюэллу по спискам модели, как {@link #faceNormal(float[], int[], int[], int, float[], int)}
+     */
+    private static double faceNormal(List<Vector3f> vertices, List<Integer> indices, float[] target) {
+        int size = indices.size();
+        double nx = 0, ny = 0, nz = 0;
+        for (int j = 0; j < size; j++) {
+            Vector3f a = vertices.get(indices.get(j));
+            Vector3f b = vertices.get(indices.get((j + 1) % size));
+            nx += (a.y - b.y) * ((double) a.z + b.z);
+            ny += (a.z - b.z) * ((double) a.x + b.x);
+            nz += (a.x - b.x) * ((double) a.y + b.y);
+        }
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        double scale = length > 0 ? 1 / length : 0;
+        target[0] = (float) (nx * scale);
+        target[1] = (float) (ny * scale);
+        target[2] = (float) (nz * scale);
+        return length;
+    }
+
+    /**
+     * Нормали вершин по массивам сетки
+     *
+     * @param positions            координаты вершин, по три на вершину
+     * @param polygonOffsets       начала полигонов в массиве углов
+     * @param polygonVertexIndices индексы вершин углов
+     * @param creaseAngle          угол сгиба в радианах; {@link #NO_CREASE} - нормаль i принадлежит вершине i
+     */
+    public static Result calculate(float[] positions, int[] polygonOffsets, int[] polygonVertexIndices,
+                                   Weighting weighting, float creaseAngle) {
+        return calculate(positions, polygonOffsets, polygonVertexIndices,
+                VertexAdjacency.build(positions.length / 3, polygonOffsets, polygonVertexIndices), weighting, creaseAngle);
+    }
+
+    private static Result calculate(float[] positions, int[] polygonOffsets, int[] polygonVertexIndices,
+                                    VertexAdjacency adjacency, Weighting weighting, float creaseAngle) {
+        int vertexCount = positions.length / 3;
+        int polygonCount = polygonOffsets.length - 1;
+        int cornerCount = polygonVertexIndices.length;
+        int[] vertexOffsets = adjacency.getVertexOffsets();
+        int[] vertexCorners = adjacency.getVertexCorners();
+        int[] cornerPolygons = adjacency.getCornerPolygons();
+
+        float[] faceNormals = new float[polygonCount * 3];
+        float[] cornerWeights = new float[cornerCount];
+        forRanges(polygonCount, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                double length = faceNormal(positions, polygonOffsets, polygonVertexIndices, i, faceNormals, i * 3);
+                for (int corner = polygonOffsets[i]; corner < polygonOffsets[i + 1]; corner++) {
+                    cornerWeights[corner] = cornerWeight(positions, polygonOffsets, polygonVertexIndices, i, corner,
+                            weighting, length);
+                }
+            }
+        });
+
+        if (!(creaseAngle < NO_CREASE)) {
+            float[] normals = new float[vertexCount * 3];
+            forRanges(vertexCount, (from, to) -> {
+                for (int v = from; v < to; v++) {
+                    float x = 0, y = 0, z = 0;
+                    for (int k = vertexOffsets[v]; k < vertexOffsets[v + 1]; k++) {
+                        int corner = vertexCorners[k];
+                        int face = cornerPolygons[corner] * 3;
+                        float weight = cornerWeights[corner];
+                        x += faceNormals[face] * weight;
+                        y += faceNormals[face + 1] * weight;
+                        z += faceNormals[face + 2] * weight;
+                    }
+                    store(normals, v * 3, x, y, z);
+                }
+            });
+            return new Result(normals, polygonVertexIndices.clone());
+        }
+
+        float cosCrease = (float) Math.cos(creaseAngle);
+        float[] cornerNormals = new float[cornerCount * 3];
+        int[] uniqueCounts = new int[vertexCount + 1];
+        forRanges(vertexCount, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                int begin = vertexOffsets[v];
+                int end = vertexOffsets[v + 1];
+                int unique = 0;
+                for (int k = begin; k < end; k++) {
+                    int corner = vertexCorners[k];
+                    int face = cornerPolygons[corner] * 3;
+                    float x = 0, y = 0, z = 0;
+                    // Грани перебираются в одном порядке, поэтому углы одной гладкой группы
+                    // получают побитово одинаковые суммы
+                    for (int m = begin; m < end; m++) {
+                        int other = vertexCorners[m];
+                        int otherFace = cornerPolygons[other] * 3;
+                        float cos = faceNormals[face] * faceNormals[otherFace]
+                                + faceNormals[face + 1] * faceNormals[otherFace + 1]
+                                + faceNormals[face + 2] * faceNormals[otherFace + 2];
+                        if (other == corner || cos >= cosCrease) {
+                            float weight = cornerWeights[other];
+                            x += faceNormals[otherFace] * weight;
+                            y += faceNormals[otherFace + 1] * weight;
+                            z += faceNormals[otherFace + 2] * weight;
+                        }
+                    }
+                    store(cornerNormals, corner * 3, x, y, z);
+                    if (findEqual(cornerNormals, vertexCorners, begin, k, corner) < 0) {
+                        unique++;
+                    }
+                }
+                uniqueCounts[v + 1] = unique;
+            }
+        });
+
+        for (int v = 0; v < vertexCount; v++) {
+            uniqueCounts[v + 1] += uniqueCounts[v];
+        }
+        float[] normals = new float[uniqueCounts[vertexCount] * 3];
+        int[] cornerNormalIndices = new int[cornerCount];
+        forRanges(vertexCount, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                int next = uniqueCounts[v];
+                for (int k = vertexOffsets[v]; k < vertexOffsets[v + 1]; k++) {
+                    int corner = vertexCorners[k];
+                    int equal = findEqual(cornerNormals, vertexCorners, vertexOffsets[v], k, corner);
+                    if (equal >= 0) {
+                        cornerNormalIndices[corner] = cornerNormalIndices[equal];
+                    } else {
+                        System.arraycopy(cornerNormals, corner * 3, normals, next * 3, 3);
+                        cornerNormalIndices[corner] = next++;
+                    }
+                }
+            }
+        });
+        return new Result(normals, cornerNormalIndices);
+    }
+
+    /**
+     * Единичная нормаль грани по Ньюэллу
+     *
+     * @return длина ненормированной нормали, то есть удвоенная площадь плоской грани
+     */
+    private static double faceNormal(float[] positions, int[] polygonOffsets, int[] vertexIndices, int polygon,
+                                     float[] target, int offset) {
+        int start = polygonOffsets[polygon];
+        int size = polygonOffsets[polygon + 1] - start;
+        double nx = 0, ny = 0, nz = 0;
+        for (int j = 0; j < size; j++) {
+            int a = vertexIndices[start + j] * 3;
+            int b = vertexIndices[start + (j + 1) % size] * 3;
+            nx += (positions[a + 1] - positions[b + 1]) * ((double) positions[a + 2] + positions[b + 2]);
+            ny += (positions[a + 2] - positions[b + 2]) * ((double) positions[a] + positions[b]);
+            nz += (positions[a] - positions[b]) * ((double) positions[a + 1] + positions[b + 1]);
+        }
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        // Вырожденная грань не влияет на нормали вершин
+        double scale = length > 0 ? 1 / length : 0;
+        target[offset] = (float) (nx * scale);
+        target[offset + 1] = (float) (ny * scale);
+        target[offset + 2] = (float) (nz * scale);
+        return length;
+    }
+
+    private static float cornerWeight(float[] positions, int[] polygonOffsets, int[] vertexIndices, int polygon,
+                                      int corner, Weighting weighting, double faceLength) {
+        switch (weighting) {
+            case AREA:
+                return (float) (faceLength / 2);
+            case ANGLE:
+                int start = polygonOffsets[polygon];
+                int size = polygonOffsets[polygon + 1] - start;
+                int j = corner - start;
+                return (float) cornerAngle(positions, vertexIndices[start + (j + size - 1) % size] * 3,
+                        vertexIndices[corner] * 3, vertexIndices[start + (j + 1) % size] * 3);
+            default:
+                return 1f;
+        }
+    }
+
+    private static double cornerAngle(float[] positions, int previous, int vertex, int next) {
+        double ax = positions[previous] - positions[vertex];
+        double ay = positions[previous + 1] - positions[vertex + 1];
+        double az = positions[previous + 2] - positions[vertex + 2];
+        double bx = positions[next] - positions[vertex];
+        double by = positions[next + 1] - positions[vertex + 1];
+        double bz = positions[next + 2] - positions[vertex + 2];
+        double cx = ay * bz - az * by;
+        double cy = az * bx - ax * bz;
+        double cz = ax * by - ay * bx;
+        return Math.atan2(Math.sqrt(cx * cx + cy * cy + cz * cz), ax * bx + ay * by + az * bz);
+    }
+
+    private static void store(float[] target, int offset, float x, float y, float z) {
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length != 0) {
+            x /= length;
+            y /= length;
+            z /= length;
+        }
+        target[offset] = x;
+        target[offset + 1] = y;
+        target[offset + 2] = z;
+    }
+
+    /**
+     * Угол вершины из [begin, end) списка углов с той же нормалью, что у corner, или -1
+     */
+    private static int findEqual(float[] cornerNormals, int[] vertexCorners, int begin, int end, int corner) {
+        int c = corner * 3;
+        for (int k = begin; k < end; k++) {
+            int o = vertexCorners[k] * 3;
+            if (cornerNormals[o] == cornerNormals[c] && cornerNormals[o + 1] == cornerNormals[c + 1]
+                    && cornerNormals[o + 2] == cornerNormals[c + 2]) {
+                return vertexCorners[k];
+            }
+        }
+        return -1;
+    }
+
+    private interface RangeAction {
+        void run(int from, int to);
+    }
+
+    private static void forRanges(int count, RangeAction action) {
+        if (count < PARALLEL_THRESHOLD) {
+            action.run(0, count);
+            return;
+        }
+        int tasks = (count + ITEMS_PER_TASK - 1) / ITEMS_PER_TASK;
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            int from = task * ITEMS_PER_TASK;
+            action.run(from, Math.min(count, from + ITEMS_PER_TASK));
+        });
+    }
+}
@@ -0,0 +1,227 @@
+package com.cgvsu.model;
+
+import java.util.stream.IntStream;
+
+/**
+ * Триангуляция полигонов сетки в плоский массив индексов без создания объектов на треугольник.
+ * Выпуклые полигоны разбиваются веером от первой вершины, невыпуклые - отсечением ушей
+ * в плоскости полигона. Полигон из n вершин всегда даёт n - 2 треугольника, поэтому место
+ * треугольников каждого полигона известно заранее и большие сетки обрабатываются параллельно
+ * по диапазонам полигонов.
+ */
+public final class Triangulator {
+
+    // Меньшие сетки триангулируются в вызывающем потоке
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    private static final int POLYGONS_PER_TASK = 1 << 12;
+
+    private Triangulator() {
+    }
+
+    /**
+     * Начала треугольников полигонов: треугольники полигона i занимают
+     * [result[i], result[i + 1]), последний элемент - общее число треугольников
+     */
+    public static int[] triangleOffsets(int[] polygonOffsets) {
+        int polygonCount = polygonOffsets.length - 1;
+        int[] result = new int[polygonCount + 1];
+        for (int i = 0; i < polygonCount; i++) {
+            result[i + 1] = result[i] + Math.max(0, polygonOffsets[i + 1] - polygonOffsets[i] - 2);
+        }
+        return result;
+    }
+
+    /**
+     * Триангулирует все полигоны
+     *
+     * @param positions            координаты вершин, по три на вершину
+     * @param polygonOffsets       начала полигонов в массиве углов
+     * @param polygonVertexIndices индексы вершин углов
+     * @param triangleOffsets      результат {@link #triangleOffsets(int[])}
+     * @return по три номера угла (индекса в массивах углов) на треугольник, с тем же обходом, что у полигона
+     */
+    public static int[] triangulate(float[] positions, int[] polygonOffsets, int[] polygonVertexIndices, int[] triangleOffsets) {
+        int polygonCount = polygonOffsets.length - 1;
+        int[] corners = new int[triangleOffsets[polygonCount] * 3];
+        if (polygonCount < PARALLEL_THRESHOLD) {
+            new Workspace().triangulate(positions, polygonOffsets, polygonVertexIndices, triangleOffsets, corners, 0, polygonCount);
+            return corners;
+        }
+
+        int tasks = (polygonCount + POLYGONS_PER_TASK - 1) / POLYGONS_PER_TASK;
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            int from = task * POLYGONS_PER_TASK;
+            int to = Math.min(polygonCount, from + POLYGONS_PER_TASK);
+            new Workspace().triangulate(positions, polygonOffsets, polygonVertexIndices, triangleOffsets, corners, from, to);
+        });
+        return corners;
+    }
+
+    /**
+     * Рабочие массивы одного потока для отсечения ушей
+     */
+    private static final class Workspace {
+        private double[] xs = new double[16];
+        private double[] ys = new double[16];
+        private int[] previous = new int[16];
+        private int[] next = new int[16];
+
+        private int[] corners;
+        private int write;
+
+        void triangulate(float[] positions, int[] polygonOffsets, int[] vertexIndices, int[] triangleOffsets,
+                         int[] corners, int from, int to) {
+            this.corners = corners;
+            for (int i = from; i < to; i++) {
+                int start = polygonOffsets[i];
+                int size = polygonOffsets[i + 1] - start;
+                if (size < 3) {
+                    continue;
+                }
+                write = triangleOffsets[i] * 3;
+                if (size == 3 || !project(positions, vertexIndices, start, size) || isConvex(size)) {
+                    fan(start, size);
+                } else {
+                    clipEars(start, size);
+                }
+            }
+        }
+
+        private void emit(int a, int b, int c) {
+            corners[write++] = a;
+            corners[write++] = b;
+            corners[write++] = c;
+        }
+
+        private void fan(int start, int size) {
+            for (int j = 1; j < size - 1; j++) {
+                emit(start, start + j, start + j + 1);
+            }
+        }
+
+        /**
+         * Переносит вершины полигона на плоскость, отбрасывая ось с наибольшей составляющей нормали
+         * (нормаль по Ньюэллу). Обход на плоскости - против часовой стрелки
+         *
+         * @return false, если полигон вырожден или ссылается на несуществующие вершины
+         */
+        private boolean project(float[] positions, int[] vertexIndices, int start, int size) {
+            int vertexCount = positions.length / 3;
+            double nx = 0;
+            double ny = 0;
+            double nz = 0;
+            for (int j = 0; j < size; j++) {
+                int a = vertexIndices[start + j];
+                int b = vertexIndices[start + (j + 1) % size];
+                if (a < 0 || a >= vertexCount || b < 0 || b >= vertexCount) {
+                    return false;
+                }
+                double ax = positions[a * 3], ay = positions[a * 3 + 1], az = positions[a * 3 + 2];
+                double bx = positions[b * 3], by = positions[b * 3 + 1], bz = positions[b * 3 + 2];
+                nx += (ay - by) * (az + bz);
+                ny += (az - bz) * (ax + bx);
+                nz += (ax - bx) * (ay + by);
+            }
+            double absX = Math.abs(nx);
+            double absY = Math.abs(ny);
+            double absZ = Math.abs(nz);
+            if (!(absX + absY + absZ > 0)) {
+                return false;
+            }
+
+            if (xs.length < size) {
+                int capacity = Math.max(size, xs.length * 2);
+                xs = new double[capacity];
+                ys = new double[capacity];
+                previous = new int[capacity];
+                next = new int[capacity];
+            }
+            // Оси плоскости выбираются так, чтобы нормаль смотрела на наблюдателя
+            int u;
+            int v;
+            if (absX >= absY && absX >= absZ) {
+                u = nx > 0 ? 1 : 2;
+                v = nx > 0 ? 2 : 1;
+            } else if (absY >= absZ) {
+                u = ny > 0 ? 2 : 0;
+                v = ny > 0 ? 0 : 2;
+            } else {
+                u = nz > 0 ? 0 : 1;
+                v = nz > 0 ? 1 : 0;
+            }
+            for (int j = 0; j < size; j++) {
+                int vertex = vertexIndices[start + j];
+                xs[j] = positions[vertex * 3 + u];
+                ys[j] = positions[vertex * 3 + v];
+            }
+            return true;
+        }
+
+        private double cross(int a, int b, int c) {
+            return (xs[b] - xs[a]) * (ys[c] - ys[a]) - (ys[b] - ys[a]) * (xs[c] - xs[a]);
+        }
+
+        private boolean isConvex(int size) {
+            for (int j = 0; j < size; j++) {
+                if (cross((j + size - 1) % size, j, (j + 1) % size) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Отсечение ушей. Если уха не нашлось (самопересекающийся полигон), остаток разбивается веером
+         */
+        private void clipEars(int start, int size) {
+            for (int j = 0; j < size; j++) {
+                previous[j] = (j + size - 1) % size;
+                next[j] = (j + 1) % size;
+            }
+
+            int remaining = size;
+            int current = 0;
+            int attempts = 0;
+            while (remaining > 3) {
+                int a = previous[current];
+                int c = next[current];
+                if (isEar(a, current, c)) {
+                    emit(start + a, start + current, start + c);
+                    next[a] = c;
+                    previous[c] = a;
+                    remaining--;
+                    attempts = 0;
+                    current = c;
+                } else if (++attempts > remaining) {
+                    int first = current;
+                    for (int b = next[first]; next[b] != first; b = next[b]) {
+                        emit(start + first, start + b, start + next[b]);
+                    }
+                    return;
+                } else {
+                    current = c;
+                }
+            }
+            emit(start + previous[current], start + current, start + next[current]);
+        }
+
+        private boolean isEar(int a, int b, int c) {
+            if (cross(a, b, c) <= 0) {
+                return false;
+            }
+            // Внутри уха не должно быть других вершин; если там есть хоть одна, то есть и вогнутая,
+            // поэтому достаточно проверить вогнутые
+            for (int p = next[c]; p != a; p = next[p]) {
+                if (cross(previous[p], p, next[p]) < 0 && !samePoint(p, a) && !samePoint(p, b) && !samePoint(p, c)
+                        && cross(a, b, p) >= 0 && cross(b, c, p) >= 0 && cross(c, a, p) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean samePoint(int p, int q) {
+            return xs[p] == xs[q] && ys[p] == ys[q];
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.cgvsu.model;
+
+/**
+ * Смежность вершин и полигонов в массивах: для каждой вершины - углы полигонов, в которых она
+ * стоит. Строится за два прохода по углам сетки (подсчёт и раскладка) и не изменяется;
+ * модель пересобирает её после правки (см. {@link Model#getVertexAdjacency()}).
+ */
+public final class VertexAdjacency {
+
+    // Углы вершины v занимают [vertexOffsets[v], vertexOffsets[v + 1]) в vertexCorners
+    private final int[] vertexOffsets;
+    private final int[] vertexCorners;
+    // Полигон каждого угла сетки
+    private final int[] cornerPolygons;
+
+    private VertexAdjacency(int[] vertexOffsets, int[] vertexCorners, int[] cornerPolygons) {
+        this.vertexOffsets = vertexOffsets;
+        this.vertexCorners = vertexCorners;
+        this.cornerPolygons = cornerPolygons;
+    }
+
+    public static VertexAdjacency build(CompiledMesh mesh) {
+        return build(mesh.getVertexCount(), mesh.getPolygonOffsets(), mesh.getPolygonVertexIndices());
+    }
+
+    /**
+     * @param vertexCount          число вершин
+     * @param polygonOffsets       начала полигонов в массиве углов
+     * @param polygonVertexIndices индексы вершин углов
+     */
+    public static VertexAdjacency build(int vertexCount, int[] polygonOffsets, int[] polygonVertexIndices) {
+        int cornerCount = polygonVertexIndices.length;
+        int[] cornerPolygons = new int[cornerCount];
+        for (int i = 0; i < polygonOffsets.length - 1; i++) {
+            for (int corner = polygonOffsets[i]; corner < polygonOffsets[i + 1]; corner++) {
+                cornerPolygons[corner] = i;
+            }
+        }
+
+        int[] vertexOffsets = new int[vertexCount + 1];
+        for (int corner = 0; corner < cornerCount; corner++) {
+            vertexOffsets[polygonVertexIndices[corner] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            vertexOffsets[v + 1] += vertexOffsets[v];
+        }
+        int[] vertexCorners = new int[cornerCount];
+        int[] fill = vertexOffsets.clone();
+        for (int corner = 0; corner < cornerCount; corner++) {
+            vertexCorners[fill[polygonVertexIndices[corner]]++] = corner;
+        }
+        return new VertexAdjacency(vertexOffsets, vertexCorners, cornerPolygons);
+    }
+
+    public int getVertexCount() {
+        return vertexOffsets.length - 1;
+    }
+
+    /**
+     * Число углов (и полигонов, если вершина не повторяется в полигоне) при вершине
+     */
+    public int getCornerCount(int vertex) {
+        return vertexOffsets[vertex + 1] - vertexOffsets[vertex];
+    }
+
+    /**
+     * Полигоны вершины по порядку их углов
+     */
+    public int[] getPolygons(int vertex) {
+        int[] result = new int[getCornerCount(vertex)];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = cornerPolygons[vertexCorners[vertexOffsets[vertex] + k]];
+        }
+        return result;
+    }
+
+    public int[] getVertexOffsets() {
+        return vertexOffsets;
+    }
+
+    public int[] getVertexCorners() {
+        return vertexCorners;
+    }
+
+    public int[] getCornerPolygons() {
+        return cornerPolygons;
+    }
+}
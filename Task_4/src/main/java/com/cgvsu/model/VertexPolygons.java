@@ -0,0 +1,94 @@
+package com.cgvsu.model;
+
+/**
+ * Полигоны при каждой вершине модели в виде ссылок на объекты {@link Polygon}.
+ * В отличие от {@link VertexAdjacency} строится по спискам модели без сборки сетки и обновляется
+ * по месту при удалении вершин и полигонов: ссылки на полигоны не меняются при сдвиге списка
+ * полигонов, а при удалении вершин массивы переставляются по той же таблице, что и вершины.
+ * Полигон при вершине хранится один раз, даже если вершина повторяется в нём.
+ */
+final class VertexPolygons {
+
+    private static final Polygon[] EMPTY = new Polygon[0];
+
+    private Polygon[][] polygons;
+    private int[] counts;
+    private int vertexCount;
+
+    private VertexPolygons(Polygon[][] polygons, int[] counts, int vertexCount) {
+        this.polygons = polygons;
+        this.counts = counts;
+        this.vertexCount = vertexCount;
+    }
+
+    static VertexPolygons build(Model model) {
+        int vertexCount = model.getVertices().size();
+        int[] counts = new int[vertexCount];
+        for (Polygon polygon : model.getPolygons()) {
+            for (int v : polygon.getVertexIndices()) {
+                counts[v]++;
+            }
+        }
+        Polygon[][] polygons = new Polygon[vertexCount][];
+        for (int v = 0; v < vertexCount; v++) {
+            polygons[v] = counts[v] == 0 ? EMPTY : new Polygon[counts[v]];
+        }
+        int[] fill = new int[vertexCount];
+        for (Polygon polygon : model.getPolygons()) {
+            for (int v : polygon.getVertexIndices()) {
+                // Углы одного полигона добавляются подряд: повтор вершины виден по последней записи
+                if (fill[v] == 0 || polygons[v][fill[v] - 1] != polygon) {
+                    polygons[v][fill[v]++] = polygon;
+                }
+            }
+        }
+        return new VertexPolygons(polygons, fill, vertexCount);
+    }
+
+    int getVertexCount() {
+        return vertexCount;
+    }
+
+    int getPolygonCount(int vertex) {
+        return counts[vertex];
+    }
+
+    Polygon getPolygon(int vertex, int k) {
+        return polygons[vertex][k];
+    }
+
+    /**
+     * Убирает полигон из списка вершины; порядок остальных полигонов может измениться
+     */
+    void remove(int vertex, Polygon polygon) {
+        Polygon[] list = polygons[vertex];
+        int count = counts[vertex];
+        for (int k = 0; k < count; k++) {
+            if (list[k] == polygon) {
+                list[k] = list[count - 1];
+                list[count - 1] = null;
+                counts[vertex] = count - 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Перенумерация после удаления вершин
+     *
+     * @param remap старый индекс -> новый, -1 для удалённых; новые индексы идут по возрастанию
+     */
+    void removeVertices(int[] remap, int newVertexCount) {
+        for (int v = 0; v < remap.length; v++) {
+            int target = remap[v];
+            if (target >= 0) {
+                polygons[target] = polygons[v];
+                counts[target] = counts[v];
+            }
+        }
+        for (int v = newVertexCount; v < remap.length; v++) {
+            polygons[v] = null;
+        }
+        vertexCount = newVertexCount;
+    }
+}
@@ -0,0 +1,126 @@
+package com.cgvsu.model;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Поиск совпадающих вершин через пространственный хэш. Пространство делится на кубические ячейки
+ * со стороной в два допуска, поэтому близкие вершины лежат в той же ячейке или в соседней со
+ * стороны ближайшей грани: по каждой оси проверяется только одна соседняя ячейка, всего восемь.
+ * Ячейки вершин и поиск соседей считаются параллельно, заполнение хэш-таблицы - один линейный
+ * проход; в среднем всё занимает O(n).
+ *
+ * Каждая вершина сливается с первой (с наименьшим индексом) вершиной в пределах допуска,
+ * а та, в свою очередь, со своей первой: цепочки близких вершин сливаются целиком.
+ */
+public final class VertexWelder {
+
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    private static final int VERTICES_PER_TASK = 1 << 12;
+
+    private VertexWelder() {
+    }
+
+    /**
+     * Для каждой вершины - индекс вершины, с которой она сливается (не больше её собственного)
+     *
+     * @param positions координаты вершин, по три на вершину
+     * @param tolerance наибольшее расстояние между сливаемыми вершинами; 0 - только точные совпадения
+     */
+    public static int[] findRepresentatives(float[] positions, float tolerance) {
+        if (!(tolerance >= 0) || Float.isInfinite(tolerance)) {
+            throw new IllegalArgumentException("Invalid weld tolerance: " + tolerance);
+        }
+        int vertexCount = positions.length / 3;
+        boolean exact = tolerance == 0;
+        float inverseCell = exact ? 0f : 0.5f / tolerance;
+        float toleranceSquared = tolerance * tolerance;
+
+        // Ячейки вершин и направление к ближайшей соседней ячейке (-1 или 1) по каждой оси;
+        // при точном сравнении ячейкой служат сами координаты, а соседи не проверяются
+        long[] cells = new long[vertexCount * 3];
+        byte[] sides = new byte[vertexCount * 3];
+        forRanges(vertexCount, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                for (int axis = 0; axis < 3; axis++) {
+                    // + 0f превращает -0 в +0, чтобы нули попали в одну ячейку
+                    float value = positions[v * 3 + axis] + 0f;
+                    if (exact) {
+                        cells[v * 3 + axis] = Float.floatToIntBits(value);
+                    } else {
+                        double scaled = (double) value * inverseCell;
+                        double cell = Math.floor(scaled);
+                        cells[v * 3 + axis] = (long) cell;
+                        sides[v * 3 + axis] = (byte) (scaled - cell < 0.5 ? -1 : 1);
+                    }
+                }
+            }
+        });
+
+        // Хэш-таблица с цепочками: head - первая вершина корзины, next - следующая вершина той же корзины.
+        // Вершины вставляются с конца, поэтому цепочки упорядочены по возрастанию индекса
+        int capacity = Integer.highestOneBit(Math.max(1, vertexCount * 2 - 1)) << 1;
+        int mask = capacity - 1;
+        int[] head = new int[capacity];
+        Arrays.fill(head, -1);
+        int[] next = new int[vertexCount];
+        for (int v = vertexCount - 1; v >= 0; v--) {
+            int bucket = hash(cells[v * 3], cells[v * 3 + 1], cells[v * 3 + 2]) & mask;
+            next[v] = head[bucket];
+            head[bucket] = v;
+        }
+
+        int probes = exact ? 1 : 8;
+        int[] representatives = new int[vertexCount];
+        forRanges(vertexCount, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                int found = v;
+                float x = positions[v * 3], y = positions[v * 3 + 1], z = positions[v * 3 + 2];
+                for (int probe = 0; probe < probes; probe++) {
+                    long cx = cells[v * 3] + ((probe & 1) != 0 ? sides[v * 3] : 0);
+                    long cy = cells[v * 3 + 1] + ((probe & 2) != 0 ? sides[v * 3 + 1] : 0);
+                    long cz = cells[v * 3 + 2] + ((probe & 4) != 0 ? sides[v * 3 + 2] : 0);
+                    int bucket = hash(cx, cy, cz) & mask;
+                    // В корзине могут оказаться вершины других ячеек: их отсекает проверка расстояния
+                    for (int u = head[bucket]; u >= 0 && u < found; u = next[u]) {
+                        float ex = positions[u * 3] - x;
+                        float ey = positions[u * 3 + 1] - y;
+                        float ez = positions[u * 3 + 2] - z;
+                        if (ex * ex + ey * ey + ez * ez <= toleranceSquared) {
+                            found = u;
+                            break;
+                        }
+                    }
+                }
+                representatives[v] = found;
+            }
+        });
+
+        // Найденная вершина меньше текущей и уже разрешена
+        for (int v = 0; v < vertexCount; v++) {
+            representatives[v] = representatives[representatives[v]];
+        }
+        return representatives;
+    }
+
+    private static int hash(long x, long y, long z) {
+        long h = x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL + z * 0x165667B19E3779F9L;
+        return (int) (h ^ (h >>> 29) ^ (h >>> 47));
+    }
+
+    private interface RangeAction {
+        void run(int from, int to);
+    }
+
+    private static void forRanges(int count, RangeAction action) {
+        if (count < PARALLEL_THRESHOLD) {
+            action.run(0, count);
+            return;
+        }
+        int tasks = (count + VERTICES_PER_TASK - 1) / VERTICES_PER_TASK;
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            int from = task * VERTICES_PER_TASK;
+            action.run(from, Math.min(count, from + VERTICES_PER_TASK));
+        });
+    }
+}
@@ -0,0 +1,695 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+
+/**
+ * Разбор OBJ прямо из байтов файла, отображённого в память.
+ * Слова строки не копируются в строки: числа читаются из буфера собственными парсерами,
+ * и только для редких записей (экспонента вне диапазона, суффиксы, не-ASCII цифры)
+ * используются Float.parseFloat и Integer.parseInt.
+ * Деление на строки и слова повторяет Scanner.nextLine и String.split("\\s+") из {@link ObjReader#read(String)},
+ * поэтому модель и номера строк в ошибках совпадают.
+ *
+ * Строки разбираются сразу в растущие массивы чисел: координаты, начала полигонов и индексы углов,
+ * без объектов на вершину или грань. Из массивов собирается {@link CompiledMesh}, а модель создаётся
+ * по ней через {@link Model#fromCompiledMesh(CompiledMesh)}, как при чтении из кэша: списки модели
+ * заполняются, только когда они понадобятся. Поэтому, как и в {@link CompiledMesh}, текстурные координаты
+ * и нормали, заданные не для всех углов полигона, у этого полигона отбрасываются.
+ *
+ * Большие файлы делятся по границам строк на куски, которые разбираются параллельно в собственные массивы.
+ * Индексы в гранях OBJ глобальные, поэтому массивы кусков просто склеиваются в порядке файла.
+ * Номера строк в куске считаются от его начала и сдвигаются при склейке на число строк в предыдущих кусках.
+ * После каждого куска по порядку файла сообщается прогресс ({@link ObjReader.Progress}); если чтение
+ * прервано, ещё не начатые куски пропускаются, а начатые дочитываются и отбрасываются.
+ */
+final class ObjByteParser {
+
+	// Файл отображается окнами: MappedByteBuffer не может быть больше 2 ГБ
+	static final int MAX_WINDOW = 1 << 30;
+	// Меньшие куски не окупают запуск задачи и склейку списков
+	static final int MIN_CHUNK_SIZE = 1 << 20;
+	// Кусков больше, чем потоков, чтобы потоки не простаивали на неравных кусках
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int lineInd;
+
+	// Координаты: по три на вершину и нормаль, по две на текстурную вершину
+	private float[] positions = new float[INITIAL_CAPACITY * 3];
+	private int positionLength;
+	private float[] texCoords = new float[INITIAL_CAPACITY * 2];
+	private int texCoordLength;
+	private float[] normals = new float[INITIAL_CAPACITY * 3];
+	private int normalLength;
+	// Начала полигонов в массивах углов куска; индексы атрибутов, не заданных для всего полигона, равны -1
+	private int[] polygonStarts = new int[INITIAL_CAPACITY];
+	private int polygonCount;
+	private int[] cornerVertices = new int[INITIAL_CAPACITY * 4];
+	private int[] cornerTexCoords = new int[INITIAL_CAPACITY * 4];
+	private int[] cornerNormals = new int[INITIAL_CAPACITY * 4];
+	private int cornerCount;
+	// Сколько углов текущей грани задают текстурную координату и нормаль
+	private int faceTexCoords;
+	private int faceNormals;
+
+	private ByteBuffer buffer;
+	private int lineEnd;
+	// Текущее слово строки [wordStart, wordEnd)
+	private int wordStart;
+	private int wordEnd;
+	// Части слова грани, разделённые '/'
+	private final int[] segmentStarts = new int[3];
+	private final int[] segmentEnds = new int[3];
+
+	static Model read(Path path, ObjReader.Progress progress) throws IOException {
+		return read(path, MIN_CHUNK_SIZE, ForkJoinPool.getCommonPoolParallelism(), progress);
+	}
+
+	static Model read(Path path, int minChunkSize, int parallelism) throws IOException {
+		return read(path, minChunkSize, parallelism, null);
+	}
+
+	/**
+	 * @param minChunkSize - минимальный размер куска в байтах
+	 * @param parallelism - число потоков, под которое делится окно файла
+	 * @param progress - наблюдатель за чтением или null
+	 */
+	static Model read(Path path, int minChunkSize, int parallelism, ObjReader.Progress progress) throws IOException {
+		ArrayList<ObjByteParser> chunks = new ArrayList<>();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+			int lines = 0;
+			while (position < size) {
+				int length = (int) Math.min(size - position, MAX_WINDOW);
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				boolean last = position + length == size;
+				// Окно заканчивается на границе строки, остаток попадёт в следующее окно
+				int end = last ? length : lastLineEnd(window, length);
+				if (end == 0) {
+					throw new IOException("OBJ line is longer than " + MAX_WINDOW + " bytes at offset " + position);
+				}
+				long windowStart = position;
+				IntPredicate chunkDone = progress == null ? null : parsed -> progress.update(windowStart + parsed, size);
+				lines += parseWindow(window, end, chunks, lines, minChunkSize, parallelism, chunkDone);
+				position += end;
+			}
+		}
+		return Model.fromCompiledMesh(concatenate(chunks));
+	}
+
+	/**
+	 * Разбирает [0, end) буфера, добавляет разобранные куски в parsed по порядку файла
+	 * и возвращает число учтённых строк
+	 * @param lineOffset - число строк в предыдущих окнах
+	 * @param chunkDone - получает конец очередного разобранного куска в окне и возвращает false,
+	 *                  чтобы прервать чтение; может быть null
+	 */
+	private static int parseWindow(ByteBuffer buffer, int end, ArrayList<ObjByteParser> parsed, int lineOffset,
+			int minChunkSize, int parallelism, IntPredicate chunkDone) {
+
+		int[] bounds = chunkBounds(buffer, end, minChunkSize, parallelism);
+		int chunks = bounds.length - 1;
+
+		if (chunks == 1) {
+			ObjByteParser parser = new ObjByteParser();
+			try {
+				parser.parse(buffer, 0, end);
+			} catch (ObjReaderException e) {
+				throw shifted(e, lineOffset);
+			}
+			parsed.add(parser);
+			if (chunkDone != null && !chunkDone.test(end)) {
+				throw cancelled();
+			}
+			return parser.getLineInd();
+		}
+
+		ObjByteParser[] parsers = new ObjByteParser[chunks];
+		ObjReaderException[] errors = new ObjReaderException[chunks];
+		AtomicBoolean cancelled = new AtomicBoolean();
+		ArrayList<Future<Void>> futures = new ArrayList<>(chunks);
+		for (int i = 0; i < chunks; i++) {
+			final int chunk = i;
+			parsers[chunk] = new ObjByteParser();
+			Callable<Void> task = () -> {
+				if (cancelled.get()) {
+					return null;
+				}
+				try {
+					parsers[chunk].parse(buffer, bounds[chunk], bounds[chunk + 1]);
+				} catch (ObjReaderException e) {
+					errors[chunk] = e;
+				}
+				return null;
+			};
+			futures.add(ForkJoinPool.commonPool().submit(task));
+		}
+		// Куски ожидаются по порядку файла, прогресс сообщается из вызывающего потока.
+		// После отмены дожидаемся и остальных, чтобы ни одна задача не читала буфер после выхода
+		for (int i = 0; i < chunks; i++) {
+			try {
+				futures.get(i).get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException runtimeException) {
+					throw runtimeException;
+				}
+				if (e.getCause() instanceof Error error) {
+					throw error;
+				}
+				throw new IllegalStateException(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("OBJ parsing was interrupted", e);
+			}
+			if (chunkDone != null && !cancelled.get() && !chunkDone.test(bounds[i + 1])) {
+				cancelled.set(true);
+			}
+		}
+		if (cancelled.get()) {
+			throw cancelled();
+		}
+
+		// Первая по порядку ошибка - та же, что при последовательном разборе
+		int lines = 0;
+		for (int i = 0; i < chunks; i++) {
+			if (errors[i] != null) {
+				throw shifted(errors[i], lineOffset + lines);
+			}
+			parsed.add(parsers[i]);
+			lines += parsers[i].getLineInd();
+		}
+		return lines;
+	}
+
+	/**
+	 * Склеивает массивы кусков в порядке файла в одну сетку. Индексы OBJ глобальные и не сдвигаются,
+	 * сдвигаются только начала полигонов на число углов в предыдущих кусках
+	 */
+	private static CompiledMesh concatenate(ArrayList<ObjByteParser> parsers) {
+		int positionLength = 0, texCoordLength = 0, normalLength = 0, polygonCount = 0, cornerCount = 0;
+		for (ObjByteParser parser : parsers) {
+			positionLength += parser.positionLength;
+			texCoordLength += parser.texCoordLength;
+			normalLength += parser.normalLength;
+			polygonCount += parser.polygonCount;
+			cornerCount += parser.cornerCount;
+		}
+		float[] positions = new float[positionLength];
+		float[] texCoords = new float[texCoordLength];
+		float[] normals = new float[normalLength];
+		int[] polygonOffsets = new int[polygonCount + 1];
+		int[] vertexIndices = new int[cornerCount];
+		int[] texCoordIndices = new int[cornerCount];
+		int[] normalIndices = new int[cornerCount];
+
+		int position = 0, texCoord = 0, normal = 0, polygon = 0, corner = 0;
+		for (ObjByteParser parser : parsers) {
+			System.arraycopy(parser.positions, 0, positions, position, parser.positionLength);
+			position += parser.positionLength;
+			System.arraycopy(parser.texCoords, 0, texCoords, texCoord, parser.texCoordLength);
+			texCoord += parser.texCoordLength;
+			System.arraycopy(parser.normals, 0, normals, normal, parser.normalLength);
+			normal += parser.normalLength;
+			for (int i = 0; i < parser.polygonCount; i++) {
+				polygonOffsets[polygon++] = corner + parser.polygonStarts[i];
+			}
+			System.arraycopy(parser.cornerVertices, 0, vertexIndices, corner, parser.cornerCount);
+			System.arraycopy(parser.cornerTexCoords, 0, texCoordIndices, corner, parser.cornerCount);
+			System.arraycopy(parser.cornerNormals, 0, normalIndices, corner, parser.cornerCount);
+			corner += parser.cornerCount;
+		}
+		polygonOffsets[polygonCount] = cornerCount;
+		return new CompiledMesh(positions, normals, texCoords, polygonOffsets, vertexIndices, normalIndices, texCoordIndices);
+	}
+
+	private static CancellationException cancelled() {
+		return new CancellationException("OBJ reading was cancelled");
+	}
+
+	private static ObjReaderException shifted(ObjReaderException e, int lineOffset) {
+		if (lineOffset == 0) {
+			return e;
+		}
+		return new ObjReaderException(e.getErrorMessage(), lineOffset + e.getLineInd());
+	}
+
+	/**
+	 * Границы кусков [bounds[i], bounds[i + 1]) для разбора [0, end). Каждая граница стоит сразу за переводом строки
+	 */
+	static int[] chunkBounds(ByteBuffer buffer, int end, int minChunkSize, int parallelism) {
+		long byLength = end / Math.max(1, minChunkSize);
+		int chunks = (int) Math.max(1, Math.min(byLength, (long) parallelism * CHUNKS_PER_THREAD));
+
+		int[] bounds = new int[chunks + 1];
+		int count = 1;
+		for (int k = 1; k < chunks; k++) {
+			int approximate = (int) ((long) end * k / chunks);
+			if (approximate <= bounds[count - 1]) {
+				continue;
+			}
+			int bound = nextLineStart(buffer, approximate, end);
+			if (bound > bounds[count - 1] && bound < end) {
+				bounds[count++] = bound;
+			}
+		}
+		bounds[count++] = end;
+		return count == bounds.length ? bounds : Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * Начало строки, следующей за позицией from (end, если переводов строки дальше нет)
+	 */
+	private static int nextLineStart(ByteBuffer buffer, int from, int end) {
+		for (int p = from; p < end; p++) {
+			byte b = buffer.get(p);
+			if (b == '\n') {
+				return p + 1;
+			}
+			if (b == '\r') {
+				return (p + 1 < end && buffer.get(p + 1) == '\n') ? p + 2 : p + 1;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Позиция сразу за последним переводом строки в буфере. Одиночный '\r' в последнем байте не считается
+	 * концом строки: за ним в следующем окне может идти '\n'
+	 */
+	static int lastLineEnd(ByteBuffer buffer, int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			byte b = buffer.get(i);
+			if (b == '\n' || (b == '\r' && i + 1 < length)) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	int getLineInd() {
+		return lineInd;
+	}
+
+	/**
+	 * Разбирает строки в [from, to). Конец диапазона считается концом строки
+	 */
+	void parse(ByteBuffer buffer, int from, int to) {
+		this.buffer = buffer;
+		int position = from;
+		while (position < to) {
+			int end = position;
+			int terminatorLength = 0;
+			while (end < to) {
+				terminatorLength = terminatorLength(buffer, end, to);
+				if (terminatorLength > 0) {
+					break;
+				}
+				end++;
+			}
+			parseLine(position, end);
+			position = end + terminatorLength;
+		}
+		// Окно файла освобождается, как только на него не остаётся ссылок
+		this.buffer = null;
+	}
+
+	/**
+	 * Длина перевода строки в позиции i (0, если его там нет).
+	 * Те же разделители, что у Scanner: \r\n, \n, \r, U+0085, U+2028, U+2029
+	 */
+	private static int terminatorLength(ByteBuffer buffer, int i, int to) {
+		byte b = buffer.get(i);
+		if (b == '\n') {
+			return 1;
+		}
+		if (b == '\r') {
+			return (i + 1 < to && buffer.get(i + 1) == '\n') ? 2 : 1;
+		}
+		if (b == (byte) 0xC2) {
+			return (i + 1 < to && buffer.get(i + 1) == (byte) 0x85) ? 2 : 0;
+		}
+		if (b == (byte) 0xE2) {
+			if (i + 2 < to && buffer.get(i + 1) == (byte) 0x80) {
+				byte c = buffer.get(i + 2);
+				if (c == (byte) 0xA8 || c == (byte) 0xA9) {
+					return 3;
+				}
+			}
+		}
+		return 0;
+	}
+
+	// Пробельные символы \s регулярных выражений Java (переводы строк сюда уже не попадают)
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == 0x0B || b == '\f' || b == '\r' || b == '\n';
+	}
+
+	private void parseLine(int start, int end) {
+		lineEnd = end;
+		if (start < end && isSpace(buffer.get(start))) {
+			// split("\\s+") даёт пустое первое слово, а строку из одних пробелов не считает вовсе
+			int p = start;
+			while (p < end && isSpace(buffer.get(p))) {
+				p++;
+			}
+			if (p < end) {
+				++lineInd;
+			}
+			return;
+		}
+
+		int p = start;
+		while (p < end && !isSpace(buffer.get(p))) {
+			p++;
+		}
+		wordEnd = p;
+		++lineInd;
+
+		int tokenLength = p - start;
+		byte first = tokenLength > 0 ? buffer.get(start) : 0;
+		if (tokenLength == 1 && first == 'v') {
+			parseVertex();
+		} else if (tokenLength == 1 && first == 'f') {
+			parseFace();
+		} else if (tokenLength == 2 && first == 'v') {
+			byte second = buffer.get(start + 1);
+			if (second == 't') {
+				parseTextureVertex();
+			} else if (second == 'n') {
+				parseNormal();
+			}
+		}
+	}
+
+	/**
+	 * Переходит к следующему слову строки; false, если слов больше нет
+	 */
+	private boolean nextWord() {
+		int p = wordEnd;
+		while (p < lineEnd && isSpace(buffer.get(p))) {
+			p++;
+		}
+		if (p == lineEnd) {
+			return false;
+		}
+		wordStart = p;
+		while (p < lineEnd && !isSpace(buffer.get(p))) {
+			p++;
+		}
+		wordEnd = p;
+		return true;
+	}
+
+	private float nextFloat(String tooFewMessage) {
+		if (!nextWord()) {
+			throw new ObjReaderException(tooFewMessage, lineInd);
+		}
+		try {
+			return parseFloat(buffer, wordStart, wordEnd);
+		} catch (NumberFormatException e) {
+			throw new ObjReaderException("Failed to parse float value.", lineInd);
+		}
+	}
+
+	private void parseVertex() {
+		float x = nextFloat("Too few vertex arguments.");
+		float y = nextFloat("Too few vertex arguments.");
+		float z = nextFloat("Too few vertex arguments.");
+		positions = grow(positions, positionLength + 3);
+		positions[positionLength++] = x;
+		positions[positionLength++] = y;
+		positions[positionLength++] = z;
+	}
+
+	private void parseTextureVertex() {
+		float u = nextFloat("Too few texture vertex arguments.");
+		float v = nextFloat("Too few texture vertex arguments.");
+		texCoords = grow(texCoords, texCoordLength + 2);
+		texCoords[texCoordLength++] = u;
+		texCoords[texCoordLength++] = v;
+	}
+
+	private void parseNormal() {
+		float x = nextFloat("Too few normal arguments.");
+		float y = nextFloat("Too few normal arguments.");
+		float z = nextFloat("Too few normal arguments.");
+		normals = grow(normals, normalLength + 3);
+		normals[normalLength++] = x;
+		normals[normalLength++] = y;
+		normals[normalLength++] = z;
+	}
+
+	private void parseFace() {
+		int start = cornerCount;
+		faceTexCoords = 0;
+		faceNormals = 0;
+		while (nextWord()) {
+			parseFaceWord();
+		}
+
+		// Как в CompiledMesh.compile: атрибут учитывается, только если он задан для каждого угла
+		int size = cornerCount - start;
+		if (faceTexCoords != size) {
+			Arrays.fill(cornerTexCoords, start, cornerCount, -1);
+		}
+		if (faceNormals != size) {
+			Arrays.fill(cornerNormals, start, cornerCount, -1);
+		}
+		polygonStarts = grow(polygonStarts, polygonCount + 1);
+		polygonStarts[polygonCount++] = start;
+	}
+
+	private void parseFaceWord() {
+		// Число частей как у split("/"): пустые части в конце слова отбрасываются
+		int segments = 0;
+		int nonEmptySegments = 0;
+		int segmentStart = wordStart;
+		for (int i = wordStart; i <= wordEnd; i++) {
+			if (i == wordEnd || buffer.get(i) == '/') {
+				if (segments < 3) {
+					segmentStarts[segments] = segmentStart;
+					segmentEnds[segments] = i;
+				}
+				segments++;
+				if (i > segmentStart) {
+					nonEmptySegments = segments;
+				}
+				segmentStart = i + 1;
+			}
+		}
+
+		int vertex;
+		int texCoord = -1;
+		int normal = -1;
+		switch (nonEmptySegments) {
+			case 1 -> {
+				vertex = parseIndex(0);
+			}
+			case 2 -> {
+				vertex = parseIndex(0);
+				texCoord = parseIndex(1);
+				faceTexCoords++;
+			}
+			case 3 -> {
+				vertex = parseIndex(0);
+				normal = parseIndex(2);
+				faceNormals++;
+				if (segmentEnds[1] > segmentStarts[1]) {
+					texCoord = parseIndex(1);
+					faceTexCoords++;
+				}
+			}
+			default -> {
+				throw new ObjReaderException("Invalid element size.", lineInd);
+			}
+		}
+
+		if (cornerCount == cornerVertices.length) {
+			int capacity = cornerCount * 2;
+			cornerVertices = Arrays.copyOf(cornerVertices, capacity);
+			cornerTexCoords = Arrays.copyOf(cornerTexCoords, capacity);
+			cornerNormals = Arrays.copyOf(cornerNormals, capacity);
+		}
+		cornerVertices[cornerCount] = vertex;
+		cornerTexCoords[cornerCount] = texCoord;
+		cornerNormals[cornerCount] = normal;
+		cornerCount++;
+	}
+
+	private static float[] grow(float[] array, int length) {
+		return length <= array.length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+	}
+
+	private static int[] grow(int[] array, int length) {
+		return length <= array.length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+	}
+
+	private int parseIndex(int segment) {
+		try {
+			return parseInt(buffer, segmentStarts[segment], segmentEnds[segment]) - 1;
+		} catch (NumberFormatException e) {
+			throw new ObjReaderException("Failed to parse int value.", lineInd);
+		}
+	}
+
+	/**
+	 * Целое число в [start, end) с результатом как у Integer.parseInt
+	 */
+	static int parseInt(ByteBuffer buffer, int start, int end) {
+		int p = start;
+		boolean negative = false;
+		if (p < end) {
+			byte sign = buffer.get(p);
+			if (sign == '-' || sign == '+') {
+				negative = sign == '-';
+				p++;
+			}
+		}
+		int digits = end - p;
+		if (digits > 0 && digits <= 9) {
+			int value = 0;
+			for (; p < end; p++) {
+				int d = buffer.get(p) - '0';
+				if (d < 0 || d > 9) {
+					return Integer.parseInt(decode(buffer, start, end));
+				}
+				value = value * 10 + d;
+			}
+			return negative ? -value : value;
+		}
+		// Пустая строка, длинные числа и прочие редкие случаи
+		return Integer.parseInt(decode(buffer, start, end));
+	}
+
+	/**
+	 * Вещественное число в [start, end) с результатом как у Float.parseFloat.
+	 * Быстрый путь: до 18 значащих цифр и десятичный порядок не больше 22 по модулю. Тогда мантисса и
+	 * степень десяти точно представимы в double и результат получается одним округлением. Округление
+	 * double во float даёт тот же результат, что и прямое округление, если double не попал ровно
+	 * на середину между соседними float; этот случай, как и выход за диапазон нормализованных float,
+	 * разбирается стандартным Float.parseFloat.
+	 */
+	static float parseFloat(ByteBuffer buffer, int start, int end) {
+		int p = start;
+		boolean negative = false;
+		if (p < end) {
+			byte sign = buffer.get(p);
+			if (sign == '-' || sign == '+') {
+				negative = sign == '-';
+				p++;
+			}
+		}
+
+		long mantissa = 0;
+		int significantDigits = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean dot = false;
+		for (; p < end; p++) {
+			byte b = buffer.get(p);
+			if (b >= '0' && b <= '9') {
+				digits++;
+				if (dot) {
+					exponent--;
+				}
+				if (mantissa == 0 && b == '0') {
+					continue; // Ведущие нули не занимают разрядов
+				}
+				if (++significantDigits > 18) {
+					return Float.parseFloat(decode(buffer, start, end));
+				}
+				mantissa = mantissa * 10 + (b - '0');
+			} else if (b == '.' && !dot) {
+				dot = true;
+			} else {
+				break;
+			}
+		}
+		if (digits == 0) {
+			return Float.parseFloat(decode(buffer, start, end));
+		}
+
+		if (p < end) {
+			byte b = buffer.get(p);
+			if (b != 'e' && b != 'E') {
+				return Float.parseFloat(decode(buffer, start, end));
+			}
+			p++;
+			boolean negativeExponent = false;
+			if (p < end && (buffer.get(p) == '-' || buffer.get(p) == '+')) {
+				negativeExponent = buffer.get(p) == '-';
+				p++;
+			}
+			int exponentDigits = end - p;
+			if (exponentDigits == 0 || exponentDigits > 4) {
+				return Float.parseFloat(decode(buffer, start, end));
+			}
+			int value = 0;
+			for (; p < end; p++) {
+				int d = buffer.get(p) - '0';
+				if (d < 0 || d > 9) {
+					return Float.parseFloat(decode(buffer, start, end));
+				}
+				value = value * 10 + d;
+			}
+			exponent += negativeExponent ? -value : value;
+		}
+
+		if (mantissa == 0) {
+			return negative ? -0.0f : 0.0f;
+		}
+
+		double value;
+		if (exponent == 0) {
+			value = mantissa;
+		} else if (exponent > 0 && exponent <= 22) {
+			value = mantissa * POWERS_OF_TEN[exponent];
+		} else if (exponent < 0 && exponent >= -22) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		} else {
+			return Float.parseFloat(decode(buffer, start, end));
+		}
+
+		// Мантисса до 10^18 < 2^63, но точно в double помещается только до 2^53
+		if (mantissa >= (1L << 53)
+				|| value < Float.MIN_NORMAL || value > Float.MAX_VALUE
+				|| (Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) == 0x10000000L) {
+			return Float.parseFloat(decode(buffer, start, end));
+		}
+
+		float result = (float) value;
+		return negative ? -result : result;
+	}
+
+	private static String decode(ByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		buffer.get(start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
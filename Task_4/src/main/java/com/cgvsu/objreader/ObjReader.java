@@ -5,6 +5,8 @@ import com.cgvsu.math.Vector3f;
 import com.cgvsu.model.Model;
 import com.cgvsu.model.Polygon;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Scanner;
@@ -16,6 +18,41 @@ public class ObjReader {
 	private static final String OBJ_NORMAL_TOKEN = "vn";
 	private static final String OBJ_FACE_TOKEN = "f";
 
+	/**
+	 * Чтение модели прямо из файла. Файл отображается в память через FileChannel и разбирается побайтно,
+	 * без загрузки в строку и без разбиения строк на слова. Модель создаётся по готовой сетке
+	 * ({@link Model#fromCompiledMesh}), списки заполняются при первом обращении к ним.
+	 * Результат и ошибки (с номерами строк) такие же, как у {@link #read(String)} для содержимого файла,
+	 * кроме текстурных координат и нормалей, заданных не для всех углов полигона: они отбрасываются, как в сетке.
+	 */
+	public static Model read(Path path) throws IOException {
+		return ObjByteParser.read(path, null);
+	}
+
+	/**
+	 * То же, что {@link #read(Path)}, с отчётом о ходе чтения и возможностью его прервать.
+	 * Прогресс сообщается после каждого разобранного куска файла
+	 *
+	 * @param progress - наблюдатель за чтением или null
+	 * @throws java.util.concurrent.CancellationException если progress попросил прервать чтение
+	 */
+	public static Model read(Path path, Progress progress) throws IOException {
+		return ObjByteParser.read(path, progress);
+	}
+
+	/**
+	 * Наблюдатель за чтением файла. Вызывается в потоке, из которого запущено чтение
+	 */
+	@FunctionalInterface
+	public interface Progress {
+		/**
+		 * @param bytesRead - сколько байт от начала файла уже разобрано
+		 * @param totalBytes - размер файла
+		 * @return false, чтобы прервать чтение
+		 */
+		boolean update(long bytesRead, long totalBytes);
+	}
+
 	public static Model read(String fileContent) {
 		Model result = new Model();
 
@@ -43,10 +80,10 @@ public class ObjReader {
 				// А еще это портит читаемость
 				// И не стоит забывать про тесты. Чем проще вам задать данные для теста, проверить, что метод рабочий,
 				// тем лучше.
-				case OBJ_VERTEX_TOKEN -> result.vertices.add(parseVertex(wordsInLine, lineInd));
-				case OBJ_TEXTURE_TOKEN -> result.textureVertices.add(parseTextureVertex(wordsInLine, lineInd));
-				case OBJ_NORMAL_TOKEN -> result.normals.add(parseNormal(wordsInLine, lineInd));
-				case OBJ_FACE_TOKEN -> result.polygons.add(parseFace(wordsInLine, lineInd));
+				case OBJ_VERTEX_TOKEN -> result.getVertices().add(parseVertex(wordsInLine, lineInd));
+				case OBJ_TEXTURE_TOKEN -> result.getTextureVertices().add(parseTextureVertex(wordsInLine, lineInd));
+				case OBJ_NORMAL_TOKEN -> result.getNormals().add(parseNormal(wordsInLine, lineInd));
+				case OBJ_FACE_TOKEN -> result.getPolygons().add(parseFace(wordsInLine, lineInd));
 				default -> {}
 			}
 		}
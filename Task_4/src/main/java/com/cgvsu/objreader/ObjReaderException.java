@@ -1,7 +1,23 @@
 package com.cgvsu.objreader;
 
 public class ObjReaderException extends RuntimeException {
+    private final String errorMessage;
+    private final int lineInd;
+
     public ObjReaderException(String errorMessage, int lineInd) {
         super("Error parsing OBJ file on line: " + lineInd + ". " + errorMessage);
+        this.errorMessage = errorMessage;
+        this.lineInd = lineInd;
+    }
+
+    /**
+     * Описание ошибки без номера строки
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public int getLineInd() {
+        return lineInd;
     }
-}
\ No newline at end of file
+}
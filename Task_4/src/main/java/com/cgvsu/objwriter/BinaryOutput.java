@@ -0,0 +1,40 @@
+package com.cgvsu.objwriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Буфер little-endian для двоичных форматов: записи складываются в буфер,
+ * который уходит в канал целиком, когда в нём не остаётся места под следующую запись
+ */
+final class BinaryOutput {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    BinaryOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Буфер, в котором есть место хотя бы под bytes байт
+     */
+    ByteBuffer reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+        return buffer;
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,227 @@
+package com.cgvsu.objwriter;
+
+/**
+ * Запись float в ASCII-байты кратчайшей десятичной строкой, по которой Float.parseFloat
+ * восстанавливает то же самое число. Расположение точки и экспоненты как у Float.toString
+ * ("1.0", "0.25", "1.0E-5"), поэтому файлы читаются любым OBJ-читателем.
+ *
+ * Интервал чисел, которые читаются как данное, умножается на точную степень десяти в double так,
+ * чтобы в нём лежали девятизначные целые. Затем от его целых границ отбрасываются младшие цифры,
+ * пока в интервале остаётся хоть одно целое, и из оставшихся берётся ближайшее к числу.
+ * Только целые у самых границ интервала проверяются точно, чтением обратно.
+ * Субнормальные числа и числа вне [1e-14, 1e31) записываются через Float.toString.
+ */
+final class FloatFormat {
+
+    /**
+     * Наибольшая длина записи одного числа
+     */
+    static final int MAX_LENGTH = 16;
+
+    private static final int MAX_DIGITS = 9;
+    // Порядки, для которых нужная степень десяти точно представима в double
+    private static final int MIN_FAST_EXPONENT = MAX_DIGITS - 1 - 22;
+    private static final int MAX_FAST_EXPONENT = MAX_DIGITS - 1 + 22;
+    // Погрешность границ интервала после умножения (для чисел до 10^9 меньше 1e-7)
+    private static final double MARGIN = 1e-6;
+
+    // Степени десяти, точно представимые в double
+    private static final double[] POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int[] INT_POWERS = {
+            1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000
+    };
+
+    // Приближённые 10^e для e от MIN_EXPONENT до 39: только для определения порядка числа
+    private static final int MIN_EXPONENT = -46;
+    private static final double[] APPROX_POWERS = new double[39 - MIN_EXPONENT + 1];
+
+    static {
+        for (int i = 0; i < APPROX_POWERS.length; i++) {
+            APPROX_POWERS[i] = Double.parseDouble("1E" + (i + MIN_EXPONENT));
+        }
+    }
+
+    private FloatFormat() {
+    }
+
+    /**
+     * Записывает число в dst начиная с pos
+     *
+     * @return позиция после последнего записанного байта
+     */
+    static int format(float value, byte[] dst, int pos) {
+        if (Float.isNaN(value)) {
+            return ascii("NaN", dst, pos);
+        }
+        if (Float.floatToRawIntBits(value) < 0) {
+            dst[pos++] = '-';
+            value = -value;
+        }
+        if (value == 0f) {
+            return ascii("0.0", dst, pos);
+        }
+        if (value == Float.POSITIVE_INFINITY) {
+            return ascii("Infinity", dst, pos);
+        }
+        if (value < Float.MIN_NORMAL) {
+            return ascii(Float.toString(value), dst, pos);
+        }
+
+        double d = value;
+        // floor(log10(2^e2)) отличается от порядка числа не больше чем на единицу
+        int exponent = (Math.getExponent(value) * 78913) >> 18;
+        if (d >= APPROX_POWERS[exponent + 1 - MIN_EXPONENT]) {
+            exponent++;
+        }
+        if (exponent < MIN_FAST_EXPONENT || exponent > MAX_FAST_EXPONENT) {
+            return ascii(Float.toString(value), dst, pos);
+        }
+
+        // Интервал чисел, которые читаются как value; у степеней двойки нижний сосед вдвое ближе
+        double ulp = Math.ulp(value);
+        double upper = d + ulp / 2;
+        double lower = (Float.floatToRawIntBits(value) & 0x7FFFFF) == 0 && value > Float.MIN_NORMAL
+                ? d - ulp / 4
+                : d - ulp / 2;
+
+        // Девяти цифр всегда достаточно для float, поэтому в интервале есть девятизначные целые
+        int scale = MAX_DIGITS - 1 - exponent;
+        double scaled;
+        double low;
+        double high;
+        if (scale >= 0) {
+            double power = POWERS[scale];
+            scaled = d * power;
+            low = lower * power;
+            high = upper * power;
+        } else {
+            double power = POWERS[-scale];
+            scaled = d / power;
+            low = lower / power;
+            high = upper / power;
+        }
+
+        long first = (long) Math.ceil(low);
+        if (first - low < MARGIN && !roundTrips(first, scale, value)) {
+            first++;
+        } else if (first - low > 1 - MARGIN && roundTrips(first - 1, scale, value)) {
+            first--;
+        }
+        long last = (long) Math.floor(high);
+        if (high - last < MARGIN && !roundTrips(last, scale, value)) {
+            last--;
+        } else if (high - last > 1 - MARGIN && roundTrips(last + 1, scale, value)) {
+            last++;
+        }
+        if (first > last) {
+            return ascii(Float.toString(value), dst, pos);
+        }
+
+        // Отбрасываем младшие цифры, пока в интервале остаётся целое
+        int removed = 0;
+        while (removed < MAX_DIGITS) {
+            long nextFirst = (first + 9) / 10;
+            long nextLast = last / 10;
+            if (nextFirst > nextLast) {
+                break;
+            }
+            first = nextFirst;
+            last = nextLast;
+            removed++;
+        }
+        long significand = Math.max(first, Math.min(last, Math.round(scaled / POWERS[removed])));
+
+        int digits = 1;
+        while (digits < INT_POWERS.length && significand >= INT_POWERS[digits]) {
+            digits++;
+        }
+        return write((int) significand, digits, exponent - (MAX_DIGITS - 1) + removed + digits - 1, dst, pos);
+    }
+
+    /**
+     * Даёт ли candidate * 10^-scale ровно value при чтении
+     */
+    private static boolean roundTrips(long candidate, int scale, float value) {
+        double x = scale >= 0 ? candidate / POWERS[scale] : candidate * POWERS[-scale];
+        // Ровно на середине между float двойное округление может отличаться от прямого
+        if ((Double.doubleToRawLongBits(x) & 0x1FFFFFFFL) == 0x10000000L) {
+            return Float.parseFloat(candidate + "E" + (-scale)) == value;
+        }
+        return (float) x == value;
+    }
+
+    /**
+     * Значащие цифры significand (их digits штук) с первой цифрой в разряде 10^exponent
+     */
+    private static int write(int significand, int digits, int exponent, byte[] dst, int pos) {
+        while (digits > 1 && significand % 10 == 0) {
+            significand /= 10;
+            digits--;
+        }
+
+        if (exponent >= -3 && exponent < 7) {
+            if (exponent < 0) {
+                dst[pos++] = '0';
+                dst[pos++] = '.';
+                for (int i = -1; i > exponent; i--) {
+                    dst[pos++] = '0';
+                }
+                return digits(significand, digits, dst, pos);
+            }
+            int integerDigits = exponent + 1;
+            if (digits <= integerDigits) {
+                pos = digits(significand, digits, dst, pos);
+                for (int i = digits; i < integerDigits; i++) {
+                    dst[pos++] = '0';
+                }
+                dst[pos++] = '.';
+                dst[pos++] = '0';
+                return pos;
+            }
+            int fraction = INT_POWERS[digits - integerDigits];
+            pos = digits(significand / fraction, integerDigits, dst, pos);
+            dst[pos++] = '.';
+            return digits(significand % fraction, digits - integerDigits, dst, pos);
+        }
+
+        // Научная запись: d.ddd E exponent
+        dst[pos++] = (byte) ('0' + significand / INT_POWERS[digits - 1]);
+        dst[pos++] = '.';
+        if (digits == 1) {
+            dst[pos++] = '0';
+        } else {
+            pos = digits(significand % INT_POWERS[digits - 1], digits - 1, dst, pos);
+        }
+        dst[pos++] = 'E';
+        if (exponent < 0) {
+            dst[pos++] = '-';
+            exponent = -exponent;
+        }
+        if (exponent >= 10) {
+            dst[pos++] = (byte) ('0' + exponent / 10);
+        }
+        dst[pos++] = (byte) ('0' + exponent % 10);
+        return pos;
+    }
+
+    /**
+     * Ровно count десятичных цифр числа, с ведущими нулями
+     */
+    private static int digits(int value, int count, byte[] dst, int pos) {
+        for (int i = pos + count - 1; i >= pos; i--) {
+            dst[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + count;
+    }
+
+    private static int ascii(String text, byte[] dst, int pos) {
+        for (int i = 0; i < text.length(); i++) {
+            dst[pos++] = (byte) text.charAt(i);
+        }
+        return pos;
+    }
+}
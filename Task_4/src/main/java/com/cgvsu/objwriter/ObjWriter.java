@@ -2,67 +2,193 @@ package com.cgvsu.objwriter;
 
 import com.cgvsu.math.Vector2f;
 import com.cgvsu.math.Vector3f;
-import com.cgvsu.math.matrix.impl.Matrix4f;
-import com.cgvsu.math.vector.impl.Vector3fImpl;
 import com.cgvsu.model.Model;
 import com.cgvsu.model.Polygon;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
 public class ObjWriter {
 
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private ObjWriter() {
     }
 
+    /**
+     * Текст OBJ целиком в строке. Для больших моделей лучше писать сразу в поток или канал
+     */
     public static String write(final Model model, final boolean applyModelTransform) {
-        StringBuilder sb = new StringBuilder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(model, applyModelTransform, out);
+        } catch (IOException e) {
+            // ByteArrayOutputStream не бросает IOException
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Записывает модель в поток через буфер фиксированного размера. Поток не закрывается
+     */
+    public static void write(final Model model, final boolean applyModelTransform, final OutputStream out) throws IOException {
+        write(model, applyModelTransform, new Output(out, null));
+    }
 
-        Matrix4f M = applyModelTransform ? model.getModelMatrix() : null;
+    /**
+     * Записывает модель в канал через буфер фиксированного размера. Канал не закрывается
+     */
+    public static void write(final Model model, final boolean applyModelTransform, final WritableByteChannel channel) throws IOException {
+        write(model, applyModelTransform, new Output(null, channel));
+    }
 
-        for (Vector3f v : model.vertices) {
-            if (M != null) {
-                Vector3fImpl r = M.transformPoint(new Vector3fImpl(v.x, v.y, v.z));
-                sb.append("v ").append(r.getX()).append(' ').append(r.getY()).append(' ').append(r.getZ()).append('\n');
-            } else {
-                sb.append("v ").append(v.x).append(' ').append(v.y).append(' ').append(v.z).append('\n');
+    private static void write(final Model model, final boolean applyModelTransform, final Output out) throws IOException {
+        if (applyModelTransform) {
+            PointTransform transform = new PointTransform(model.getModelMatrix());
+            for (Vector3f v : model.getVertices()) {
+                transform.apply(v.x, v.y, v.z);
+                out.vector3("v ", transform.x, transform.y, transform.z);
+            }
+        } else {
+            for (Vector3f v : model.getVertices()) {
+                out.vector3("v ", v.x, v.y, v.z);
             }
         }
 
-        for (Vector2f vt : model.textureVertices) {
-            sb.append("vt ").append(vt.x).append(' ').append(vt.y).append('\n');
+        for (Vector2f vt : model.getTextureVertices()) {
+            out.text("vt ");
+            out.number(vt.x);
+            out.put(' ');
+            out.number(vt.y);
+            out.put('\n');
         }
 
-        for (Vector3f vn : model.normals) {
-            sb.append("vn ").append(vn.x).append(' ').append(vn.y).append(' ').append(vn.z).append('\n');
+        for (Vector3f vn : model.getNormals()) {
+            out.vector3("vn ", vn.x, vn.y, vn.z);
         }
 
-        for (Polygon p : model.polygons) {
-            sb.append("f");
-            int n = p.getVertexIndices().size();
+        for (Polygon p : model.getPolygons()) {
+            ArrayList<Integer> vertexIndices = p.getVertexIndices();
+            ArrayList<Integer> textureIndices = p.getTextureVertexIndices();
+            ArrayList<Integer> normalIndices = p.getNormalIndices();
+            int textureCount = textureIndices != null ? textureIndices.size() : 0;
+            int normalCount = normalIndices != null ? normalIndices.size() : 0;
+
+            out.put('f');
+            int n = vertexIndices.size();
             for (int i = 0; i < n; i++) {
-                int vi = p.getVertexIndices().get(i) + 1;
-
-                Integer vti = (p.getTextureVertexIndices() != null && p.getTextureVertexIndices().size() > i)
-                        ? p.getTextureVertexIndices().get(i) + 1
-                        : null;
-
-                Integer vni = (p.getNormalIndices() != null && p.getNormalIndices().size() > i)
-                        ? p.getNormalIndices().get(i) + 1
-                        : null;
-
-                sb.append(' ');
-                sb.append(vi);
-                if (vti != null || vni != null) {
-                    sb.append('/');
-                    if (vti != null) {
-                        sb.append(vti);
+                out.put(' ');
+                out.number(vertexIndices.get(i) + 1);
+                if (i < textureCount || i < normalCount) {
+                    out.put('/');
+                    if (i < textureCount) {
+                        out.number(textureIndices.get(i) + 1);
                     }
-                    if (vni != null) {
-                        sb.append('/').append(vni);
+                    if (i < normalCount) {
+                        out.put('/');
+                        out.number(normalIndices.get(i) + 1);
                     }
                 }
             }
-            sb.append('\n');
+            out.put('\n');
+        }
+
+        out.flush();
+    }
+
+    /**
+     * ASCII-текст в буфер, который сбрасывается в поток или канал при заполнении
+     */
+    private static final class Output {
+        private static final int MAX_INT_LENGTH = 11;
+
+        private final OutputStream stream;
+        private final WritableByteChannel channel;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        private int position;
+
+        Output(OutputStream stream, WritableByteChannel channel) {
+            this.stream = stream;
+            this.channel = channel;
+        }
+
+        void vector3(String prefix, float x, float y, float z) throws IOException {
+            text(prefix);
+            number(x);
+            put(' ');
+            number(y);
+            put(' ');
+            number(z);
+            put('\n');
+        }
+
+        void put(char c) throws IOException {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = (byte) c;
+        }
+
+        void text(String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                put(text.charAt(i));
+            }
+        }
+
+        void number(float value) throws IOException {
+            reserve(FloatFormat.MAX_LENGTH);
+            position = FloatFormat.format(value, buffer, position);
+        }
+
+        void number(int value) throws IOException {
+            reserve(MAX_INT_LENGTH);
+            if (value < 0) {
+                buffer[position++] = '-';
+                // Как Integer.toString: модуль Integer.MIN_VALUE не помещается в int
+                if (value == Integer.MIN_VALUE) {
+                    text("2147483648");
+                    return;
+                }
+                value = -value;
+            }
+            int digits = 1;
+            for (int bound = 10; digits < 10 && value >= bound; bound *= 10) {
+                digits++;
+            }
+            for (int i = position + digits - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            position += digits;
+        }
+
+        private void reserve(int length) throws IOException {
+            if (position + length > buffer.length) {
+                flush();
+            }
         }
 
-        return sb.toString();
+        void flush() throws IOException {
+            if (position == 0) {
+                return;
+            }
+            if (channel != null) {
+                wrapped.clear().limit(position);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+            } else {
+                stream.write(buffer, 0, position);
+            }
+            position = 0;
+        }
     }
 }
@@ -0,0 +1,144 @@
+package com.cgvsu.objwriter;
+
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.Model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Запись модели в двоичный PLY (binary_little_endian 1.0): вершины с координатами и полигоны
+ * списками индексов. В PLY атрибуты задаются для вершин, поэтому нормали и текстурные координаты
+ * записываются, только если у каждого угла их индекс совпадает с индексом вершины
+ * (так нормали раскладывает ModelProcessor.calculateNormals). Полигоны больше чем из 255 вершин
+ * не помещаются в список с длиной uchar и записываются треугольниками сетки (см. Triangulator).
+ */
+public class PlyWriter {
+
+    private static final int MAX_LIST_SIZE = 255;
+
+    private PlyWriter() {
+    }
+
+    /**
+     * Записывает модель в поток. Поток не закрывается
+     */
+    public static void write(final Model model, final boolean applyModelTransform, final OutputStream out) throws IOException {
+        write(model, applyModelTransform, Channels.newChannel(out));
+    }
+
+    /**
+     * Записывает модель в канал. Канал не закрывается
+     */
+    public static void write(final Model model, final boolean applyModelTransform, final WritableByteChannel channel) throws IOException {
+        CompiledMesh mesh = model.getCompiledMesh();
+        int vertexCount = mesh.getVertexCount();
+        int polygonCount = mesh.getPolygonCount();
+        int[] offsets = mesh.getPolygonOffsets();
+        int[] vertexIndices = mesh.getPolygonVertexIndices();
+        int[] triangleOffsets = mesh.getPolygonTriangleOffsets();
+        int[] triangleIndices = mesh.getTriangleVertexIndices();
+
+        boolean withNormals = mesh.getNormalCount() == vertexCount
+                && sameIndices(vertexIndices, mesh.getPolygonNormalIndices());
+        boolean withTexCoords = mesh.getTexCoordCount() == vertexCount
+                && sameIndices(vertexIndices, mesh.getPolygonTexCoordIndices());
+
+        float[] positions = mesh.getPositions();
+        float[] normals = withNormals ? mesh.getNormals() : null;
+        if (applyModelTransform) {
+            PointTransform transform = new PointTransform(model.getModelMatrix());
+            positions = transform.applyAll(positions);
+            if (withNormals) {
+                normals = transformNormals(transform, normals);
+            }
+        }
+        float[] texCoords = mesh.getTexCoords();
+
+        long faceCount = 0;
+        for (int i = 0; i < polygonCount; i++) {
+            int size = offsets[i + 1] - offsets[i];
+            faceCount += size <= MAX_LIST_SIZE ? 1 : size - 2;
+        }
+
+        StringBuilder header = new StringBuilder();
+        header.append("ply\n");
+        header.append("format binary_little_endian 1.0\n");
+        header.append("comment exported by CGVSU\n");
+        header.append("element vertex ").append(vertexCount).append('\n');
+        header.append("property float x\nproperty float y\nproperty float z\n");
+        if (withNormals) {
+            header.append("property float nx\nproperty float ny\nproperty float nz\n");
+        }
+        if (withTexCoords) {
+            header.append("property float s\nproperty float t\n");
+        }
+        header.append("element face ").append(faceCount).append('\n');
+        header.append("property list uchar int vertex_indices\n");
+        header.append("end_header\n");
+        byte[] headerBytes = header.toString().getBytes(StandardCharsets.US_ASCII);
+
+        BinaryOutput out = new BinaryOutput(channel);
+        out.reserve(headerBytes.length).put(headerBytes);
+
+        int vertexSize = 4 * (3 + (withNormals ? 3 : 0) + (withTexCoords ? 2 : 0));
+        for (int i = 0; i < vertexCount; i++) {
+            ByteBuffer buffer = out.reserve(vertexSize);
+            buffer.putFloat(positions[i * 3]).putFloat(positions[i * 3 + 1]).putFloat(positions[i * 3 + 2]);
+            if (withNormals) {
+                buffer.putFloat(normals[i * 3]).putFloat(normals[i * 3 + 1]).putFloat(normals[i * 3 + 2]);
+            }
+            if (withTexCoords) {
+                buffer.putFloat(texCoords[i * 2]).putFloat(texCoords[i * 2 + 1]);
+            }
+        }
+
+        for (int i = 0; i < polygonCount; i++) {
+            int start = offsets[i];
+            int size = offsets[i + 1] - start;
+            if (size <= MAX_LIST_SIZE) {
+                ByteBuffer buffer = out.reserve(1 + 4 * size);
+                buffer.put((byte) size);
+                for (int j = start; j < start + size; j++) {
+                    buffer.putInt(vertexIndices[j]);
+                }
+            } else {
+                for (int t = triangleOffsets[i] * 3; t < triangleOffsets[i + 1] * 3; t += 3) {
+                    out.reserve(1 + 4 * 3).put((byte) 3)
+                            .putInt(triangleIndices[t]).putInt(triangleIndices[t + 1]).putInt(triangleIndices[t + 2]);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static boolean sameIndices(int[] vertexIndices, int[] attributeIndices) {
+        for (int i = 0; i < vertexIndices.length; i++) {
+            if (attributeIndices[i] != vertexIndices[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Нормали после поворота модели. Масштаб модели одинаков по осям, поэтому достаточно
+     * повернуть нормаль верхней 3x3 частью матрицы и снова нормировать
+     */
+    private static float[] transformNormals(PointTransform transform, float[] normals) {
+        float[] result = new float[normals.length];
+        for (int i = 0; i < normals.length; i += 3) {
+            transform.applyDirection(normals[i], normals[i + 1], normals[i + 2]);
+            float length = (float) Math.sqrt(transform.x * transform.x + transform.y * transform.y + transform.z * transform.z);
+            float scale = length > 0f ? 1f / length : 0f;
+            result[i] = transform.x * scale;
+            result[i + 1] = transform.y * scale;
+            result[i + 2] = transform.z * scale;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+package com.cgvsu.objwriter;
+
+import com.cgvsu.math.matrix.impl.Matrix4f;
+
+/**
+ * Преобразование точек матрицей модели без создания векторов: элементы матрицы хранятся в полях,
+ * результат последнего вызова {@link #apply} - в полях x, y, z.
+ * Операции те же, что в Matrix4f.transformPoint, поэтому результат совпадает до бита
+ */
+final class PointTransform {
+
+    private final float m00, m01, m02, m03;
+    private final float m10, m11, m12, m13;
+    private final float m20, m21, m22, m23;
+    private final float m30, m31, m32, m33;
+
+    float x;
+    float y;
+    float z;
+
+    PointTransform(Matrix4f M) {
+        m00 = M.get(0, 0); m01 = M.get(0, 1); m02 = M.get(0, 2); m03 = M.get(0, 3);
+        m10 = M.get(1, 0); m11 = M.get(1, 1); m12 = M.get(1, 2); m13 = M.get(1, 3);
+        m20 = M.get(2, 0); m21 = M.get(2, 1); m22 = M.get(2, 2); m23 = M.get(2, 3);
+        m30 = M.get(3, 0); m31 = M.get(3, 1); m32 = M.get(3, 2); m33 = M.get(3, 3);
+    }
+
+    void apply(float vx, float vy, float vz) {
+        x = m00 * vx + m01 * vy + m02 * vz + m03;
+        y = m10 * vx + m11 * vy + m12 * vz + m13;
+        z = m20 * vx + m21 * vy + m22 * vz + m23;
+        float w = m30 * vx + m31 * vy + m32 * vz + m33;
+        if (w != 0f) {
+            x /= w;
+            y /= w;
+            z /= w;
+        }
+    }
+
+    /**
+     * Направление без переноса и перспективного деления (как Matrix4f.transformDirection)
+     */
+    void applyDirection(float vx, float vy, float vz) {
+        x = m00 * vx + m01 * vy + m02 * vz;
+        y = m10 * vx + m11 * vy + m12 * vz;
+        z = m20 * vx + m21 * vy + m22 * vz;
+    }
+
+    /**
+     * Координаты всех точек массива (по три на точку) после преобразования
+     */
+    float[] applyAll(float[] points) {
+        float[] result = new float[points.length];
+        for (int i = 0; i < points.length; i += 3) {
+            apply(points[i], points[i + 1], points[i + 2]);
+            result[i] = x;
+            result[i + 1] = y;
+            result[i + 2] = z;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+package com.cgvsu.objwriter;
+
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.Model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Запись модели в двоичный STL: заголовок 80 байт, число треугольников и по 50 байт на треугольник
+ * (нормаль грани, три вершины, два байта атрибутов). Треугольники берутся из сетки модели
+ * (см. Triangulator); нормаль грани считается по вершинам треугольника.
+ */
+public class StlWriter {
+
+    private static final int HEADER_SIZE = 80;
+    private static final int TRIANGLE_SIZE = 50;
+    private static final String HEADER = "Binary STL exported by CGVSU";
+
+    private StlWriter() {
+    }
+
+    /**
+     * Записывает модель в поток. Поток не закрывается
+     */
+    public static void write(final Model model, final boolean applyModelTransform, final OutputStream out) throws IOException {
+        write(model, applyModelTransform, Channels.newChannel(out));
+    }
+
+    /**
+     * Записывает модель в канал. Канал не закрывается
+     */
+    public static void write(final Model model, final boolean applyModelTransform, final WritableByteChannel channel) throws IOException {
+        CompiledMesh mesh = model.getCompiledMesh();
+        float[] positions = applyModelTransform
+                ? new PointTransform(model.getModelMatrix()).applyAll(mesh.getPositions())
+                : mesh.getPositions();
+        int[] indices = mesh.getTriangleVertexIndices();
+        int triangleCount = mesh.getTriangleCount();
+
+        BinaryOutput out = new BinaryOutput(channel);
+        ByteBuffer buffer = out.reserve(HEADER_SIZE + 4);
+        byte[] header = HEADER.getBytes(StandardCharsets.US_ASCII);
+        buffer.put(header).put(new byte[HEADER_SIZE - header.length]);
+        buffer.putInt(triangleCount);
+
+        for (int t = 0; t < triangleCount * 3; t += 3) {
+            writeTriangle(out.reserve(TRIANGLE_SIZE), positions,
+                    indices[t] * 3, indices[t + 1] * 3, indices[t + 2] * 3);
+        }
+        out.flush();
+    }
+
+    private static void writeTriangle(ByteBuffer buffer, float[] positions, int a, int b, int c) {
+        float x0 = positions[a], y0 = positions[a + 1], z0 = positions[a + 2];
+        float x1 = positions[b], y1 = positions[b + 1], z1 = positions[b + 2];
+        float x2 = positions[c], y2 = positions[c + 1], z2 = positions[c + 2];
+
+        float ex1 = x1 - x0, ey1 = y1 - y0, ez1 = z1 - z0;
+        float ex2 = x2 - x0, ey2 = y2 - y0, ez2 = z2 - z0;
+        float nx = ey1 * ez2 - ez1 * ey2;
+        float ny = ez1 * ex2 - ex1 * ez2;
+        float nz = ex1 * ey2 - ey1 * ex2;
+        float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        // У вырожденного треугольника нормаль нулевая: читатели STL пересчитывают её сами
+        if (length > 0f) {
+            nx /= length;
+            ny /= length;
+            nz /= length;
+        }
+
+        buffer.putFloat(nx).putFloat(ny).putFloat(nz);
+        buffer.putFloat(x0).putFloat(y0).putFloat(z0);
+        buffer.putFloat(x1).putFloat(y1).putFloat(z1);
+        buffer.putFloat(x2).putFloat(y2).putFloat(z2);
+        buffer.putShort((short) 0);
+    }
+}
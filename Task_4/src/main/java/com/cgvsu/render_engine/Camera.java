@@ -119,6 +119,13 @@ public class Camera {
         return GraphicConveyor.perspective(fov, aspectRatio, nearPlane, farPlane);
     }
 
+    /**
+     * Пирамида видимости камеры в мировых координатах
+     */
+    public Frustum getFrustum() {
+        return new Frustum((Matrix4f) getProjectionMatrix().multiply(getViewMatrix()));
+    }
+
     private Vector3fImpl position;
     private Vector3fImpl target;
     private float fov;
@@ -0,0 +1,211 @@
+package com.cgvsu.render_engine;
+
+import java.util.Arrays;
+
+/**
+ * Отсечение треугольников и отрезков ближней и дальней плоскостями в однородных координатах
+ * (алгоритм Сазерленда - Ходжмена), до деления на w. Точка внутри, если -w <= z <= w.
+ * Затем многоугольник отсекается боковыми плоскостями защитной полосы растеризатора:
+ * |x / w * width| и |y / w * height| не больше {@link Rasterizer#GUARD_BAND_CLIP} пикселей,
+ * поэтому вершины у ближней плоскости не выходят за пределы фиксированной точки.
+ * Нормали и текстурные координаты новых вершин интерполируются с тем же параметром, что и координаты:
+ * в пространстве отсечения атрибуты линейны.
+ *
+ * Вершины отсечённых треугольников дописываются в буферы кадра в экранных координатах
+ * в том же формате, что и у {@link VertexProcessor}. Внутри кадра записанное не перезаписывается:
+ * растеризатор по тайлам читает буферы только в конце кадра, а при расширении буфера
+ * уже отправленные треугольники продолжают ссылаться на старый массив.
+ */
+final class Clipper {
+
+    // Каждая из шести плоскостей добавляет не больше одной вершины к трём вершинам треугольника
+    private static final int MAX_VERTICES = 9;
+    // Плоскости отсечения: ближняя, дальняя и четыре боковые плоскости защитной полосы
+    private static final int NEAR = 0;
+    private static final int FAR = 1;
+    private static final int RIGHT = 2;
+    private static final int LEFT = 3;
+    private static final int TOP = 4;
+    private static final int PLANES = 6;
+    // Рабочая вершина: x, y, z, w в пространстве отсечения, нормаль, текстурные координаты
+    private static final int STRIDE = 9;
+
+    private float[] screenPositions = new float[3 * 64];
+    private float[] normals = new float[3 * 64];
+    private float[] texCoords = new float[2 * 64];
+    private int vertexCount;
+    private int first;
+
+    private final float[] polygon = new float[MAX_VERTICES * STRIDE];
+    private final float[] clipped = new float[MAX_VERTICES * STRIDE];
+
+    /**
+     * Начало кадра: буферы снова заполняются с начала
+     */
+    void reset() {
+        vertexCount = 0;
+    }
+
+    /**
+     * Отсекает треугольник p0, p1, p2; нормали и текстурные координаты могут быть null
+     *
+     * @param clip - координаты вершин в пространстве отсечения, по четыре на вершину
+     * @return число вершин многоугольника (0, если он отсечён целиком); вершины начинаются с {@link #getFirst()}
+     */
+    int clipTriangle(
+            float[] clip, int p0, int p1, int p2,
+            float[] sourceNormals, int n0, int n1, int n2,
+            float[] sourceTexCoords, int t0, int t1, int t2,
+            int width, int height) {
+        load(0, clip, p0, sourceNormals, n0, sourceTexCoords, t0);
+        load(1, clip, p1, sourceNormals, n1, sourceTexCoords, t1);
+        load(2, clip, p2, sourceNormals, n2, sourceTexCoords, t2);
+
+        // Плоскости обходятся парами: после каждой пары вершины снова лежат в polygon
+        int count = 3;
+        for (int plane = 0; plane < PLANES && count >= 3; plane += 2) {
+            count = clipPolygon(polygon, count, clipped, plane, width, height);
+            count = clipPolygon(clipped, count, polygon, plane + 1, width, height);
+        }
+        if (count < 3) {
+            return 0;
+        }
+
+        ensureCapacity(vertexCount + count);
+        first = vertexCount;
+        float halfWidth = width / 2.0F;
+        float halfHeight = height / 2.0F;
+        for (int i = 0; i < count; i++, vertexCount++) {
+            int v = i * STRIDE;
+            float w = polygon[v + 3];
+            screenPositions[vertexCount * 3] = polygon[v] / w * width + halfWidth;
+            screenPositions[vertexCount * 3 + 1] = -polygon[v + 1] / w * height + halfHeight;
+            screenPositions[vertexCount * 3 + 2] = polygon[v + 2] / w;
+            if (sourceNormals != null) {
+                System.arraycopy(polygon, v + 4, normals, vertexCount * 3, 3);
+            }
+            if (sourceTexCoords != null) {
+                System.arraycopy(polygon, v + 7, texCoords, vertexCount * 2, 2);
+            }
+        }
+        return count;
+    }
+
+    private void load(int slot, float[] clip, int p, float[] sourceNormals, int n, float[] sourceTexCoords, int t) {
+        int v = slot * STRIDE;
+        System.arraycopy(clip, p * 4, polygon, v, 4);
+        if (sourceNormals != null) {
+            System.arraycopy(sourceNormals, n * 3, polygon, v + 4, 3);
+        }
+        if (sourceTexCoords != null) {
+            System.arraycopy(sourceTexCoords, t * 2, polygon, v + 7, 2);
+        }
+    }
+
+    /**
+     * Расстояние со знаком от вершины до плоскости: неотрицательное внутри.
+     * Вершина - x, y, z, w начиная с offset
+     */
+    private static float distance(float[] v, int offset, int plane, int width, int height) {
+        float w = v[offset + 3];
+        switch (plane) {
+            case NEAR:
+                return w + v[offset + 2];
+            case FAR:
+                return w - v[offset + 2];
+            case RIGHT:
+                return Rasterizer.GUARD_BAND_CLIP * w - v[offset] * width;
+            case LEFT:
+                return Rasterizer.GUARD_BAND_CLIP * w + v[offset] * width;
+            case TOP:
+                return Rasterizer.GUARD_BAND_CLIP * w - v[offset + 1] * height;
+            default: // нижняя
+                return Rasterizer.GUARD_BAND_CLIP * w + v[offset + 1] * height;
+        }
+    }
+
+    /**
+     * Один шаг Сазерленда - Ходжмена по плоскости plane
+     */
+    private static int clipPolygon(float[] in, int count, float[] out, int plane, int width, int height) {
+        int written = 0;
+        for (int i = 0; i < count; i++) {
+            int a = i * STRIDE;
+            int b = ((i + 1) % count) * STRIDE;
+            float da = distance(in, a, plane, width, height);
+            float db = distance(in, b, plane, width, height);
+            if (da >= 0) {
+                System.arraycopy(in, a, out, written++ * STRIDE, STRIDE);
+            }
+            if ((da >= 0) != (db >= 0)) {
+                float t = da / (da - db);
+                int o = written++ * STRIDE;
+                for (int k = 0; k < STRIDE; k++) {
+                    out[o + k] = in[a + k] + (in[b + k] - in[a + k]) * t;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Отсекает отрезок между вершинами a и b
+     *
+     * @param out - экранные координаты концов x0, y0, x1, y1
+     * @return false, если отрезок отсечён целиком
+     */
+    static boolean clipLine(float[] clip, int a, int b, int width, int height, float[] out) {
+        float t0 = 0, t1 = 1;
+        for (int plane = 0; plane < PLANES; plane++) {
+            float da = distance(clip, a * 4, plane, width, height);
+            float db = distance(clip, b * 4, plane, width, height);
+            if (da < 0 && db < 0) {
+                return false;
+            }
+            if (da < 0) {
+                t0 = Math.max(t0, da / (da - db));
+            } else if (db < 0) {
+                t1 = Math.min(t1, da / (da - db));
+            }
+        }
+        if (t0 > t1) {
+            return false;
+        }
+        project(clip, a, b, t0, width, height, out, 0);
+        project(clip, a, b, t1, width, height, out, 2);
+        return true;
+    }
+
+    private static void project(float[] clip, int a, int b, float t, int width, int height, float[] out, int offset) {
+        float x = clip[a * 4] + (clip[b * 4] - clip[a * 4]) * t;
+        float y = clip[a * 4 + 1] + (clip[b * 4 + 1] - clip[a * 4 + 1]) * t;
+        float w = clip[a * 4 + 3] + (clip[b * 4 + 3] - clip[a * 4 + 3]) * t;
+        out[offset] = x / w * width + width / 2.0F;
+        out[offset + 1] = -y / w * height + height / 2.0F;
+    }
+
+    private void ensureCapacity(int count) {
+        if (count * 3 > screenPositions.length) {
+            int capacity = Math.max(count, vertexCount * 2);
+            screenPositions = Arrays.copyOf(screenPositions, capacity * 3);
+            normals = Arrays.copyOf(normals, capacity * 3);
+            texCoords = Arrays.copyOf(texCoords, capacity * 2);
+        }
+    }
+
+    int getFirst() {
+        return first;
+    }
+
+    float[] getScreenPositions() {
+        return screenPositions;
+    }
+
+    float[] getNormals() {
+        return normals;
+    }
+
+    float[] getTexCoords() {
+        return texCoords;
+    }
+}
@@ -0,0 +1,80 @@
+package com.cgvsu.render_engine;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Буфер цвета кадра в виде массива int в формате ARGB с предумноженной альфой.
+ * Растеризатор пишет пиксели напрямую в массив (строка за строкой, ширина строки равна width),
+ * а на экран кадр попадает одним вызовом setPixels в переиспользуемое изображение.
+ */
+public class FrameBuffer {
+
+    private static final PixelFormat<IntBuffer> PIXEL_FORMAT = PixelFormat.getIntArgbPreInstance();
+
+    private int width;
+    private int height;
+    private int[] pixels;
+    private WritableImage image;
+
+    public FrameBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    /**
+     * Меняет размер буфера. Массив пересоздаётся, только если его не хватает
+     */
+    public void resize(int width, int height) {
+        if (this.width == width && this.height == height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        if (pixels.length < width * height) {
+            pixels = new int[width * height];
+        }
+    }
+
+    /**
+     * Заполняет кадр прозрачным цветом
+     */
+    public void clear() {
+        Arrays.fill(pixels, 0, width * height, 0);
+    }
+
+    /**
+     * Массив пикселей; пиксель (x, y) лежит по индексу y * width + x
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Переносит кадр в изображение одним вызовом setPixels и возвращает его.
+     * Изображение пересоздаётся только при изменении размера кадра.
+     * Для кадра нулевого размера возвращает null. Вызывать нужно из потока JavaFX.
+     */
+    public WritableImage present() {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        if (image == null || (int) image.getWidth() != width || (int) image.getHeight() != height) {
+            image = new WritableImage(width, height);
+        }
+        image.getPixelWriter().setPixels(0, 0, width, height, PIXEL_FORMAT, pixels, 0, width);
+        return image;
+    }
+}
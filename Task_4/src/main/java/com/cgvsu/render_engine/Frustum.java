@@ -0,0 +1,77 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.matrix.impl.Matrix4f;
+
+/**
+ * Пирамида видимости: шесть плоскостей, извлечённых из матрицы проекции (метод Грибба и Хартманна).
+ * Плоскости находятся в том пространстве, из которого матрица переводит в пространство отсечения:
+ * из матрицы вид-проекция - в мировом, из матрицы модель-вид-проекция - в пространстве модели,
+ * что позволяет проверять ограничивающие объёмы модели без их преобразования.
+ * Нормали плоскостей единичные и смотрят внутрь пирамиды.
+ */
+public final class Frustum {
+
+    // a, b, c, d для левой, правой, нижней, верхней, ближней и дальней плоскостей
+    private final float[] planes = new float[24];
+
+    /**
+     * Точка p внутри, если для каждой строки r матрицы -w <= (r, p) <= w, где w - четвёртая строка
+     */
+    public Frustum(Matrix4f matrix) {
+        for (int plane = 0; plane < 6; plane++) {
+            int row = plane / 2;
+            float sign = plane % 2 == 0 ? 1 : -1;
+            float length = 0;
+            for (int col = 0; col < 4; col++) {
+                float value = matrix.get(3, col) + sign * matrix.get(row, col);
+                planes[plane * 4 + col] = value;
+                if (col < 3) {
+                    length += value * value;
+                }
+            }
+            length = (float) Math.sqrt(length);
+            if (length > 0) {
+                for (int col = 0; col < 4; col++) {
+                    planes[plane * 4 + col] /= length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Пересекает ли пирамиду параллелепипед (minX, minY, minZ, maxX, maxY, maxZ), начинающийся с offset.
+     * Проверка консервативная: параллелепипед отбрасывается, только если он целиком за одной из плоскостей
+     */
+    public boolean intersectsBox(float[] boxes, int offset) {
+        float minX = boxes[offset], minY = boxes[offset + 1], minZ = boxes[offset + 2];
+        float maxX = boxes[offset + 3], maxY = boxes[offset + 4], maxZ = boxes[offset + 5];
+        if (minX > maxX) {
+            return false;
+        }
+        for (int p = 0; p < 24; p += 4) {
+            float a = planes[p], b = planes[p + 1], c = planes[p + 2];
+            // Вершина параллелепипеда, дальше всех продвинутая вдоль нормали плоскости
+            float distance = a * (a >= 0 ? maxX : minX) + b * (b >= 0 ? maxY : minY) + c * (c >= 0 ? maxZ : minZ) + planes[p + 3];
+            if (distance < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean intersectsSphere(float x, float y, float z, float radius) {
+        for (int p = 0; p < 24; p += 4) {
+            if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Плоскости по четыре числа (a, b, c, d): точка внутри, если a x + b y + c z + d >= 0 для всех
+     */
+    public float[] getPlanes() {
+        return planes.clone();
+    }
+}
@@ -2,12 +2,95 @@ package com.cgvsu.render_engine;
 
 import com.cgvsu.math.Vector2f;
 import com.cgvsu.math.Vector3f;
-import javafx.scene.image.PixelWriter;
-import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 
 public class Rasterizer {
 
+    /**
+     * Алгоритм обхода пикселей треугольника
+     */
+    public enum Mode {
+        /** Обход ограничивающего прямоугольника с вызовом barycentric() для каждого пикселя */
+        BARYCENTRIC,
+        /** Инкрементальные рёберные функции в фиксированной точке */
+        EDGE_FUNCTION
+    }
+
+    /**
+     * Какие треугольники отбрасываются по ориентации на экране. Лицевой считается сторона,
+     * с которой вершины идут против часовой стрелки (как в OBJ)
+     */
+    public enum CullMode {
+        /** Рисуются обе стороны */
+        NONE,
+        /** Отбрасываются треугольники, повёрнутые к камере обратной стороной */
+        BACK,
+        /** Отбрасываются лицевые треугольники */
+        FRONT
+    }
+
+    /**
+     * Ядро закрашивания треугольника. Выбирается один раз на треугольник по тому, что передал
+     * RenderEngine (текстура при useTexture, освещение при useLighting и lightEnabled) и что задано
+     * для самого треугольника (текстурные координаты, нормали)
+     */
+    public enum Shading {
+        /** Только глубина: буфер цвета не передан */
+        DEPTH_ONLY,
+        /** Один цвет на весь треугольник */
+        FLAT,
+        /** Цвет заливки, освещение по интерполированной нормали */
+        LAMBERT,
+        /** Текстура с постоянной для треугольника освещённостью */
+        TEXTURE,
+        /** Текстура и освещение по интерполированной нормали */
+        TEXTURE_LAMBERT;
+
+        /**
+         * @param textured - есть текстура и текстурные координаты
+         * @param smooth - освещение включено и есть нормали
+         */
+        public static Shading select(boolean textured, boolean smooth) {
+            if (textured) {
+                return smooth ? TEXTURE_LAMBERT : TEXTURE;
+            }
+            return smooth ? LAMBERT : FLAT;
+        }
+    }
+
+    /**
+     * Итог подготовки треугольника (см. {@link #setupTriangle})
+     */
+    public enum Setup {
+        /** Треугольник нужно растеризовать */
+        ACCEPTED,
+        /** Отброшен по ориентации */
+        CULLED_FACING,
+        /** Нулевая площадь после привязки к субпиксельной сетке или недопустимые координаты */
+        DEGENERATE,
+        /** Ограничивающий прямоугольник не содержит ни одного центра пикселя */
+        SUBPIXEL,
+        /**
+         * Треугольник нужно растеризовать, но вершины выходят за допустимые для фиксированной точки
+         * координаты, поэтому центры пикселей не проверяются
+         */
+        OUTSIDE_GUARD_BAND
+    }
+
+    // Число бит дробной части субпиксельных координат (1/16 пикселя)
+    private static final int SUBPIXEL_BITS = 4;
+    private static final int SUBPIXEL_ONE = 1 << SUBPIXEL_BITS;
+    private static final int SUBPIXEL_HALF = SUBPIXEL_ONE >> 1;
+    // Предел экранных координат, при котором произведения в рёберных функциях не переполняют long
+    private static final float GUARD_BAND = 1 << 26;
+    // Граница, по которой режутся треугольники за защитной полосой, с запасом на округление
+    // (по ней же отсекает и Clipper)
+    static final float GUARD_BAND_CLIP = GUARD_BAND / 2;
+    // Вершина при отсечении по защитной полосе: x, y, z, нормаль, текстурные координаты
+    private static final int CLIP_STRIDE = 8;
+    // Треугольник после отсечения четырьмя прямыми - не больше семи вершин
+    private static final int CLIP_MAX_VERTICES = 7;
+
     /**
      * Растеризация треугольника с использованием барицентрических координат
      * @param v0, v1, v2 - вершины треугольника (x, y, z)
@@ -15,8 +98,8 @@ public class Rasterizer {
      * @param t0, t1, t2 - текстурные координаты (могут быть null)
      * @param color - цвет для заливки
      * @param zBuffer - Z-буфер для проверки глубины
-     * @param pixelWriter - для записи пикселей
-     * @param texture - текстура (может быть null)
+     * @param colorBuffer - буфер цвета кадра (ARGB с предумноженной альфой, ширина строки - ширина Z-буфера)
+     * @param texture - выборка из текстуры (может быть null)
      * @param lightDir - направление света (нормализованное)
      * @param ambientStrength - сила окружающего освещения (0-1)
      */
@@ -26,11 +109,11 @@ public class Rasterizer {
             Vector2f t0, Vector2f t1, Vector2f t2,
             Color color,
             ZBuffer zBuffer,
-            PixelWriter pixelWriter,
-            WritableImage texture,
+            int[] colorBuffer,
+            TextureSampler texture,
             Vector3f lightDir,
             float ambientStrength) {
-        rasterizeTriangle(v0, v1, v2, n0, n1, n2, t0, t1, t2, color, zBuffer, pixelWriter, texture, lightDir, ambientStrength, true, 1.0f);
+        rasterizeTriangle(v0, v1, v2, n0, n1, n2, t0, t1, t2, color, zBuffer, colorBuffer, texture, lightDir, ambientStrength, true, 1.0f);
     }
     
     /**
@@ -40,8 +123,8 @@ public class Rasterizer {
      * @param t0, t1, t2 - текстурные координаты (могут быть null)
      * @param color - цвет для заливки
      * @param zBuffer - Z-буфер для проверки глубины
-     * @param pixelWriter - для записи пикселей
-     * @param texture - текстура (может быть null)
+     * @param colorBuffer - буфер цвета кадра (ARGB с предумноженной альфой, ширина строки - ширина Z-буфера)
+     * @param texture - выборка из текстуры (может быть null)
      * @param lightDir - направление света (нормализованное)
      * @param ambientStrength - сила окружающего освещения (0-1)
      * @param lightEnabled - включено ли освещение
@@ -53,13 +136,20 @@ public class Rasterizer {
             Vector2f t0, Vector2f t1, Vector2f t2,
             Color color,
             ZBuffer zBuffer,
-            PixelWriter pixelWriter,
-            WritableImage texture,
+            int[] colorBuffer,
+            TextureSampler texture,
             Vector3f lightDir,
             float ambientStrength,
             boolean lightEnabled,
             float lightIntensity) {
 
+        int width = zBuffer.getWidth();
+        int baseArgb = premultipliedArgb(color);
+        boolean textured = texture != null && t0 != null && t1 != null && t2 != null;
+        float lod = textured
+                ? textureLod(texture, v0.x, v0.y, v1.x, v1.y, v2.x, v2.y, t0.x, t0.y, t1.x, t1.y, t2.x, t2.y)
+                : 0;
+
         // Находим ограничивающий прямоугольник
         int minX = (int) Math.max(0, Math.min(Math.min(v0.x, v1.x), v2.x));
         int maxX = (int) Math.min(zBuffer.getWidth() - 1, Math.max(Math.max(v0.x, v1.x), v2.x));
@@ -85,40 +175,608 @@ public class Rasterizer {
                     continue;
                 }
 
-                // Интерполируем нормаль
-                Vector3f normal = interpolateVector(n0, n1, n2, bary);
-                normal.normalize();
-
-                // Вычисляем освещение
+                // Вычисляем освещение; нормаль интерполируется, только если оно включено
                 float finalLightIntensity = 1.0f;
                 if (lightEnabled) {
+                    Vector3f normal = interpolateVector(n0, n1, n2, bary);
+                    normal.normalize();
                     // Простая модель Ламберта
                     float diffuse = Math.max(0, Vector3f.dot(normal, lightDir));
                     finalLightIntensity = ambientStrength + (1 - ambientStrength) * diffuse * lightIntensity;
                     finalLightIntensity = Math.min(1.0f, finalLightIntensity);
                 }
 
-                Color finalColor = color;
+                int argb = baseArgb;
 
                 // Если есть текстура, используем её
-                if (texture != null && t0 != null && t1 != null && t2 != null) {
+                if (textured) {
                     Vector2f texCoord = interpolateTexCoord(t0, t1, t2, bary);
-                    finalColor = sampleTexture(texture, texCoord);
+                    argb = texture.sample(texCoord.x, texCoord.y, lod);
                 }
 
                 // Применяем освещение
-                finalColor = new Color(
-                        finalColor.getRed() * finalLightIntensity,
-                        finalColor.getGreen() * finalLightIntensity,
-                        finalColor.getBlue() * finalLightIntensity,
-                        finalColor.getOpacity()
-                );
-
-                pixelWriter.setColor(x, y, finalColor);
+                colorBuffer[y * width + x] = modulate(argb, finalLightIntensity);
             }
         }
     }
 
+    /**
+     * Растеризация треугольника инкрементальными рёберными функциями.
+     * Вершины переводятся в фиксированную точку с точностью 1/16 пикселя, значения
+     * рёберных функций в пределах строки изменяются на постоянные приращения,
+     * пиксели на общих рёбрах закрашиваются по правилу top-left ровно один раз.
+     * Цвет записывается упакованным ARGB с предумноженной альфой в colorBuffer (строка за строкой, ширина строки - ширина Z-буфера).
+     * Обходятся только пиксели внутри прямоугольника отсечения [clipMinX, clipMaxX] x [clipMinY, clipMaxY],
+     * результат для каждого пикселя не зависит от выбора прямоугольника, поэтому экран можно
+     * растеризовать по тайлам в разных потоках. На пиксель не создаётся ни одного объекта.
+     * @param colorBuffer - буфер цвета кадра размером не меньше width * height
+     * @param clipMinX, clipMinY, clipMaxX, clipMaxY - прямоугольник отсечения (включительно)
+     * Остальные параметры совпадают с {@link #rasterizeTriangle(Vector3f, Vector3f, Vector3f, Vector3f, Vector3f, Vector3f,
+     * Vector2f, Vector2f, Vector2f, Color, ZBuffer, int[], TextureSampler, Vector3f, float, boolean, float)}.
+     */
+    public static void rasterizeTriangleIncremental(
+            Vector3f v0, Vector3f v1, Vector3f v2,
+            Vector3f n0, Vector3f n1, Vector3f n2,
+            Vector2f t0, Vector2f t1, Vector2f t2,
+            Color color,
+            ZBuffer zBuffer,
+            int[] colorBuffer,
+            TextureSampler texture,
+            Vector3f lightDir,
+            float ambientStrength,
+            boolean lightEnabled,
+            float lightIntensity,
+            int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+
+        float[] positions = {v0.x, v0.y, v0.z, v1.x, v1.y, v1.z, v2.x, v2.y, v2.z};
+        float[] normals = (n0 != null && n1 != null && n2 != null)
+                ? new float[] {n0.x, n0.y, n0.z, n1.x, n1.y, n1.z, n2.x, n2.y, n2.z}
+                : null;
+        float[] texCoords = (t0 != null && t1 != null && t2 != null)
+                ? new float[] {t0.x, t0.y, t1.x, t1.y, t2.x, t2.y}
+                : null;
+
+        rasterizeTriangleIndexed(
+                positions, 0, 1, 2,
+                normals, 0, 1, 2,
+                texCoords, 0, 1, 2,
+                color, zBuffer, colorBuffer, texture, lightDir,
+                ambientStrength, lightEnabled, lightIntensity,
+                clipMinX, clipMinY, clipMaxX, clipMaxY);
+    }
+
+    /**
+     * То же, что {@link #rasterizeTriangleIncremental}, но вершины берутся из плоских массивов
+     * по индексам, как их оставляет {@link VertexProcessor}.
+     * @param positions - экранные координаты вершин (x, y, z подряд), p0, p1, p2 - номера вершин
+     * @param normals - нормали (x, y, z подряд) или null, тогда нормаль считается равной (0, 0, 1)
+     * @param texCoords - текстурные координаты (u, v подряд) или null, если текстура не используется
+     * @param colorBuffer - буфер цвета или null, тогда заполняется только Z-буфер
+     * Пиксели строки закрашиваются ядром из {@link Shading}, выбранным один раз на треугольник.
+     * Треугольник с вершинами за защитной полосой сначала режется по ней (см. {@link Setup#OUTSIDE_GUARD_BAND}).
+     */
+    public static void rasterizeTriangleIndexed(
+            float[] positions, int p0, int p1, int p2,
+            float[] normals, int n0, int n1, int n2,
+            float[] texCoords, int t0, int t1, int t2,
+            Color color,
+            ZBuffer zBuffer,
+            int[] colorBuffer,
+            TextureSampler texture,
+            Vector3f lightDir,
+            float ambientStrength,
+            boolean lightEnabled,
+            float lightIntensity,
+            int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+
+        p0 *= 3; p1 *= 3; p2 *= 3;
+        if (!isFinite(positions, p0) || !isFinite(positions, p1) || !isFinite(positions, p2)) {
+            return;
+        }
+        if (!insideGuardBand(positions, p0) || !insideGuardBand(positions, p1) || !insideGuardBand(positions, p2)) {
+            // В фиксированную точку такой треугольник не помещается: рисуем его части внутри защитной полосы
+            rasterizeClipped(positions, p0, p1, p2, normals, n0, n1, n2, texCoords, t0, t1, t2,
+                    color, zBuffer, colorBuffer, texture, lightDir, ambientStrength, lightEnabled, lightIntensity,
+                    clipMinX, clipMinY, clipMaxX, clipMaxY);
+            return;
+        }
+
+        // Вершины в фиксированной точке
+        long x0 = toFixed(positions[p0]), y0 = toFixed(positions[p0 + 1]);
+        long x1 = toFixed(positions[p1]), y1 = toFixed(positions[p1 + 1]);
+        long x2 = toFixed(positions[p2]), y2 = toFixed(positions[p2 + 1]);
+
+        long area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+        if (area == 0) {
+            return; // Вырожденный треугольник
+        }
+
+        // Приводим обход к положительной площади, меняя местами вершины 1 и 2
+        if (area < 0) {
+            int ti = p1; p1 = p2; p2 = ti;
+            ti = n1; n1 = n2; n2 = ti;
+            ti = t1; t1 = t2; t2 = ti;
+            long t = x1; x1 = x2; x2 = t;
+            t = y1; y1 = y2; y2 = t;
+            area = -area;
+        }
+
+        // Ограничивающий прямоугольник на экране и его пересечение с прямоугольником отсечения
+        int width = zBuffer.getWidth();
+        int height = zBuffer.getHeight();
+        int screenMinX = (int) Math.max(0, (Math.min(Math.min(x0, x1), x2) >> SUBPIXEL_BITS));
+        int screenMinY = (int) Math.max(0, (Math.min(Math.min(y0, y1), y2) >> SUBPIXEL_BITS));
+        int maxX = (int) Math.min(width - 1, (Math.max(Math.max(x0, x1), x2) >> SUBPIXEL_BITS));
+        int maxY = (int) Math.min(height - 1, (Math.max(Math.max(y0, y1), y2) >> SUBPIXEL_BITS));
+        int minX = Math.max(screenMinX, clipMinX);
+        int minY = Math.max(screenMinY, clipMinY);
+        maxX = Math.min(maxX, clipMaxX);
+        maxY = Math.min(maxY, clipMaxY);
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        // Коэффициенты рёберных функций E(x, y) = A * x + B * y + C.
+        // w0 противолежит вершине 0 (ребро 1-2), w1 - ребро 2-0, w2 - ребро 0-1.
+        long a0 = y1 - y2, b0 = x2 - x1, c0 = x1 * y2 - y1 * x2;
+        long a1 = y2 - y0, b1 = x0 - x2, c1 = x2 * y0 - y2 * x0;
+        long a2 = y0 - y1, b2 = x1 - x0, c2 = x0 * y1 - y0 * x1;
+
+        // Правило top-left: пиксели на правых и нижних рёбрах не закрашиваются
+        long bias0 = isTopLeft(a0, b0) ? 0 : -1;
+        long bias1 = isTopLeft(a1, b1) ? 0 : -1;
+        long bias2 = isTopLeft(a2, b2) ? 0 : -1;
+
+        // Приращения при шаге на один пиксель
+        long stepX0 = a0 << SUBPIXEL_BITS, stepY0 = b0 << SUBPIXEL_BITS;
+        long stepX1 = a1 << SUBPIXEL_BITS, stepY1 = b1 << SUBPIXEL_BITS;
+        long stepX2 = a2 << SUBPIXEL_BITS, stepY2 = b2 << SUBPIXEL_BITS;
+
+        float invArea = 1.0f / area;
+        float z0 = positions[p0 + 2], z1 = positions[p1 + 2], z2 = positions[p2 + 2];
+        float depthStepX = (z0 * stepX0 + z1 * stepX1 + z2 * stepX2) * invArea;
+
+        // Значения рёберных функций в центре первого пикселя
+        long px = ((long) minX << SUBPIXEL_BITS) + SUBPIXEL_HALF;
+        long py = ((long) minY << SUBPIXEL_BITS) + SUBPIXEL_HALF;
+        long rowW0 = a0 * px + b0 * py + c0;
+        long rowW1 = a1 * px + b1 * py + c1;
+        long rowW2 = a2 * px + b2 * py + c2;
+
+        // Глубина в строке отсчитывается от левого края треугольника на экране, а не от прямоугольника
+        // отсечения, чтобы значение в пикселе было одинаковым при любом разбиении на тайлы
+        long originShift = (long) (minX - screenMinX) << SUBPIXEL_BITS;
+        long originW0 = rowW0 - a0 * originShift;
+        long originW1 = rowW1 - a1 * originShift;
+        long originW2 = rowW2 - a2 * originShift;
+
+        // Параметры затенения, неизменные в пределах треугольника
+        boolean textured = texture != null && texCoords != null;
+        boolean smooth = lightEnabled && normals != null;
+        Shading shading = colorBuffer == null ? Shading.DEPTH_ONLY : Shading.select(textured, smooth);
+
+        float u0 = 0, v0 = 0, u1 = 0, v1 = 0, u2 = 0, v2 = 0;
+        float lod = 0;
+        if (textured) {
+            u0 = texCoords[t0 * 2]; v0 = texCoords[t0 * 2 + 1];
+            u1 = texCoords[t1 * 2]; v1 = texCoords[t1 * 2 + 1];
+            u2 = texCoords[t2 * 2]; v2 = texCoords[t2 * 2 + 1];
+            lod = textureLod(texture,
+                    positions[p0], positions[p0 + 1], positions[p1], positions[p1 + 1],
+                    positions[p2], positions[p2 + 1], u0, v0, u1, v1, u2, v2);
+        }
+
+        float n0x = 0, n0y = 0, n0z = 0, n1x = 0, n1y = 0, n1z = 0, n2x = 0, n2y = 0, n2z = 0;
+        if (smooth) {
+            n0x = normals[n0 * 3]; n0y = normals[n0 * 3 + 1]; n0z = normals[n0 * 3 + 2];
+            n1x = normals[n1 * 3]; n1y = normals[n1 * 3 + 1]; n1z = normals[n1 * 3 + 2];
+            n2x = normals[n2 * 3]; n2y = normals[n2 * 3 + 1]; n2z = normals[n2 * 3 + 2];
+        }
+        // Без нормалей освещение одинаково для всего треугольника (нормаль (0, 0, 1))
+        float flatIntensity = 1.0f;
+        if (lightEnabled && !smooth) {
+            float diffuse = Math.max(0, lightDir.z);
+            flatIntensity = Math.min(1.0f, ambientStrength + (1 - ambientStrength) * diffuse * lightIntensity);
+        }
+        float lightX = lightDir.x, lightY = lightDir.y, lightZ = lightDir.z;
+
+        float opacity = (float) color.getOpacity();
+        float baseR = (float) color.getRed() * opacity;
+        float baseG = (float) color.getGreen() * opacity;
+        float baseB = (float) color.getBlue() * opacity;
+        int baseA = toByte(opacity);
+        int flatArgb = (baseA << 24)
+                | (toByte(baseR * flatIntensity) << 16)
+                | (toByte(baseG * flatIntensity) << 8)
+                | toByte(baseB * flatIntensity);
+
+        for (int y = minY; y <= maxY; y++) {
+            long w0 = rowW0, w1 = rowW1, w2 = rowW2;
+            // Глубина пересчитывается в начале каждой строки, чтобы не накапливать ошибку
+            float rowDepth = (z0 * originW0 + z1 * originW1 + z2 * originW2) * invArea;
+            // Буфер цвета и Z-буфер уложены по строкам одинаковой ширины
+            int rowOffset = zBuffer.getRowOffset(y);
+
+            // Треугольник выпуклый: покрытые пиксели строки идут подряд, ищем начало и конец отрезка
+            int from = minX;
+            while (from <= maxX && (w0 + bias0 | w1 + bias1 | w2 + bias2) < 0) {
+                from++;
+                w0 += stepX0;
+                w1 += stepX1;
+                w2 += stepX2;
+            }
+            int to = from;
+            long e0 = w0, e1 = w1, e2 = w2;
+            while (to <= maxX && (e0 + bias0 | e1 + bias1 | e2 + bias2) >= 0) {
+                to++;
+                e0 += stepX0;
+                e1 += stepX1;
+                e2 += stepX2;
+            }
+
+            if (from < to) {
+                switch (shading) {
+                    case DEPTH_ONLY:
+                        spanDepthOnly(zBuffer, rowOffset, from, to, rowDepth, depthStepX, screenMinX);
+                        break;
+                    case FLAT:
+                        spanFlat(zBuffer, colorBuffer, rowOffset, from, to, rowDepth, depthStepX, screenMinX, flatArgb);
+                        break;
+                    case LAMBERT:
+                        spanLambert(zBuffer, colorBuffer, rowOffset, from, to, rowDepth, depthStepX, screenMinX,
+                                w0, w1, stepX0, stepX1, invArea,
+                                n0x, n0y, n0z, n1x, n1y, n1z, n2x, n2y, n2z,
+                                lightX, lightY, lightZ, ambientStrength, lightIntensity,
+                                baseA, baseR, baseG, baseB);
+                        break;
+                    case TEXTURE:
+                        spanTexture(zBuffer, colorBuffer, rowOffset, from, to, rowDepth, depthStepX, screenMinX,
+                                w0, w1, stepX0, stepX1, invArea,
+                                texture, u0, v0, u1, v1, u2, v2, lod, flatIntensity);
+                        break;
+                    case TEXTURE_LAMBERT:
+                        spanTextureLambert(zBuffer, colorBuffer, rowOffset, from, to, rowDepth, depthStepX, screenMinX,
+                                w0, w1, stepX0, stepX1, invArea,
+                                texture, u0, v0, u1, v1, u2, v2, lod,
+                                n0x, n0y, n0z, n1x, n1y, n1z, n2x, n2y, n2z,
+                                lightX, lightY, lightZ, ambientStrength, lightIntensity);
+                        break;
+                }
+            }
+
+            rowW0 += stepY0;
+            rowW1 += stepY1;
+            rowW2 += stepY2;
+            originW0 += stepY0;
+            originW1 += stepY1;
+            originW2 += stepY2;
+        }
+    }
+
+    /**
+     * Отсекает треугольник по защитной полосе на экране (|x|, |y| <= GUARD_BAND_CLIP) и растеризует
+     * получившийся многоугольник веером. Глубина, нормали и текстурные координаты интерполируются
+     * по экрану линейно, как и при растеризации, поэтому части закрашиваются так же, как целый треугольник.
+     * Случай редкий (вершина почти в плоскости камеры), поэтому буферы выделяются на каждый вызов.
+     * Индексы вершин p0, p1, p2 уже умножены на 3
+     */
+    private static void rasterizeClipped(
+            float[] positions, int p0, int p1, int p2,
+            float[] normals, int n0, int n1, int n2,
+            float[] texCoords, int t0, int t1, int t2,
+            Color color,
+            ZBuffer zBuffer,
+            int[] colorBuffer,
+            TextureSampler texture,
+            Vector3f lightDir,
+            float ambientStrength,
+            boolean lightEnabled,
+            float lightIntensity,
+            int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+
+        // Атрибуты берутся только там, где их прочитал бы растеризатор
+        float[] sourceNormals = lightEnabled ? normals : null;
+        float[] sourceTexCoords = texture != null ? texCoords : null;
+        float[] polygon = new float[CLIP_MAX_VERTICES * CLIP_STRIDE];
+        float[] clipped = new float[CLIP_MAX_VERTICES * CLIP_STRIDE];
+        loadClipVertex(polygon, 0, positions, p0, sourceNormals, n0, sourceTexCoords, t0);
+        loadClipVertex(polygon, 1, positions, p1, sourceNormals, n1, sourceTexCoords, t1);
+        loadClipVertex(polygon, 2, positions, p2, sourceNormals, n2, sourceTexCoords, t2);
+
+        int count = clipGuardBand(polygon, 3, clipped, 0, 1);
+        count = clipGuardBand(clipped, count, polygon, 0, -1);
+        count = clipGuardBand(polygon, count, clipped, 1, 1);
+        count = clipGuardBand(clipped, count, polygon, 1, -1);
+        if (count < 3) {
+            return;
+        }
+
+        float[] clippedPositions = new float[count * 3];
+        float[] clippedNormals = sourceNormals != null ? new float[count * 3] : null;
+        float[] clippedTexCoords = sourceTexCoords != null ? new float[count * 2] : null;
+        for (int i = 0; i < count; i++) {
+            int v = i * CLIP_STRIDE;
+            System.arraycopy(polygon, v, clippedPositions, i * 3, 3);
+            if (clippedNormals != null) {
+                System.arraycopy(polygon, v + 3, clippedNormals, i * 3, 3);
+            }
+            if (clippedTexCoords != null) {
+                System.arraycopy(polygon, v + 6, clippedTexCoords, i * 2, 2);
+            }
+        }
+        for (int k = 1; k + 1 < count; k++) {
+            rasterizeTriangleIndexed(
+                    clippedPositions, 0, k, k + 1,
+                    clippedNormals, 0, k, k + 1,
+                    clippedTexCoords, 0, k, k + 1,
+                    color, zBuffer, colorBuffer, texture, lightDir,
+                    ambientStrength, lightEnabled, lightIntensity,
+                    clipMinX, clipMinY, clipMaxX, clipMaxY);
+        }
+    }
+
+    private static void loadClipVertex(float[] polygon, int slot, float[] positions, int p,
+                                       float[] normals, int n, float[] texCoords, int t) {
+        int v = slot * CLIP_STRIDE;
+        System.arraycopy(positions, p, polygon, v, 3);
+        if (normals != null) {
+            System.arraycopy(normals, n * 3, polygon, v + 3, 3);
+        }
+        if (texCoords != null) {
+            System.arraycopy(texCoords, t * 2, polygon, v + 6, 2);
+        }
+    }
+
+    /**
+     * Один шаг Сазерленда - Ходжмена по прямой side * coord = GUARD_BAND_CLIP (axis: 0 - x, 1 - y).
+     * Точка пересечения всегда считается от внутренней вершины ребра к внешней, поэтому у соседних
+     * треугольников общее ребро режется в одной и той же точке
+     */
+    private static int clipGuardBand(float[] in, int count, float[] out, int axis, int side) {
+        int written = 0;
+        for (int i = 0; i < count; i++) {
+            int a = i * CLIP_STRIDE;
+            int b = ((i + 1) % count) * CLIP_STRIDE;
+            double da = GUARD_BAND_CLIP - side * (double) in[a + axis];
+            double db = GUARD_BAND_CLIP - side * (double) in[b + axis];
+            if (da >= 0) {
+                System.arraycopy(in, a, out, written++ * CLIP_STRIDE, CLIP_STRIDE);
+            }
+            if ((da >= 0) != (db >= 0)) {
+                int inside = da >= 0 ? a : b;
+                int outside = da >= 0 ? b : a;
+                double t = da >= 0 ? da / (da - db) : db / (db - da);
+                int o = written++ * CLIP_STRIDE;
+                for (int k = 0; k < CLIP_STRIDE; k++) {
+                    out[o + k] = (float) (in[inside + k] + (in[outside + k] - (double) in[inside + k]) * t);
+                }
+                // Точно на границе, чтобы округление не вывело вершину за полосу
+                out[o + axis] = side * GUARD_BAND_CLIP;
+            }
+        }
+        return written;
+    }
+
+    // Ядра закрашивания отрезка строки [from, to): без проверок режима внутри цикла.
+    // Глубина считается от левого края треугольника на экране (screenMinX), барицентрические
+    // координаты - из значений рёберных функций w0, w1 в начале отрезка, как и при обходе по пикселям
+
+    private static void spanDepthOnly(ZBuffer zBuffer, int rowOffset, int from, int to,
+                                      float rowDepth, float depthStepX, int screenMinX) {
+        for (int x = from; x < to; x++) {
+            zBuffer.testAndSetAt(rowOffset + x, rowDepth + depthStepX * (x - screenMinX));
+        }
+    }
+
+    private static void spanFlat(ZBuffer zBuffer, int[] colorBuffer, int rowOffset, int from, int to,
+                                 float rowDepth, float depthStepX, int screenMinX, int argb) {
+        for (int x = from; x < to; x++) {
+            if (zBuffer.testAndSetAt(rowOffset + x, rowDepth + depthStepX * (x - screenMinX))) {
+                colorBuffer[rowOffset + x] = argb;
+            }
+        }
+    }
+
+    private static void spanLambert(ZBuffer zBuffer, int[] colorBuffer, int rowOffset, int from, int to,
+                                    float rowDepth, float depthStepX, int screenMinX,
+                                    long w0, long w1, long stepX0, long stepX1, float invArea,
+                                    float n0x, float n0y, float n0z, float n1x, float n1y, float n1z,
+                                    float n2x, float n2y, float n2z,
+                                    float lightX, float lightY, float lightZ, float ambientStrength, float lightIntensity,
+                                    int baseA, float baseR, float baseG, float baseB) {
+        for (int x = from; x < to; x++, w0 += stepX0, w1 += stepX1) {
+            if (!zBuffer.testAndSetAt(rowOffset + x, rowDepth + depthStepX * (x - screenMinX))) {
+                continue;
+            }
+            float l0 = w0 * invArea;
+            float l1 = w1 * invArea;
+            float l2 = 1.0f - l0 - l1;
+            float intensity = lambert(n0x * l0 + n1x * l1 + n2x * l2, n0y * l0 + n1y * l1 + n2y * l2,
+                    n0z * l0 + n1z * l1 + n2z * l2, lightX, lightY, lightZ, ambientStrength, lightIntensity);
+            colorBuffer[rowOffset + x] = (baseA << 24)
+                    | (toByte(baseR * intensity) << 16)
+                    | (toByte(baseG * intensity) << 8)
+                    | toByte(baseB * intensity);
+        }
+    }
+
+    private static void spanTexture(ZBuffer zBuffer, int[] colorBuffer, int rowOffset, int from, int to,
+                                    float rowDepth, float depthStepX, int screenMinX,
+                                    long w0, long w1, long stepX0, long stepX1, float invArea,
+                                    TextureSampler sampler,
+                                    float u0, float v0, float u1, float v1, float u2, float v2, float lod,
+                                    float intensity) {
+        for (int x = from; x < to; x++, w0 += stepX0, w1 += stepX1) {
+            if (!zBuffer.testAndSetAt(rowOffset + x, rowDepth + depthStepX * (x - screenMinX))) {
+                continue;
+            }
+            float l0 = w0 * invArea;
+            float l1 = w1 * invArea;
+            float l2 = 1.0f - l0 - l1;
+            int argb = sampler.sample(u0 * l0 + u1 * l1 + u2 * l2, v0 * l0 + v1 * l1 + v2 * l2, lod);
+            colorBuffer[rowOffset + x] = modulate(argb, intensity);
+        }
+    }
+
+    private static void spanTextureLambert(ZBuffer zBuffer, int[] colorBuffer, int rowOffset, int from, int to,
+                                           float rowDepth, float depthStepX, int screenMinX,
+                                           long w0, long w1, long stepX0, long stepX1, float invArea,
+                                           TextureSampler sampler,
+                                           float u0, float v0, float u1, float v1, float u2, float v2, float lod,
+                                           float n0x, float n0y, float n0z, float n1x, float n1y, float n1z,
+                                           float n2x, float n2y, float n2z,
+                                           float lightX, float lightY, float lightZ,
+                                           float ambientStrength, float lightIntensity) {
+        for (int x = from; x < to; x++, w0 += stepX0, w1 += stepX1) {
+            if (!zBuffer.testAndSetAt(rowOffset + x, rowDepth + depthStepX * (x - screenMinX))) {
+                continue;
+            }
+            float l0 = w0 * invArea;
+            float l1 = w1 * invArea;
+            float l2 = 1.0f - l0 - l1;
+            float intensity = lambert(n0x * l0 + n1x * l1 + n2x * l2, n0y * l0 + n1y * l1 + n2y * l2,
+                    n0z * l0 + n1z * l1 + n2z * l2, lightX, lightY, lightZ, ambientStrength, lightIntensity);
+            int argb = sampler.sample(u0 * l0 + u1 * l1 + u2 * l2, v0 * l0 + v1 * l1 + v2 * l2, lod);
+            colorBuffer[rowOffset + x] = modulate(argb, intensity);
+        }
+    }
+
+    /**
+     * Уровень детализации текстуры для треугольника. Текстурные координаты интерполируются
+     * линейно в экранных координатах, поэтому их производные по x и y постоянны
+     * в пределах треугольника и выбор мип-уровня по ним точен для каждого пикселя
+     */
+    private static float textureLod(TextureSampler sampler,
+                                    float x0, float y0, float x1, float y1, float x2, float y2,
+                                    float u0, float v0, float u1, float v1, float u2, float v2) {
+        float ex1 = x1 - x0, ey1 = y1 - y0;
+        float ex2 = x2 - x0, ey2 = y2 - y0;
+        float det = ex1 * ey2 - ex2 * ey1;
+        if (det == 0) {
+            return 0;
+        }
+        float invDet = 1.0f / det;
+        float du1 = u1 - u0, du2 = u2 - u0;
+        float dv1 = v1 - v0, dv2 = v2 - v0;
+        return sampler.lod(
+                (du1 * ey2 - du2 * ey1) * invDet, (dv1 * ey2 - dv2 * ey1) * invDet,
+                (du2 * ex1 - du1 * ex2) * invDet, (dv2 * ex1 - dv1 * ex2) * invDet);
+    }
+
+    /**
+     * Освещённость по Ламберту для ненормированной интерполированной нормали
+     */
+    private static float lambert(float nx, float ny, float nz, float lightX, float lightY, float lightZ,
+                                 float ambientStrength, float lightIntensity) {
+        float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        float diffuse = 0.0f;
+        if (len != 0) {
+            diffuse = Math.max(0, (nx * lightX + ny * lightY + nz * lightZ) / len);
+        }
+        return Math.min(1.0f, ambientStrength + (1 - ambientStrength) * diffuse * lightIntensity);
+    }
+
+    private static boolean isFinite(float[] positions, int offset) {
+        return Float.isFinite(positions[offset])
+                && Float.isFinite(positions[offset + 1])
+                && Float.isFinite(positions[offset + 2]);
+    }
+
+    /**
+     * Подготовка треугольника: один раз на треугольник решает, есть ли что растеризовать.
+     * Площадь считается в тех же субпиксельных координатах, что и у растеризатора по рёберным функциям;
+     * экранная ось y направлена вниз, поэтому у лицевых треугольников площадь отрицательна
+     *
+     * @param positions - экранные координаты вершин (x, y, z подряд)
+     */
+    public static Setup setupTriangle(float[] positions, int p0, int p1, int p2, CullMode cullMode) {
+        p0 *= 3; p1 *= 3; p2 *= 3;
+        if (!isFinite(positions, p0) || !isFinite(positions, p1) || !isFinite(positions, p2)) {
+            return Setup.DEGENERATE;
+        }
+        if (!insideGuardBand(positions, p0) || !insideGuardBand(positions, p1) || !insideGuardBand(positions, p2)) {
+            // Ориентация по тем же координатам в double: фиксированная точка здесь переполнилась бы
+            double x0 = positions[p0], y0 = positions[p0 + 1];
+            double area = (positions[p1] - x0) * (positions[p2 + 1] - y0)
+                    - (positions[p1 + 1] - y0) * (positions[p2] - x0);
+            if (area == 0) {
+                return Setup.DEGENERATE;
+            }
+            if ((cullMode == CullMode.BACK && area > 0) || (cullMode == CullMode.FRONT && area < 0)) {
+                return Setup.CULLED_FACING;
+            }
+            return Setup.OUTSIDE_GUARD_BAND;
+        }
+        long x0 = toFixed(positions[p0]), y0 = toFixed(positions[p0 + 1]);
+        long x1 = toFixed(positions[p1]), y1 = toFixed(positions[p1 + 1]);
+        long x2 = toFixed(positions[p2]), y2 = toFixed(positions[p2 + 1]);
+
+        long area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+        if (area == 0) {
+            return Setup.DEGENERATE;
+        }
+        if ((cullMode == CullMode.BACK && area > 0) || (cullMode == CullMode.FRONT && area < 0)) {
+            return Setup.CULLED_FACING;
+        }
+
+        // Центры пикселей лежат в k + 1/2: ищем хотя бы один между минимумом и максимумом по каждой оси
+        if (!containsPixelCenter(Math.min(Math.min(x0, x1), x2), Math.max(Math.max(x0, x1), x2))
+                || !containsPixelCenter(Math.min(Math.min(y0, y1), y2), Math.max(Math.max(y0, y1), y2))) {
+            return Setup.SUBPIXEL;
+        }
+        return Setup.ACCEPTED;
+    }
+
+    private static boolean containsPixelCenter(long min, long max) {
+        long first = -Math.floorDiv(-(min - SUBPIXEL_HALF), SUBPIXEL_ONE);
+        long last = Math.floorDiv(max - SUBPIXEL_HALF, SUBPIXEL_ONE);
+        return first <= last;
+    }
+
+    private static boolean insideGuardBand(float[] positions, int offset) {
+        return Math.abs(positions[offset]) < GUARD_BAND && Math.abs(positions[offset + 1]) < GUARD_BAND;
+    }
+
+    private static long toFixed(float value) {
+        return Math.round((double) value * SUBPIXEL_ONE);
+    }
+
+    /**
+     * Верхнее ребро горизонтально и идёт вправо, левое идёт вверх (ось Y экрана направлена вниз)
+     */
+    private static boolean isTopLeft(long a, long b) {
+        return (a == 0 && b > 0) || a > 0;
+    }
+
+    private static int toByte(float value) {
+        int c = (int) (value * 255.0f + 0.5f);
+        return c < 0 ? 0 : Math.min(c, 255);
+    }
+
+    /**
+     * Умножение RGB-компонент упакованного цвета на интенсивность освещения
+     */
+    private static int modulate(int argb, float intensity) {
+        if (intensity == 1.0f) {
+            return argb;
+        }
+        int r = (int) (((argb >> 16) & 0xFF) * intensity + 0.5f);
+        int g = (int) (((argb >> 8) & 0xFF) * intensity + 0.5f);
+        int b = (int) ((argb & 0xFF) * intensity + 0.5f);
+        return (argb & 0xFF000000) | (Math.min(r, 255) << 16) | (Math.min(g, 255) << 8) | Math.min(b, 255);
+    }
+
+    /**
+     * Перевод цвета в упакованный ARGB с предумноженной альфой
+     */
+    private static int premultipliedArgb(Color color) {
+        float opacity = (float) color.getOpacity();
+        return (toByte(opacity) << 24)
+                | (toByte((float) color.getRed() * opacity) << 16)
+                | (toByte((float) color.getGreen() * opacity) << 8)
+                | toByte((float) color.getBlue() * opacity);
+    }
+
     /**
      * Вычисление барицентрических координат точки (px, py) относительно треугольника
      */
@@ -159,24 +817,4 @@ public class Rasterizer {
                 t0.y * bary.x + t1.y * bary.y + t2.y * bary.z
         );
     }
-
-    /**
-     * Получение цвета из текстуры по текстурным координатам
-     */
-    private static Color sampleTexture(WritableImage texture, Vector2f texCoord) {
-        int width = (int) texture.getWidth();
-        int height = (int) texture.getHeight();
-
-        // Wrap текстурных координат (повторение)
-        float u = texCoord.x - (float) Math.floor(texCoord.x);
-        float v = texCoord.y - (float) Math.floor(texCoord.y);
-
-        int x = (int) (u * (width - 1));
-        int y = (int) ((1.0f - v) * (height - 1)); // Инвертируем V
-
-        x = Math.max(0, Math.min(width - 1, x));
-        y = Math.max(0, Math.min(height - 1, y));
-
-        return texture.getPixelReader().getColor(x, y);
-    }
 }
@@ -1,20 +1,20 @@
 package com.cgvsu.render_engine;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.PixelWriter;
-import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.LodChain;
+import com.cgvsu.model.MeshBounds;
 import com.cgvsu.model.Model;
-import com.cgvsu.model.Polygon;
-import static com.cgvsu.render_engine.GraphicConveyor.*;
 
 import com.cgvsu.math.Vector2f;
 import com.cgvsu.math.Vector3f;
 import com.cgvsu.math.matrix.impl.Matrix4f;
-import com.cgvsu.math.vector.impl.Vector2fImpl;
 import com.cgvsu.math.vector.impl.Vector3fImpl;
 import com.cgvsu.scene.SceneManager;
 import com.cgvsu.scene.CameraManager;
@@ -26,7 +26,7 @@ public class RenderEngine {
     public static boolean useRasterization = false;  // Изначально выключена растеризация
     public static boolean useWireframe = true;
     private static ZBuffer zBuffer;
-    private static WritableImage frameBuffer;
+    private static FrameBuffer frameBuffer;
     private static Color fillColor = Color.LIGHTGRAY;
     private static float ambientStrength = 0.2f;
     
@@ -39,6 +39,44 @@ public class RenderEngine {
     public static boolean drawPolygonalMesh = true;  // Рисовать полигональную сетку (каркас)
     public static boolean useTexture = false;         // Использовать текстуру
     public static boolean useLighting = false;        // Использовать освещение
+
+    // Алгоритм растеризации треугольников (можно переключать для сравнения)
+    public static Rasterizer.Mode rasterizerMode = Rasterizer.Mode.EDGE_FUNCTION;
+
+    // Число потоков растеризации по тайлам (1 - последовательная растеризация)
+    public static int rasterizerThreads = Runtime.getRuntime().availableProcessors();
+    private static TiledRasterizer tiledRasterizer;
+
+    // Уровни детализации: выбирается самый грубый, чья погрешность на экране не больше lodPixelError пикселей
+    public static boolean useLod = true;
+    public static float lodPixelError = 1.0f;
+
+    // Отсечение моделей и кластеров полигонов по пирамиде видимости до преобразования вершин
+    public static boolean useFrustumCulling = true;
+    private static int culledModels;
+    private static int culledClusters;
+    private static int testedClusters;
+
+    // Отсечение треугольников по ориентации на экране и счётчики итогов подготовки треугольников за кадр
+    public static Rasterizer.CullMode cullMode = Rasterizer.CullMode.NONE;
+    private static final int[] triangleSetupCounts = new int[Rasterizer.Setup.values().length];
+
+    // Фильтрация и адресация текстуры; выборка пересоздаётся только при смене текстуры или режимов
+    public static TextureSampler.Filter textureFilter = TextureSampler.Filter.TRILINEAR;
+    public static TextureSampler.Wrap textureWrap = TextureSampler.Wrap.REPEAT;
+    // Выбирать мип-уровень текстуры по размеру треугольника на экране
+    public static boolean useMipmaps = true;
+    private static TextureSampler textureSampler;
+
+    // Обработанные вершины моделей текущего кадра
+    private static final ArrayList<VertexProcessor> vertexProcessors = new ArrayList<>();
+    private static final IdentityHashMap<Model, VertexProcessor> processedModels = new IdentityHashMap<>();
+    private static int usedVertexProcessors;
+    // Вершины треугольников, отсечённых ближней и дальней плоскостями, и концы отсечённого ребра каркаса
+    private static final Clipper clipper = new Clipper();
+    private static final float[] clippedLine = new float[4];
+    // Цепочки уровней детализации моделей сцены текущего кадра
+    private static final IdentityHashMap<Model, LodChain> frameLodChains = new IdentityHashMap<>();
     
     static {
         // Нормализуем направление света при инициализации
@@ -90,6 +128,106 @@ public class RenderEngine {
         useLighting = enabled;
     }
 
+    public static void setRasterizerMode(Rasterizer.Mode mode) {
+        rasterizerMode = mode;
+    }
+
+    public static Rasterizer.Mode getRasterizerMode() {
+        return rasterizerMode;
+    }
+
+    public static void setRasterizerThreads(int threads) {
+        rasterizerThreads = Math.max(1, threads);
+    }
+
+    public static int getRasterizerThreads() {
+        return rasterizerThreads;
+    }
+
+    public static void setUseLod(boolean enabled) {
+        useLod = enabled;
+    }
+
+    public static boolean isUseLod() {
+        return useLod;
+    }
+
+    public static void setLodPixelError(float pixels) {
+        lodPixelError = Math.max(0f, pixels);
+    }
+
+    public static float getLodPixelError() {
+        return lodPixelError;
+    }
+
+    public static void setUseFrustumCulling(boolean enabled) {
+        useFrustumCulling = enabled;
+    }
+
+    public static boolean isUseFrustumCulling() {
+        return useFrustumCulling;
+    }
+
+    /**
+     * Число моделей, целиком отброшенных отсечением в последнем кадре
+     */
+    public static int getCulledModels() {
+        return culledModels;
+    }
+
+    /**
+     * Число кластеров, отброшенных отсечением в последнем кадре, среди кластеров непрошедших моделей
+     */
+    public static int getCulledClusters() {
+        return culledClusters;
+    }
+
+    /**
+     * Число кластеров моделей, проверенных в последнем кадре
+     */
+    public static int getTestedClusters() {
+        return testedClusters;
+    }
+
+    public static void setCullMode(Rasterizer.CullMode mode) {
+        cullMode = mode;
+    }
+
+    public static Rasterizer.CullMode getCullMode() {
+        return cullMode;
+    }
+
+    public static void setTextureFilter(TextureSampler.Filter filter) {
+        textureFilter = filter;
+    }
+
+    public static TextureSampler.Filter getTextureFilter() {
+        return textureFilter;
+    }
+
+    public static void setTextureWrap(TextureSampler.Wrap wrap) {
+        textureWrap = wrap;
+    }
+
+    public static TextureSampler.Wrap getTextureWrap() {
+        return textureWrap;
+    }
+
+    public static void setUseMipmaps(boolean enabled) {
+        useMipmaps = enabled;
+    }
+
+    public static boolean isUseMipmaps() {
+        return useMipmaps;
+    }
+
+    /**
+     * Сколько треугольников в последнем кадре получили данный итог подготовки
+     */
+    public static int getTriangleSetupCount(Rasterizer.Setup result) {
+        return triangleSetupCounts[result.ordinal()];
+    }
+
     public static boolean isDrawPolygonalMesh() {
         return drawPolygonalMesh;
     }
@@ -110,22 +248,19 @@ public class RenderEngine {
             final int height)
     {
         // Инициализация буферов
-        if (zBuffer == null || zBuffer.getWidth() != width || zBuffer.getHeight() != height) {
+        if (zBuffer == null) {
             zBuffer = new ZBuffer(width, height);
-            frameBuffer = new WritableImage(width, height);
+        } else {
+            zBuffer.resize(width, height);
         }
         
         zBuffer.clear();
-        
-        // Создаем новый frameBuffer при изменении размера
-        if (useRasterization && (frameBuffer == null || 
-            frameBuffer.getWidth() != width || frameBuffer.getHeight() != height)) {
-            frameBuffer = new WritableImage(width, height);
-        }
+        beginVertexFrame();
         
         if (useRasterization) {
+            beginRasterFrame(width, height);
             renderModelRasterized(camera, mesh, width, height);
-            graphicsContext.drawImage(frameBuffer, 0, 0);
+            finishRasterFrame(graphicsContext);
             if (drawPolygonalMesh) {
                 graphicsContext.setStroke(Color.BLACK);
                 graphicsContext.setLineWidth(1);
@@ -144,17 +279,18 @@ public class RenderEngine {
             final int height)
     {
         // Инициализация буферов
-        if (zBuffer == null || zBuffer.getWidth() != width || zBuffer.getHeight() != height) {
+        if (zBuffer == null) {
             zBuffer = new ZBuffer(width, height);
-            frameBuffer = new WritableImage(width, height);
+        } else {
+            zBuffer.resize(width, height);
         }
         
         zBuffer.clear();
+        beginVertexFrame();
         
-        // Создаем новый frameBuffer каждый кадр для очистки старого содержимого
-        // Это эффективнее, чем очищать пиксель за пикселем
+        // frameBuffer переиспользуется между кадрами и очищается целиком
         if (useRasterization) {
-            frameBuffer = new WritableImage(width, height);
+            beginRasterFrame(width, height);
         }
         
         List<SceneManager.SceneModel> models = sceneManager.getModels();
@@ -165,6 +301,7 @@ public class RenderEngine {
             if (!sceneModel.isVisible()) {
                 continue;
             }
+            registerLod(sceneModel);
             
             if (useRasterization) {
                 renderModelRasterized(camera, sceneModel.getModel(), width, height);
@@ -176,7 +313,7 @@ public class RenderEngine {
         
         // Рисуем frameBuffer один раз после рендеринга всех моделей (если используется растеризация)
         if (hasRasterizedModels) {
-            graphicsContext.drawImage(frameBuffer, 0, 0);
+            finishRasterFrame(graphicsContext);
             // Рисуем каркас поверх растеризованных моделей, если это включено
             if (drawPolygonalMesh) {
                 graphicsContext.setStroke(Color.BLACK);
@@ -201,16 +338,18 @@ public class RenderEngine {
             final int height)
     {
         // Инициализация буферов
-        if (zBuffer == null || zBuffer.getWidth() != width || zBuffer.getHeight() != height) {
+        if (zBuffer == null) {
             zBuffer = new ZBuffer(width, height);
-            frameBuffer = new WritableImage(width, height);
+        } else {
+            zBuffer.resize(width, height);
         }
         
         zBuffer.clear();
+        beginVertexFrame();
         
-        // Создаем новый frameBuffer каждый кадр для очистки старого содержимого
+        // frameBuffer переиспользуется между кадрами и очищается целиком
         if (useRasterization) {
-            frameBuffer = new WritableImage(width, height);
+            beginRasterFrame(width, height);
         }
         
         List<SceneManager.SceneModel> models = sceneManager.getModels();
@@ -221,6 +360,7 @@ public class RenderEngine {
             if (!sceneModel.isVisible()) {
                 continue;
             }
+            registerLod(sceneModel);
             
             if (useRasterization) {
                 renderModelRasterized(camera, sceneModel.getModel(), width, height);
@@ -256,7 +396,7 @@ public class RenderEngine {
         
         // Рисуем frameBuffer один раз после рендеринга всех моделей (если используется растеризация)
         if (hasRasterizedModels) {
-            graphicsContext.drawImage(frameBuffer, 0, 0);
+            finishRasterFrame(graphicsContext);
             // Рисуем каркас поверх растеризованных моделей, если это включено
             if (drawPolygonalMesh) {
                 graphicsContext.setStroke(Color.BLUE); // Цвет для обычных моделей
@@ -288,13 +428,45 @@ public class RenderEngine {
         }
     }
     
+    /**
+     * Подготовка буфера цвета и корзин тайлов к новому кадру
+     */
+    private static void beginRasterFrame(final int width, final int height) {
+        if (frameBuffer == null) {
+            frameBuffer = new FrameBuffer(width, height);
+        } else {
+            frameBuffer.resize(width, height);
+        }
+        frameBuffer.clear();
+
+        if (rasterizerMode == Rasterizer.Mode.EDGE_FUNCTION && rasterizerThreads > 1) {
+            if (tiledRasterizer == null || tiledRasterizer.getThreads() != rasterizerThreads) {
+                if (tiledRasterizer != null) {
+                    tiledRasterizer.shutdown();
+                }
+                tiledRasterizer = new TiledRasterizer(rasterizerThreads);
+            }
+            tiledRasterizer.begin(width, height);
+        }
+    }
+
+    /**
+     * Растеризация накопленных тайлов и вывод кадра на холст одним переносом пикселей
+     */
+    private static void finishRasterFrame(final GraphicsContext graphicsContext) {
+        if (rasterizerMode == Rasterizer.Mode.EDGE_FUNCTION && rasterizerThreads > 1) {
+            tiledRasterizer.execute(frameBuffer.getPixels(), zBuffer);
+        }
+        graphicsContext.drawImage(frameBuffer.present(), 0, 0);
+    }
+
     private static Model createCameraModelAtPosition(Model cameraModel, Vector3fImpl position, Vector3fImpl target) {
         // Создаем копию модели камеры
         Model instance = new Model();
-        instance.vertices = new ArrayList<>(cameraModel.vertices);
-        instance.textureVertices = new ArrayList<>(cameraModel.textureVertices);
-        instance.normals = new ArrayList<>(cameraModel.normals);
-        instance.polygons = new ArrayList<>(cameraModel.polygons);
+        instance.setVertices(new ArrayList<>(cameraModel.getVertices()));
+        instance.setTextureVertices(new ArrayList<>(cameraModel.getTextureVertices()));
+        instance.setNormals(new ArrayList<>(cameraModel.getNormals()));
+        instance.setPolygons(new ArrayList<>(cameraModel.getPolygons()));
         
         // Устанавливаем позицию камеры
         instance.translation = new Vector3f(position.getX(), position.getY(), position.getZ());
@@ -307,13 +479,80 @@ public class RenderEngine {
         return instance;
     }
 
-    private static void renderModel(
-            final GraphicsContext graphicsContext,
+    /**
+     * Начало кадра: результаты обработки вершин прошлого кадра больше не действительны
+     */
+    private static void beginVertexFrame() {
+        processedModels.clear();
+        clipper.reset();
+        usedVertexProcessors = 0;
+        frameLodChains.clear();
+        culledModels = 0;
+        culledClusters = 0;
+        testedClusters = 0;
+        Arrays.fill(triangleSetupCounts, 0);
+    }
+
+    /**
+     * Цепочка уровней модели сцены участвует в кадре, если она построена по текущему состоянию модели
+     */
+    private static void registerLod(final SceneManager.SceneModel sceneModel) {
+        LodChain chain = sceneModel.getLodChain();
+        if (useLod && chain != null && chain.isUpToDate(sceneModel.getModel())) {
+            frameLodChains.put(sceneModel.getModel(), chain);
+        }
+    }
+
+    /**
+     * Сетка модели для кадра: уровень детализации по экранному размеру ограничивающей сферы.
+     * Единица длины модели на расстоянии depth от камеры занимает scale * f * height / depth пикселей,
+     * где f - масштаб проекции по вертикали: при переводе на экран единица NDC - это height пикселей
+     * (y = -y_ndc * height + height / 2); расстояние берётся до ближайшей точки сферы
+     */
+    private static CompiledMesh selectMesh(
+            final Model mesh,
+            final Matrix4f modelViewMatrix,
+            final Matrix4f projectionMatrix,
+            final int height)
+    {
+        LodChain chain = frameLodChains.get(mesh);
+        if (chain == null || chain.getLevelCount() == 1) {
+            return mesh.getCompiledMesh();
+        }
+        float scale = 0;
+        for (int col = 0; col < 3; col++) {
+            float x = modelViewMatrix.get(0, col), y = modelViewMatrix.get(1, col), z = modelViewMatrix.get(2, col);
+            scale = Math.max(scale, (float) Math.sqrt(x * x + y * y + z * z));
+        }
+        float centerDepth = -(modelViewMatrix.get(2, 0) * chain.getCenterX()
+                + modelViewMatrix.get(2, 1) * chain.getCenterY()
+                + modelViewMatrix.get(2, 2) * chain.getCenterZ()
+                + modelViewMatrix.get(2, 3));
+        float depth = centerDepth - chain.getRadius() * scale;
+        if (!(depth > 0)) {
+            return chain.getLevel(0);
+        }
+        float pixelsPerUnit = scale * projectionMatrix.get(1, 1) * height / depth;
+        return chain.getLevel(chain.selectLevel(pixelsPerUnit, lodPixelError));
+    }
+
+    /**
+     * Вершины модели в экранном пространстве. За кадр каждая модель обрабатывается один раз,
+     * каркас и растеризация берут вершины из одного и того же буфера.
+     * Модель, целиком лежащая вне пирамиды видимости, не обрабатывается: результат - null.
+     * Плоскости пирамиды извлекаются из матрицы модель-вид-проекция, поэтому параллелепипеды сетки
+     * проверяются в координатах модели без преобразования.
+     */
+    private static VertexProcessor processVertices(
             final Camera camera,
             final Model mesh,
             final int width,
             final int height)
     {
+        if (processedModels.containsKey(mesh)) {
+            return processedModels.get(mesh);
+        }
+
         Matrix4f modelMatrix = mesh.getModelMatrix();
         Matrix4f viewMatrix = camera.getViewMatrix();
         Matrix4f projectionMatrix = camera.getProjectionMatrix();
@@ -321,29 +560,115 @@ public class RenderEngine {
         Matrix4f modelViewProjectionMatrix = (Matrix4f) projectionMatrix
                 .multiply(viewMatrix)
                 .multiply(modelMatrix);
-        
+
         Matrix4f modelViewMatrix = (Matrix4f) viewMatrix.multiply(modelMatrix);
 
-        final int nPolygons = mesh.polygons.size();
+        CompiledMesh compiledMesh = selectMesh(mesh, modelViewMatrix, projectionMatrix, height);
+        boolean[] visibleClusters = null;
+        if (useFrustumCulling) {
+            Frustum frustum = new Frustum(modelViewProjectionMatrix);
+            MeshBounds bounds = compiledMesh.getBounds();
+            if (!frustum.intersectsBox(bounds.getBox(), 0)) {
+                culledModels++;
+                processedModels.put(mesh, null);
+                return null;
+            }
+            visibleClusters = cullClusters(frustum, bounds);
+        }
+
+        // Буферы переиспользуются между кадрами; до конца кадра их читает растеризатор по тайлам
+        int index = usedVertexProcessors++;
+        if (index == vertexProcessors.size()) {
+            vertexProcessors.add(new VertexProcessor());
+        }
+        VertexProcessor processor = vertexProcessors.get(index);
+
+        processor.process(
+                compiledMesh,
+                modelViewProjectionMatrix,
+                modelViewMatrix,
+                width,
+                height,
+                useLighting && lightEnabled && compiledMesh.getNormalCount() > 0,
+                useTexture && compiledMesh.getTexCoordCount() > 0,
+                visibleClusters);
+        processedModels.put(mesh, processor);
+        return processor;
+    }
+
+    /**
+     * Видимость кластеров сетки или null, если не отброшен ни один
+     */
+    private static boolean[] cullClusters(final Frustum frustum, final MeshBounds bounds) {
+        int clusterCount = bounds.getClusterCount();
+        float[] boxes = bounds.getClusterBoxes();
+        boolean[] visible = null;
+        for (int cluster = 0; cluster < clusterCount; cluster++) {
+            if (!frustum.intersectsBox(boxes, cluster * 6)) {
+                if (visible == null) {
+                    visible = new boolean[clusterCount];
+                    Arrays.fill(visible, 0, cluster, true);
+                }
+                culledClusters++;
+            } else if (visible != null) {
+                visible[cluster] = true;
+            }
+        }
+        testedClusters += clusterCount;
+        return visible;
+    }
+
+    private static void renderModel(
+            final GraphicsContext graphicsContext,
+            final Camera camera,
+            final Model mesh,
+            final int width,
+            final int height)
+    {
+        VertexProcessor processor = processVertices(camera, mesh, width, height);
+        if (processor == null) {
+            return;
+        }
+        CompiledMesh compiledMesh = processor.getMesh();
+        float[] normals = processor.getViewNormals();
+        int[] polygonOffsets = compiledMesh.getPolygonOffsets();
+        int[] vertexIndices = compiledMesh.getPolygonVertexIndices();
+        int[] normalIndices = compiledMesh.getPolygonNormalIndices();
+
+        // Полигоны отброшенных кластеров пропускаются целиком: их вершины не преобразованы
+        boolean[] visibleClusters = processor.getVisibleClusters();
+        int[] clusterPolygons = compiledMesh.getBounds().getClusterPolygonOffsets();
+        int cluster = 0;
+
+        final int nPolygons = compiledMesh.getPolygonCount();
         for (int polygonInd = 0; polygonInd < nPolygons; ++polygonInd) {
-            Polygon polygon = mesh.polygons.get(polygonInd);
-            final int nVerticesInPolygon = polygon.getVertexIndices().size();
+            if (visibleClusters != null) {
+                while (polygonInd >= clusterPolygons[cluster + 1]) {
+                    cluster++;
+                }
+                if (!visibleClusters[cluster]) {
+                    polygonInd = clusterPolygons[cluster + 1] - 1;
+                    continue;
+                }
+            }
+            final int start = polygonOffsets[polygonInd];
+            final int end = polygonOffsets[polygonInd + 1];
 
             // Вычисляем освещение для полигона
             float lightIntensityValue = 1.0f;
-            if (useLighting && lightEnabled && !mesh.normals.isEmpty() && !polygon.getNormalIndices().isEmpty()) {
-                // Берем нормаль первой вершины полигона
-                int normalIndex = polygon.getNormalIndices().get(0);
-                com.cgvsu.math.Vector3f normal = mesh.normals.get(normalIndex);
-                
-                // Преобразуем нормаль в пространство камеры
-                Vector3fImpl normalVec = new Vector3fImpl(normal.x, normal.y, normal.z);
-                Vector3fImpl transformedNormal = multiplyMatrix4ByVector(modelViewMatrix, normalVec);
-                Vector3f normalV3 = new Vector3f(transformedNormal.getX(), transformedNormal.getY(), transformedNormal.getZ());
-                normalV3.normalize();
-                
+            if (normals != null && end > start && normalIndices[start] >= 0) {
+                // Берем нормаль первой вершины полигона (уже в пространстве камеры)
+                int n = normalIndices[start] * 3;
+                float nx = normals[n], ny = normals[n + 1], nz = normals[n + 2];
+                float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if (len != 0) {
+                    nx /= len;
+                    ny /= len;
+                    nz /= len;
+                }
+
                 // Вычисляем освещение
-                float diffuse = Math.max(0, Vector3f.dot(normalV3, lightDirection));
+                float diffuse = Math.max(0, nx * lightDirection.x + ny * lightDirection.y + nz * lightDirection.z);
                 lightIntensityValue = ambientStrength + (1 - ambientStrength) * diffuse * lightIntensity;
                 lightIntensityValue = Math.min(1.0f, Math.max(0.0f, lightIntensityValue));
             }
@@ -352,30 +677,41 @@ public class RenderEngine {
             Color wireframeColor = Color.gray(lightIntensityValue);
             graphicsContext.setStroke(wireframeColor);
 
-            ArrayList<Vector2fImpl> resultPoints = new ArrayList<>();
-            for (int vertexInPolygonInd = 0; vertexInPolygonInd < nVerticesInPolygon; ++vertexInPolygonInd) {
-                com.cgvsu.math.Vector3f vertex = mesh.vertices.get(polygon.getVertexIndices().get(vertexInPolygonInd));
-                Vector3fImpl v = new Vector3fImpl(vertex.x, vertex.y, vertex.z);
-
-                Vector3fImpl ndc = multiplyMatrix4ByPoint(modelViewProjectionMatrix, v);
-                Vector2fImpl screen = vertexToPoint(ndc, width, height);
-                resultPoints.add(screen);
+            if (end == start) {
+                continue;
             }
 
-            for (int vertexInPolygonInd = 1; vertexInPolygonInd < nVerticesInPolygon; ++vertexInPolygonInd) {
-                graphicsContext.strokeLine(
-            resultPoints.get(vertexInPolygonInd - 1).getX(),
-            resultPoints.get(vertexInPolygonInd - 1).getY(),
-            resultPoints.get(vertexInPolygonInd).getX(),
-            resultPoints.get(vertexInPolygonInd).getY());
+            int first = vertexIndices[start];
+            int previous = first;
+            for (int corner = start + 1; corner < end; ++corner) {
+                int current = vertexIndices[corner];
+                strokeEdge(graphicsContext, processor, previous, current, width, height);
+                previous = current;
             }
 
-            if (nVerticesInPolygon > 0)
-                graphicsContext.strokeLine(
-                        resultPoints.get(nVerticesInPolygon - 1).getX(),
-                        resultPoints.get(nVerticesInPolygon - 1).getY(),
-                        resultPoints.get(0).getX(),
-                        resultPoints.get(0).getY());
+            strokeEdge(graphicsContext, processor, previous, first, width, height);
+        }
+    }
+
+    /**
+     * Ребро каркаса между вершинами a и b; ребро, пересекающее ближнюю или дальнюю плоскость,
+     * сначала отсекается в однородных координатах
+     */
+    private static void strokeEdge(
+            final GraphicsContext graphicsContext,
+            final VertexProcessor processor,
+            final int a,
+            final int b,
+            final int width,
+            final int height)
+    {
+        byte[] flags = processor.getClipFlags();
+        if ((flags[a] | flags[b]) == 0) {
+            float[] screen = processor.getScreenPositions();
+            graphicsContext.strokeLine(screen[a * 3], screen[a * 3 + 1], screen[b * 3], screen[b * 3 + 1]);
+        } else if ((flags[a] & flags[b] & VertexProcessor.OUTSIDE_DEPTH) == 0
+                && Clipper.clipLine(processor.getClipPositions(), a, b, width, height, clippedLine)) {
+            graphicsContext.strokeLine(clippedLine[0], clippedLine[1], clippedLine[2], clippedLine[3]);
         }
     }
 
@@ -385,82 +721,156 @@ public class RenderEngine {
             final int width,
             final int height)
     {
-        Matrix4f modelMatrix = mesh.getModelMatrix();
-        Matrix4f viewMatrix = camera.getViewMatrix();
-        Matrix4f projectionMatrix = camera.getProjectionMatrix();
-
-        Matrix4f modelViewProjectionMatrix = (Matrix4f) projectionMatrix
-                .multiply(viewMatrix)
-                .multiply(modelMatrix);
-
-        Matrix4f modelViewMatrix = (Matrix4f) viewMatrix.multiply(modelMatrix);
+        VertexProcessor processor = processVertices(camera, mesh, width, height);
+        if (processor == null) {
+            return;
+        }
+        CompiledMesh compiledMesh = processor.getMesh();
+        float[] screen = processor.getScreenPositions();
+        float[] normals = processor.getViewNormals();
+        float[] texCoords = processor.getTexCoords();
+        byte[] clipFlags = processor.getClipFlags();
+        int[] triangleVertices = compiledMesh.getTriangleVertexIndices();
+        int[] triangleNormals = compiledMesh.getTriangleNormalIndices();
+        int[] triangleTexCoords = compiledMesh.getTriangleTexCoordIndices();
 
         // Направление света (от камеры или установленное пользователем)
         Vector3f lightDir = (useLighting && lightEnabled) ? new Vector3f(lightDirection.x, lightDirection.y, lightDirection.z) 
                                           : new Vector3f(0, 0, 1);
         lightDir.normalize();
 
-        PixelWriter pixelWriter = frameBuffer.getPixelWriter();
-        WritableImage texture = useTexture ? TextureManager.getInstance().getCurrentTexture() : null;
-
-        final int nPolygons = mesh.polygons.size();
-        for (int polygonInd = 0; polygonInd < nPolygons; ++polygonInd) {
-            Polygon polygon = mesh.polygons.get(polygonInd);
-            ArrayList<Integer> vertexIndices = polygon.getVertexIndices();
-
-            // Обрабатываем только треугольники
-            if (vertexIndices.size() != 3) {
-                continue;
-            }
-
-            // Получаем вершины треугольника
-            Vector3f[] screenVertices = new Vector3f[3];
-            Vector3f[] normals = new Vector3f[3];
-            Vector2f[] texCoords = new Vector2f[3];
-
-            boolean hasNormals = !mesh.normals.isEmpty() && !polygon.getNormalIndices().isEmpty();
-            boolean hasTexCoords = useTexture && !mesh.textureVertices.isEmpty() && !polygon.getTextureVertexIndices().isEmpty();
-
-            for (int i = 0; i < 3; i++) {
-                // Преобразование вершины в экранные координаты
-                com.cgvsu.math.Vector3f vertex = mesh.vertices.get(vertexIndices.get(i));
-                Vector3fImpl v = new Vector3fImpl(vertex.x, vertex.y, vertex.z);
-                Vector3fImpl ndc = multiplyMatrix4ByPoint(modelViewProjectionMatrix, v);
-                Vector2fImpl screen = vertexToPoint(ndc, width, height);
-                
-                screenVertices[i] = new Vector3f(screen.getX(), screen.getY(), ndc.getZ());
-
-                // Получение нормали
-                if (hasNormals) {
-                    int normalIndex = polygon.getNormalIndices().get(i);
-                    com.cgvsu.math.Vector3f normal = mesh.normals.get(normalIndex);
-                    
-                    // Преобразуем нормаль в пространство камеры
-                    Vector3fImpl normalVec = new Vector3fImpl(normal.x, normal.y, normal.z);
-                    Vector3fImpl transformedNormal = multiplyMatrix4ByVector(modelViewMatrix, normalVec);
-                    normals[i] = new Vector3f(transformedNormal.getX(), transformedNormal.getY(), transformedNormal.getZ());
-                } else {
-                    normals[i] = new Vector3f(0, 0, 1);
+        int[] colorBuffer = frameBuffer.getPixels();
+        TextureSampler texture = useTexture ? textureSampler(TextureManager.getInstance().getCurrentTexture()) : null;
+
+        // Растеризуются треугольники всех полигонов (см. Triangulator)
+        // Треугольники отброшенных кластеров пропускаются целиком: их вершины не преобразованы
+        boolean[] visibleClusters = processor.getVisibleClusters();
+        int[] clusterPolygons = compiledMesh.getBounds().getClusterPolygonOffsets();
+        int[] polygonTriangles = compiledMesh.getPolygonTriangleOffsets();
+        int cluster = 0;
+
+        final int nTriangles = compiledMesh.getTriangleCount();
+        for (int triangleInd = 0; triangleInd < nTriangles; ++triangleInd) {
+            if (visibleClusters != null) {
+                while (triangleInd >= polygonTriangles[clusterPolygons[cluster + 1]]) {
+                    cluster++;
                 }
-
-                // Получение текстурных координат
-                if (hasTexCoords) {
-                    int texIndex = polygon.getTextureVertexIndices().get(i);
-                    com.cgvsu.math.Vector2f texCoord = mesh.textureVertices.get(texIndex);
-                    texCoords[i] = new Vector2f(texCoord.x, texCoord.y);
-                } else {
-                    texCoords[i] = null;
+                if (!visibleClusters[cluster]) {
+                    triangleInd = polygonTriangles[clusterPolygons[cluster + 1]] - 1;
+                    continue;
                 }
             }
+            final int corner = triangleInd * 3;
+            int p0 = triangleVertices[corner], p1 = triangleVertices[corner + 1], p2 = triangleVertices[corner + 2];
+
+            // Нормали и текстурные координаты берутся, только если они заданы для полигона
+            float[] polygonNormals = (normals != null && triangleNormals[corner] >= 0) ? normals : null;
+            int n0 = triangleNormals[corner], n1 = triangleNormals[corner + 1], n2 = triangleNormals[corner + 2];
+
+            float[] polygonTexCoords = (texCoords != null && triangleTexCoords[corner] >= 0) ? texCoords : null;
+            int t0 = triangleTexCoords[corner], t1 = triangleTexCoords[corner + 1], t2 = triangleTexCoords[corner + 2];
+
+            // Треугольник целиком между ближней и дальней плоскостями и внутри защитной полосы рисуется как есть,
+            // целиком за ближней или дальней плоскостью отбрасывается, а остальные отсекаются и рисуются веером
+            int flags0 = clipFlags[p0], flags1 = clipFlags[p1], flags2 = clipFlags[p2];
+            if ((flags0 | flags1 | flags2) == 0) {
+                rasterize(screen, p0, p1, p2,
+                        polygonNormals, n0, n1, n2,
+                        polygonTexCoords, t0, t1, t2,
+                        texture, lightDir, colorBuffer, width, height);
+            } else if ((flags0 & flags1 & flags2 & VertexProcessor.OUTSIDE_DEPTH) == 0) {
+                int count = clipper.clipTriangle(processor.getClipPositions(), p0, p1, p2,
+                        polygonNormals, n0, n1, n2,
+                        polygonTexCoords, t0, t1, t2,
+                        width, height);
+                int first = clipper.getFirst();
+                float[] clippedNormals = polygonNormals != null ? clipper.getNormals() : null;
+                float[] clippedTexCoords = polygonTexCoords != null ? clipper.getTexCoords() : null;
+                for (int k = 1; k + 1 < count; k++) {
+                    rasterize(clipper.getScreenPositions(), first, first + k, first + k + 1,
+                            clippedNormals, first, first + k, first + k + 1,
+                            clippedTexCoords, first, first + k, first + k + 1,
+                            texture, lightDir, colorBuffer, width, height);
+                }
+            }
+        }
+        // Примечание: frameBuffer рисуется один раз после рендеринга всех моделей в renderScene
+    }
+
+    /**
+     * Выборка из текстуры с текущими textureFilter, textureWrap и useMipmaps (null, если текстуры нет)
+     */
+    private static TextureSampler textureSampler(Texture texture) {
+        if (texture == null) {
+            return null;
+        }
+        TextureSampler sampler = textureSampler;
+        if (sampler == null || sampler.getTexture() != texture
+                || sampler.getFilter() != textureFilter || sampler.getWrap() != textureWrap
+                || sampler.isMipmapped() != useMipmaps) {
+            sampler = new TextureSampler(texture, textureFilter, textureWrap, useMipmaps);
+            textureSampler = sampler;
+        }
+        return sampler;
+    }
+
+    /**
+     * Растеризация одного треугольника выбранным алгоритмом. Нелицевые (по cullMode), вырожденные
+     * и не накрывающие ни одного центра пикселя треугольники отбрасываются до растеризации;
+     * треугольники за пределами защитной полосы рисуются, как и принятые
+     */
+    private static void rasterize(
+            float[] screen, int p0, int p1, int p2,
+            float[] normals, int n0, int n1, int n2,
+            float[] texCoords, int t0, int t1, int t2,
+            TextureSampler texture,
+            Vector3f lightDir,
+            int[] colorBuffer,
+            int width,
+            int height)
+    {
+        Rasterizer.Setup setup = Rasterizer.setupTriangle(screen, p0, p1, p2, cullMode);
+        triangleSetupCounts[setup.ordinal()]++;
+        if (setup != Rasterizer.Setup.ACCEPTED && setup != Rasterizer.Setup.OUTSIDE_GUARD_BAND) {
+            return;
+        }
 
-            // Растеризация треугольника
+        if (rasterizerMode == Rasterizer.Mode.EDGE_FUNCTION && rasterizerThreads > 1) {
+            tiledRasterizer.submit(
+                    screen, p0, p1, p2,
+                    normals, n0, n1, n2,
+                    texCoords, t0, t1, t2,
+                    fillColor,
+                    texture,
+                    lightDir,
+                    ambientStrength,
+                    useLighting && lightEnabled,
+                    lightIntensity
+            );
+        } else if (rasterizerMode == Rasterizer.Mode.EDGE_FUNCTION) {
+            Rasterizer.rasterizeTriangleIndexed(
+                    screen, p0, p1, p2,
+                    normals, n0, n1, n2,
+                    texCoords, t0, t1, t2,
+                    fillColor,
+                    zBuffer,
+                    colorBuffer,
+                    texture,
+                    lightDir,
+                    ambientStrength,
+                    useLighting && lightEnabled,
+                    lightIntensity,
+                    0, 0, width - 1, height - 1
+            );
+        } else {
+            // Эталонный алгоритм работает с векторами, собираем их из буферов
             Rasterizer.rasterizeTriangle(
-                    screenVertices[0], screenVertices[1], screenVertices[2],
-                    normals[0], normals[1], normals[2],
-                    texCoords[0], texCoords[1], texCoords[2],
+                    screenVertex(screen, p0), screenVertex(screen, p1), screenVertex(screen, p2),
+                    normalOrDefault(normals, n0), normalOrDefault(normals, n1), normalOrDefault(normals, n2),
+                    texCoordOrNull(texCoords, t0), texCoordOrNull(texCoords, t1), texCoordOrNull(texCoords, t2),
                     fillColor,
                     zBuffer,
-                    pixelWriter,
+                    colorBuffer,
                     texture,
                     lightDir,
                     ambientStrength,
@@ -468,20 +878,23 @@ public class RenderEngine {
                     lightIntensity
             );
         }
-        // Примечание: frameBuffer рисуется один раз после рендеринга всех моделей в renderScene
     }
 
+    private static Vector3f screenVertex(float[] screen, int index) {
+        return new Vector3f(screen[index * 3], screen[index * 3 + 1], screen[index * 3 + 2]);
+    }
 
-    private static Vector3fImpl multiplyMatrix4ByVector(Matrix4f matrix, Vector3fImpl vector) {
-        float x = vector.getX();
-        float y = vector.getY();
-        float z = vector.getZ();
-
-        float[] result = new float[3];
-        for (int i = 0; i < 3; i++) {
-            result[i] = matrix.get(i, 0) * x + matrix.get(i, 1) * y + matrix.get(i, 2) * z;
+    private static Vector3f normalOrDefault(float[] normals, int index) {
+        if (normals == null) {
+            return new Vector3f(0, 0, 1);
         }
+        return new Vector3f(normals[index * 3], normals[index * 3 + 1], normals[index * 3 + 2]);
+    }
 
-        return new Vector3fImpl(result[0], result[1], result[2]);
+    private static Vector2f texCoordOrNull(float[] texCoords, int index) {
+        if (texCoords == null) {
+            return null;
+        }
+        return new Vector2f(texCoords[index * 2], texCoords[index * 2 + 1]);
     }
 }
@@ -0,0 +1,190 @@
+package com.cgvsu.render_engine;
+
+import java.util.stream.IntStream;
+
+/**
+ * Текстура в виде массива упакованных цветов ARGB с предумноженной альфой, как в буфере кадра.
+ * Строки хранятся снизу вверх, чтобы строка texel y соответствовала координате v = y / height
+ * без переворота при выборке. Ширина строки в массиве дополнена до степени двойки: адрес текселя -
+ * (y << getStrideShift()) + x. Лишние столбцы заполнены последним столбцом строки.
+ * Может хранить пирамиду мип-уровней (см. {@link #withMipmaps()}) в том же формате.
+ */
+public final class Texture {
+
+    // Уровни с числом текселей не меньше этого строятся параллельно по строкам
+    private static final int PARALLEL_TEXELS = 1 << 16;
+
+    // Уровни детализации: нулевой - исходное изображение, каждый следующий вдвое меньше по каждой оси
+    private final int[] widths;
+    private final int[] heights;
+    private final int[] strideShifts;
+    private final int[][] levels;
+
+    private Texture(int[] widths, int[] heights, int[] strideShifts, int[][] levels) {
+        this.widths = widths;
+        this.heights = heights;
+        this.strideShifts = strideShifts;
+        this.levels = levels;
+    }
+
+    /**
+     * Создаёт текстуру из изображения, без мип-уровней
+     *
+     * @param argb - цвета ARGB без предумножения, строка за строкой сверху вниз (как отдаёт PixelReader)
+     */
+    public static Texture fromArgb(int width, int height, int[] argb) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Размер текстуры должен быть положительным: " + width + "x" + height);
+        }
+        if (argb.length < width * height) {
+            throw new IllegalArgumentException("Недостаточно пикселей для текстуры " + width + "x" + height);
+        }
+        int strideShift = ceilLog2(width);
+        int stride = 1 << strideShift;
+        int[] pixels = new int[stride * height];
+        for (int y = 0; y < height; y++) {
+            int src = (height - 1 - y) * width;
+            int dst = y << strideShift;
+            for (int x = 0; x < width; x++) {
+                pixels[dst + x] = premultiply(argb[src + x]);
+            }
+            pad(pixels, dst, width, stride);
+        }
+        return new Texture(new int[] {width}, new int[] {height}, new int[] {strideShift}, new int[][] {pixels});
+    }
+
+    /**
+     * Текстура с полной пирамидой мип-уровней до 1x1. Каждый уровень - среднее квадратов 2x2 текселей
+     * предыдущего (в предумноженных цветах, так что прозрачные тексели не окрашивают соседей);
+     * у нечётного размера последний столбец или строка не попадают в следующий уровень.
+     * Уровень зависит от предыдущего, поэтому параллельно строятся строки внутри уровня.
+     */
+    public Texture withMipmaps() {
+        // floor(log2(max(width, height))) + 1 уровней: последний 1x1
+        int count = 32 - Integer.numberOfLeadingZeros(Math.max(widths[0], heights[0]));
+        int[] newWidths = new int[count];
+        int[] newHeights = new int[count];
+        int[] newShifts = new int[count];
+        int[][] newLevels = new int[count][];
+        newWidths[0] = widths[0];
+        newHeights[0] = heights[0];
+        newShifts[0] = strideShifts[0];
+        newLevels[0] = levels[0];
+        for (int level = 1; level < count; level++) {
+            int width = Math.max(1, newWidths[level - 1] >> 1);
+            int height = Math.max(1, newHeights[level - 1] >> 1);
+            newWidths[level] = width;
+            newHeights[level] = height;
+            newShifts[level] = ceilLog2(width);
+            newLevels[level] = new int[(1 << newShifts[level]) * height];
+
+            int[] src = newLevels[level - 1];
+            int[] dst = newLevels[level];
+            int srcWidth = newWidths[level - 1];
+            int srcHeight = newHeights[level - 1];
+            int srcShift = newShifts[level - 1];
+            int dstShift = newShifts[level];
+            IntStream rows = IntStream.range(0, height);
+            if (width * height >= PARALLEL_TEXELS) {
+                rows = rows.parallel();
+            }
+            rows.forEach(y -> downsampleRow(src, srcWidth, srcHeight, srcShift, dst, width, dstShift, y));
+        }
+        return new Texture(newWidths, newHeights, newShifts, newLevels);
+    }
+
+    private static void downsampleRow(int[] src, int srcWidth, int srcHeight, int srcShift,
+                                      int[] dst, int width, int dstShift, int y) {
+        int row0 = (y * 2) << srcShift;
+        int row1 = Math.min(y * 2 + 1, srcHeight - 1) << srcShift;
+        int out = y << dstShift;
+        for (int x = 0; x < width; x++) {
+            int x0 = x * 2;
+            int x1 = Math.min(x0 + 1, srcWidth - 1);
+            dst[out + x] = average(src[row0 + x0], src[row0 + x1], src[row1 + x0], src[row1 + x1]);
+        }
+        pad(dst, out, width, 1 << dstShift);
+    }
+
+    /**
+     * Среднее четырёх упакованных цветов с округлением; каналы складываются парами в одном int
+     */
+    private static int average(int a, int b, int c, int d) {
+        int rb = (a & 0x00FF00FF) + (b & 0x00FF00FF) + (c & 0x00FF00FF) + (d & 0x00FF00FF) + 0x00020002;
+        int ag = ((a >>> 8) & 0x00FF00FF) + ((b >>> 8) & 0x00FF00FF) + ((c >>> 8) & 0x00FF00FF)
+                + ((d >>> 8) & 0x00FF00FF) + 0x00020002;
+        return (((ag >>> 2) & 0x00FF00FF) << 8) | ((rb >>> 2) & 0x00FF00FF);
+    }
+
+    /**
+     * Лишние столбцы строки заполняются последним текселем
+     */
+    private static void pad(int[] pixels, int rowStart, int width, int stride) {
+        for (int x = width; x < stride; x++) {
+            pixels[rowStart + x] = pixels[rowStart + width - 1];
+        }
+    }
+
+    private static int ceilLog2(int value) {
+        return value <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(value - 1);
+    }
+
+    private static int premultiply(int argb) {
+        int a = argb >>> 24;
+        if (a == 0xFF) {
+            return argb;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        int r = (((argb >> 16) & 0xFF) * a + 127) / 255;
+        int g = (((argb >> 8) & 0xFF) * a + 127) / 255;
+        int b = ((argb & 0xFF) * a + 127) / 255;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Число уровней детализации (1, если мип-уровни не построены)
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    public int getWidth() {
+        return widths[0];
+    }
+
+    public int getHeight() {
+        return heights[0];
+    }
+
+    public int getWidth(int level) {
+        return widths[level];
+    }
+
+    public int getHeight(int level) {
+        return heights[level];
+    }
+
+    /**
+     * Двоичный логарифм ширины строки в массиве {@link #getPixels()}
+     */
+    public int getStrideShift() {
+        return strideShifts[0];
+    }
+
+    public int getStrideShift(int level) {
+        return strideShifts[level];
+    }
+
+    /**
+     * Тексели без копирования; массив не должен изменяться
+     */
+    public int[] getPixels() {
+        return levels[0];
+    }
+
+    public int[] getPixels(int level) {
+        return levels[level];
+    }
+}
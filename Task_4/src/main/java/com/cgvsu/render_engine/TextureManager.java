@@ -1,9 +1,7 @@
 package com.cgvsu.render_engine;
 
 import javafx.scene.image.Image;
-import javafx.scene.image.WritableImage;
-import javafx.scene.image.PixelReader;
-import javafx.scene.image.PixelWriter;
+import javafx.scene.image.PixelFormat;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -13,8 +11,8 @@ import java.util.Map;
 
 public class TextureManager {
     private static TextureManager instance;
-    private Map<String, WritableImage> textures = new HashMap<>();
-    private WritableImage currentTexture = null;
+    private Map<String, Texture> textures = new HashMap<>();
+    private Texture currentTexture = null;
 
     private TextureManager() {
     }
@@ -27,49 +25,46 @@ public class TextureManager {
     }
 
     /**
-     * Загружает текстуру из файла
+     * Загружает текстуру из файла. Пиксели изображения читаются один раз целиком
+     * и хранятся массивом упакованных цветов (см. {@link Texture}) вместе с пирамидой мип-уровней
      */
-    public WritableImage loadTexture(File file) throws IOException {
+    public Texture loadTexture(File file) throws IOException {
         try (FileInputStream fis = new FileInputStream(file)) {
             Image image = new Image(fis);
-            
+            if (image.isError()) {
+                throw new IOException("Не удалось прочитать изображение " + file.getName(), image.getException());
+            }
+
             int width = (int) image.getWidth();
             int height = (int) image.getHeight();
-            
-            WritableImage writableImage = new WritableImage(width, height);
-            PixelReader reader = image.getPixelReader();
-            PixelWriter writer = writableImage.getPixelWriter();
-            
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    writer.setColor(x, y, reader.getColor(x, y));
-                }
-            }
-            
-            textures.put(file.getName(), writableImage);
-            currentTexture = writableImage;
-            return writableImage;
+            int[] argb = new int[width * height];
+            image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+
+            Texture texture = Texture.fromArgb(width, height, argb).withMipmaps();
+            textures.put(file.getName(), texture);
+            currentTexture = texture;
+            return texture;
         }
     }
 
     /**
      * Загружает текстуру по имени файла
      */
-    public WritableImage loadTexture(String filename) throws IOException {
+    public Texture loadTexture(String filename) throws IOException {
         return loadTexture(new File(filename));
     }
 
     /**
      * Получает текстуру по имени
      */
-    public WritableImage getTexture(String name) {
+    public Texture getTexture(String name) {
         return textures.get(name);
     }
 
     /**
      * Получает текущую активную текстуру
      */
-    public WritableImage getCurrentTexture() {
+    public Texture getCurrentTexture() {
         return currentTexture;
     }
 
@@ -83,7 +78,7 @@ public class TextureManager {
     /**
      * Устанавливает текущую текстуру напрямую
      */
-    public void setCurrentTexture(WritableImage texture) {
+    public void setCurrentTexture(Texture texture) {
         currentTexture = texture;
     }
 
@@ -91,7 +86,7 @@ public class TextureManager {
      * Удаляет текстуру
      */
     public void removeTexture(String name) {
-        WritableImage removed = textures.remove(name);
+        Texture removed = textures.remove(name);
         if (removed == currentTexture) {
             currentTexture = null;
         }
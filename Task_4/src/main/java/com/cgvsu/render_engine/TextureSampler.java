@@ -0,0 +1,189 @@
+package com.cgvsu.render_engine;
+
+/**
+ * Выборка из {@link Texture} с заданными фильтрацией и режимом адресации.
+ * Текстурные координаты переводятся в фиксированную точку с 8 битами дробной части текселя
+ * один раз на выборку, дальше адресация и смешивание цветов идут в целых числах.
+ * Центр текселя x находится в u = (x + 0.5) / width.
+ *
+ * Если у текстуры есть мип-уровни, уровень выбирается по уровню детализации lod -
+ * двоичному логарифму числа текселей нулевого уровня на пиксель экрана (см. {@link #lod}).
+ */
+public final class TextureSampler {
+
+    public enum Filter {
+        /** Ближайший тексель ближайшего мип-уровня */
+        NEAREST,
+        /** Билинейная интерполяция четырёх соседних текселей ближайшего мип-уровня */
+        BILINEAR,
+        /** Билинейная выборка из двух соседних мип-уровней и интерполяция между ними */
+        TRILINEAR
+    }
+
+    public enum Wrap {
+        /** Повторение текстуры */
+        REPEAT,
+        /** Координаты вне [0, 1] прижимаются к краю */
+        CLAMP,
+        /** Повторение с отражением каждой второй копии */
+        MIRROR
+    }
+
+    private static final int SUBTEXEL_BITS = 8;
+    private static final int SUBTEXEL_ONE = 1 << SUBTEXEL_BITS;
+    private static final int SUBTEXEL_MASK = SUBTEXEL_ONE - 1;
+
+    private final Texture texture;
+    private final Filter filter;
+    private final Wrap wrap;
+    private final boolean mipmaps;
+    private final int maxLevel;
+    private final int[][] pixels;
+    private final int[] widths;
+    private final int[] heights;
+    private final int[] strideShifts;
+    private final float[] scalesU;
+    private final float[] scalesV;
+
+    public TextureSampler(Texture texture, Filter filter, Wrap wrap) {
+        this(texture, filter, wrap, true);
+    }
+
+    /**
+     * @param mipmaps - использовать мип-уровни текстуры, если они есть; иначе выборка всегда из нулевого
+     */
+    public TextureSampler(Texture texture, Filter filter, Wrap wrap, boolean mipmaps) {
+        this.texture = texture;
+        this.filter = filter;
+        this.wrap = wrap;
+        this.mipmaps = mipmaps;
+        int levels = mipmaps ? texture.getLevelCount() : 1;
+        this.maxLevel = levels - 1;
+        this.pixels = new int[levels][];
+        this.widths = new int[levels];
+        this.heights = new int[levels];
+        this.strideShifts = new int[levels];
+        this.scalesU = new float[levels];
+        this.scalesV = new float[levels];
+        for (int level = 0; level < levels; level++) {
+            pixels[level] = texture.getPixels(level);
+            widths[level] = texture.getWidth(level);
+            heights[level] = texture.getHeight(level);
+            strideShifts[level] = texture.getStrideShift(level);
+            scalesU[level] = widths[level] * (float) SUBTEXEL_ONE;
+            scalesV[level] = heights[level] * (float) SUBTEXEL_ONE;
+        }
+    }
+
+    /**
+     * Уровень детализации по производным текстурных координат вдоль осей экрана:
+     * log2 наибольшего из шагов в текселях нулевого уровня при сдвиге на пиксель по x и по y.
+     * Отрицательный или не конечный результат означает увеличение - выборку из нулевого уровня
+     */
+    public float lod(float dudx, float dvdx, float dudy, float dvdy) {
+        float width = widths[0], height = heights[0];
+        float x = (dudx * width) * (dudx * width) + (dvdx * height) * (dvdx * height);
+        float y = (dudy * width) * (dudy * width) + (dvdy * height) * (dvdy * height);
+        // log2(sqrt(r)) = log2(r) / 2
+        return (float) (Math.log(Math.max(x, y)) * (0.5 / Math.log(2)));
+    }
+
+    /**
+     * Цвет нулевого уровня текстуры в точке (u, v): упакованный ARGB с предумноженной альфой
+     */
+    public int sample(float u, float v) {
+        return filter == Filter.NEAREST ? sampleNearest(0, u, v) : sampleBilinear(0, u, v);
+    }
+
+    /**
+     * Цвет текстуры в точке (u, v) с уровнем детализации lod
+     */
+    public int sample(float u, float v, float lod) {
+        if (!(lod > 0) || maxLevel == 0) {
+            return sample(u, v);
+        }
+        if (filter == Filter.TRILINEAR) {
+            int level = (int) lod;
+            if (level >= maxLevel) {
+                return sampleBilinear(maxLevel, u, v);
+            }
+            int blend = (int) ((lod - level) * SUBTEXEL_ONE);
+            return lerp(sampleBilinear(level, u, v), sampleBilinear(level + 1, u, v), blend);
+        }
+        int level = Math.min((int) (lod + 0.5f), maxLevel);
+        return filter == Filter.NEAREST ? sampleNearest(level, u, v) : sampleBilinear(level, u, v);
+    }
+
+    private int sampleNearest(int level, float u, float v) {
+        // Координаты в текселях с 8 битами дробной части; floor, чтобы отрицательные округлялись вниз
+        int x = wrap((int) Math.floor(u * scalesU[level]) >> SUBTEXEL_BITS, widths[level]);
+        int y = wrap((int) Math.floor(v * scalesV[level]) >> SUBTEXEL_BITS, heights[level]);
+        return pixels[level][(y << strideShifts[level]) + x];
+    }
+
+    private int sampleBilinear(int level, float u, float v) {
+        // Центры текселей смещены на половину текселя
+        int fx = (int) Math.floor(u * scalesU[level]) - SUBTEXEL_ONE / 2;
+        int fy = (int) Math.floor(v * scalesV[level]) - SUBTEXEL_ONE / 2;
+        int width = widths[level];
+        int height = heights[level];
+        int x0 = fx >> SUBTEXEL_BITS;
+        int y0 = fy >> SUBTEXEL_BITS;
+        int x1 = wrap(x0 + 1, width);
+        int y1 = wrap(y0 + 1, height);
+        x0 = wrap(x0, width);
+        y0 = wrap(y0, height);
+        int[] texels = pixels[level];
+        int row0 = y0 << strideShifts[level];
+        int row1 = y1 << strideShifts[level];
+        int tx = fx & SUBTEXEL_MASK;
+        int ty = fy & SUBTEXEL_MASK;
+        int top = lerp(texels[row0 + x0], texels[row0 + x1], tx);
+        int bottom = lerp(texels[row1 + x0], texels[row1 + x1], tx);
+        return lerp(top, bottom, ty);
+    }
+
+    /**
+     * Номер текселя по режиму адресации
+     */
+    private int wrap(int coord, int size) {
+        switch (wrap) {
+            case CLAMP:
+                return coord < 0 ? 0 : Math.min(coord, size - 1);
+            case MIRROR: {
+                int period = Math.floorMod(coord, size * 2);
+                return period < size ? period : size * 2 - 1 - period;
+            }
+            default:
+                // Для размеров-степеней двойки остаток от деления - маска
+                return (size & (size - 1)) == 0 ? coord & (size - 1) : Math.floorMod(coord, size);
+        }
+    }
+
+    /**
+     * Линейная интерполяция упакованных цветов с весом t из [0, 256):
+     * красный с синим и альфа с зелёным смешиваются парами в одном int, каждый канал умещается в 16 бит
+     */
+    static int lerp(int a, int b, int t) {
+        int s = SUBTEXEL_ONE - t;
+        int rb = (((a & 0x00FF00FF) * s + (b & 0x00FF00FF) * t) >>> SUBTEXEL_BITS) & 0x00FF00FF;
+        int ag = (((a >>> 8) & 0x00FF00FF) * s + ((b >>> 8) & 0x00FF00FF) * t) & 0xFF00FF00;
+        return ag | rb;
+    }
+
+    public Texture getTexture() {
+        return texture;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public Wrap getWrap() {
+        return wrap;
+    }
+
+    public boolean isMipmapped() {
+        return mipmaps;
+    }
+}
@@ -0,0 +1,257 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Многопоточная растеризация по тайлам.
+ * Треугольники кадра раскладываются по корзинам тайлов TILE_SIZE x TILE_SIZE в порядке отправки,
+ * затем тайлы растеризуются параллельно в ForkJoinPool с перехватом работы.
+ * Каждый тайл пишет только в свою часть Z-буфера и буфера цвета, а порядок треугольников
+ * внутри тайла совпадает с последовательным, поэтому результат побитово совпадает
+ * с однопоточной растеризацией.
+ */
+public class TiledRasterizer {
+
+    public static final int TILE_SIZE = 64;
+
+    private final ForkJoinPool pool;
+    private final int threads;
+
+    private final ArrayList<Triangle> triangles = new ArrayList<>();
+    private int[][] bins = new int[0][];
+    private int[] binSizes = new int[0];
+    private int tilesX;
+    private int tilesY;
+    private int width;
+    private int height;
+
+    /**
+     * Треугольник в экранных координатах вместе с параметрами затенения
+     */
+    private static final class Triangle {
+        float[] positions;
+        float[] normals;
+        float[] texCoords;
+        int p0, p1, p2;
+        int n0, n1, n2;
+        int t0, t1, t2;
+        Color color;
+        TextureSampler texture;
+        Vector3f lightDir;
+        float ambientStrength;
+        boolean lightEnabled;
+        float lightIntensity;
+    }
+
+    public TiledRasterizer(int threads) {
+        this.threads = Math.max(1, threads);
+        this.pool = new ForkJoinPool(this.threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Начинает новый кадр: очищает корзины и подгоняет сетку тайлов под размер экрана
+     */
+    public void begin(int width, int height) {
+        triangles.clear();
+        if (this.width != width || this.height != height) {
+            this.width = width;
+            this.height = height;
+            tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+            tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+            bins = new int[tilesX * tilesY][];
+            binSizes = new int[tilesX * tilesY];
+        } else {
+            Arrays.fill(binSizes, 0);
+        }
+    }
+
+    /**
+     * Добавляет треугольник во все тайлы, которые пересекает его ограничивающий прямоугольник.
+     * Параметры совпадают с {@link Rasterizer#rasterizeTriangleIncremental}.
+     */
+    public void submit(
+            Vector3f v0, Vector3f v1, Vector3f v2,
+            Vector3f n0, Vector3f n1, Vector3f n2,
+            Vector2f t0, Vector2f t1, Vector2f t2,
+            Color color,
+            TextureSampler texture,
+            Vector3f lightDir,
+            float ambientStrength,
+            boolean lightEnabled,
+            float lightIntensity) {
+
+        float[] positions = {v0.x, v0.y, v0.z, v1.x, v1.y, v1.z, v2.x, v2.y, v2.z};
+        float[] normals = (n0 != null && n1 != null && n2 != null)
+                ? new float[] {n0.x, n0.y, n0.z, n1.x, n1.y, n1.z, n2.x, n2.y, n2.z}
+                : null;
+        float[] texCoords = (t0 != null && t1 != null && t2 != null)
+                ? new float[] {t0.x, t0.y, t1.x, t1.y, t2.x, t2.y}
+                : null;
+
+        submit(positions, 0, 1, 2, normals, 0, 1, 2, texCoords, 0, 1, 2,
+                color, texture, lightDir, ambientStrength, lightEnabled, lightIntensity);
+    }
+
+    /**
+     * Добавляет треугольник, вершины которого лежат в плоских массивах.
+     * Массивы не копируются и не должны меняться до вызова {@link #execute}.
+     * Параметры совпадают с {@link Rasterizer#rasterizeTriangleIndexed}.
+     */
+    public void submit(
+            float[] positions, int p0, int p1, int p2,
+            float[] normals, int n0, int n1, int n2,
+            float[] texCoords, int t0, int t1, int t2,
+            Color color,
+            TextureSampler texture,
+            Vector3f lightDir,
+            float ambientStrength,
+            boolean lightEnabled,
+            float lightIntensity) {
+
+        float x0 = positions[p0 * 3], y0 = positions[p0 * 3 + 1];
+        float x1 = positions[p1 * 3], y1 = positions[p1 * 3 + 1];
+        float x2 = positions[p2 * 3], y2 = positions[p2 * 3 + 1];
+        float minXf = Math.min(Math.min(x0, x1), x2);
+        float maxXf = Math.max(Math.max(x0, x1), x2);
+        float minYf = Math.min(Math.min(y0, y1), y2);
+        float maxYf = Math.max(Math.max(y0, y1), y2);
+        if (!(minXf <= maxXf) || !(minYf <= maxYf)) {
+            return; // NaN в координатах
+        }
+
+        // Прямоугольник расширен на пиксель: растеризатор округляет вершины до 1/16 пикселя
+        int minX = (int) Math.max(0, Math.floor(minXf) - 1);
+        int maxX = (int) Math.min(width - 1, Math.floor(maxXf) + 1);
+        int minY = (int) Math.max(0, Math.floor(minYf) - 1);
+        int maxY = (int) Math.min(height - 1, Math.floor(maxYf) + 1);
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        Triangle triangle = new Triangle();
+        triangle.positions = positions;
+        triangle.normals = normals;
+        triangle.texCoords = texCoords;
+        triangle.p0 = p0; triangle.p1 = p1; triangle.p2 = p2;
+        triangle.n0 = n0; triangle.n1 = n1; triangle.n2 = n2;
+        triangle.t0 = t0; triangle.t1 = t1; triangle.t2 = t2;
+        triangle.color = color;
+        triangle.texture = texture;
+        triangle.lightDir = lightDir;
+        triangle.ambientStrength = ambientStrength;
+        triangle.lightEnabled = lightEnabled;
+        triangle.lightIntensity = lightIntensity;
+
+        int index = triangles.size();
+        triangles.add(triangle);
+
+        for (int ty = minY / TILE_SIZE; ty <= maxY / TILE_SIZE; ty++) {
+            for (int tx = minX / TILE_SIZE; tx <= maxX / TILE_SIZE; tx++) {
+                addToBin(ty * tilesX + tx, index);
+            }
+        }
+    }
+
+    private void addToBin(int tile, int triangleIndex) {
+        int[] bin = bins[tile];
+        int size = binSizes[tile];
+        if (bin == null) {
+            bin = new int[16];
+            bins[tile] = bin;
+        } else if (size == bin.length) {
+            bin = Arrays.copyOf(bin, size * 2);
+            bins[tile] = bin;
+        }
+        bin[size] = triangleIndex;
+        binSizes[tile] = size + 1;
+    }
+
+    /**
+     * Растеризует все накопленные треугольники и очищает очередь кадра
+     */
+    public void execute(int[] colorBuffer, ZBuffer zBuffer) {
+        if (triangles.isEmpty()) {
+            return;
+        }
+        pool.invoke(new TileTask(0, tilesX * tilesY, colorBuffer, zBuffer));
+        triangles.clear();
+    }
+
+    private void rasterizeTile(int tile, int[] colorBuffer, ZBuffer zBuffer) {
+        int size = binSizes[tile];
+        if (size == 0) {
+            return;
+        }
+        int[] bin = bins[tile];
+        int clipMinX = (tile % tilesX) * TILE_SIZE;
+        int clipMinY = (tile / tilesX) * TILE_SIZE;
+        int clipMaxX = Math.min(width, clipMinX + TILE_SIZE) - 1;
+        int clipMaxY = Math.min(height, clipMinY + TILE_SIZE) - 1;
+
+        for (int i = 0; i < size; i++) {
+            Triangle t = triangles.get(bin[i]);
+            Rasterizer.rasterizeTriangleIndexed(
+                    t.positions, t.p0, t.p1, t.p2,
+                    t.normals, t.n0, t.n1, t.n2,
+                    t.texCoords, t.t0, t.t1, t.t2,
+                    t.color,
+                    zBuffer,
+                    colorBuffer,
+                    t.texture,
+                    t.lightDir,
+                    t.ambientStrength,
+                    t.lightEnabled,
+                    t.lightIntensity,
+                    clipMinX, clipMinY, clipMaxX, clipMaxY);
+        }
+    }
+
+    /**
+     * Делит диапазон тайлов пополам, пока в нём не останется один тайл
+     */
+    private final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int[] colorBuffer;
+        private final ZBuffer zBuffer;
+
+        TileTask(int from, int to, int[] colorBuffer, ZBuffer zBuffer) {
+            this.from = from;
+            this.to = to;
+            this.colorBuffer = colorBuffer;
+            this.zBuffer = zBuffer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    rasterizeTile(from, colorBuffer, zBuffer);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TileTask(from, mid, colorBuffer, zBuffer), new TileTask(mid, to, colorBuffer, zBuffer));
+        }
+    }
+
+    /**
+     * Останавливает потоки пула
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
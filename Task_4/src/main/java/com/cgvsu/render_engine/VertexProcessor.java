@@ -0,0 +1,270 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.matrix.impl.Matrix4f;
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.MeshBounds;
+
+import java.util.Arrays;
+
+/**
+ * Обработка вершин модели перед отрисовкой.
+ * Каждая вершина и нормаль модели преобразуется ровно один раз за кадр, результат хранится
+ * в переиспользуемых массивах float, а полигоны обращаются к нему по тем же индексам, что и в CompiledMesh.
+ * Вычисления повторяют multiplyMatrix4ByPoint и vertexToPoint из GraphicConveyor.
+ *
+ * Если часть кластеров сетки (см. {@link MeshBounds}) отброшена отсечением по пирамиде видимости,
+ * преобразуются только вершины и нормали видимых кластеров; остальные элементы буферов
+ * не определены, и полигоны отброшенных кластеров рисовать нельзя.
+ */
+public class VertexProcessor {
+
+    // Флаги вершин вне пирамиды по глубине: ближе ближней плоскости (z < -w) и дальше дальней (z > w)
+    public static final byte OUTSIDE_NEAR = 1;
+    public static final byte OUTSIDE_FAR = 2;
+    public static final byte OUTSIDE_DEPTH = OUTSIDE_NEAR | OUTSIDE_FAR;
+    // Флаг вершины за защитной полосой растеризатора на экране (см. Clipper)
+    public static final byte OUTSIDE_GUARD_BAND = 4;
+
+    private float[] screenPositions = new float[0]; // x, y на экране и z в NDC для каждой вершины
+    private float[] clipPositions = new float[0];   // x, y, z, w в пространстве отсечения до деления на w
+    private byte[] clipFlags = new byte[0];
+    private float[] viewNormals = new float[0];     // нормали в пространстве камеры (x, y, z)
+    private float[] texCoords;                      // текстурные координаты сетки (u, v), не копируются
+    private CompiledMesh mesh;
+    private int vertexCount;
+    private int normalCount;
+    private int texCoordCount;
+    private boolean[] visibleClusters;
+
+    // Отметки вершин и нормалей видимых кластеров: элемент отмечен, если его отметка равна stamp
+    private int[] vertexStamps = new int[0];
+    private int[] normalStamps = new int[0];
+    private int stamp;
+    private int[] selected = new int[0];
+
+    /**
+     * Преобразует вершины модели в экранные координаты, а при необходимости и нормали в пространство камеры
+     * @param modelViewProjectionMatrix - матрица модель-вид-проекция
+     * @param modelViewMatrix - матрица модель-вид для нормалей
+     * @param withNormals - преобразовывать нормали
+     * @param withTexCoords - использовать текстурные координаты
+     */
+    public void process(
+            CompiledMesh mesh,
+            Matrix4f modelViewProjectionMatrix,
+            Matrix4f modelViewMatrix,
+            int width,
+            int height,
+            boolean withNormals,
+            boolean withTexCoords) {
+        process(mesh, modelViewProjectionMatrix, modelViewMatrix, width, height, withNormals, withTexCoords, null);
+    }
+
+    /**
+     * То же, но только для видимых кластеров сетки
+     * @param visibleClusters - видимость каждого кластера из mesh.getBounds() или null, если видимы все
+     */
+    public void process(
+            CompiledMesh mesh,
+            Matrix4f modelViewProjectionMatrix,
+            Matrix4f modelViewMatrix,
+            int width,
+            int height,
+            boolean withNormals,
+            boolean withTexCoords,
+            boolean[] visibleClusters) {
+
+        this.mesh = mesh;
+        this.visibleClusters = visibleClusters;
+        if (visibleClusters != null) {
+            nextStamp(mesh);
+        }
+        vertexCount = mesh.getVertexCount();
+        int count = visibleClusters == null
+                ? vertexCount
+                : selectVisible(mesh.getPolygonVertexIndices(), vertexStamps);
+        processVertices(mesh.getPositions(), count, visibleClusters == null ? null : selected,
+                modelViewProjectionMatrix, width, height);
+
+        normalCount = 0;
+        if (withNormals) {
+            normalCount = mesh.getNormalCount();
+            count = visibleClusters == null
+                    ? normalCount
+                    : selectVisible(mesh.getPolygonNormalIndices(), normalStamps);
+            processNormals(mesh.getNormals(), count, visibleClusters == null ? null : selected, modelViewMatrix);
+        }
+
+        texCoordCount = withTexCoords ? mesh.getTexCoordCount() : 0;
+        texCoords = mesh.getTexCoords();
+    }
+
+    private void nextStamp(CompiledMesh mesh) {
+        if (vertexStamps.length < mesh.getVertexCount()) {
+            vertexStamps = new int[mesh.getVertexCount()];
+        }
+        if (normalStamps.length < mesh.getNormalCount()) {
+            normalStamps = new int[mesh.getNormalCount()];
+        }
+        if (++stamp == 0) {
+            Arrays.fill(vertexStamps, 0);
+            Arrays.fill(normalStamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Собирает в selected индексы (вершин или нормалей) углов видимых кластеров, каждый по одному разу
+     * @return число собранных индексов
+     */
+    private int selectVisible(int[] cornerIndices, int[] stamps) {
+        MeshBounds bounds = mesh.getBounds();
+        int[] clusterPolygons = bounds.getClusterPolygonOffsets();
+        int[] polygonOffsets = mesh.getPolygonOffsets();
+        int count = 0;
+        for (int cluster = 0; cluster < bounds.getClusterCount(); cluster++) {
+            if (!visibleClusters[cluster]) {
+                continue;
+            }
+            int to = polygonOffsets[clusterPolygons[cluster + 1]];
+            for (int corner = polygonOffsets[clusterPolygons[cluster]]; corner < to; corner++) {
+                int index = cornerIndices[corner];
+                if (index >= 0 && stamps[index] != stamp) {
+                    stamps[index] = stamp;
+                    if (count == selected.length) {
+                        selected = Arrays.copyOf(selected, Math.max(16, count * 2));
+                    }
+                    selected[count++] = index;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param indices - номера преобразуемых вершин или null, если преобразуются первые count вершин
+     */
+    private void processVertices(float[] positions, int count, int[] indices, Matrix4f m, int width, int height) {
+        if (screenPositions.length < vertexCount * 3) {
+            screenPositions = new float[vertexCount * 3];
+            clipPositions = new float[vertexCount * 4];
+            clipFlags = new byte[vertexCount];
+        }
+
+        float m00 = m.get(0, 0), m01 = m.get(0, 1), m02 = m.get(0, 2), m03 = m.get(0, 3);
+        float m10 = m.get(1, 0), m11 = m.get(1, 1), m12 = m.get(1, 2), m13 = m.get(1, 3);
+        float m20 = m.get(2, 0), m21 = m.get(2, 1), m22 = m.get(2, 2), m23 = m.get(2, 3);
+        float m30 = m.get(3, 0), m31 = m.get(3, 1), m32 = m.get(3, 2), m33 = m.get(3, 3);
+        float halfWidth = width / 2.0F;
+        float halfHeight = height / 2.0F;
+
+        float[] out = screenPositions;
+        float[] clip = clipPositions;
+        byte[] flags = clipFlags;
+        for (int i = 0; i < count; i++) {
+            int v = indices == null ? i : indices[i];
+            int o = v * 3;
+            float vx = positions[o], vy = positions[o + 1], vz = positions[o + 2];
+            float x = m00 * vx + m01 * vy + m02 * vz + m03;
+            float y = m10 * vx + m11 * vy + m12 * vz + m13;
+            float z = m20 * vx + m21 * vy + m22 * vz + m23;
+            float w = m30 * vx + m31 * vy + m32 * vz + m33;
+            clip[v * 4] = x;
+            clip[v * 4 + 1] = y;
+            clip[v * 4 + 2] = z;
+            clip[v * 4 + 3] = w;
+            float limit = Rasterizer.GUARD_BAND_CLIP * w;
+            boolean outsideGuardBand = Math.abs(x * width) > limit || Math.abs(y * height) > limit;
+            flags[v] = (byte) ((z < -w ? OUTSIDE_NEAR : 0) | (z > w ? OUTSIDE_FAR : 0)
+                    | (outsideGuardBand ? OUTSIDE_GUARD_BAND : 0));
+            if (w != 0f) {
+                x /= w;
+                y /= w;
+                z /= w;
+            }
+            out[o] = x * width + halfWidth;
+            out[o + 1] = -y * height + halfHeight;
+            out[o + 2] = z;
+        }
+    }
+
+    private void processNormals(float[] normals, int count, int[] indices, Matrix4f m) {
+        if (viewNormals.length < normalCount * 3) {
+            viewNormals = new float[normalCount * 3];
+        }
+
+        float m00 = m.get(0, 0), m01 = m.get(0, 1), m02 = m.get(0, 2);
+        float m10 = m.get(1, 0), m11 = m.get(1, 1), m12 = m.get(1, 2);
+        float m20 = m.get(2, 0), m21 = m.get(2, 1), m22 = m.get(2, 2);
+
+        float[] out = viewNormals;
+        for (int i = 0; i < count; i++) {
+            int o = (indices == null ? i : indices[i]) * 3;
+            float nx = normals[o], ny = normals[o + 1], nz = normals[o + 2];
+            out[o] = m00 * nx + m01 * ny + m02 * nz;
+            out[o + 1] = m10 * nx + m11 * ny + m12 * nz;
+            out[o + 2] = m20 * nx + m21 * ny + m22 * nz;
+        }
+    }
+
+    /**
+     * Сетка, вершины которой обработаны последними
+     */
+    public CompiledMesh getMesh() {
+        return mesh;
+    }
+
+    /**
+     * Видимость кластеров сетки или null, если обработаны все вершины
+     */
+    public boolean[] getVisibleClusters() {
+        return visibleClusters;
+    }
+
+    /**
+     * Экранные координаты: вершина i занимает элементы 3i (x), 3i + 1 (y), 3i + 2 (глубина)
+     */
+    public float[] getScreenPositions() {
+        return screenPositions;
+    }
+
+    /**
+     * Координаты в пространстве отсечения: вершина i занимает элементы 4i .. 4i + 3 (x, y, z, w)
+     */
+    public float[] getClipPositions() {
+        return clipPositions;
+    }
+
+    /**
+     * Флаги OUTSIDE_NEAR, OUTSIDE_FAR и OUTSIDE_GUARD_BAND для каждой вершины
+     */
+    public byte[] getClipFlags() {
+        return clipFlags;
+    }
+
+    /**
+     * Нормали в пространстве камеры или null, если они не преобразовывались
+     */
+    public float[] getViewNormals() {
+        return normalCount > 0 ? viewNormals : null;
+    }
+
+    /**
+     * Текстурные координаты (u, v подряд) или null, если они не нужны
+     */
+    public float[] getTexCoords() {
+        return texCoordCount > 0 ? texCoords : null;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getNormalCount() {
+        return normalCount;
+    }
+
+    public int getTexCoordCount() {
+        return texCoordCount;
+    }
+}
@@ -1,42 +1,124 @@
 package com.cgvsu.render_engine;
 
+import java.util.Arrays;
+
+/**
+ * Z-буфер в одном массиве float, уложенном по строкам (индекс y * width + x).
+ * В режиме поколений каждая ячейка помечается номером кадра, в котором была записана:
+ * ячейка с чужим номером считается пустой, поэтому clear() выполняется за O(1).
+ */
 public class ZBuffer {
-    private float[][] buffer;
+    private float[] buffer;
+    private int[] stamps;      // номер поколения для каждой ячейки (null без режима поколений)
+    private int generation = 1;
+    private final boolean generational;
     private int width;
     private int height;
 
     public ZBuffer(int width, int height) {
+        this(width, height, true);
+    }
+
+    /**
+     * @param generational - очищать буфер сменой поколения вместо заполнения массива
+     */
+    public ZBuffer(int width, int height, boolean generational) {
         this.width = width;
         this.height = height;
-        this.buffer = new float[width][height];
+        this.generational = generational;
+        this.buffer = new float[width * height];
+        this.stamps = generational ? new int[width * height] : null;
         clear();
     }
 
     public void clear() {
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                buffer[x][y] = Float.POSITIVE_INFINITY;
-            }
+        if (!generational) {
+            Arrays.fill(buffer, 0, width * height, Float.POSITIVE_INFINITY);
+            return;
+        }
+        if (generation == Integer.MAX_VALUE) {
+            // Номера поколений закончились - один раз сбрасываем метки целиком
+            Arrays.fill(stamps, 0);
+            generation = 0;
         }
+        generation++;
     }
 
+    /**
+     * Проверка глубины с записью при успехе. Координаты вне буфера отбрасываются
+     */
     public boolean testAndSet(int x, int y, float depth) {
         if (x < 0 || x >= width || y < 0 || y >= height) {
             return false;
         }
-        
-        if (depth < buffer[x][y]) {
-            buffer[x][y] = depth;
+        return testAndSetAt(y * width + x, depth);
+    }
+
+    /**
+     * Проверка глубины по индексу ячейки без проверки координат.
+     * Индекс строки берётся из {@link #getRowOffset(int)}, к нему прибавляется x
+     */
+    public boolean testAndSetAt(int index, float depth) {
+        if (generational && stamps[index] != generation) {
+            // Пустая ячейка хранит бесконечность: NaN и бесконечная глубина не проходят, как и без поколений
+            if (depth < Float.POSITIVE_INFINITY) {
+                stamps[index] = generation;
+                buffer[index] = depth;
+                return true;
+            }
+            return false;
+        }
+        if (depth < buffer[index]) {
+            buffer[index] = depth;
             return true;
         }
         return false;
     }
 
+    /**
+     * Индекс первой ячейки строки y
+     */
+    public int getRowOffset(int y) {
+        return y * width;
+    }
+
+    /**
+     * Глубина в ячейке; для пустой ячейки - положительная бесконечность
+     */
+    public float getDepth(int x, int y) {
+        int index = y * width + x;
+        if (generational && stamps[index] != generation) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return buffer[index];
+    }
+
+    /**
+     * Копирует строку y в dst начиная с dstOffset
+     */
+    public void readRow(int y, float[] dst, int dstOffset) {
+        int offset = y * width;
+        for (int x = 0; x < width; x++) {
+            int index = offset + x;
+            dst[dstOffset + x] = (generational && stamps[index] != generation)
+                    ? Float.POSITIVE_INFINITY
+                    : buffer[index];
+        }
+    }
+
+    /**
+     * Меняет размер буфера. При уменьшении массивы переиспользуются
+     */
     public void resize(int width, int height) {
         if (this.width != width || this.height != height) {
             this.width = width;
             this.height = height;
-            this.buffer = new float[width][height];
+            if (buffer.length < width * height) {
+                this.buffer = new float[width * height];
+                if (generational) {
+                    this.stamps = new int[width * height];
+                }
+            }
             clear();
         }
     }
@@ -1,5 +1,7 @@
 package com.cgvsu.scene;
 
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.LodChain;
 import com.cgvsu.model.Model;
 
 import java.util.ArrayList;
@@ -14,6 +16,10 @@ public class SceneManager {
         private final String name;
         private int id;
         private boolean visible = true;  // По умолчанию все модели видимы
+        // Уровни детализации строятся в фоне и появляются позже самой модели
+        private volatile LodChain lodChain;
+        // Сетка, по которой построить уровни не удалось: по ней повторно не строим
+        private volatile CompiledMesh failedLodMesh;
 
         public SceneModel(Model model, String name, int id) {
             this.model = model;
@@ -41,9 +47,25 @@ public class SceneManager {
         public void setVisible(boolean visible) {
             this.visible = visible;
         }
+
+        public LodChain getLodChain() {
+            return lodChain;
+        }
+
+        public void setLodChain(LodChain lodChain) {
+            this.lodChain = lodChain;
+        }
+
+        public CompiledMesh getFailedLodMesh() {
+            return failedLodMesh;
+        }
+
+        public void setFailedLodMesh(CompiledMesh failedLodMesh) {
+            this.failedLodMesh = failedLodMesh;
+        }
     }
 
-    public void addModel(Model model, String name) {
+    public SceneModel addModel(Model model, String name) {
         int newId = models.size();
         SceneModel sceneModel = new SceneModel(model, name, newId);
         models.add(sceneModel);
@@ -55,6 +77,7 @@ public class SceneManager {
             // Новая модель невидима, если уже есть активная модель
             sceneModel.setVisible(false);
         }
+        return sceneModel;
     }
 
     public void removeModel(SceneModel sceneModel) {
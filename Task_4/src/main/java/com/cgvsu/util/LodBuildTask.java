@@ -0,0 +1,35 @@
+package com.cgvsu.util;
+
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.LodChain;
+import javafx.concurrent.Task;
+
+/**
+ * Фоновое построение уровней детализации по сетке загруженной модели (см. {@link LodChain}).
+ * Сетка не изменяется, поэтому модель можно показывать и править, пока цепочка строится:
+ * цепочка по устаревшей сетке при отрисовке просто не используется. Отмена прерывает поток,
+ * и построение останавливается после текущего уровня.
+ */
+public class LodBuildTask extends Task<LodChain> {
+
+    private final CompiledMesh mesh;
+
+    public LodBuildTask(CompiledMesh mesh) {
+        this.mesh = mesh;
+    }
+
+    /**
+     * Сетка, по которой строится цепочка
+     */
+    public CompiledMesh getMesh() {
+        return mesh;
+    }
+
+    @Override
+    protected LodChain call() {
+        updateMessage("Построение уровней детализации");
+        LodChain chain = LodChain.build(mesh);
+        updateMessage("Готово");
+        return isCancelled() ? null : chain;
+    }
+}
@@ -0,0 +1,110 @@
+package com.cgvsu.util;
+
+import com.cgvsu.meshcache.MeshCache;
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.ModelProcessor;
+import com.cgvsu.objreader.ObjReader;
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Фоновая загрузка модели: чтение и разбор OBJ, нормали и сборка сетки для отрисовки.
+ * Полигоны не заменяются треугольниками: треугольники хранятся только в массивах сетки (см. CompiledMesh).
+ * Выполняется вне потока JavaFX; прогресс и текущий этап доступны через progressProperty и messageProperty,
+ * готовая модель - через getValue в обработчике onSucceeded (он вызывается в потоке JavaFX).
+ * Отмена проверяется между этапами и между кусками разбора файла: начатый этап или кусок доводится
+ * до конца, но его результат отбрасывается.
+ * Если задан кэш, подготовленная сетка берётся из него, а после полной загрузки сохраняется туда.
+ */
+public class ModelLoadTask extends Task<Model> {
+
+    // Доли этапов в общем прогрессе: разбор файла занимает большую часть времени
+    private static final double PARSE_DONE = 0.6;
+    private static final double NORMALS_DONE = 0.85;
+    private static final double COMPILE_DONE = 0.9;
+
+    private final Path path;
+    private final MeshCache cache;
+
+    public ModelLoadTask(Path path) {
+        this(path, null);
+    }
+
+    public ModelLoadTask(Path path, MeshCache cache) {
+        this.path = path;
+        this.cache = cache;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    protected Model call() throws Exception {
+        updateProgress(0, 1);
+        MeshCache.SourceStamp stamp = null;
+        if (cache != null) {
+            updateMessage("Чтение кэша");
+            stamp = MeshCache.SourceStamp.of(path);
+            Model cached = loadCached(stamp);
+            if (cached != null) {
+                updateMessage("Готово");
+                updateProgress(1, 1);
+                return cached;
+            }
+        }
+
+        updateMessage("Чтение " + path.getFileName());
+        Model model;
+        try {
+            model = ObjReader.read(path, (read, total) -> {
+                updateProgress(PARSE_DONE * read / Math.max(1, total), 1);
+                return !isCancelled();
+            });
+        } catch (CancellationException e) {
+            return null;
+        }
+        if (isCancelled()) {
+            return null;
+        }
+
+        updateMessage("Вычисление нормалей");
+        updateProgress(PARSE_DONE, 1);
+        ModelProcessor.calculateNormals(model);
+        if (isCancelled()) {
+            return null;
+        }
+
+        // Сетка собирается заранее, чтобы первый кадр с новой моделью не тратил на это время
+        updateMessage("Подготовка к отрисовке");
+        updateProgress(NORMALS_DONE, 1);
+        CompiledMesh mesh = model.getCompiledMesh();
+
+        if (cache != null && !isCancelled()) {
+            updateMessage("Сохранение в кэш");
+            updateProgress(COMPILE_DONE, 1);
+            try {
+                cache.store(stamp, mesh);
+            } catch (IOException e) {
+                // Кэш только ускоряет повторное открытие: модель уже готова, ошибку записи пропускаем
+            }
+        }
+
+        updateMessage("Готово");
+        updateProgress(1, 1);
+        return model;
+    }
+
+    private Model loadCached(MeshCache.SourceStamp stamp) {
+        try {
+            return cache.load(stamp);
+        } catch (IOException e) {
+            // Недоступный кэш не мешает загрузке: модель читается из исходного файла
+            return null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.cgvsu.meshcache;
+
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.ModelProcessor;
+import com.cgvsu.objreader.ObjReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class MeshCacheTest {
+
+    private static final String OBJ = "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\nv 0 0 1\n"
+            + "vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n"
+            + "vn 0 0 1\n"
+            + "f 1/1/1 2/2/1 3/3/1 4/4/1\n"
+            + "f 1/1/1 2/2/1 5/3/1\n";
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeSource(String content) throws IOException {
+        Path source = tempDir.resolve("model.obj");
+        Files.writeString(source, content, StandardCharsets.UTF_8);
+        return source;
+    }
+
+    private static Model prepare(Path source) throws IOException {
+        Model model = ObjReader.read(source);
+        ModelProcessor.triangulate(model);
+        ModelProcessor.calculateNormals(model);
+        return model;
+    }
+
+    private static void assertSameMesh(CompiledMesh expected, CompiledMesh actual) {
+        Assertions.assertArrayEquals(expected.getPositions(), actual.getPositions());
+        Assertions.assertArrayEquals(expected.getNormals(), actual.getNormals());
+        Assertions.assertArrayEquals(expected.getTexCoords(), actual.getTexCoords());
+        Assertions.assertArrayEquals(expected.getPolygonOffsets(), actual.getPolygonOffsets());
+        Assertions.assertArrayEquals(expected.getPolygonVertexIndices(), actual.getPolygonVertexIndices());
+        Assertions.assertArrayEquals(expected.getPolygonNormalIndices(), actual.getPolygonNormalIndices());
+        Assertions.assertArrayEquals(expected.getPolygonTexCoordIndices(), actual.getPolygonTexCoordIndices());
+        Assertions.assertArrayEquals(expected.getTriangleVertexIndices(), actual.getTriangleVertexIndices());
+    }
+
+    @Test
+    public void storedModelLoadsBack() throws IOException {
+        Path source = writeSource(OBJ);
+        MeshCache cache = new MeshCache(tempDir.resolve("cache"));
+        MeshCache.SourceStamp stamp = MeshCache.SourceStamp.of(source);
+        Assertions.assertNull(cache.load(stamp));
+
+        Model model = prepare(source);
+        cache.store(stamp, model.getCompiledMesh());
+        Model cached = cache.load(MeshCache.SourceStamp.of(source));
+
+        Assertions.assertNotNull(cached);
+        CompiledMesh loaded = cached.getCompiledMesh();
+        assertSameMesh(model.getCompiledMesh(), loaded);
+        // Списки модели строятся только при первом обращении, сетка из кэша при этом остаётся той же
+        Assertions.assertEquals(model.getVertices().size(), cached.getVertexCount());
+        Assertions.assertEquals(model.getPolygons().size(), cached.getPolygonCount());
+        Assertions.assertEquals(model.getVertices().size(), cached.getVertices().size());
+        Assertions.assertSame(loaded, cached.getCompiledMesh());
+        Assertions.assertEquals(model.getPolygons().size(), cached.getPolygons().size());
+        for (int i = 0; i < model.getPolygons().size(); i++) {
+            Assertions.assertEquals(model.getPolygons().get(i).getVertexIndices(), cached.getPolygons().get(i).getVertexIndices());
+            Assertions.assertEquals(model.getPolygons().get(i).getNormalIndices(), cached.getPolygons().get(i).getNormalIndices());
+            Assertions.assertEquals(model.getPolygons().get(i).getTextureVertexIndices(), cached.getPolygons().get(i).getTextureVertexIndices());
+        }
+
+        // Сетка из кэша пересобирается после правки модели, как и обычная
+        CompiledMesh mesh = cached.getCompiledMesh();
+        Assertions.assertSame(mesh, cached.getCompiledMesh());
+        cached.removePolygon(0);
+        Assertions.assertEquals(model.getPolygons().size() - 1, cached.getCompiledMesh().getPolygonCount());
+    }
+
+    @Test
+    public void changedSourceIsNotLoaded() throws IOException {
+        Path source = writeSource(OBJ);
+        MeshCache cache = new MeshCache(tempDir.resolve("cache"));
+        cache.store(MeshCache.SourceStamp.of(source), prepare(source).getCompiledMesh());
+
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+        Assertions.assertNull(cache.load(MeshCache.SourceStamp.of(source)));
+
+        Files.writeString(source, OBJ + "v 2 2 2\n", StandardCharsets.UTF_8);
+        Assertions.assertNull(cache.load(MeshCache.SourceStamp.of(source)));
+    }
+
+    @Test
+    public void corruptedFileIsNotLoaded() throws IOException {
+        Path source = writeSource(OBJ);
+        MeshCache cache = new MeshCache(tempDir.resolve("cache"));
+        MeshCache.SourceStamp stamp = MeshCache.SourceStamp.of(source);
+        cache.store(stamp, prepare(source).getCompiledMesh());
+
+        Path file = cache.cacheFile(stamp);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long position = raf.length() - 10;
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 1);
+        }
+        Assertions.assertNull(cache.load(stamp));
+
+        Files.write(file, new byte[] {1, 2, 3});
+        Assertions.assertNull(cache.load(stamp));
+    }
+}
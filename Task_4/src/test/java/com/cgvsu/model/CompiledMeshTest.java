@@ -0,0 +1,81 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class CompiledMeshTest {
+
+    private static Polygon polygon(int... indices) {
+        Polygon polygon = new Polygon();
+        ArrayList<Integer> list = new ArrayList<>();
+        for (int index : indices) {
+            list.add(index);
+        }
+        polygon.setVertexIndices(list);
+        return polygon;
+    }
+
+    private static Model quadAndTriangle() {
+        Model model = new Model();
+        model.getVertices().add(new Vector3f(0, 0, 0));
+        model.getVertices().add(new Vector3f(1, 0, 0));
+        model.getVertices().add(new Vector3f(1, 1, 0));
+        model.getVertices().add(new Vector3f(0, 1, 0));
+        model.getVertices().add(new Vector3f(2, 2, 2));
+        model.getPolygons().add(polygon(0, 1, 2, 3));
+        model.getPolygons().add(polygon(1, 4, 2));
+        return model;
+    }
+
+    @Test
+    void packsAttributesAndIndices() {
+        CompiledMesh mesh = quadAndTriangle().getCompiledMesh();
+
+        assertEquals(5, mesh.getVertexCount());
+        assertEquals(2, mesh.getPolygonCount());
+        assertEquals(3, mesh.getTriangleCount());
+        assertArrayEquals(new float[] {2, 2, 2}, Arrays.copyOfRange(mesh.getPositions(), 12, 15));
+        assertArrayEquals(new int[] {0, 4, 7}, mesh.getPolygonOffsets());
+        assertArrayEquals(new int[] {0, 1, 2, 3, 1, 4, 2}, mesh.getPolygonVertexIndices());
+        assertArrayEquals(new int[] {0, 2, 3}, mesh.getPolygonTriangleOffsets());
+        assertArrayEquals(new int[] {0, 1, 2, 0, 2, 3, 1, 4, 2}, mesh.getTriangleVertexIndices());
+        assertArrayEquals(new int[] {-1, -1, -1, -1, -1, -1, -1, -1, -1}, mesh.getTriangleNormalIndices());
+    }
+
+    @Test
+    void reusedUntilModelChanges() {
+        Model model = quadAndTriangle();
+        CompiledMesh first = model.getCompiledMesh();
+        assertSame(first, model.getCompiledMesh());
+
+        model.removePolygon(0);
+        CompiledMesh second = model.getCompiledMesh();
+        assertNotSame(first, second);
+        assertEquals(1, second.getPolygonCount());
+
+        ModelProcessor.calculateNormals(model);
+        CompiledMesh third = model.getCompiledMesh();
+        assertNotSame(second, third);
+        assertArrayEquals(new int[] {1, 4, 2}, third.getTriangleNormalIndices());
+    }
+
+    @Test
+    void detectsDirectListChanges() {
+        Model model = quadAndTriangle();
+        CompiledMesh first = model.getCompiledMesh();
+
+        model.getVertices().add(new Vector3f(3, 3, 3));
+        assertEquals(6, model.getCompiledMesh().getVertexCount());
+
+        model.setPolygons(new ArrayList<>(model.getPolygons()));
+        assertNotSame(first, model.getCompiledMesh());
+    }
+}
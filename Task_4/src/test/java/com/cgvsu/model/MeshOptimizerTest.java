@@ -0,0 +1,153 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MeshOptimizerTest {
+
+    /**
+     * Куб со стороной 2 * half, каждая грань разбита на n x n квадов по два треугольника,
+     * лицевые стороны наружу. Вершины добавляются в positions
+     */
+    private static void cube(List<Float> positions, List<Integer> indices, float half, int n) {
+        for (int axis = 0; axis < 3; axis++) {
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int u = sign > 0 ? (axis + 1) % 3 : (axis + 2) % 3;
+                int v = sign > 0 ? (axis + 2) % 3 : (axis + 1) % 3;
+                int base = positions.size() / 3;
+                for (int j = 0; j <= n; j++) {
+                    for (int i = 0; i <= n; i++) {
+                        float[] p = new float[3];
+                        p[axis] = sign * half;
+                        p[u] = -half + 2 * half * i / n;
+                        p[v] = -half + 2 * half * j / n;
+                        positions.add(p[0]);
+                        positions.add(p[1]);
+                        positions.add(p[2]);
+                    }
+                }
+                for (int j = 0; j < n; j++) {
+                    for (int i = 0; i < n; i++) {
+                        int a = base + j * (n + 1) + i;
+                        indices.addAll(Arrays.asList(a, a + 1, a + n + 2, a, a + n + 2, a + n + 1));
+                    }
+                }
+            }
+        }
+    }
+
+    private static float[] floats(List<Float> list) {
+        float[] result = new float[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    private static int[] ints(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void assertPermutation(int[] order, int count) {
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        int[] expected = new int[count];
+        Arrays.setAll(expected, i -> i);
+        assertArrayEquals(expected, sorted);
+    }
+
+    @Test
+    void acmrCountsFifoMisses() {
+        // Два треугольника с общим ребром: 3 + 1 промах
+        assertEquals(2f, MeshOptimizer.acmr(new int[] {0, 1, 2, 2, 1, 3}, 4));
+        assertEquals(0f, MeshOptimizer.acmr(new int[0], 0));
+    }
+
+    @Test
+    void vertexCacheOrderBeatsShuffledOrder() {
+        List<Float> positions = new ArrayList<>();
+        List<Integer> indexList = new ArrayList<>();
+        cube(positions, indexList, 1, 24);
+        int[] indices = ints(indexList);
+        int vertexCount = positions.size() / 3;
+
+        // Треугольники в случайном порядке
+        int triangleCount = indices.length / 3;
+        int[] shuffle = new int[triangleCount];
+        Arrays.setAll(shuffle, i -> i);
+        Random random = new Random(7);
+        for (int i = triangleCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = shuffle[i];
+            shuffle[i] = shuffle[j];
+            shuffle[j] = t;
+        }
+        int[] shuffled = MeshOptimizer.reorder(indices, shuffle);
+
+        int[] order = MeshOptimizer.optimizeVertexCache(shuffled, vertexCount);
+        assertPermutation(order, triangleCount);
+        float before = MeshOptimizer.acmr(shuffled, vertexCount);
+        float after = MeshOptimizer.acmr(MeshOptimizer.reorder(shuffled, order), vertexCount);
+        assertTrue(before > 2.5f, "ACMR до: " + before);
+        assertTrue(after < 0.9f, "ACMR после: " + after);
+    }
+
+    @Test
+    void outerClustersAreDrawnFirst() {
+        // Внутренний куб описан первым и перерисовывается наружным
+        List<Float> positions = new ArrayList<>();
+        List<Integer> indexList = new ArrayList<>();
+        cube(positions, indexList, 0.5f, 16);
+        cube(positions, indexList, 1, 16);
+        int[] indices = ints(indexList);
+        float[] points = floats(positions);
+
+        int[] order = MeshOptimizer.optimizeVertexCache(indices, points.length / 3);
+        int[] optimized = MeshOptimizer.optimizeOverdraw(indices, order, points, MeshOptimizer.DEFAULT_OVERDRAW_THRESHOLD);
+        assertPermutation(optimized, indices.length / 3);
+
+        float before = MeshOptimizer.overdraw(indices, points);
+        float after = MeshOptimizer.overdraw(MeshOptimizer.reorder(indices, optimized), points);
+        assertTrue(before > 1.2f, "перерисовка до: " + before);
+        assertTrue(after < 1.05f, "перерисовка после: " + after);
+        float acmr = MeshOptimizer.acmr(MeshOptimizer.reorder(indices, order), points.length / 3);
+        float clusteredAcmr = MeshOptimizer.acmr(MeshOptimizer.reorder(indices, optimized), points.length / 3);
+        assertTrue(clusteredAcmr <= acmr * 1.1f, clusteredAcmr + " > " + acmr);
+    }
+
+    @Test
+    void optimizeMeshReordersModel() {
+        Model model = new Model();
+        List<Float> positions = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        cube(positions, indices, 1, 8);
+        for (int i = 0; i < positions.size(); i += 3) {
+            model.getVertices().add(new Vector3f(positions.get(i), positions.get(i + 1), positions.get(i + 2)));
+        }
+        // Треугольники в обратном порядке, чтобы оптимизации было что менять
+        for (int t = indices.size() / 3 - 1; t >= 0; t--) {
+            Polygon polygon = new Polygon();
+            polygon.setVertexIndices(new ArrayList<>(indices.subList(t * 3, t * 3 + 3)));
+            model.getPolygons().add(polygon);
+        }
+        ModelProcessor.calculateNormals(model);
+
+        MeshOptimizer.Report report = ModelProcessor.optimizeMesh(model);
+        assertTrue(report.getAcmrAfter() <= report.getAcmrBefore(), report.toString());
+        assertEquals(768, model.getPolygons().size());
+        // Вершины пронумерованы в порядке использования
+        assertEquals(List.of(0, 1, 2), model.getPolygons().get(0).getVertexIndices());
+        for (Polygon polygon : model.getPolygons()) {
+            assertEquals(polygon.getVertexIndices(), polygon.getNormalIndices());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.cgvsu.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MeshSimplifierTest {
+
+    /**
+     * Квадрат [0, n] x [0, n] в плоскости z = 0 из n x n квадов по два треугольника.
+     * Если normals != null, левая половина треугольников ссылается на нормаль 0, правая - на нормаль 1
+     */
+    private static CompiledMesh grid(int n, float[] normals) {
+        float[] positions = new float[(n + 1) * (n + 1) * 3];
+        for (int j = 0; j <= n; j++) {
+            for (int i = 0; i <= n; i++) {
+                int v = j * (n + 1) + i;
+                positions[v * 3] = i;
+                positions[v * 3 + 1] = j;
+            }
+        }
+        int[] indices = new int[n * n * 6];
+        int[] normalIndices = new int[indices.length];
+        int write = 0;
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i < n; i++) {
+                int a = j * (n + 1) + i;
+                int[] quad = {a, a + 1, a + n + 2, a, a + n + 2, a + n + 1};
+                for (int k = 0; k < 6; k++, write++) {
+                    indices[write] = quad[k];
+                    normalIndices[write] = normals == null ? -1 : (i < n / 2 ? 0 : 1);
+                }
+            }
+        }
+        return triangles(positions, normals == null ? new float[0] : normals, indices, normalIndices);
+    }
+
+    /**
+     * Сфера радиуса 1 из rings поясов и segments секторов с общими вершинами
+     */
+    private static CompiledMesh sphere(int rings, int segments) {
+        float[] positions = new float[((rings - 1) * segments + 2) * 3];
+        int top = (rings - 1) * segments;
+        int bottom = top + 1;
+        for (int r = 1; r < rings; r++) {
+            double theta = Math.PI * r / rings;
+            for (int s = 0; s < segments; s++) {
+                double phi = 2 * Math.PI * s / segments;
+                int v = (r - 1) * segments + s;
+                positions[v * 3] = (float) (Math.sin(theta) * Math.cos(phi));
+                positions[v * 3 + 1] = (float) Math.cos(theta);
+                positions[v * 3 + 2] = (float) (Math.sin(theta) * Math.sin(phi));
+            }
+        }
+        positions[top * 3 + 1] = 1;
+        positions[bottom * 3 + 1] = -1;
+
+        int[] indices = new int[segments * (rings - 1) * 6];
+        int write = 0;
+        for (int s = 0; s < segments; s++) {
+            int next = (s + 1) % segments;
+            int[] cap = {top, next, s, bottom, (rings - 2) * segments + s, (rings - 2) * segments + next};
+            for (int value : cap) {
+                indices[write++] = value;
+            }
+            for (int r = 0; r < rings - 2; r++) {
+                int a = r * segments + s, b = r * segments + next;
+                int c = (r + 1) * segments + s, d = (r + 1) * segments + next;
+                int[] quad = {a, b, d, a, d, c};
+                for (int value : quad) {
+                    indices[write++] = value;
+                }
+            }
+        }
+        int[] none = new int[indices.length];
+        Arrays.fill(none, -1);
+        return triangles(positions, new float[0], indices, none);
+    }
+
+    private static CompiledMesh triangles(float[] positions, float[] normals, int[] indices, int[] normalIndices) {
+        int[] offsets = new int[indices.length / 3 + 1];
+        Arrays.setAll(offsets, i -> i * 3);
+        int[] texCoords = new int[indices.length];
+        Arrays.fill(texCoords, -1);
+        return new CompiledMesh(positions, normals, new float[0], offsets, indices, normalIndices, texCoords);
+    }
+
+    private static boolean hasVertex(CompiledMesh mesh, float x, float y) {
+        float[] positions = mesh.getPositions();
+        for (int i = 0; i < positions.length; i += 3) {
+            if (positions[i] == x && positions[i + 1] == y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void flatGridCollapsesWithoutErrorAndKeepsOutline() {
+        CompiledMesh mesh = grid(16, null);
+        MeshSimplifier.Result result = MeshSimplifier.simplify(mesh, 32);
+
+        CompiledMesh simplified = result.getMesh();
+        assertTrue(simplified.getTriangleCount() <= 32);
+        assertEquals(0f, result.getError(), 1e-4f);
+        assertEquals(simplified.getVertexCount() * 3, simplified.getPositions().length);
+        for (float[] corner : new float[][] {{0, 0}, {16, 0}, {0, 16}, {16, 16}}) {
+            assertTrue(hasVertex(simplified, corner[0], corner[1]));
+        }
+
+        // Площадь квадрата сохраняется, ни один треугольник не перевёрнут
+        float[] p = simplified.getPositions();
+        int[] t = simplified.getTriangleVertexIndices();
+        float area = 0;
+        for (int i = 0; i < t.length; i += 3) {
+            float cross = (p[t[i + 1] * 3] - p[t[i] * 3]) * (p[t[i + 2] * 3 + 1] - p[t[i] * 3 + 1])
+                    - (p[t[i + 1] * 3 + 1] - p[t[i] * 3 + 1]) * (p[t[i + 2] * 3] - p[t[i] * 3]);
+            assertTrue(cross > 0);
+            area += cross / 2;
+        }
+        assertEquals(256f, area, 1e-3f);
+    }
+
+    @Test
+    void seamVerticesAreKept() {
+        CompiledMesh mesh = grid(8, new float[] {0, 0, 1, 0, 0, -1});
+        CompiledMesh simplified = MeshSimplifier.simplify(mesh, 1).getMesh();
+
+        for (int j = 0; j <= 8; j++) {
+            assertTrue(hasVertex(simplified, 4, j));
+        }
+        assertEquals(2, simplified.getNormalCount());
+    }
+
+    @Test
+    void lodChainHalvesTrianglesWithGrowingError() {
+        CompiledMesh mesh = sphere(48, 64);
+        LodChain chain = LodChain.build(mesh);
+
+        assertTrue(chain.getLevelCount() >= 3);
+        assertEquals(mesh, chain.getLevel(0));
+        assertEquals(0f, chain.getError(0));
+        for (int level = 1; level < chain.getLevelCount(); level++) {
+            CompiledMesh previous = chain.getLevel(level - 1);
+            CompiledMesh current = chain.getLevel(level);
+            assertTrue(current.getTriangleCount() < previous.getTriangleCount());
+            assertTrue(current.getTriangleCount() >= LodChain.MIN_TRIANGLES / 2);
+            assertTrue(chain.getError(level) >= chain.getError(level - 1));
+            assertTrue(chain.getError(level) < 0.2f);
+        }
+        assertEquals(0f, chain.getCenterY(), 1e-6f);
+        assertEquals(1f, chain.getRadius(), 1e-5f);
+    }
+
+    @Test
+    void selectLevelFollowsScreenSize() {
+        LodChain chain = LodChain.build(sphere(48, 64));
+        int last = chain.getLevelCount() - 1;
+
+        assertEquals(0, chain.selectLevel(1e6f, 1f));
+        assertEquals(last, chain.selectLevel(1e-3f, 1f));
+        int previous = 0;
+        for (float pixelsPerUnit = 1e4f; pixelsPerUnit > 1e-3f; pixelsPerUnit /= 2) {
+            int level = chain.selectLevel(pixelsPerUnit, 1f);
+            assertTrue(level >= previous);
+            previous = level;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ModelRemovalTest {
+
+    private static ArrayList<Integer> list(Integer... values) {
+        return new ArrayList<>(Arrays.asList(values));
+    }
+
+    /**
+     * Полоса из трёх квадов: вершины 0..7, у каждого угла своя текстурная координата,
+     * нормаль у каждого квада своя
+     */
+    private static Model strip() {
+        Model model = new Model();
+        for (int i = 0; i < 4; i++) {
+            model.getVertices().add(new Vector3f(i, 0, 0));
+            model.getVertices().add(new Vector3f(i, 1, 0));
+        }
+        for (int q = 0; q < 3; q++) {
+            Polygon polygon = new Polygon();
+            int v = q * 2;
+            polygon.setVertexIndices(list(v, v + 2, v + 3, v + 1));
+            ArrayList<Integer> textures = new ArrayList<>();
+            for (int j = 0; j < 4; j++) {
+                textures.add(model.getTextureVertices().size());
+                model.getTextureVertices().add(new Vector2f(q, j));
+            }
+            polygon.setTextureVertexIndices(textures);
+            polygon.setNormalIndices(list(q, q, q, q));
+            model.getNormals().add(new Vector3f(0, 0, q));
+            model.getPolygons().add(polygon);
+        }
+        return model;
+    }
+
+    @Test
+    void removesVerticesAndCompactsAttributes() {
+        Model model = strip();
+        BitSet removed = new BitSet();
+        removed.set(0);
+        removed.set(1);
+        removed.set(4);
+        model.removeVertices(removed);
+
+        assertEquals(5, model.getVertices().size());
+        assertEquals(1f, model.getVertices().get(0).x);
+        // Первый квад выродился в отрезок и удалён вместе со своими атрибутами
+        assertEquals(2, model.getPolygons().size());
+        assertEquals(List.of(0, 2, 1), model.getPolygons().get(0).getVertexIndices());
+        assertEquals(List.of(3, 4, 2), model.getPolygons().get(1).getVertexIndices());
+
+        // Остались текстурные координаты второго квада без угла вершины 4 и третьего квада без того же угла
+        assertEquals(6, model.getTextureVertices().size());
+        assertEquals(List.of(0, 1, 2), model.getPolygons().get(0).getTextureVertexIndices());
+        assertEquals(List.of(3, 4, 5), model.getPolygons().get(1).getTextureVertexIndices());
+        assertEquals(1f, model.getTextureVertices().get(0).x);
+        assertEquals(3f, model.getTextureVertices().get(2).y);
+        assertEquals(2f, model.getTextureVertices().get(3).x);
+        assertEquals(1f, model.getTextureVertices().get(3).y);
+
+        assertEquals(2, model.getNormals().size());
+        assertEquals(List.of(0, 0, 0), model.getPolygons().get(0).getNormalIndices());
+        assertEquals(List.of(1, 1, 1), model.getPolygons().get(1).getNormalIndices());
+        assertEquals(2f, model.getNormals().get(1).z);
+    }
+
+    @Test
+    void bulkRemovalMatchesOneByOne() {
+        Model bulk = strip();
+        bulk.removeVertices(new int[] {6, 2, 99});
+
+        Model single = strip();
+        single.removeVertex(6);
+        single.removeVertex(2);
+
+        assertEquals(single.getVertices().size(), bulk.getVertices().size());
+        assertEquals(single.getPolygons().size(), bulk.getPolygons().size());
+        for (int i = 0; i < bulk.getPolygons().size(); i++) {
+            assertEquals(single.getPolygons().get(i).getVertexIndices(), bulk.getPolygons().get(i).getVertexIndices());
+            assertEquals(single.getPolygons().get(i).getTextureVertexIndices(), bulk.getPolygons().get(i).getTextureVertexIndices());
+        }
+        assertEquals(single.getTextureVertices().size(), bulk.getTextureVertices().size());
+    }
+
+    @Test
+    void keepsPerVertexNormalsInSync() {
+        Model model = strip();
+        ModelProcessor.calculateNormals(model);
+        model.removeVertices(new int[] {0, 7});
+
+        assertEquals(6, model.getNormals().size());
+        for (Polygon polygon : model.getPolygons()) {
+            assertEquals(polygon.getVertexIndices(), polygon.getNormalIndices());
+        }
+    }
+
+    @Test
+    void removesPolygonsInOnePass() {
+        Model model = strip();
+        Polygon last = model.getPolygons().get(2);
+        ArrayList<Polygon> polygons = model.getPolygons();
+        model.removePolygons(list(0, 1, 1, -5, 42));
+
+        assertEquals(1, model.getPolygons().size());
+        assertEquals(last, model.getPolygons().get(0));
+        // Список полигонов тот же, меняется только содержимое
+        assertEquals(polygons, model.getPolygons());
+    }
+
+    @Test
+    void incrementalNormalsMatchFullRecompute() {
+        // Неровная сетка 6x6 квадов: нормали вершин зависят от соседних граней
+        Model model = new Model();
+        for (int y = 0; y <= 6; y++) {
+            for (int x = 0; x <= 6; x++) {
+                model.getVertices().add(new Vector3f(x, y, (x * 7 + y * 3) % 5 * 0.3f));
+            }
+        }
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 6; x++) {
+                Polygon polygon = new Polygon();
+                int v = y * 7 + x;
+                polygon.setVertexIndices(list(v, v + 1, v + 8, v + 7));
+                model.getPolygons().add(polygon);
+            }
+        }
+        NormalCalculator.apply(model, NormalCalculator.Weighting.ANGLE, NormalCalculator.NO_CREASE);
+
+        // Несколько правок подряд: смежность вершин обновляется по месту
+        model.removePolygon(8);
+        model.removeVertices(new int[] {0, 24, 40});
+        model.removePolygons(list(3, 11, 20));
+        model.removeVertex(10);
+
+        CompiledMesh mesh = model.getCompiledMesh();
+        NormalCalculator.Result expected = NormalCalculator.calculate(mesh.getPositions(), mesh.getPolygonOffsets(),
+                mesh.getPolygonVertexIndices(), NormalCalculator.Weighting.ANGLE, NormalCalculator.NO_CREASE);
+        assertEquals(model.getVertices().size(), model.getNormals().size());
+        for (int v = 0; v < model.getNormals().size(); v++) {
+            assertEquals(expected.getNormals()[v * 3], model.getNormals().get(v).x, 1e-5f);
+            assertEquals(expected.getNormals()[v * 3 + 1], model.getNormals().get(v).y, 1e-5f);
+            assertEquals(expected.getNormals()[v * 3 + 2], model.getNormals().get(v).z, 1e-5f);
+        }
+    }
+}
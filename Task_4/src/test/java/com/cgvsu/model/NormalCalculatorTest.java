@@ -0,0 +1,165 @@
+package com.cgvsu.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NormalCalculatorTest {
+
+    private static final float EPS = 1e-6f;
+    private static final float INV_SQRT3 = (float) (1 / Math.sqrt(3));
+
+    // Единичный куб, грани обходятся против часовой стрелки при взгляде снаружи
+    private static final float[] CUBE = {
+            0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0,
+            0, 0, 1, 1, 0, 1, 1, 1, 1, 0, 1, 1
+    };
+    private static final int[] CUBE_OFFSETS = {0, 4, 8, 12, 16, 20, 24};
+    private static final int[] CUBE_FACES = {
+            0, 3, 2, 1,
+            4, 5, 6, 7,
+            0, 1, 5, 4,
+            2, 3, 7, 6,
+            1, 2, 6, 5,
+            0, 4, 7, 3
+    };
+
+    private static float[] normal(float[] normals, int index) {
+        return new float[] {normals[index * 3], normals[index * 3 + 1], normals[index * 3 + 2]};
+    }
+
+    @Test
+    void smoothNormalsPointAlongDiagonals() {
+        NormalCalculator.Result result = NormalCalculator.calculate(CUBE, CUBE_OFFSETS, CUBE_FACES,
+                NormalCalculator.Weighting.UNIFORM, NormalCalculator.NO_CREASE);
+
+        assertEquals(8 * 3, result.getNormals().length);
+        assertArrayEquals(CUBE_FACES, result.getCornerNormalIndices());
+        assertArrayEquals(new float[] {-INV_SQRT3, -INV_SQRT3, -INV_SQRT3}, normal(result.getNormals(), 0), EPS);
+        assertArrayEquals(new float[] {INV_SQRT3, INV_SQRT3, INV_SQRT3}, normal(result.getNormals(), 6), EPS);
+    }
+
+    @Test
+    void creaseSplitsNormalsPerFace() {
+        NormalCalculator.Result result = NormalCalculator.calculate(CUBE, CUBE_OFFSETS, CUBE_FACES,
+                NormalCalculator.Weighting.UNIFORM, (float) Math.toRadians(60));
+
+        assertEquals(24 * 3, result.getNormals().length);
+        int[] indices = result.getCornerNormalIndices();
+        // Все углы верхней грани смотрят вверх
+        for (int corner = 4; corner < 8; corner++) {
+            assertArrayEquals(new float[] {0, 0, 1}, normal(result.getNormals(), indices[corner]), EPS);
+        }
+        // Под тупым углом сгиба куб остаётся гладким
+        NormalCalculator.Result smooth = NormalCalculator.calculate(CUBE, CUBE_OFFSETS, CUBE_FACES,
+                NormalCalculator.Weighting.UNIFORM, (float) Math.toRadians(120));
+        assertEquals(8 * 3, smooth.getNormals().length);
+    }
+
+    @Test
+    void angleWeightingIgnoresTessellation() {
+        // Нижняя грань куба разбита на два треугольника: у вершины 0 она даёт два вклада
+        int[] offsets = {0, 3, 6, 10, 14, 18, 22, 26};
+        int[] faces = {
+                0, 3, 2, 0, 2, 1,
+                4, 5, 6, 7,
+                0, 1, 5, 4,
+                2, 3, 7, 6,
+                1, 2, 6, 5,
+                0, 4, 7, 3
+        };
+
+        float[] uniform = NormalCalculator.calculate(CUBE, offsets, faces,
+                NormalCalculator.Weighting.UNIFORM, NormalCalculator.NO_CREASE).getNormals();
+        float[] angle = NormalCalculator.calculate(CUBE, offsets, faces,
+                NormalCalculator.Weighting.ANGLE, NormalCalculator.NO_CREASE).getNormals();
+
+        assertArrayEquals(new float[] {-INV_SQRT3, -INV_SQRT3, -INV_SQRT3}, normal(angle, 0), EPS);
+        float[] biased = normal(uniform, 0);
+        assertTrue(biased[2] < -INV_SQRT3 - 0.01f);
+    }
+
+    @Test
+    void areaWeightingFavoursLargeFaces() {
+        // Два треугольника с общей вершиной 0: большой в плоскости XY и маленький в плоскости XZ
+        float[] positions = {0, 0, 0, 4, 0, 0, 0, 4, 0, -1, 0, 0, 0, 0, -1};
+        int[] offsets = {0, 3, 6};
+        int[] faces = {0, 1, 2, 0, 3, 4};
+
+        float[] area = NormalCalculator.calculate(positions, offsets, faces,
+                NormalCalculator.Weighting.AREA, NormalCalculator.NO_CREASE).getNormals();
+        float length = (float) Math.sqrt(16 * 16 + 1);
+        assertArrayEquals(new float[] {0, -1 / length, 16 / length}, normal(area, 0), EPS);
+    }
+
+    @Test
+    void largeGridUsesAllVertices() {
+        int size = 200;
+        float[] positions = new float[size * size * 3];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                positions[(y * size + x) * 3] = x;
+                positions[(y * size + x) * 3 + 1] = y;
+            }
+        }
+        int quads = (size - 1) * (size - 1);
+        int[] offsets = new int[quads + 1];
+        int[] faces = new int[quads * 4];
+        int q = 0;
+        for (int y = 0; y < size - 1; y++) {
+            for (int x = 0; x < size - 1; x++, q++) {
+                int v = y * size + x;
+                offsets[q] = q * 4;
+                faces[q * 4] = v;
+                faces[q * 4 + 1] = v + 1;
+                faces[q * 4 + 2] = v + size + 1;
+                faces[q * 4 + 3] = v + size;
+            }
+        }
+        offsets[quads] = quads * 4;
+
+        for (NormalCalculator.Weighting weighting : NormalCalculator.Weighting.values()) {
+            float[] normals = NormalCalculator.calculate(positions, offsets, faces, weighting, 0.5f).getNormals();
+            assertEquals(size * size * 3, normals.length);
+            for (int i = 0; i < normals.length; i += 3) {
+                assertArrayEquals(new float[] {0, 0, 1}, normal(normals, i / 3), EPS);
+            }
+        }
+    }
+
+    private static Model cubeModel() {
+        int[] none = new int[CUBE_FACES.length];
+        Arrays.fill(none, -1);
+        return Model.fromCompiledMesh(new CompiledMesh(CUBE, new float[0], new float[0], CUBE_OFFSETS, CUBE_FACES, none, none));
+    }
+
+    @Test
+    void meshModelKeepsNormalsInMesh() {
+        for (float crease : new float[] {NormalCalculator.NO_CREASE, (float) Math.toRadians(60)}) {
+            Model lists = cubeModel();
+            lists.getPolygons();
+            NormalCalculator.apply(lists, NormalCalculator.Weighting.AREA, crease);
+            CompiledMesh expected = lists.getCompiledMesh();
+
+            // Списки модели не заполнены: нормали заменяются прямо в сетке, триангуляция общая
+            Model pending = cubeModel();
+            CompiledMesh before = pending.getCompiledMesh();
+            NormalCalculator.apply(pending, NormalCalculator.Weighting.AREA, crease);
+            CompiledMesh actual = pending.getCompiledMesh();
+            assertSame(before.getTriangleVertexIndices(), actual.getTriangleVertexIndices());
+            assertArrayEquals(expected.getNormals(), actual.getNormals(), EPS);
+            assertArrayEquals(expected.getPolygonNormalIndices(), actual.getPolygonNormalIndices());
+            assertArrayEquals(expected.getTriangleNormalIndices(), actual.getTriangleNormalIndices());
+
+            // Заполненные позже списки совпадают с сеткой, и она не пересобирается
+            assertEquals(expected.getNormalCount(), pending.getNormals().size());
+            assertEquals(lists.getPolygons().get(2).getNormalIndices(), pending.getPolygons().get(2).getNormalIndices());
+            assertSame(actual, pending.getCompiledMesh());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TriangulatorTest {
+
+    // Буква L в плоскости XY, обход против часовой стрелки; вогнутая вершина - 3
+    private static final float[] L_SHAPE = {
+            0, 0, 0,
+            2, 0, 0,
+            2, 1, 0,
+            1, 1, 0,
+            1, 2, 0,
+            0, 2, 0
+    };
+
+    private static int[] triangulate(float[] positions, int[] offsets, int[] indices) {
+        return Triangulator.triangulate(positions, offsets, indices, Triangulator.triangleOffsets(offsets));
+    }
+
+    private static double signedArea(float[] positions, int[] indices, int a, int b, int c) {
+        int pa = indices[a] * 3, pb = indices[b] * 3, pc = indices[c] * 3;
+        return ((positions[pb] - positions[pa]) * (positions[pc + 1] - positions[pa + 1])
+                - (positions[pb + 1] - positions[pa + 1]) * (positions[pc] - positions[pa])) / 2.0;
+    }
+
+    @Test
+    void clipsEarsOfConcavePolygon() {
+        int[] offsets = {0, 6};
+        int[] indices = {0, 1, 2, 3, 4, 5};
+        int[] corners = triangulate(L_SHAPE, offsets, indices);
+
+        assertEquals(4 * 3, corners.length);
+        double area = 0;
+        for (int t = 0; t < corners.length; t += 3) {
+            double triangleArea = signedArea(L_SHAPE, indices, corners[t], corners[t + 1], corners[t + 2]);
+            assertTrue(triangleArea > 0, "треугольник " + t / 3 + " вывернут или вырожден");
+            area += triangleArea;
+        }
+        assertEquals(3.0, area, 1e-9);
+    }
+
+    @Test
+    void concavePolygonStartingAtReflexVertex() {
+        // Та же буква L, но первая вершина - вогнутая: веер от неё вышел бы за пределы полигона
+        int[] offsets = {0, 6};
+        int[] indices = {3, 4, 5, 0, 1, 2};
+        int[] corners = triangulate(L_SHAPE, offsets, indices);
+
+        double area = 0;
+        for (int t = 0; t < corners.length; t += 3) {
+            double triangleArea = signedArea(L_SHAPE, indices, corners[t], corners[t + 1], corners[t + 2]);
+            assertTrue(triangleArea > 0);
+            area += triangleArea;
+        }
+        assertEquals(3.0, area, 1e-9);
+    }
+
+    @Test
+    void fansConvexPolygonsAndSkipsDegenerate() {
+        float[] positions = {0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0, 0, 0, 1};
+        int[] offsets = {0, 4, 6, 9};
+        int[] indices = {0, 1, 2, 3, 0, 1, 1, 4, 2};
+        int[] triangleOffsets = Triangulator.triangleOffsets(offsets);
+
+        assertArrayEquals(new int[] {0, 2, 2, 3}, triangleOffsets);
+        assertArrayEquals(new int[] {0, 1, 2, 0, 2, 3, 6, 7, 8},
+                Triangulator.triangulate(positions, offsets, indices, triangleOffsets));
+    }
+
+    @Test
+    void parallelMatchesSerial() {
+        // Сетка из множества букв L, по три полигона на каждую: больше порога параллельной обработки
+        int shapes = 6000;
+        float[] positions = new float[shapes * L_SHAPE.length];
+        int[] offsets = new int[shapes * 3 + 1];
+        int[] indices = new int[shapes * (6 + 3 + 4)];
+        int corner = 0;
+        for (int s = 0; s < shapes; s++) {
+            for (int i = 0; i < L_SHAPE.length; i++) {
+                positions[s * L_SHAPE.length + i] = L_SHAPE[i] + (i % 3 == 2 ? s : 0);
+            }
+            int base = s * 6;
+            int[][] polygons = {{3, 4, 5, 0, 1, 2}, {0, 1, 2}, {0, 1, 2, 5}};
+            for (int p = 0; p < polygons.length; p++) {
+                offsets[s * 3 + p] = corner;
+                for (int v : polygons[p]) {
+                    indices[corner++] = base + v;
+                }
+            }
+        }
+        offsets[shapes * 3] = corner;
+
+        int[] triangleOffsets = Triangulator.triangleOffsets(offsets);
+        int[] parallel = Triangulator.triangulate(positions, offsets, indices, triangleOffsets);
+
+        // Последовательно: каждый полигон отдельно
+        int[] serial = new int[parallel.length];
+        for (int p = 0; p < shapes * 3; p++) {
+            int start = offsets[p];
+            int end = offsets[p + 1];
+            int[] single = Triangulator.triangulate(positions, new int[] {0, end - start},
+                    Arrays.copyOfRange(indices, start, end), new int[] {0, end - start - 2});
+            for (int i = 0; i < single.length; i++) {
+                serial[triangleOffsets[p] * 3 + i] = single[i] + start;
+            }
+        }
+        assertArrayEquals(serial, parallel);
+    }
+
+    @Test
+    void modelTriangulationFollowsMesh() {
+        Model model = new Model();
+        for (int i = 0; i < L_SHAPE.length; i += 3) {
+            model.getVertices().add(new Vector3f(L_SHAPE[i], L_SHAPE[i + 1], L_SHAPE[i + 2]));
+        }
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(new ArrayList<>(Arrays.asList(3, 4, 5, 0, 1, 2)));
+        polygon.setTextureVertexIndices(new ArrayList<>(Arrays.asList(3, 4, 5, 0, 1, 2)));
+        model.getPolygons().add(polygon);
+
+        int[] buffer = ModelProcessor.triangleIndexBuffer(model);
+        assertEquals(4 * 3 * 3, buffer.length);
+        for (int i = 0; i < buffer.length; i += 3) {
+            assertEquals(buffer[i], buffer[i + 1]);
+            assertEquals(-1, buffer[i + 2]);
+        }
+
+        ModelProcessor.triangulate(model);
+        assertEquals(4, model.getPolygons().size());
+        CompiledMesh mesh = model.getCompiledMesh();
+        int[] vertices = mesh.getTriangleVertexIndices();
+        for (int i = 0; i < vertices.length; i++) {
+            assertEquals(buffer[i * 3], vertices[i]);
+        }
+        // Сетка из треугольников прежней сетки совпадает со сборкой по новым полигонам
+        model.markModified();
+        CompiledMesh compiled = model.getCompiledMesh();
+        assertNotSame(mesh, compiled);
+        assertArrayEquals(compiled.getPolygonOffsets(), mesh.getPolygonOffsets());
+        assertArrayEquals(compiled.getPolygonVertexIndices(), mesh.getPolygonVertexIndices());
+        assertArrayEquals(compiled.getPolygonTexCoordIndices(), mesh.getPolygonTexCoordIndices());
+        assertArrayEquals(compiled.getPolygonNormalIndices(), mesh.getPolygonNormalIndices());
+        assertArrayEquals(compiled.getPolygonTriangleOffsets(), mesh.getPolygonTriangleOffsets());
+        assertArrayEquals(compiled.getTriangleVertexIndices(), mesh.getTriangleVertexIndices());
+    }
+}
@@ -0,0 +1,88 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class VertexAdjacencyTest {
+
+    /**
+     * Неровная сетка 4x4 вершины из квадов
+     */
+    private static Model grid() {
+        Model model = new Model();
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                model.getVertices().add(new Vector3f(x, y, (x * 7 + y * 3) % 5 * 0.25f));
+            }
+        }
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                int v = y * 4 + x;
+                Polygon polygon = new Polygon();
+                polygon.setVertexIndices(new ArrayList<>(Arrays.asList(v, v + 1, v + 5, v + 4)));
+                model.getPolygons().add(polygon);
+            }
+        }
+        return model;
+    }
+
+    private static void assertSameNormals(Model expected, Model actual) {
+        assertEquals(expected.getNormals().size(), actual.getNormals().size());
+        for (int i = 0; i < expected.getNormals().size(); i++) {
+            Vector3f e = expected.getNormals().get(i);
+            Vector3f a = actual.getNormals().get(i);
+            assertArrayEquals(new float[] {e.x, e.y, e.z}, new float[] {a.x, a.y, a.z}, 1e-6f, "нормаль " + i);
+        }
+        for (int i = 0; i < expected.getPolygons().size(); i++) {
+            assertEquals(expected.getPolygons().get(i).getNormalIndices(), actual.getPolygons().get(i).getNormalIndices());
+        }
+    }
+
+    @Test
+    void listsPolygonsOfEachVertex() {
+        Model model = grid();
+        VertexAdjacency adjacency = model.getVertexAdjacency();
+
+        assertArrayEquals(new int[] {0}, adjacency.getPolygons(0));
+        assertArrayEquals(new int[] {0, 1, 3, 4}, adjacency.getPolygons(5));
+        assertSame(adjacency, model.getVertexAdjacency());
+
+        model.removePolygon(4);
+        VertexAdjacency updated = model.getVertexAdjacency();
+        assertNotSame(adjacency, updated);
+        assertArrayEquals(new int[] {0, 1, 3}, updated.getPolygons(5));
+    }
+
+    @Test
+    void removePolygonUpdatesNormalsLocally() {
+        Model model = grid();
+        ModelProcessor.calculateNormals(model, NormalCalculator.Weighting.AREA, NormalCalculator.NO_CREASE);
+        model.removePolygons(new ArrayList<>(Arrays.asList(4, 0)));
+
+        Model expected = grid();
+        expected.removePolygons(new ArrayList<>(Arrays.asList(4, 0)));
+        ModelProcessor.calculateNormals(expected, NormalCalculator.Weighting.AREA, NormalCalculator.NO_CREASE);
+        assertSameNormals(expected, model);
+    }
+
+    @Test
+    void removeVertexUpdatesNormalsLocally() {
+        Model model = grid();
+        ModelProcessor.calculateNormals(model, NormalCalculator.Weighting.ANGLE, NormalCalculator.NO_CREASE);
+        model.removeVertex(6);
+
+        Model expected = grid();
+        expected.removeVertex(6);
+        ModelProcessor.calculateNormals(expected, NormalCalculator.Weighting.ANGLE, NormalCalculator.NO_CREASE);
+        assertEquals(15, model.getNormals().size());
+        assertSameNormals(expected, model);
+    }
+}
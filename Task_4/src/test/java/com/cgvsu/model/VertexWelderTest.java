@@ -0,0 +1,96 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class VertexWelderTest {
+
+    /**
+     * Сетка size x size квадов, у каждого квада свои четыре вершины со сдвигом не больше jitter
+     */
+    private static Model splitGrid(int size, float jitter) {
+        Model model = new Model();
+        int[][] corners = {{0, 0}, {1, 0}, {1, 1}, {0, 1}};
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                ArrayList<Integer> indices = new ArrayList<>();
+                for (int[] corner : corners) {
+                    int n = model.getVertices().size();
+                    float offset = ((n * 37) % 11 - 5) / 5f * jitter;
+                    indices.add(n);
+                    model.getVertices().add(new Vector3f(x + corner[0] + offset, y + corner[1] - offset, 0));
+                }
+                Polygon polygon = new Polygon();
+                polygon.setVertexIndices(indices);
+                model.getPolygons().add(polygon);
+            }
+        }
+        return model;
+    }
+
+    @Test
+    void weldsSplitVerticesWithinTolerance() {
+        Model model = splitGrid(3, 0.001f);
+        assertEquals(36, model.getVertices().size());
+
+        assertEquals(20, ModelProcessor.weldVertices(model, 0.01f));
+        assertEquals(16, model.getVertices().size());
+        assertEquals(9, model.getPolygons().size());
+        // Соседние квады делят ребро
+        ArrayList<Integer> first = model.getPolygons().get(0).getVertexIndices();
+        ArrayList<Integer> second = model.getPolygons().get(1).getVertexIndices();
+        assertEquals(first.get(1), second.get(0));
+        assertEquals(first.get(2), second.get(3));
+    }
+
+    @Test
+    void exactModeMergesOnlyIdenticalPoints() {
+        float[] positions = {0, 0, 0, 1, 0, 0, -0f, 0, 0, 1, 0, 1e-7f, 1, 0, 0};
+        assertArrayEquals(new int[] {0, 1, 0, 3, 1}, VertexWelder.findRepresentatives(positions, 0));
+        assertArrayEquals(new int[] {0, 1, 0, 1, 1}, VertexWelder.findRepresentatives(positions, 1e-6f));
+        assertThrows(IllegalArgumentException.class, () -> VertexWelder.findRepresentatives(positions, -1));
+    }
+
+    @Test
+    void dropsCollapsedPolygonsAndRepeatedCorners() {
+        Model model = new Model();
+        model.getVertices().add(new Vector3f(0, 0, 0));
+        model.getVertices().add(new Vector3f(1, 0, 0));
+        model.getVertices().add(new Vector3f(1, 1, 0));
+        model.getVertices().add(new Vector3f(1, 1, 0));
+        model.getVertices().add(new Vector3f(0, 1, 0));
+        Polygon pentagon = new Polygon();
+        pentagon.setVertexIndices(new ArrayList<>(List.of(0, 1, 2, 3, 4)));
+        pentagon.setTextureVertexIndices(new ArrayList<>(List.of(0, 1, 2, 3, 4)));
+        model.getPolygons().add(pentagon);
+        Polygon sliver = new Polygon();
+        sliver.setVertexIndices(new ArrayList<>(List.of(1, 2, 3)));
+        model.getPolygons().add(sliver);
+
+        ModelProcessor.weldVertices(model, 0);
+        assertEquals(4, model.getVertices().size());
+        assertEquals(1, model.getPolygons().size());
+        assertEquals(List.of(0, 1, 2, 3), model.getPolygons().get(0).getVertexIndices());
+        assertEquals(List.of(0, 1, 2, 4), model.getPolygons().get(0).getTextureVertexIndices());
+    }
+
+    @Test
+    void weldsLargeMeshInParallel() {
+        Model model = splitGrid(80, 0.0005f);
+        ModelProcessor.calculateNormals(model);
+        ModelProcessor.weldVertices(model, 0.002f);
+
+        assertEquals(81 * 81, model.getVertices().size());
+        assertEquals(80 * 80, model.getPolygons().size());
+        // Нормали по вершинам пересчитаны для новой нумерации
+        assertEquals(81 * 81, model.getNormals().size());
+        assertEquals(model.getPolygons().get(100).getVertexIndices(), model.getPolygons().get(100).getNormalIndices());
+    }
+}
@@ -0,0 +1,234 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+public class ObjReaderPathTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Model readPath(String content) throws IOException {
+        Path file = tempDir.resolve("model.obj");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return ObjReader.read(file);
+    }
+
+    static void assertSameModel(Model expected, Model actual) {
+        Assertions.assertEquals(expected.getVertices().size(), actual.getVertices().size());
+        for (int i = 0; i < expected.getVertices().size(); i++) {
+            Assertions.assertEquals(expected.getVertices().get(i).x, actual.getVertices().get(i).x);
+            Assertions.assertEquals(expected.getVertices().get(i).y, actual.getVertices().get(i).y);
+            Assertions.assertEquals(expected.getVertices().get(i).z, actual.getVertices().get(i).z);
+        }
+        Assertions.assertEquals(expected.getTextureVertices().size(), actual.getTextureVertices().size());
+        for (int i = 0; i < expected.getTextureVertices().size(); i++) {
+            Assertions.assertEquals(expected.getTextureVertices().get(i).x, actual.getTextureVertices().get(i).x);
+            Assertions.assertEquals(expected.getTextureVertices().get(i).y, actual.getTextureVertices().get(i).y);
+        }
+        Assertions.assertEquals(expected.getNormals().size(), actual.getNormals().size());
+        for (int i = 0; i < expected.getNormals().size(); i++) {
+            Assertions.assertEquals(expected.getNormals().get(i).x, actual.getNormals().get(i).x);
+            Assertions.assertEquals(expected.getNormals().get(i).y, actual.getNormals().get(i).y);
+            Assertions.assertEquals(expected.getNormals().get(i).z, actual.getNormals().get(i).z);
+        }
+        Assertions.assertEquals(expected.getPolygons().size(), actual.getPolygons().size());
+        for (int i = 0; i < expected.getPolygons().size(); i++) {
+            Assertions.assertEquals(expected.getPolygons().get(i).getVertexIndices(), actual.getPolygons().get(i).getVertexIndices());
+            Assertions.assertEquals(expected.getPolygons().get(i).getTextureVertexIndices(), actual.getPolygons().get(i).getTextureVertexIndices());
+            Assertions.assertEquals(expected.getPolygons().get(i).getNormalIndices(), actual.getPolygons().get(i).getNormalIndices());
+        }
+    }
+
+    @Test
+    public void matchesStringReader() throws IOException {
+        String content = "# comment\n"
+                + "v 1.5 -2 3e2\r\n"
+                + "v +0.25 .5 7. extra\n"
+                + "\n"
+                + "   \n"
+                + "  v 9 9 9\n"
+                + "vt 0.1 0.9\r"
+                + "vn 0 0 -1\u0085"
+                + "vn 1E-3 2e+1 -0\n"
+                + "f 1/1/1 2/1/2 1/1/1\n"
+                + "f\t1/1/1  2/1/2 3/1/1 1/ \n"
+                + "o name\n"
+                + "v 1 2 3";
+
+        // Последний полигон задаёт текстуры и нормали не для всех углов: как и в сетке, они отбрасываются
+        Model expected = ObjReader.read(content);
+        Model actual = readPath(content);
+        assertSameModel(Model.fromCompiledMesh(expected.getCompiledMesh()), actual);
+        Assertions.assertEquals(new ArrayList<>(), actual.getPolygons().get(1).getNormalIndices());
+        Assertions.assertEquals(new ArrayList<>(), actual.getPolygons().get(1).getTextureVertexIndices());
+        Assertions.assertEquals(expected.getPolygons().get(0).getNormalIndices(), actual.getPolygons().get(0).getNormalIndices());
+    }
+
+    @Test
+    public void errorsMatchStringReader() throws IOException {
+        String[] contents = {
+                "v 1 2\n",
+                "\n\n   \nv 1 x 3\n",
+                "vt 1\n",
+                "vn 1 2\n",
+                "v 1 2 3\nf 1 a 3\n",
+                "f 1/2/3/4 1 1\n",
+                "f // 1 1\n",
+                "f /1 1 1\n",
+                "f 99999999999 1 1\n",
+        };
+        for (String content : contents) {
+            ObjReaderException expected = Assertions.assertThrows(ObjReaderException.class, () -> ObjReader.read(content));
+            ObjReaderException actual = Assertions.assertThrows(ObjReaderException.class, () -> readPath(content));
+            Assertions.assertEquals(expected.getMessage(), actual.getMessage(), content);
+        }
+    }
+
+    private static float parse(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return ObjByteParser.parseFloat(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Test
+    public void floatParserMatchesFloatParseFloat() {
+        Random random = new Random(11);
+        for (int i = 0; i < 200000; i++) {
+            String text;
+            switch (i % 4) {
+                case 0 -> text = Float.toString(Float.intBitsToFloat(random.nextInt()));
+                case 1 -> text = String.format(Locale.ROOT, "%." + random.nextInt(10) + "f", (random.nextDouble() - 0.5) * 2000);
+                case 2 -> text = (random.nextLong() % 1000000000000L) + "e" + (random.nextInt(60) - 30);
+                default -> text = "0." + Math.abs(random.nextLong());
+            }
+            float expected;
+            try {
+                expected = Float.parseFloat(text);
+            } catch (NumberFormatException e) {
+                Assertions.assertThrows(NumberFormatException.class, () -> parse(text));
+                continue;
+            }
+            Assertions.assertEquals(Float.floatToRawIntBits(expected), Float.floatToRawIntBits(parse(text)), text);
+        }
+        Assertions.assertEquals(Float.floatToRawIntBits(-0.0f), Float.floatToRawIntBits(parse("-0")));
+        Assertions.assertEquals(1.0f, parse("1f"));
+        Assertions.assertThrows(NumberFormatException.class, () -> parse("."));
+        Assertions.assertThrows(NumberFormatException.class, () -> parse("1e"));
+    }
+
+    private static String randomObj(Random random, int lines) {
+        String[] separators = {"\n", "\r\n", "\r"};
+        StringBuilder builder = new StringBuilder();
+        int vertices = 0;
+        for (int i = 0; i < lines; i++) {
+            switch (random.nextInt(8)) {
+                case 0 -> builder.append("   ");
+                case 1 -> builder.append("# comment ").append(i);
+                case 2 -> builder.append("vt ").append(random.nextFloat()).append(' ').append(random.nextFloat());
+                case 3 -> builder.append("vn 0 ").append(random.nextInt(3) - 1).append(" 1");
+                case 4, 5 -> {
+                    if (vertices > 0) {
+                        builder.append("f");
+                        for (int j = 0; j < 3 + random.nextInt(3); j++) {
+                            builder.append(' ').append(1 + random.nextInt(vertices)).append("/1/1");
+                        }
+                        break;
+                    }
+                    builder.append("v 0 0 0");
+                    vertices++;
+                }
+                default -> {
+                    builder.append("v ").append(random.nextFloat() * 100 - 50)
+                            .append(' ').append(random.nextInt(1000) / 8.0)
+                            .append(' ').append(random.nextGaussian());
+                    vertices++;
+                }
+            }
+            builder.append(separators[random.nextInt(separators.length)]);
+        }
+        return builder.toString();
+    }
+
+    private Model readChunked(String content, int chunkSize) throws IOException {
+        Path file = tempDir.resolve("chunked.obj");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return ObjByteParser.read(file, chunkSize, 8);
+    }
+
+    @Test
+    public void chunkedParseMatchesSequential() throws IOException {
+        Random random = new Random(5);
+        for (int i = 0; i < 10; i++) {
+            String content = randomObj(random, 2000);
+            assertSameModel(ObjReader.read(content), readChunked(content, 1 + random.nextInt(2000)));
+        }
+    }
+
+    @Test
+    public void chunkedErrorsKeepLineNumbers() throws IOException {
+        Random random = new Random(9);
+        for (int i = 0; i < 20; i++) {
+            String content = randomObj(random, 1000);
+            // Ошибка в случайном месте файла
+            int position = content.indexOf('\n', random.nextInt(content.length()));
+            String broken = position < 0 ? content + "\nv 1 2\n" : content.substring(0, position + 1) + "v 1 oops 2\n" + content.substring(position + 1);
+
+            ObjReaderException expected = Assertions.assertThrows(ObjReaderException.class, () -> ObjReader.read(broken));
+            ObjReaderException actual = Assertions.assertThrows(ObjReaderException.class, () -> readChunked(broken, 256));
+            Assertions.assertEquals(expected.getMessage(), actual.getMessage());
+        }
+    }
+
+    @Test
+    public void chunkedParseReportsProgressAndCancels() throws IOException {
+        String content = randomObj(new Random(3), 2000);
+        Path file = tempDir.resolve("progress.obj");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        long size = Files.size(file);
+
+        ArrayList<Long> reported = new ArrayList<>();
+        Model model = ObjByteParser.read(file, 256, 8, (read, total) -> {
+            Assertions.assertEquals(size, total);
+            reported.add(read);
+            return true;
+        });
+        assertSameModel(ObjReader.read(content), model);
+        Assertions.assertTrue(reported.size() > 1);
+        for (int i = 1; i < reported.size(); i++) {
+            Assertions.assertTrue(reported.get(i) > reported.get(i - 1));
+        }
+        Assertions.assertEquals(size, reported.get(reported.size() - 1));
+
+        // Отмена после первого куска: остальные куски не склеиваются, чтение прерывается
+        int[] calls = {0};
+        Assertions.assertThrows(CancellationException.class,
+                () -> ObjByteParser.read(file, 256, 8, (read, total) -> ++calls[0] < 1));
+        Assertions.assertEquals(1, calls[0]);
+    }
+
+    @Test
+    public void chunkBoundsFollowLineEnds() {
+        byte[] bytes = "v 1 2 3\r\nv 4 5 6\rv 7 8 9\nf 1 2 3\n".getBytes(StandardCharsets.US_ASCII);
+        int[] bounds = ObjByteParser.chunkBounds(ByteBuffer.wrap(bytes), bytes.length, 1, 100);
+        Assertions.assertArrayEquals(new int[] {0, 9, 17, 25, bytes.length}, bounds);
+    }
+
+    @Test
+    public void windowEndsAfterCompleteLine() {
+        byte[] bytes = "v 1 2 3\r\nv 4 5 6\r".getBytes(StandardCharsets.US_ASCII);
+        Assertions.assertEquals(9, ObjByteParser.lastLineEnd(ByteBuffer.wrap(bytes), bytes.length));
+        Assertions.assertEquals(0, ObjByteParser.lastLineEnd(ByteBuffer.wrap(bytes), 7));
+    }
+}
@@ -0,0 +1,132 @@
+package com.cgvsu.objwriter;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.math.vector.impl.Vector3fImpl;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.ModelProcessor;
+import com.cgvsu.model.Polygon;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class BinaryWriterTest {
+
+    /**
+     * Квадрат из четырёх вершин и треугольник
+     */
+    private static Model sampleModel() {
+        Model model = new Model();
+        model.getVertices().add(new Vector3f(0, 0, 0));
+        model.getVertices().add(new Vector3f(1, 0, 0));
+        model.getVertices().add(new Vector3f(1, 1, 0));
+        model.getVertices().add(new Vector3f(0, 1, 0));
+        model.getVertices().add(new Vector3f(0, 0, 2));
+        Polygon quad = new Polygon();
+        quad.setVertexIndices(new ArrayList<>(Arrays.asList(0, 1, 2, 3)));
+        model.getPolygons().add(quad);
+        Polygon triangle = new Polygon();
+        triangle.setVertexIndices(new ArrayList<>(Arrays.asList(0, 4, 1)));
+        model.getPolygons().add(triangle);
+        model.translation = new Vector3f(3, 0, -1);
+        model.rotation = new Vector3f(0, 0.5f, 0);
+        return model;
+    }
+
+    private static ByteBuffer bytes(ByteArrayOutputStream out) {
+        return ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void stlHasFanTrianglesWithNormals() throws IOException {
+        Model model = sampleModel();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StlWriter.write(model, false, out);
+        ByteBuffer buffer = bytes(out);
+
+        Assertions.assertEquals(84 + 3 * 50, buffer.capacity());
+        Assertions.assertEquals(3, buffer.getInt(80));
+        // Второй треугольник веера квадрата: вершины 0, 2, 3
+        int second = 84 + 50;
+        Assertions.assertArrayEquals(new float[] {0, 0, 1, 0, 0, 0, 1, 1, 0, 0, 1, 0}, floats(buffer, second, 12));
+        // Треугольник 0, 4, 1 лежит в плоскости XZ
+        Assertions.assertArrayEquals(new float[] {0, 1, 0}, floats(buffer, second + 50, 3));
+        Assertions.assertEquals(0, buffer.getShort(second + 50 + 48));
+    }
+
+    @Test
+    public void stlAppliesModelTransform() throws IOException {
+        Model model = sampleModel();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StlWriter.write(model, true, out);
+        ByteBuffer buffer = bytes(out);
+
+        Vector3fImpl expected = model.getModelMatrix().transformPoint(new Vector3fImpl(1, 1, 0));
+        float[] vertex = floats(buffer, 84 + 12 + 24, 3);
+        Assertions.assertArrayEquals(new float[] {expected.getX(), expected.getY(), expected.getZ()}, vertex);
+    }
+
+    @Test
+    public void plyHeaderAndBody() throws IOException {
+        Model model = sampleModel();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PlyWriter.write(model, false, out);
+        byte[] data = out.toByteArray();
+
+        String text = new String(data, StandardCharsets.US_ASCII);
+        int bodyStart = text.indexOf("end_header\n") + "end_header\n".length();
+        String header = text.substring(0, bodyStart);
+        Assertions.assertTrue(header.startsWith("ply\nformat binary_little_endian 1.0\n"));
+        Assertions.assertTrue(header.contains("element vertex 5\n"));
+        Assertions.assertTrue(header.contains("element face 2\n"));
+        Assertions.assertFalse(header.contains("property float nx"));
+
+        ByteBuffer body = ByteBuffer.wrap(data, bodyStart, data.length - bodyStart).slice().order(ByteOrder.LITTLE_ENDIAN);
+        Assertions.assertEquals(5 * 12 + (1 + 16) + (1 + 12), body.capacity());
+        Assertions.assertArrayEquals(new float[] {0, 0, 2}, floats(body, 4 * 12, 3));
+        Assertions.assertEquals(4, body.get(60));
+        Assertions.assertEquals(3, body.getInt(61 + 12));
+        Assertions.assertEquals(3, body.get(77));
+        Assertions.assertEquals(4, body.getInt(78 + 4));
+    }
+
+    @Test
+    public void plyWritesPerVertexNormalsAndTexCoords() throws IOException {
+        Model model = sampleModel();
+        ModelProcessor.calculateNormals(model);
+        for (int i = 0; i < model.getVertices().size(); i++) {
+            model.getTextureVertices().add(new Vector2f(i, -i));
+        }
+        for (Polygon polygon : model.getPolygons()) {
+            polygon.setTextureVertexIndices(new ArrayList<>(polygon.getVertexIndices()));
+        }
+        model.markModified();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PlyWriter.write(model, false, out);
+        byte[] data = out.toByteArray();
+        String text = new String(data, StandardCharsets.US_ASCII);
+        Assertions.assertTrue(text.contains("property float nz\nproperty float s\nproperty float t\nelement face 2"));
+
+        int bodyStart = text.indexOf("end_header\n") + "end_header\n".length();
+        ByteBuffer body = ByteBuffer.wrap(data, bodyStart, data.length - bodyStart).slice().order(ByteOrder.LITTLE_ENDIAN);
+        // Вершина 4: координаты, нормаль треугольника 0, 4, 1 и текстурные координаты
+        Vector3f normal = model.getNormals().get(4);
+        Assertions.assertArrayEquals(new float[] {0, 0, 2, normal.x, normal.y, normal.z, 4, -4}, floats(body, 4 * 32, 8));
+    }
+
+    private static float[] floats(ByteBuffer buffer, int offset, int count) {
+        float[] result = new float[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = buffer.getFloat(offset + i * 4);
+        }
+        return result;
+    }
+}
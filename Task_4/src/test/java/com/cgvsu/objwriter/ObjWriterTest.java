@@ -0,0 +1,158 @@
+package com.cgvsu.objwriter;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.math.vector.impl.Vector3fImpl;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import com.cgvsu.objreader.ObjReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ObjWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String format(float value) {
+        byte[] buffer = new byte[FloatFormat.MAX_LENGTH];
+        return new String(buffer, 0, FloatFormat.format(value, buffer, 0));
+    }
+
+    private static int significantDigits(String text) {
+        int exponent = text.indexOf('E');
+        String digits = (exponent >= 0 ? text.substring(0, exponent) : text).replace("-", "").replace(".", "");
+        digits = digits.replaceFirst("^0+", "").replaceFirst("0+$", "");
+        return Math.max(1, digits.length());
+    }
+
+    /**
+     * Наименьшее число значащих цифр, с которым value читается обратно
+     */
+    private static int shortestDigits(float value) {
+        BigDecimal exact = new BigDecimal(value).abs();
+        for (int digits = 1; digits < 9; digits++) {
+            BigDecimal rounded = exact.round(new MathContext(digits, RoundingMode.HALF_EVEN));
+            BigDecimal unit = BigDecimal.ONE.scaleByPowerOfTen(rounded.precision() - rounded.scale() - digits);
+            for (BigDecimal candidate : new BigDecimal[] {rounded, rounded.add(unit), rounded.subtract(unit)}) {
+                if (candidate.signum() > 0 && candidate.floatValue() == Math.abs(value)) {
+                    return digits;
+                }
+            }
+        }
+        return 9;
+    }
+
+    @Test
+    public void floatFormatIsShortestRoundTrip() {
+        Random random = new Random(3);
+        for (int i = 0; i < 100000; i++) {
+            float value = i % 2 == 0
+                    ? Float.intBitsToFloat(random.nextInt())
+                    : (float) ((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 4));
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            String text = format(value);
+            Assertions.assertEquals(Float.floatToRawIntBits(value), Float.floatToRawIntBits(Float.parseFloat(text)), text);
+            if (Math.abs(value) >= Float.MIN_NORMAL && !Float.isInfinite(value)) {
+                Assertions.assertEquals(shortestDigits(value), significantDigits(text), text);
+            }
+        }
+
+        Assertions.assertEquals("1.0", format(1f));
+        Assertions.assertEquals("-0.0", format(-0f));
+        Assertions.assertEquals("0.1", format(0.1f));
+        Assertions.assertEquals("0.001", format(0.001f));
+        Assertions.assertEquals("1.0E-4", format(1e-4f));
+        Assertions.assertEquals("1.0E7", format(1e7f));
+        Assertions.assertEquals("123456.7", format(123456.7f));
+        Assertions.assertEquals("Infinity", format(Float.POSITIVE_INFINITY));
+    }
+
+    private static Model sampleModel() {
+        Model model = new Model();
+        Random random = new Random(8);
+        for (int i = 0; i < 200; i++) {
+            model.getVertices().add(new Vector3f(random.nextFloat() * 20 - 10, (float) random.nextGaussian(), i / 3f));
+            model.getTextureVertices().add(new Vector2f(random.nextFloat(), random.nextFloat()));
+            model.getNormals().add(new Vector3f(0, random.nextFloat(), -1e-6f * i));
+        }
+        for (int i = 0; i + 3 < 200; i += 3) {
+            Polygon polygon = new Polygon();
+            polygon.setVertexIndices(new ArrayList<>(Arrays.asList(i, i + 1, i + 2, i + 3)));
+            polygon.setTextureVertexIndices(new ArrayList<>(Arrays.asList(i + 3, i + 2, i + 1, i)));
+            polygon.setNormalIndices(new ArrayList<>(Arrays.asList(i, i, i, i)));
+            model.getPolygons().add(polygon);
+        }
+        model.translation = new Vector3f(1.5f, -2f, 0.25f);
+        model.rotation = new Vector3f(0.3f, 1.1f, -0.7f);
+        model.scale = 1.7f;
+        return model;
+    }
+
+    @Test
+    public void writtenModelReadsBack() throws IOException {
+        Model model = sampleModel();
+        Path file = tempDir.resolve("out.obj");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ObjWriter.write(model, false, channel);
+        }
+
+        Model read = ObjReader.read(file);
+        Assertions.assertEquals(model.getVertices().size(), read.getVertices().size());
+        for (int i = 0; i < model.getVertices().size(); i++) {
+            Assertions.assertEquals(model.getVertices().get(i).x, read.getVertices().get(i).x);
+            Assertions.assertEquals(model.getVertices().get(i).y, read.getVertices().get(i).y);
+            Assertions.assertEquals(model.getVertices().get(i).z, read.getVertices().get(i).z);
+            Assertions.assertEquals(model.getTextureVertices().get(i).x, read.getTextureVertices().get(i).x);
+            Assertions.assertEquals(model.getNormals().get(i).z, read.getNormals().get(i).z);
+        }
+        for (int i = 0; i < model.getPolygons().size(); i++) {
+            Assertions.assertEquals(model.getPolygons().get(i).getVertexIndices(), read.getPolygons().get(i).getVertexIndices());
+            Assertions.assertEquals(model.getPolygons().get(i).getTextureVertexIndices(), read.getPolygons().get(i).getTextureVertexIndices());
+            Assertions.assertEquals(model.getPolygons().get(i).getNormalIndices(), read.getPolygons().get(i).getNormalIndices());
+        }
+        Assertions.assertEquals(ObjWriter.write(model, false), Files.readString(file));
+    }
+
+    @Test
+    public void transformMatchesTransformPoint() {
+        Model model = sampleModel();
+        Model read = ObjReader.read(ObjWriter.write(model, true));
+        for (int i = 0; i < model.getVertices().size(); i++) {
+            Vector3f v = model.getVertices().get(i);
+            Vector3fImpl expected = model.getModelMatrix().transformPoint(new Vector3fImpl(v.x, v.y, v.z));
+            Assertions.assertEquals(expected.getX(), read.getVertices().get(i).x);
+            Assertions.assertEquals(expected.getY(), read.getVertices().get(i).y);
+            Assertions.assertEquals(expected.getZ(), read.getVertices().get(i).z);
+        }
+    }
+
+    @Test
+    public void facesKeepMissingAttributes() {
+        Model model = new Model();
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(new ArrayList<>(Arrays.asList(0, 1, 2)));
+        polygon.setNormalIndices(new ArrayList<>(Arrays.asList(4, 5, 6)));
+        model.getPolygons().add(polygon);
+        Polygon plain = new Polygon();
+        plain.setVertexIndices(new ArrayList<>(Arrays.asList(9, 10, 11)));
+        model.getPolygons().add(plain);
+
+        Assertions.assertEquals("f 1//5 2//6 3//7\nf 10 11 12\n", ObjWriter.write(model, false));
+    }
+}
@@ -0,0 +1,113 @@
+package com.cgvsu.render_engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class ClipperTest {
+
+    // Вершины в пространстве отсечения (x, y, z, w)
+    private static final float[] CLIP = {
+            0, 0, 0, 1,       // внутри
+            1, 0, 0, 1,       // внутри
+            0, 1, -3, 1,      // ближе ближней плоскости: z < -w
+            0, 0, 5, 1,       // дальше дальней плоскости: z > w
+    };
+    private static final float[] TEX_COORDS = {0, 0, 1, 0, 0, 1, 1, 1};
+
+    @Test
+    public void insideTriangleIsProjectedAsIs() {
+        Clipper clipper = new Clipper();
+        int count = clipper.clipTriangle(CLIP, 0, 1, 0, null, 0, 0, 0, null, 0, 0, 0, 100, 100);
+        Assertions.assertEquals(3, count);
+        float[] screen = clipper.getScreenPositions();
+        int first = clipper.getFirst();
+        Assertions.assertEquals(50f, screen[first * 3]);
+        Assertions.assertEquals(150f, screen[(first + 1) * 3]);
+    }
+
+    @Test
+    public void nearPlaneCutsTriangleIntoQuad() {
+        Clipper clipper = new Clipper();
+        int count = clipper.clipTriangle(CLIP, 0, 1, 2, null, 0, 0, 0, TEX_COORDS, 0, 1, 2, 100, 100);
+        Assertions.assertEquals(4, count);
+
+        float[] screen = clipper.getScreenPositions();
+        float[] texCoords = clipper.getTexCoords();
+        int first = clipper.getFirst();
+        for (int i = first; i < first + count; i++) {
+            Assertions.assertTrue(screen[i * 3 + 2] >= -1 && screen[i * 3 + 2] <= 1);
+        }
+        // Ребро 1-2 пересекает ближнюю плоскость при t = 1/3: v = 1/3 и z = -1
+        Assertions.assertEquals(-1f, screen[(first + 2) * 3 + 2], 1e-6f);
+        Assertions.assertEquals(2f / 3, texCoords[(first + 2) * 2], 1e-6f);
+        Assertions.assertEquals(1f / 3, texCoords[(first + 2) * 2 + 1], 1e-6f);
+    }
+
+    @Test
+    public void hugeTriangleIsClippedToGuardBand() {
+        // Вершина 1 почти в плоскости камеры: после деления на w она далеко за защитной полосой
+        float[] nearCamera = {0, 0, 0, 1, 1, 0, -1e-9f, 1e-9f, 0, 1, 0, 1, 0, 0, 5, 1};
+        Clipper clipper = new Clipper();
+        int count = clipper.clipTriangle(nearCamera, 0, 1, 2, null, 0, 0, 0, null, 0, 0, 0, 100, 100);
+        Assertions.assertTrue(count >= 3);
+        float[] screen = clipper.getScreenPositions();
+        int first = clipper.getFirst();
+        float limit = Rasterizer.GUARD_BAND_CLIP * 1.001f + 50;
+        for (int i = first; i < first + count; i++) {
+            Assertions.assertTrue(Math.abs(screen[i * 3]) <= limit);
+            Assertions.assertTrue(Math.abs(screen[i * 3 + 1]) <= limit);
+        }
+        // Вершины 0 и 2 внутри и остаются на месте
+        Assertions.assertEquals(50f, screen[first * 3]);
+        Assertions.assertEquals(50f, screen[first * 3 + 1]);
+
+        float[] out = new float[4];
+        Assertions.assertTrue(Clipper.clipLine(nearCamera, 0, 1, 100, 100, out));
+        Assertions.assertEquals(50f, out[0]);
+        Assertions.assertTrue(Math.abs(out[2]) <= limit);
+    }
+
+    @Test
+    public void triangleBehindNearPlaneIsEmpty() {
+        Clipper clipper = new Clipper();
+        float[] behind = {0, 0, -3, 1, 1, 0, -4, 1, 0, 1, -5, 1};
+        Assertions.assertEquals(0, clipper.clipTriangle(behind, 0, 1, 2, null, 0, 0, 0, null, 0, 0, 0, 100, 100));
+    }
+
+    @Test
+    public void linesAreClippedToBothPlanes() {
+        float[] out = new float[4];
+        Assertions.assertTrue(Clipper.clipLine(CLIP, 0, 1, 100, 100, out));
+        Assertions.assertArrayEquals(new float[] {50, 50, 150, 50}, out);
+
+        // От ближней плоскости до дальней: z = -3 .. 5, внутри t от 0.25 до 0.5
+        Assertions.assertTrue(Clipper.clipLine(CLIP, 2, 3, 100, 100, out));
+        Assertions.assertEquals(50 - 0.75f * 100, out[1], 1e-4f);
+        Assertions.assertEquals(50 - 0.5f * 100, out[3], 1e-4f);
+
+        float[] behind = {0, 0, -3, 1, 1, 0, -4, 1};
+        Assertions.assertFalse(Clipper.clipLine(behind, 0, 1, 100, 100, out));
+    }
+
+    @Test
+    public void growingBuffersKeepSubmittedVertices() {
+        Clipper clipper = new Clipper();
+        clipper.clipTriangle(CLIP, 0, 1, 2, null, 0, 0, 0, null, 0, 0, 0, 100, 100);
+        float[] submitted = clipper.getScreenPositions();
+        float[] copy = Arrays.copyOf(submitted, 12);
+        for (int i = 0; i < 100; i++) {
+            clipper.clipTriangle(CLIP, 0, 1, 2, null, 0, 0, 0, null, 0, 0, 0, 100, 100);
+        }
+        Assertions.assertNotSame(submitted, clipper.getScreenPositions());
+        // Вершины первого треугольника не перезаписаны ни в старом массиве, ни при копировании
+        Assertions.assertArrayEquals(copy, Arrays.copyOf(submitted, 12));
+        Assertions.assertArrayEquals(copy, Arrays.copyOf(clipper.getScreenPositions(), 12));
+        Assertions.assertEquals(400, clipper.getFirst());
+
+        clipper.reset();
+        clipper.clipTriangle(CLIP, 0, 1, 2, null, 0, 0, 0, null, 0, 0, 0, 100, 100);
+        Assertions.assertEquals(0, clipper.getFirst());
+    }
+}
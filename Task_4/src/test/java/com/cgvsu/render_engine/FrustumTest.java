@@ -0,0 +1,98 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.matrix.impl.Matrix4f;
+import com.cgvsu.math.vector.impl.Vector3fImpl;
+import com.cgvsu.model.CompiledMesh;
+import com.cgvsu.model.MeshBounds;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class FrustumTest {
+
+    // Камера в начале координат смотрит вдоль -z
+    private static Frustum frustum() {
+        Camera camera = new Camera(new Vector3fImpl(0, 0, 0), new Vector3fImpl(0, 0, -1), 1.0f, 1.0f, 0.1f, 100);
+        return camera.getFrustum();
+    }
+
+    private static float[] box(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return new float[] {minX, minY, minZ, maxX, maxY, maxZ};
+    }
+
+    @Test
+    public void boxesOutsideAnyPlaneAreRejected() {
+        Frustum frustum = frustum();
+        Assertions.assertTrue(frustum.intersectsBox(box(-1, -1, -11, 1, 1, -9), 0));
+        // За камерой, левее пирамиды, дальше дальней плоскости
+        Assertions.assertFalse(frustum.intersectsBox(box(-1, -1, 1, 1, 1, 3), 0));
+        Assertions.assertFalse(frustum.intersectsBox(box(-30, -1, -11, -20, 1, -9), 0));
+        Assertions.assertFalse(frustum.intersectsBox(box(-1, -1, -300, 1, 1, -200), 0));
+        // Пересекает ближнюю плоскость и боковые - остаётся
+        Assertions.assertTrue(frustum.intersectsBox(box(-50, -50, -1, 50, 50, 5), 0));
+        // Пустой параллелепипед
+        Assertions.assertFalse(frustum.intersectsBox(box(1, 1, 1, -1, -1, -1), 0));
+    }
+
+    @Test
+    public void spheresUseNormalizedPlanes() {
+        Frustum frustum = frustum();
+        Assertions.assertTrue(frustum.intersectsSphere(0, 0, -10, 1));
+        Assertions.assertFalse(frustum.intersectsSphere(0, 0, 5, 1));
+        // Центр чуть правее пирамиды, но сфера её задевает
+        float halfWidth = (float) Math.tan(0.5) * 10;
+        Assertions.assertTrue(frustum.intersectsSphere(halfWidth + 0.5f, 0, -10, 1));
+        Assertions.assertFalse(frustum.intersectsSphere(halfWidth + 2, 0, -10, 1));
+    }
+
+    @Test
+    public void clusterProcessingMatchesFullProcessing() {
+        // Полоса из 600 треугольников вдоль x: кластеры по MeshBounds.CLUSTER_TRIANGLES
+        int quads = 300;
+        float[] positions = new float[(quads + 1) * 2 * 3];
+        for (int i = 0; i <= quads; i++) {
+            positions[i * 6] = i;
+            positions[i * 6 + 3] = i;
+            positions[i * 6 + 4] = 1;
+        }
+        int[] indices = new int[quads * 6];
+        for (int i = 0; i < quads; i++) {
+            int a = i * 2;
+            int[] quad = {a, a + 2, a + 3, a, a + 3, a + 1};
+            System.arraycopy(quad, 0, indices, i * 6, 6);
+        }
+        int[] offsets = new int[quads * 2 + 1];
+        Arrays.setAll(offsets, i -> i * 3);
+        int[] none = new int[indices.length];
+        Arrays.fill(none, -1);
+        CompiledMesh mesh = new CompiledMesh(positions, new float[0], new float[0], offsets, indices, none, none);
+
+        MeshBounds bounds = mesh.getBounds();
+        Assertions.assertEquals(5, bounds.getClusterCount());
+        Assertions.assertEquals(quads * 2, bounds.getClusterPolygonOffsets()[bounds.getClusterCount()]);
+        Assertions.assertEquals(300f, bounds.getBox()[3]);
+
+        Matrix4f matrix = GraphicConveyor.perspective(1.0f, 1.0f, 0.1f, 1000);
+        matrix = (Matrix4f) matrix.multiply(GraphicConveyor.lookAt(new Vector3fImpl(0, 0, 50), new Vector3fImpl(0, 0, 0)));
+        VertexProcessor full = new VertexProcessor();
+        full.process(mesh, matrix, matrix, 100, 100, false, false);
+        VertexProcessor partial = new VertexProcessor();
+        boolean[] visible = {true, false, true, false, false};
+        partial.process(mesh, matrix, matrix, 100, 100, false, false, visible);
+
+        Assertions.assertSame(visible, partial.getVisibleClusters());
+        int[] polygonOffsets = bounds.getClusterPolygonOffsets();
+        for (int cluster = 0; cluster < visible.length; cluster++) {
+            if (!visible[cluster]) {
+                continue;
+            }
+            for (int corner = polygonOffsets[cluster] * 3; corner < polygonOffsets[cluster + 1] * 3; corner++) {
+                int v = indices[corner] * 3;
+                for (int k = 0; k < 3; k++) {
+                    Assertions.assertEquals(full.getScreenPositions()[v + k], partial.getScreenPositions()[v + k]);
+                }
+            }
+        }
+    }
+}
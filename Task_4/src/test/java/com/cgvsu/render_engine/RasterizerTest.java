@@ -0,0 +1,228 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.math.matrix.impl.Matrix4f;
+import com.cgvsu.math.vector.impl.Vector3fImpl;
+import com.cgvsu.model.CompiledMesh;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RasterizerTest {
+
+    private static final int SIZE = 32;
+
+    private static int[] drawIncremental(Vector3f v0, Vector3f v1, Vector3f v2) {
+        Vector3f n = new Vector3f(0, 0, 1);
+        Vector3f light = new Vector3f(0, 0, 1);
+        int[] colorBuffer = new int[SIZE * SIZE];
+        Rasterizer.rasterizeTriangleIncremental(v0, v1, v2, n, n, n, null, null, null,
+                Color.LIGHTGRAY, new ZBuffer(SIZE, SIZE), colorBuffer, null, light, 0.2f, true, 1.0f,
+                0, 0, SIZE - 1, SIZE - 1);
+        return colorBuffer;
+    }
+
+    private static int[] drawBarycentric(Vector3f v0, Vector3f v1, Vector3f v2) {
+        Vector3f n = new Vector3f(0, 0, 1);
+        Vector3f light = new Vector3f(0, 0, 1);
+        int[] colorBuffer = new int[SIZE * SIZE];
+        Rasterizer.rasterizeTriangle(v0, v1, v2, n, n, n, null, null, null,
+                Color.LIGHTGRAY, new ZBuffer(SIZE, SIZE), colorBuffer, null, light, 0.2f, true, 1.0f);
+        return colorBuffer;
+    }
+
+    @Test
+    void sharedEdgeIsCoveredExactlyOnce() {
+        Vector3f a = new Vector3f(2.3f, 3.1f, 0.5f);
+        Vector3f b = new Vector3f(29.7f, 4.6f, 0.5f);
+        Vector3f c = new Vector3f(28.2f, 30.4f, 0.5f);
+        Vector3f d = new Vector3f(3.8f, 27.9f, 0.5f);
+
+        int[] first = drawIncremental(a, b, c);
+        int[] second = drawIncremental(a, c, d);
+
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            assertTrue(first[i] == 0 || second[i] == 0, "Pixel on the shared edge must not be drawn twice");
+        }
+    }
+
+    @Test
+    void coverageMatchesBarycentricAwayFromEdges() {
+        Vector3f v0 = new Vector3f(1.5f, 2.25f, 0.3f);
+        Vector3f v1 = new Vector3f(30.0f, 10.75f, 0.6f);
+        Vector3f v2 = new Vector3f(8.25f, 29.5f, 0.9f);
+
+        int[] incremental = drawIncremental(v0, v1, v2);
+        int[] reference = drawBarycentric(v0, v1, v2);
+
+        int mismatches = 0;
+        int covered = 0;
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            if (reference[i] != 0) {
+                covered++;
+            }
+            if ((incremental[i] != 0) != (reference[i] != 0)) {
+                mismatches++;
+            }
+        }
+        assertTrue(covered > 0);
+        // Отличаться могут только пиксели, центр которых лежит ровно на ребре
+        assertTrue(mismatches <= 2, "Unexpected coverage difference: " + mismatches);
+    }
+
+    @Test
+    void windingDoesNotAffectCoverage() {
+        Vector3f v0 = new Vector3f(4f, 4f, 0.5f);
+        Vector3f v1 = new Vector3f(25f, 6f, 0.5f);
+        Vector3f v2 = new Vector3f(12f, 27f, 0.5f);
+
+        assertArrayEquals(drawIncremental(v0, v1, v2), drawIncremental(v0, v2, v1));
+    }
+
+    @Test
+    void counterClockwiseTrianglesFacingCameraAreFront() {
+        // Треугольник в плоскости z = 0 против часовой стрелки, если смотреть с +z; камера на оси +z
+        float[] positions = {0, 0, 0, 1, 0, 0, 0, 1, 0};
+        CompiledMesh mesh = new CompiledMesh(positions, new float[0], new float[0],
+                new int[] {0, 3}, new int[] {0, 1, 2}, new int[] {-1, -1, -1}, new int[] {-1, -1, -1});
+        Matrix4f matrix = (Matrix4f) GraphicConveyor.perspective(1.0f, 1.0f, 0.1f, 100)
+                .multiply(GraphicConveyor.lookAt(new Vector3fImpl(0.3f, 0.3f, 5), new Vector3fImpl(0.3f, 0.3f, 0)));
+        VertexProcessor processor = new VertexProcessor();
+        processor.process(mesh, matrix, matrix, 200, 200, false, false);
+        float[] screen = processor.getScreenPositions();
+
+        assertEquals(Rasterizer.Setup.ACCEPTED, Rasterizer.setupTriangle(screen, 0, 1, 2, Rasterizer.CullMode.BACK));
+        assertEquals(Rasterizer.Setup.CULLED_FACING, Rasterizer.setupTriangle(screen, 0, 2, 1, Rasterizer.CullMode.BACK));
+        assertEquals(Rasterizer.Setup.CULLED_FACING, Rasterizer.setupTriangle(screen, 0, 1, 2, Rasterizer.CullMode.FRONT));
+        assertEquals(Rasterizer.Setup.ACCEPTED, Rasterizer.setupTriangle(screen, 0, 2, 1, Rasterizer.CullMode.FRONT));
+        assertEquals(Rasterizer.Setup.ACCEPTED, Rasterizer.setupTriangle(screen, 0, 2, 1, Rasterizer.CullMode.NONE));
+    }
+
+    @Test
+    void degenerateAndSubpixelTrianglesAreRejectedInSetup() {
+        float[] collinear = {1, 1, 0, 5, 5, 0, 9, 9, 0};
+        assertEquals(Rasterizer.Setup.DEGENERATE, Rasterizer.setupTriangle(collinear, 0, 1, 2, Rasterizer.CullMode.NONE));
+
+        float[] invalid = {1, 1, 0, Float.NaN, 5, 0, 9, 1, 0};
+        assertEquals(Rasterizer.Setup.DEGENERATE, Rasterizer.setupTriangle(invalid, 0, 1, 2, Rasterizer.CullMode.NONE));
+
+        // Между центрами пикселей 3.5 и 4.5 по x
+        float[] thin = {3.6f, 1, 0, 4.4f, 1, 0, 4.0f, 9, 0};
+        assertEquals(Rasterizer.Setup.SUBPIXEL, Rasterizer.setupTriangle(thin, 0, 1, 2, Rasterizer.CullMode.NONE));
+
+        float[] covering = {3.4f, 1, 0, 4.4f, 1, 0, 4.0f, 9, 0};
+        assertEquals(Rasterizer.Setup.ACCEPTED, Rasterizer.setupTriangle(covering, 0, 1, 2, Rasterizer.CullMode.NONE));
+    }
+
+    @Test
+    void trianglesOutsideGuardBandAreClippedAndDrawn() {
+        // Оба треугольника лежат по одну сторону от диагонали y = x в плоскости z = 0.5 + x * 1e-10;
+        // первый выходит далеко за защитную полосу, второй целиком в ней
+        float[] huge = {-1e9f, -1e9f, 0.5f - 0.1f, 1e9f, 1e9f, 0.5f + 0.1f, -1e9f, 1e9f, 0.5f - 0.1f};
+        float[] small = {-100, -100, 0.5f - 1e-8f, 100, 100, 0.5f + 1e-8f, -100, 100, 0.5f - 1e-8f};
+        Vector3f light = new Vector3f(0, 0, 1);
+        ZBuffer hugeDepth = new ZBuffer(SIZE, SIZE);
+        ZBuffer smallDepth = new ZBuffer(SIZE, SIZE);
+        int[] hugeColor = new int[SIZE * SIZE];
+        int[] smallColor = new int[SIZE * SIZE];
+        Rasterizer.rasterizeTriangleIndexed(huge, 0, 1, 2, null, 0, 0, 0, null, 0, 0, 0,
+                Color.WHITE, hugeDepth, hugeColor, null, light, 0.2f, false, 1.0f, 0, 0, SIZE - 1, SIZE - 1);
+        Rasterizer.rasterizeTriangleIndexed(small, 0, 1, 2, null, 0, 0, 0, null, 0, 0, 0,
+                Color.WHITE, smallDepth, smallColor, null, light, 0.2f, false, 1.0f, 0, 0, SIZE - 1, SIZE - 1);
+
+        assertArrayEquals(smallColor, hugeColor);
+        assertTrue(hugeColor[SIZE * (SIZE - 1)] != 0);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(smallDepth.getDepth(x, y), hugeDepth.getDepth(x, y), 1e-5f);
+            }
+        }
+    }
+
+    @Test
+    void hugeTrianglesAreNotDroppedInSetup() {
+        // Вершина далеко за пределами фиксированной точки: треугольник не вырожден и сохраняет ориентацию
+        float[] huge = {0, 0, 0, 1e9f, 0, 0, 0, 1e9f, 0};
+        assertEquals(Rasterizer.Setup.OUTSIDE_GUARD_BAND, Rasterizer.setupTriangle(huge, 0, 1, 2, Rasterizer.CullMode.NONE));
+        assertEquals(Rasterizer.Setup.CULLED_FACING, Rasterizer.setupTriangle(huge, 0, 1, 2, Rasterizer.CullMode.BACK));
+        assertEquals(Rasterizer.Setup.OUTSIDE_GUARD_BAND, Rasterizer.setupTriangle(huge, 0, 2, 1, Rasterizer.CullMode.BACK));
+
+        float[] collinear = {0, 0, 0, 1e9f, 1e9f, 0, 2e9f, 2e9f, 0};
+        assertEquals(Rasterizer.Setup.DEGENERATE, Rasterizer.setupTriangle(collinear, 0, 1, 2, Rasterizer.CullMode.NONE));
+    }
+
+    @Test
+    void shadingKernelsShareCoverageAndDepth() {
+        assertEquals(Rasterizer.Shading.FLAT, Rasterizer.Shading.select(false, false));
+        assertEquals(Rasterizer.Shading.LAMBERT, Rasterizer.Shading.select(false, true));
+        assertEquals(Rasterizer.Shading.TEXTURE, Rasterizer.Shading.select(true, false));
+        assertEquals(Rasterizer.Shading.TEXTURE_LAMBERT, Rasterizer.Shading.select(true, true));
+
+        float[] positions = {2.3f, 3.1f, 0.2f, 29.7f, 9.6f, 0.5f, 8.2f, 28.4f, 0.8f};
+        float[] normals = {0, 0, 1, 1, 0, 1, 0, 1, 1};
+        Vector3f light = new Vector3f(0, 0, 1);
+
+        ZBuffer flatDepth = new ZBuffer(SIZE, SIZE);
+        int[] flat = new int[SIZE * SIZE];
+        Rasterizer.rasterizeTriangleIndexed(positions, 0, 1, 2, null, 0, 0, 0, null, 0, 0, 0,
+                Color.LIGHTGRAY, flatDepth, flat, null, light, 0.2f, false, 1.0f, 0, 0, SIZE - 1, SIZE - 1);
+        ZBuffer lambertDepth = new ZBuffer(SIZE, SIZE);
+        int[] lambert = new int[SIZE * SIZE];
+        Rasterizer.rasterizeTriangleIndexed(positions, 0, 1, 2, normals, 0, 1, 2, null, 0, 0, 0,
+                Color.LIGHTGRAY, lambertDepth, lambert, null, light, 0.2f, true, 1.0f, 0, 0, SIZE - 1, SIZE - 1);
+        ZBuffer depthOnly = new ZBuffer(SIZE, SIZE);
+        Rasterizer.rasterizeTriangleIndexed(positions, 0, 1, 2, null, 0, 0, 0, null, 0, 0, 0,
+                Color.LIGHTGRAY, depthOnly, null, null, light, 0.2f, false, 1.0f, 0, 0, SIZE - 1, SIZE - 1);
+
+        int covered = 0;
+        int flatArgb = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int i = y * SIZE + x;
+                assertEquals(flat[i] != 0, lambert[i] != 0);
+                assertEquals(flatDepth.getDepth(x, y), lambertDepth.getDepth(x, y));
+                assertEquals(flatDepth.getDepth(x, y), depthOnly.getDepth(x, y));
+                if (flat[i] != 0) {
+                    // Без освещения весь треугольник одного цвета
+                    assertTrue(flatArgb == 0 || flatArgb == flat[i]);
+                    flatArgb = flat[i];
+                    covered++;
+                }
+            }
+        }
+        assertTrue(covered > 100);
+    }
+
+    @Test
+    void texturedMipmappedTriangleUsesCoarseLevel() {
+        // Текстура 64x64 на треугольнике в 16 пикселей: 4 текселя на пиксель, второй мип-уровень
+        int[] argb = new int[64 * 64];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = ((i % 64 + i / 64) & 1) == 0 ? 0xFFFFFFFF : 0xFF000000;
+        }
+        Texture texture = Texture.fromArgb(64, 64, argb).withMipmaps();
+        TextureSampler sampler = new TextureSampler(texture, TextureSampler.Filter.TRILINEAR, TextureSampler.Wrap.REPEAT);
+
+        Vector3f n = new Vector3f(0, 0, 1);
+        int[] colorBuffer = new int[SIZE * SIZE];
+        Rasterizer.rasterizeTriangleIncremental(
+                new Vector3f(2, 2, 0.5f), new Vector3f(18, 2, 0.5f), new Vector3f(2, 18, 0.5f), n, n, n,
+                new Vector2f(0, 0), new Vector2f(1, 0), new Vector2f(0, 1),
+                Color.LIGHTGRAY, new ZBuffer(SIZE, SIZE), colorBuffer, sampler, n, 0.2f, false, 1.0f,
+                0, 0, SIZE - 1, SIZE - 1);
+
+        int covered = 0;
+        for (int argbPixel : colorBuffer) {
+            if (argbPixel != 0) {
+                // Шахматный узор усреднён в серый
+                assertEquals(0x80, argbPixel & 0xFF, 2);
+                covered++;
+            }
+        }
+        assertTrue(covered > 50);
+    }
+}
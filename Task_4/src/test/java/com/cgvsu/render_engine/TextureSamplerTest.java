@@ -0,0 +1,126 @@
+package com.cgvsu.render_engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TextureSamplerTest {
+
+    private static final int RED = 0xFFFF0000;
+    private static final int GREEN = 0xFF00FF00;
+    private static final int BLUE = 0xFF0000FF;
+    private static final int WHITE = 0xFFFFFFFF;
+
+    // Изображение 3x2 сверху вниз: верхняя строка - красный, зелёный, синий
+    private static Texture texture() {
+        return Texture.fromArgb(3, 2, new int[] {RED, GREEN, BLUE, WHITE, WHITE, 0x80FFFFFF});
+    }
+
+    @Test
+    public void rowsArePaddedAndStoredBottomUp() {
+        Texture texture = texture();
+        Assertions.assertEquals(2, texture.getStrideShift());
+        int[] pixels = texture.getPixels();
+        Assertions.assertEquals(8, pixels.length);
+        Assertions.assertEquals(WHITE, pixels[0]);
+        // Полупрозрачный белый хранится с предумноженной альфой, столбец дополнения повторяет край
+        Assertions.assertEquals(0x80808080, pixels[2]);
+        Assertions.assertEquals(0x80808080, pixels[3]);
+        Assertions.assertEquals(RED, pixels[4]);
+        Assertions.assertEquals(BLUE, pixels[7]);
+    }
+
+    @Test
+    public void nearestSamplesTexelCentersWithEveryWrap() {
+        Texture texture = texture();
+        TextureSampler repeat = new TextureSampler(texture, TextureSampler.Filter.NEAREST, TextureSampler.Wrap.REPEAT);
+        TextureSampler clamp = new TextureSampler(texture, TextureSampler.Filter.NEAREST, TextureSampler.Wrap.CLAMP);
+        TextureSampler mirror = new TextureSampler(texture, TextureSampler.Filter.NEAREST, TextureSampler.Wrap.MIRROR);
+
+        Assertions.assertEquals(RED, repeat.sample(0.5f / 3, 0.75f));
+        Assertions.assertEquals(GREEN, repeat.sample(1.5f / 3, 0.75f));
+        Assertions.assertEquals(BLUE, repeat.sample(2.5f / 3, 0.75f));
+
+        // Левее нуля на половину текселя
+        float u = -0.5f / 3;
+        Assertions.assertEquals(BLUE, repeat.sample(u, 0.75f));
+        Assertions.assertEquals(RED, clamp.sample(u, 0.75f));
+        Assertions.assertEquals(RED, mirror.sample(u, 0.75f));
+        Assertions.assertEquals(GREEN, mirror.sample(-1.5f / 3, 0.75f));
+        Assertions.assertEquals(BLUE, clamp.sample(7.0f, 0.75f));
+        Assertions.assertEquals(RED, repeat.sample(0.5f / 3 + 5, 0.75f - 3));
+    }
+
+    @Test
+    public void bilinearBlendsNeighbours() {
+        Texture texture = texture();
+        TextureSampler sampler = new TextureSampler(texture, TextureSampler.Filter.BILINEAR, TextureSampler.Wrap.CLAMP);
+        // Центр текселя - точное значение
+        Assertions.assertEquals(RED, sampler.sample(0.5f / 3, 0.75f));
+        // Посередине между красным и зелёным
+        int mixed = sampler.sample(1.0f / 3, 0.75f);
+        Assertions.assertEquals(0xFF, mixed >>> 24);
+        Assertions.assertEquals(0x7F, (mixed >> 16) & 0xFF, 1);
+        Assertions.assertEquals(0x7F, (mixed >> 8) & 0xFF, 1);
+        Assertions.assertEquals(0, mixed & 0xFF);
+        // За краем с прижатием - цвет края
+        Assertions.assertEquals(BLUE, sampler.sample(1.2f, 0.9f));
+    }
+
+    @Test
+    public void lerpKeepsChannelsApart() {
+        Assertions.assertEquals(0xFFFFFFFF, TextureSampler.lerp(0xFFFFFFFF, 0xFFFFFFFF, 255));
+        Assertions.assertEquals(0x12345678, TextureSampler.lerp(0x12345678, 0xFFFFFFFF, 0));
+        Assertions.assertEquals(0x7F7F7F7F, TextureSampler.lerp(0, 0xFFFFFFFF, 128));
+    }
+
+    // Шахматная доска 8x8 из белых и чёрных текселей; тексель (1, 0) нижней строки белый
+    private static Texture checker() {
+        int[] argb = new int[64];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = ((i % 8 + i / 8) & 1) == 0 ? WHITE : 0xFF000000;
+        }
+        return Texture.fromArgb(8, 8, argb).withMipmaps();
+    }
+
+    @Test
+    public void mipmapsAverageDownToOneTexel() {
+        Texture texture = checker();
+        Assertions.assertEquals(4, texture.getLevelCount());
+        Assertions.assertEquals(2, texture.getWidth(2));
+        Assertions.assertEquals(1, texture.getHeight(3));
+        Assertions.assertSame(texture.getPixels(), texture.getPixels(0));
+        // Среднее белого и чёрного: 255 * 2 / 4 с округлением
+        Assertions.assertEquals(0xFF808080, texture.getPixels(1)[0]);
+        Assertions.assertEquals(0xFF808080, texture.getPixels(3)[0]);
+
+        Texture odd = Texture.fromArgb(5, 3, new int[15]).withMipmaps();
+        Assertions.assertEquals(3, odd.getLevelCount());
+        Assertions.assertEquals(2, odd.getWidth(1));
+        Assertions.assertEquals(1, odd.getHeight(1));
+    }
+
+    @Test
+    public void lodSelectsMipLevel() {
+        Texture texture = checker();
+        TextureSampler sampler = new TextureSampler(texture, TextureSampler.Filter.NEAREST, TextureSampler.Wrap.REPEAT);
+        // Один тексель на пиксель - нулевой уровень, четыре - второй
+        Assertions.assertEquals(0f, sampler.lod(1f / 8, 0, 0, 1f / 8), 1e-6f);
+        Assertions.assertEquals(2f, sampler.lod(4f / 8, 0, 0, 1f / 8), 1e-6f);
+        Assertions.assertTrue(sampler.lod(0, 0, 0, 0) < 0);
+
+        Assertions.assertEquals(WHITE, sampler.sample(1.5f / 8, 0.5f / 8, 0));
+        Assertions.assertEquals(0xFF808080, sampler.sample(1.5f / 8, 0.5f / 8, 2));
+        Assertions.assertEquals(0xFF808080, sampler.sample(1.5f / 8, 0.5f / 8, 10));
+
+        TextureSampler plain = new TextureSampler(texture, TextureSampler.Filter.NEAREST, TextureSampler.Wrap.REPEAT, false);
+        Assertions.assertEquals(WHITE, plain.sample(1.5f / 8, 0.5f / 8, 2));
+
+        // Трилинейная выборка между белым текселем нулевого уровня и серым первого
+        TextureSampler trilinear = new TextureSampler(texture, TextureSampler.Filter.TRILINEAR, TextureSampler.Wrap.REPEAT);
+        Assertions.assertEquals(WHITE, trilinear.sample(1.5f / 8, 0.5f / 8, 0));
+        int blended = trilinear.sample(1.5f / 8, 0.5f / 8, 0.5f);
+        int expected = TextureSampler.lerp(WHITE, trilinear.sample(1.5f / 8, 0.5f / 8, 1), 128);
+        Assertions.assertEquals(expected, blended);
+        Assertions.assertTrue((blended & 0xFF) > 0x80 && (blended & 0xFF) < 0xFF);
+    }
+}
@@ -0,0 +1,58 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.Vector3f;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class TiledRasterizerTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    @Test
+    void tiledOutputIsIdenticalToSerial() {
+        Random random = new Random(42);
+        int count = 400;
+        Vector3f[] vertices = new Vector3f[count * 3];
+        Vector3f[] normals = new Vector3f[count * 3];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = new Vector3f(
+                    random.nextFloat() * (WIDTH + 100) - 50,
+                    random.nextFloat() * (HEIGHT + 100) - 50,
+                    random.nextFloat());
+            normals[i] = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat());
+        }
+        Vector3f light = new Vector3f(0, 0, 1);
+
+        int[] serial = new int[WIDTH * HEIGHT];
+        ZBuffer serialDepth = new ZBuffer(WIDTH, HEIGHT);
+        for (int i = 0; i < count; i++) {
+            Rasterizer.rasterizeTriangleIncremental(
+                    vertices[3 * i], vertices[3 * i + 1], vertices[3 * i + 2],
+                    normals[3 * i], normals[3 * i + 1], normals[3 * i + 2],
+                    null, null, null, Color.LIGHTGRAY, serialDepth, serial, null, light, 0.2f, true, 1.2f,
+                    0, 0, WIDTH - 1, HEIGHT - 1);
+        }
+
+        TiledRasterizer tiled = new TiledRasterizer(4);
+        try {
+            int[] parallel = new int[WIDTH * HEIGHT];
+            tiled.begin(WIDTH, HEIGHT);
+            for (int i = 0; i < count; i++) {
+                tiled.submit(
+                        vertices[3 * i], vertices[3 * i + 1], vertices[3 * i + 2],
+                        normals[3 * i], normals[3 * i + 1], normals[3 * i + 2],
+                        null, null, null, Color.LIGHTGRAY, null, light, 0.2f, true, 1.2f);
+            }
+            tiled.execute(parallel, new ZBuffer(WIDTH, HEIGHT));
+
+            assertArrayEquals(serial, parallel);
+        } finally {
+            tiled.shutdown();
+        }
+    }
+}
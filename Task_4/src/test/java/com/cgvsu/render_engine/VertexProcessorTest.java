@@ -0,0 +1,71 @@
+package com.cgvsu.render_engine;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.math.matrix.impl.Matrix4f;
+import com.cgvsu.math.vector.impl.Vector2fImpl;
+import com.cgvsu.math.vector.impl.Vector3fImpl;
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class VertexProcessorTest {
+
+    @Test
+    public void matchesGraphicConveyor() {
+        Model model = new Model();
+        Random random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            model.getVertices().add(new Vector3f(random.nextFloat() * 4 - 2, random.nextFloat() * 4 - 2, random.nextFloat() * 4 - 2));
+            model.getNormals().add(new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f));
+            model.getTextureVertices().add(new Vector2f(random.nextFloat(), random.nextFloat()));
+        }
+        model.translation = new Vector3f(0.5f, -1, 0);
+        model.rotation = new Vector3f(0.3f, 1.1f, 0);
+
+        Matrix4f view = GraphicConveyor.lookAt(new Vector3fImpl(0, 2, 10), new Vector3fImpl(0, 0, 0));
+        Matrix4f projection = GraphicConveyor.perspective(1.0f, 1.5f, 0.01f, 100);
+        Matrix4f modelView = (Matrix4f) view.multiply(model.getModelMatrix());
+        Matrix4f modelViewProjection = (Matrix4f) projection.multiply(view).multiply(model.getModelMatrix());
+
+        VertexProcessor processor = new VertexProcessor();
+        processor.process(model.getCompiledMesh(), modelViewProjection, modelView, 640, 480, true, true);
+
+        float[] screen = processor.getScreenPositions();
+        float[] normals = processor.getViewNormals();
+        float[] texCoords = processor.getTexCoords();
+        for (int i = 0; i < model.getVertices().size(); i++) {
+            Vector3f v = model.getVertices().get(i);
+            Vector3fImpl ndc = GraphicConveyor.multiplyMatrix4ByPoint(modelViewProjection, new Vector3fImpl(v.x, v.y, v.z));
+            Vector2fImpl point = GraphicConveyor.vertexToPoint(ndc, 640, 480);
+            Assertions.assertEquals(point.getX(), screen[i * 3]);
+            Assertions.assertEquals(point.getY(), screen[i * 3 + 1]);
+            Assertions.assertEquals(ndc.getZ(), screen[i * 3 + 2]);
+
+            Vector3f n = model.getNormals().get(i);
+            Vector3fImpl viewNormal = modelView.transformDirection(new Vector3fImpl(n.x, n.y, n.z));
+            Assertions.assertEquals(viewNormal.getX(), normals[i * 3], 1e-6f);
+            Assertions.assertEquals(viewNormal.getY(), normals[i * 3 + 1], 1e-6f);
+            Assertions.assertEquals(viewNormal.getZ(), normals[i * 3 + 2], 1e-6f);
+
+            Assertions.assertEquals(model.getTextureVertices().get(i).x, texCoords[i * 2]);
+            Assertions.assertEquals(model.getTextureVertices().get(i).y, texCoords[i * 2 + 1]);
+        }
+    }
+
+    @Test
+    public void skippedAttributesAreNull() {
+        Model model = new Model();
+        model.getVertices().add(new Vector3f(0, 0, 0));
+        model.getNormals().add(new Vector3f(0, 0, 1));
+
+        VertexProcessor processor = new VertexProcessor();
+        processor.process(model.getCompiledMesh(), Matrix4f.identity(), Matrix4f.identity(), 10, 10, false, false);
+
+        Assertions.assertEquals(1, processor.getVertexCount());
+        Assertions.assertNull(processor.getViewNormals());
+        Assertions.assertNull(processor.getTexCoords());
+    }
+}
@@ -0,0 +1,77 @@
+package com.cgvsu.render_engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class ZBufferTest {
+
+    @Test
+    public void clearResetsAllCells() {
+        ZBuffer zBuffer = new ZBuffer(4, 3);
+        Assertions.assertTrue(zBuffer.testAndSet(1, 2, 0.5f));
+        Assertions.assertFalse(zBuffer.testAndSet(1, 2, 0.7f));
+        Assertions.assertTrue(zBuffer.testAndSet(1, 2, 0.2f));
+
+        zBuffer.clear();
+        Assertions.assertEquals(Float.POSITIVE_INFINITY, zBuffer.getDepth(1, 2));
+        Assertions.assertTrue(zBuffer.testAndSet(1, 2, 0.9f));
+    }
+
+    @Test
+    public void generationalMatchesPlainBuffer() {
+        ZBuffer generational = new ZBuffer(16, 16, true);
+        ZBuffer plain = new ZBuffer(16, 16, false);
+        Random random = new Random(7);
+
+        for (int frame = 0; frame < 5; frame++) {
+            generational.clear();
+            plain.clear();
+            for (int i = 0; i < 500; i++) {
+                int x = random.nextInt(16);
+                int y = random.nextInt(16);
+                float depth = random.nextFloat();
+                Assertions.assertEquals(plain.testAndSet(x, y, depth), generational.testAndSet(x, y, depth));
+            }
+            float[] expected = new float[16];
+            float[] actual = new float[16];
+            for (int y = 0; y < 16; y++) {
+                plain.readRow(y, expected, 0);
+                generational.readRow(y, actual, 0);
+                Assertions.assertArrayEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void emptyCellRejectsInfiniteAndNaNDepth() {
+        for (boolean generational : new boolean[] {true, false}) {
+            ZBuffer zBuffer = new ZBuffer(2, 2, generational);
+            Assertions.assertFalse(zBuffer.testAndSet(0, 0, Float.NaN));
+            Assertions.assertFalse(zBuffer.testAndSet(0, 0, Float.POSITIVE_INFINITY));
+            Assertions.assertEquals(Float.POSITIVE_INFINITY, zBuffer.getDepth(0, 0));
+            Assertions.assertTrue(zBuffer.testAndSet(0, 0, 0.5f));
+            Assertions.assertEquals(0.5f, zBuffer.getDepth(0, 0));
+        }
+    }
+
+    @Test
+    public void outOfBoundsIsRejected() {
+        ZBuffer zBuffer = new ZBuffer(2, 2);
+        Assertions.assertFalse(zBuffer.testAndSet(-1, 0, 0.0f));
+        Assertions.assertFalse(zBuffer.testAndSet(0, 2, 0.0f));
+    }
+
+    @Test
+    public void shrinkingKeepsRowLayout() {
+        ZBuffer zBuffer = new ZBuffer(8, 8);
+        zBuffer.testAndSet(3, 3, 0.1f);
+        zBuffer.resize(4, 2);
+
+        Assertions.assertEquals(4, zBuffer.getRowOffset(1));
+        Assertions.assertEquals(Float.POSITIVE_INFINITY, zBuffer.getDepth(3, 1));
+        Assertions.assertTrue(zBuffer.testAndSetAt(zBuffer.getRowOffset(1) + 3, 0.4f));
+        Assertions.assertEquals(0.4f, zBuffer.getDepth(3, 1));
+    }
+}